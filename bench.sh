@@ -0,0 +1,18 @@
+#! /bin/sh
+# Compiles and runs the JMH benchmarks of the bench source tree. The JMH
+# jars (jmh-core, jmh-generator-annprocess and their dependencies) must be
+# in lib/jmh/. Arguments are passed to the JMH runner, e.g.,
+# ./bench.sh ConnectivityBenchmark -prof gc
+# The results are written in JSON format to the file given in the
+# BENCH_RESULT environment variable (default: bench_result.json).
+targetdir=target
+benchdir=target-bench
+resultfile=${BENCH_RESULT:-bench_result.json}
+
+./compile.sh
+
+if [ ! -d "$benchdir" ]; then mkdir $benchdir; fi
+
+javac -cp "$targetdir:lib/jmh/*" -d $benchdir bench/benchmark/*.java
+
+java -cp "$benchdir:$targetdir:lib/ECLA.jar:lib/jmh/*" org.openjdk.jmh.Main -rf json -rff $resultfile $*
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import routing.ActiveRouter;
+import core.DTNHost;
+import core.SimClock;
+import core.World;
+
+/**
+ * Measures {@link ActiveRouter#update()} of all hosts' (epidemic) routers.
+ * The simulation is first run until the hosts have messages and
+ * connections, and after that only the simulation time advances between
+ * the invocations, so the routers keep finishing and starting transfers
+ * over the existing connections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ActiveRouterBenchmark {
+	/** Simulated time (seconds) to run before measuring. Connections are
+	 * created every 30 minutes, so this includes the first connection
+	 * round. */
+	public static final double SETUP_TIME = 1850;
+
+	/** Number of hosts in the world */
+	@Param({"100", "1000", "10000"})
+	public int nrofHosts;
+
+	private List<DTNHost> hosts;
+	private double updateInterval;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		World world = SyntheticWorld.create(SyntheticWorld.withMessages(
+				SyntheticWorld.randomWaypoint(nrofHosts))).getWorld();
+		while (SimClock.getTime() < SETUP_TIME) {
+			world.update();
+		}
+		this.hosts = world.getHosts();
+		this.updateInterval = 1;
+	}
+
+	/**
+	 * Advances the simulation time by one update interval
+	 */
+	@Setup(Level.Invocation)
+	public void advanceClock() {
+		SimClock.getInstance().advance(updateInterval);
+	}
+
+	/**
+	 * Updates the routers of all hosts
+	 * @return Number of messages in the hosts' buffers
+	 */
+	@Benchmark
+	public int update() {
+		int nrofMessages = 0;
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			DTNHost host = hosts.get(i);
+			host.getRouter().update();
+			nrofMessages += host.getNrofMessages();
+		}
+		return nrofMessages;
+	}
+}
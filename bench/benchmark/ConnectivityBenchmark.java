@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.ConnectivityOptimizer.InterfaceVisitor;
+import interfaces.PackedConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimScenario;
+
+/**
+ * Compares the connectivity phase of the {@link ConnectivityGrid} and the
+ * {@link PackedConnectivityGrid}: every interface's location is updated and
+ * the interfaces within range are counted from the near interfaces, like
+ * the interfaces do on every update. The hosts move one update interval
+ * (RandomWaypoint) before every invocation. Run with <code>-prof gc</code>
+ * to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConnectivityBenchmark {
+	/** Number of hosts in the world */
+	@Param({"500", "2000", "10000"})
+	public int nrofHosts;
+
+	/** The optimizer implementation: "grid" or "packed" */
+	@Param({"grid", "packed"})
+	public String optimizer;
+
+	private List<DTNHost> hosts;
+	private List<NetworkInterface> interfaces;
+	private ConnectivityOptimizer opt;
+	private double updateInterval;
+	private RangeCounter counter;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SimScenario scen = SyntheticWorld.create(
+				SyntheticWorld.randomWaypoint(nrofHosts));
+		this.hosts = scen.getHosts();
+		this.updateInterval = scen.getUpdateInterval();
+		this.interfaces = new ArrayList<NetworkInterface>();
+		for (DTNHost h : hosts) {
+			interfaces.addAll(h.getInterfaces());
+		}
+
+		// separate key so that the hosts' own optimizer is not shared
+		int key = ("benchmark-" + optimizer).hashCode();
+		if (optimizer.equals("packed")) {
+			this.opt = PackedConnectivityGrid.getInstance(key,
+					SyntheticWorld.TRANSMIT_RANGE);
+		}
+		else {
+			this.opt = ConnectivityGrid.ConnectivityGridFactory(key,
+					SyntheticWorld.TRANSMIT_RANGE);
+		}
+		opt.addInterfaces(interfaces);
+		this.counter = new RangeCounter();
+	}
+
+	/**
+	 * Moves the hosts for one update interval
+	 */
+	@Setup(Level.Invocation)
+	public void moveHosts() {
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			hosts.get(i).move(updateInterval);
+		}
+	}
+
+	/**
+	 * Updates the locations and goes through the near interfaces using
+	 * {@link ConnectivityOptimizer#getNearInterfaces(NetworkInterface)}
+	 * @return Number of interface pairs within range
+	 */
+	@Benchmark
+	public int nearInterfaces() {
+		int inRange = 0;
+		for (int i=0, n = interfaces.size(); i < n; i++) {
+			opt.updateLocation(interfaces.get(i));
+		}
+		for (int i=0, n = interfaces.size(); i < n; i++) {
+			NetworkInterface ni = interfaces.get(i);
+			for (NetworkInterface other : opt.getNearInterfaces(ni)) {
+				if (other != ni && isWithinRange(ni, other)) {
+					inRange++;
+				}
+			}
+		}
+		return inRange;
+	}
+
+	/**
+	 * Updates the locations and goes through the near interfaces using
+	 * {@link ConnectivityOptimizer#visitNearInterfaces(NetworkInterface,
+	 * InterfaceVisitor)}
+	 * @return Number of interface pairs within range
+	 */
+	@Benchmark
+	public int visitNearInterfaces() {
+		for (int i=0, n = interfaces.size(); i < n; i++) {
+			opt.updateLocation(interfaces.get(i));
+		}
+		counter.count = 0;
+		for (int i=0, n = interfaces.size(); i < n; i++) {
+			counter.ni = interfaces.get(i);
+			opt.visitNearInterfaces(counter.ni, counter);
+		}
+		return counter.count;
+	}
+
+	private static boolean isWithinRange(NetworkInterface a,
+			NetworkInterface b) {
+		return a.getLocation().distance(b.getLocation()) <=
+			Math.min(a.getTransmitRange(), b.getTransmitRange());
+	}
+
+	/**
+	 * Counts the visited interfaces that are within range
+	 */
+	private static class RangeCounter implements InterfaceVisitor {
+		private static final long serialVersionUID = 1L;
+		private NetworkInterface ni;
+		private int count;
+
+		public void visit(NetworkInterface other) {
+			if (other != ni && isWithinRange(ni, other)) {
+				count++;
+			}
+		}
+	}
+}
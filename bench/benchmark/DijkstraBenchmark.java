@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import movement.MapBasedMovement;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+import movement.map.SimMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Settings;
+import core.SimScenario;
+
+/**
+ * Measures {@link DijkstraPathFinder#getShortestPath(MapNode, MapNode)}
+ * between random node pairs of the bundled maps, with and without the map's
+ * {@link movement.map.MapRoutingService}. The paths start from a limited
+ * number of source nodes (like homes, offices and points of interest) to
+ * random destinations. The same pseudo random sequence of pairs is used on
+ * every run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DijkstraBenchmark {
+	/** Number of different node pairs */
+	public static final int NROF_PAIRS = 1024;
+
+	/** Name of the bundled map */
+	@Param({SyntheticWorld.HELSINKI_MAP, SyntheticWorld.FMI_MAP})
+	public String map;
+
+	/** Number of different source nodes */
+	@Param({"64", "1024"})
+	public int nrofSources;
+
+	/** Path finding: "search" (no routing service) or "service" */
+	@Param({"search", "service"})
+	public String pathFinding;
+
+	private DijkstraPathFinder pathFinder;
+	private MapNode[] from;
+	private MapNode[] to;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SyntheticWorld.init(SyntheticWorld.mapBased(1, map));
+		SimMap simMap = new MapBasedMovement(
+				new Settings(SimScenario.GROUP_NS)).getMap();
+		List<MapNode> nodes = simMap.getNodes();
+
+		Random rng = new Random(SyntheticWorld.RNG_SEED);
+		MapNode[] sources = new MapNode[nrofSources];
+		for (int i=0; i < nrofSources; i++) {
+			sources[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+		this.from = new MapNode[NROF_PAIRS];
+		this.to = new MapNode[NROF_PAIRS];
+		for (int i=0; i < NROF_PAIRS; i++) {
+			from[i] = sources[rng.nextInt(nrofSources)];
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+
+		if (pathFinding.equals("service")) {
+			this.pathFinder = new DijkstraPathFinder(simMap, null);
+		}
+		else {
+			this.pathFinder = new DijkstraPathFinder(null);
+		}
+		this.next = 0;
+	}
+
+	/**
+	 * Finds the shortest path between the next pair of nodes
+	 * @return The path
+	 */
+	@Benchmark
+	public List<MapNode> getShortestPath() {
+		int i = next;
+		next = (next + 1) % NROF_PAIRS;
+		return pathFinder.getShortestPath(from[i], to[i]);
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import routing.MessageRouter;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Measures {@link MessageRouter#messageTransferred(String, DTNHost)} of a
+ * relaying host, i.e., moving a received message from the incoming buffer
+ * to the message buffer and informing the listeners. Before every
+ * invocation a new message is put to the incoming buffer, and after the
+ * invocation the message is deleted, so the buffer always has the same
+ * number of other messages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageTransferBenchmark {
+	/** Number of other messages in the receiving host's buffer */
+	@Param({"0", "100", "1000"})
+	public int bufferedMessages;
+
+	private DTNHost from;
+	private DTNHost destination;
+	private MessageRouter router;
+	private int nextId;
+	private String id;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		List<DTNHost> hosts = SyntheticWorld.create(
+				SyntheticWorld.randomWaypoint(3)).getHosts();
+		this.from = hosts.get(0);
+		this.router = hosts.get(1).getRouter();
+		this.destination = hosts.get(2);
+
+		for (int i=0; i < bufferedMessages; i++) {
+			router.createNewMessage(new Message(hosts.get(1), destination,
+					"B" + i, 1));
+		}
+		this.nextId = 0;
+	}
+
+	/**
+	 * Starts the transfer of a new message to the receiving host
+	 */
+	@Setup(Level.Invocation)
+	public void startTransfer() {
+		this.id = "T" + nextId++;
+		Message m = new Message(from, destination, id, 1);
+		router.receiveMessage(m, from);
+	}
+
+	/**
+	 * Deletes the transferred message from the receiving host
+	 */
+	@TearDown(Level.Invocation)
+	public void deleteMessage() {
+		router.deleteMessage(id, false);
+	}
+
+	/**
+	 * Finishes the transfer of the message
+	 * @return The received message
+	 */
+	@Benchmark
+	public Message messageTransferred() {
+		return router.messageTransferred(id, from);
+	}
+}
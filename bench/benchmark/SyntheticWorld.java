@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import movement.MovementModel;
+import core.RunContext;
+import core.Settings;
+import core.SimError;
+import core.SimScenario;
+
+/**
+ * Creates simulation scenarios for the benchmarks without any settings
+ * files. Every scenario is created in a new {@link RunContext} that is
+ * bound to the calling thread, so the benchmark state must be set up and
+ * used by the same thread (JMH's <code>Scope.Thread</code>).
+ */
+public class SyntheticWorld {
+	/** Edge length of the synthetic worlds (meters) */
+	public static final int WORLD_SIZE = 5000;
+	/** Transmit range of the hosts' interfaces (meters) */
+	public static final double TRANSMIT_RANGE = 10;
+	/** Name of the hosts' interface type */
+	public static final String INTERFACE_NAME = "benchInterface";
+	/** Seed of the movement models' random number generator */
+	public static final int RNG_SEED = 1;
+	/** Name of the bundled Helsinki map ({@value}) */
+	public static final String HELSINKI_MAP = "HelsinkiMedium";
+	/** Name of the bundled FMI map ({@value}) */
+	public static final String FMI_MAP = "FMI";
+
+	/**
+	 * Returns settings for a scenario where all hosts use RandomWaypoint
+	 * movement in a {@link #WORLD_SIZE} x {@link #WORLD_SIZE} world.
+	 * @param nrofHosts Number of hosts in the world
+	 * @return The settings
+	 */
+	public static Properties randomWaypoint(int nrofHosts) {
+		Properties p = new Properties();
+		p.setProperty("Scenario.name", "benchmark");
+		p.setProperty("Scenario.endTime", "1000000000");
+		p.setProperty("Scenario.updateInterval", "1");
+		p.setProperty("Scenario.simulateConnections", "true");
+		p.setProperty("Scenario.nrofHostGroups", "1");
+		p.setProperty(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "" + RNG_SEED);
+		p.setProperty(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, WORLD_SIZE + "," + WORLD_SIZE);
+		p.setProperty("Events.nrof", "0");
+
+		p.setProperty(INTERFACE_NAME + ".type", "SimpleBroadcastInterface");
+		p.setProperty(INTERFACE_NAME + ".transmitRange", "" + TRANSMIT_RANGE);
+		p.setProperty(INTERFACE_NAME + ".transmitSpeed", "250k");
+
+		p.setProperty("Group.groupID", "n");
+		p.setProperty("Group.nrofHosts", "" + nrofHosts);
+		p.setProperty("Group.movementModel", "RandomWaypoint");
+		p.setProperty("Group.router", "EpidemicRouter");
+		p.setProperty("Group.bufferSize", "5M");
+		p.setProperty("Group.speed", "0.5, 1.5");
+		p.setProperty("Group.waitTime", "0, 120");
+		p.setProperty("Group.getVirusProbability", "1");
+		p.setProperty("Group.nrofInterfaces", "1");
+		p.setProperty("Group.interface1", INTERFACE_NAME);
+		p.setProperty("Group1.nrofHosts", "" + nrofHosts);
+		return p;
+	}
+
+	/**
+	 * Returns settings for a scenario where all hosts use MapBasedMovement
+	 * on one of the bundled maps
+	 * @param nrofHosts Number of hosts in the world
+	 * @param mapName Name of the map ({@link #HELSINKI_MAP} or
+	 * {@link #FMI_MAP})
+	 * @return The settings
+	 */
+	public static Properties mapBased(int nrofHosts, String mapName) {
+		Properties p = randomWaypoint(nrofHosts);
+		String ns = "MapBasedMovement.";
+		p.setProperty("Group.movementModel", "MapBasedMovement");
+
+		if (mapName.equals(HELSINKI_MAP)) {
+			p.setProperty(MovementModel.MOVEMENT_MODEL_NS + "." +
+					MovementModel.WORLD_SIZE, "10000, 8000");
+			p.setProperty(ns + "nrofMapFiles", "1");
+			p.setProperty(ns + "mapFile1", "data/HelsinkiMedium/roads.wkt");
+		}
+		else if (mapName.equals(FMI_MAP)) {
+			p.setProperty(MovementModel.MOVEMENT_MODEL_NS + "." +
+					MovementModel.WORLD_SIZE, "2000, 2000");
+			p.setProperty(ns + "nrofMapFiles", "3");
+			p.setProperty(ns + "mapFile1", "data/FMI/movement_path.wkt");
+			p.setProperty(ns + "mapFile2", "data/FMI/ubahn.wkt");
+			p.setProperty(ns + "mapFile3", "data/FMI/building_outline.wkt");
+		}
+		else {
+			throw new SimError("Unknown map " + mapName);
+		}
+		return p;
+	}
+
+	/**
+	 * Returns settings for a scenario with the given movement. Movement
+	 * "RandomWaypoint" uses {@link #randomWaypoint(int)} and the names of the
+	 * bundled maps {@link #mapBased(int, String)}.
+	 * @param nrofHosts Number of hosts in the world
+	 * @param movement Name of the movement
+	 * @return The settings
+	 */
+	public static Properties withMovement(int nrofHosts, String movement) {
+		if (movement.equals("RandomWaypoint")) {
+			return randomWaypoint(nrofHosts);
+		}
+		return mapBased(nrofHosts, movement);
+	}
+
+	/**
+	 * Adds a message generator that creates a message between random hosts
+	 * every 25-35 seconds to the settings
+	 * @param p The settings
+	 * @return The same settings object
+	 */
+	public static Properties withMessages(Properties p) {
+		int nrofHosts = Integer.parseInt(p.getProperty("Group.nrofHosts"));
+		p.setProperty("Events.nrof", "1");
+		p.setProperty("Events1.class", "MessageEventGenerator");
+		p.setProperty("Events1.interval", "25, 35");
+		p.setProperty("Events1.size", "50k, 500k");
+		p.setProperty("Events1.hosts", "0, " + nrofHosts);
+		p.setProperty("Events1.prefix", "M");
+		return p;
+	}
+
+	/**
+	 * Initializes the settings with the given values and binds a new run
+	 * context to the calling thread
+	 * @param settings The settings to use
+	 */
+	public static void init(Properties settings) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			settings.store(out, null);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+		Settings.initFromStream(new ByteArrayInputStream(out.toByteArray()));
+
+		RunContext.bind(new RunContext(0));
+	}
+
+	/**
+	 * Initializes the settings with the given values and creates a new
+	 * scenario in a new run context bound to the calling thread
+	 * @param settings The settings of the scenario
+	 * @return The new scenario
+	 */
+	public static SimScenario create(Properties settings) {
+		init(settings);
+		return SimScenario.getInstance();
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.SimClock;
+import core.World;
+
+/**
+ * Measures one {@link World#update()} call, i.e., one update interval of
+ * the whole simulation (events, movement, connectivity and routing), in
+ * synthetic worlds with message traffic. The simulation keeps running from
+ * one invocation to the next, so the measured state is the steady state of
+ * a long simulation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WorldUpdateBenchmark {
+	/** Number of hosts in the world */
+	@Param({"100", "1000", "10000"})
+	public int nrofHosts;
+
+	/** Movement of the hosts: RandomWaypoint or the name of a bundled map */
+	@Param({"RandomWaypoint", SyntheticWorld.HELSINKI_MAP,
+		SyntheticWorld.FMI_MAP})
+	public String movement;
+
+	private World world;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.world = SyntheticWorld.create(SyntheticWorld.withMessages(
+				SyntheticWorld.withMovement(nrofHosts, movement))).getWorld();
+	}
+
+	/**
+	 * Runs one update interval of the simulation
+	 * @return The simulation time after the update
+	 */
+	@Benchmark
+	public double update() {
+		world.update();
+		return SimClock.getTime();
+	}
+}
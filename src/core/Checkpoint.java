@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <P>
+ * Checkpoint of a running simulation. A checkpoint contains the whole
+ * state of a run (the {@link RunContext}): the simulation time, the
+ * scenario with its world, hosts, movement models (and their random number
+ * generators), routers with their buffers, connections and event queues.
+ * It is written to a compressed binary file when the simulation time
+ * reaches {@link #SAVE_TIME_S} and any number of runs can be resumed from
+ * it ({@link #RESUME_S}), so a long identical prefix of a parameter sweep
+ * (e.g., the movement warmup and the first days) needs to be simulated only
+ * once.</P>
+ *
+ * <P>The reports are not part of the checkpoint; the resumed run creates its
+ * own reports. Settings that are read when the simulation objects are
+ * created (host groups, movement models, routers, interfaces) come from the
+ * checkpoint, but the end time, reports and other settings that are read
+ * after the creation take effect. The resumed run uses its own random
+ * streams ({@link RandomStreams}), so the contact rolls differ between the
+ * runs, but the movement continues the same way in all of them (unless the
+ * movement models are reseeded). If the infection engine is enabled but the
+ * checkpoint has none, a new engine is created.</P>
+ *
+ * <P>All the simulation objects must be serializable. Simulations with
+ * objects that can't be saved (e.g., external event readers) can't be
+ * checkpointed. Saving a checkpoint assigns identity hash codes to the
+ * objects, so runs whose results depend on them (e.g., the random queue
+ * mode of the routers) may continue differently after the save.</P>
+ *
+ * <P>The settings are in the {@value #CHECKPOINT_NS} namespace.</P>
+ */
+public class Checkpoint implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/** Namespace of the checkpoint settings ({@value}) */
+	public static final String CHECKPOINT_NS = "Checkpoint";
+	/** Simulation time when the checkpoint is saved -setting id ({@value}).
+	 * If not defined, no checkpoint is saved. */
+	public static final String SAVE_TIME_S = "saveTime";
+	/** File where the checkpoint is saved to -setting id ({@value}). Value
+	 * fillers (e.g., "%%Scenario.name%%") can be used. */
+	public static final String FILE_S = "file";
+	/** Checkpoint file to resume the runs from -setting id ({@value}). */
+	public static final String RESUME_S = "resume";
+
+	private final double clockTime;
+	private final int nextHostAddress;
+	private final int nextMessageId;
+	private final Map<Object, Object> state;
+
+	/**
+	 * Creates a checkpoint of a run
+	 * @param context The context of the run
+	 */
+	private Checkpoint(RunContext context) {
+		this.clockTime = context.clockTime;
+		this.nextHostAddress = context.nextHostAddress;
+		this.nextMessageId = context.nextMessageId;
+		this.state = context.state;
+	}
+
+	/**
+	 * Saves the current run (of the calling thread) to a file
+	 * @param fileName Name of the file
+	 * @throws SimError if the run can't be saved
+	 */
+	public static void save(String fileName) {
+		RunContext context = RunContext.current();
+		SimScenario scen = (SimScenario)context.get(SimScenario.class);
+		write(new Checkpoint(context), fileName, scen == null ?
+				new ArrayList<List<?>>() : scen.getListenerLists());
+	}
+
+	private static void write(Checkpoint cp, String fileName,
+			List<List<?>> listenerLists) {
+		File file = new File(fileName);
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		CheckpointOutputStream out = null;
+		boolean ok = false;
+		try {
+			out = new CheckpointOutputStream(new BufferedOutputStream(
+					new FastGZIPOutputStream(new FileOutputStream(file))),
+					listenerLists);
+			out.writeObject(cp);
+			out.close();
+			ok = true;
+		} catch (NotSerializableException e) {
+			throw new SimError("Can't save a checkpoint: " + e.getMessage() +
+					" doesn't support checkpointing");
+		} catch (IOException e) {
+			throw new SimError("Can't save a checkpoint to " + fileName, e);
+		}
+		finally {
+			if (!ok) {
+				if (out != null) {
+					try {
+						out.close();
+					} catch (IOException e) {
+						// the original failure is thrown
+					}
+				}
+				file.delete(); // don't leave partial checkpoints
+			}
+		}
+	}
+
+	/**
+	 * Restores the run of a checkpoint file to the run context of the
+	 * calling thread. The context should be reset before restoring.
+	 * @param fileName Name of the file
+	 * @throws SimError if the checkpoint can't be read
+	 */
+	public static void restore(String fileName) {
+		RunContext context = RunContext.current();
+		ObjectInputStream in = null;
+		Checkpoint cp;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(
+					new GZIPInputStream(new FileInputStream(fileName))));
+			cp = (Checkpoint)in.readObject();
+		} catch (IOException e) {
+			throw new SimError("Can't read checkpoint " + fileName, e);
+		} catch (ClassNotFoundException e) {
+			throw new SimError("Can't read checkpoint " + fileName, e);
+		}
+		finally {
+			close(in);
+		}
+
+		context.clockTime = cp.clockTime;
+		context.nextHostAddress = cp.nextHostAddress;
+		context.nextMessageId = cp.nextMessageId;
+		for (Map.Entry<Object, Object> e : cp.state.entrySet()) {
+			context.put(e.getKey(), e.getValue());
+		}
+
+		SimScenario scen = (SimScenario)context.get(SimScenario.class);
+		if (scen != null) {
+			scen.resumed();
+		}
+	}
+
+	private static void close(java.io.Closeable c) {
+		if (c == null) {
+			return;
+		}
+		try {
+			c.close();
+		} catch (IOException e) {
+			throw new SimError("Can't close checkpoint file", e);
+		}
+	}
+
+	/**
+	 * Object output stream that leaves out the listeners that are not part of
+	 * the simulation model (e.g., reports) from the scenario's listener lists
+	 */
+	private static class CheckpointOutputStream extends ObjectOutputStream {
+		private List<List<?>> listenerLists;
+
+		private CheckpointOutputStream(OutputStream out,
+				List<List<?>> listenerLists) throws IOException {
+			super(out);
+			this.listenerLists = listenerLists;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) {
+			for (List<?> list : listenerLists) {
+				if (obj == list) {
+					List<Object> saved = new ArrayList<Object>();
+					for (Object listener : list) {
+						if (listener instanceof Serializable) {
+							saved.add(listener);
+						}
+					}
+					return saved;
+				}
+			}
+			return obj;
+		}
+	}
+
+	/**
+	 * GZIP output stream that favors speed over compression ratio
+	 */
+	private static class FastGZIPOutputStream extends GZIPOutputStream {
+		private FastGZIPOutputStream(OutputStream out) throws IOException {
+			super(out, 1 << 16);
+			def.setLevel(Deflater.BEST_SPEED);
+		}
+	}
+}
@@ -5,6 +5,7 @@
 package core;
 
 import java.awt.*;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -19,8 +20,8 @@ import static core.Constants.DEBUG;
 /**
  * A DTN capable host.
  */
-public class DTNHost implements Comparable<DTNHost> {
-	private static int nextAddress = 0;
+public class DTNHost implements Comparable<DTNHost>, Serializable {
+	private static final long serialVersionUID = 42L;
 	private int address;
 	public Color color;
 	private Coord location; 	// where is the host
@@ -32,6 +33,19 @@ public class DTNHost implements Comparable<DTNHost> {
 	private double probability;
 	private double speed;
 	private double nextTimeToMove;
+	/** incremented every time the current movement segment changes */
+	private int segmentVersion;
+	/** location of the host after the latest update */
+	private double updatedX;
+	private double updatedY;
+	/** did the host have connections after the latest update */
+	private boolean connectedAfterUpdate;
+	/** time until which the host is known to be idle */
+	private double idleUntil;
+	/** live metrics of the run or null if they are not collected */
+	private transient Metrics metrics;
+	/** clock of the run the host belongs to */
+	private SimClock clock;
 	public final String groupId;
 	private String name;
 	private List<MessageListener> msgListeners;
@@ -64,6 +78,7 @@ public class DTNHost implements Comparable<DTNHost> {
 			MovementModel mmProto, MessageRouter mRouterProto,
 		    Color rangeColor, double getVirusProbability) {
 		this.comBus = comBus;
+		this.clock = SimClock.getInstance();
 		this.location = new Coord(0,0);
 		this.address = getNextAddress();
 		this.groupId = groupId;
@@ -94,6 +109,8 @@ public class DTNHost implements Comparable<DTNHost> {
 
 		this.nextTimeToMove = movement.nextPathAvailable();
 		this.path = null;
+		this.updatedX = Double.NaN; // not updated yet
+		this.idleUntil = Double.NEGATIVE_INFINITY;
 
 		if (movLs != null) { // inform movement listeners about the location
 			for (MovementListener l : movLs) {
@@ -107,15 +124,15 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * subsequent calls.
 	 * @return The next address.
 	 */
-	private synchronized static int getNextAddress() {
-		return nextAddress++;
+	private static int getNextAddress() {
+		return RunContext.current().nextHostAddress++;
 	}
 
 	/**
 	 * Reset the host and its interfaces
 	 */
 	public static void reset() {
-		nextAddress = 0;
+		RunContext.current().nextHostAddress = 0;
 	}
 
 	/**
@@ -176,6 +193,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param con  The connection object whose state changed
 	 */
 	public void connectionUp(Connection con) {
+		requestUpdate();
 		this.router.changedConnection(con);
 	}
 
@@ -214,6 +232,35 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.path;
 	}
 
+	/**
+	 * Returns the waypoint the node is currently moving towards (or the last
+	 * waypoint it reached if it is waiting), or null if no waypoint has been
+	 * set yet.
+	 * @return The current destination of the node
+	 */
+	public Coord getDestination() {
+		return this.destination;
+	}
+
+	/**
+	 * Returns the speed the node moves towards its current destination
+	 * @return The current speed of the node
+	 */
+	public double getSpeed() {
+		return this.speed;
+	}
+
+	/**
+	 * Returns a value that changes every time the linear movement segment of
+	 * the node changes, i.e., when the node gets a new waypoint, starts
+	 * waiting or its location is set directly. While the value stays the
+	 * same, the node moves (if its movement is active) from its location
+	 * towards {@link #getDestination()} with constant {@link #getSpeed()}.
+	 * @return The version number of the node's current movement segment
+	 */
+	public int getSegmentVersion() {
+		return this.segmentVersion;
+	}
 
 	/**
 	 * Sets the Node's location overriding any location set by movement model
@@ -221,6 +268,8 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void setLocation(Coord location) {
 		this.location = location.clone();
+		this.segmentVersion++;
+		requestUpdate();
 	}
 
 	/**
@@ -309,6 +358,26 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void forceConnection(DTNHost anotherHost, String interfaceId,
 			boolean up) {
+		setConnection(anotherHost, interfaceId, up, false);
+	}
+
+	/**
+	 * Replays a recorded connection event. Unlike
+	 * {@link #forceConnection(DTNHost, String, boolean)}, the contact is
+	 * created regardless of the interfaces' contact acceptance, so the
+	 * recorded contacts are replayed with any random seed and contact
+	 * probabilities.
+	 * @param anotherHost The other host of the connection
+	 * @param interfaceId Type of the interfaces or null for the first ones
+	 * @param up True if the connection comes up, false if it goes down
+	 */
+	public void replayConnection(DTNHost anotherHost, String interfaceId,
+			boolean up) {
+		setConnection(anotherHost, interfaceId, up, true);
+	}
+
+	private void setConnection(DTNHost anotherHost, String interfaceId,
+			boolean up, boolean replay) {
 		NetworkInterface ni;
 		NetworkInterface no;
 
@@ -326,7 +395,9 @@ public class DTNHost implements Comparable<DTNHost> {
 				"Interface types do not match.  Please specify interface type explicitly";
 		}
 
-		if (up) {
+		if (up && replay) {
+			ni.replayConnection(no);
+		} else if (up) {
 			ni.createConnection(no);
 		} else {
 			ni.destroyConnection(no);
@@ -343,22 +414,105 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	/**
-	 * Updates node's network layer and router.
+	 * Updates node's network layer and router. If the live metrics are
+	 * collected, the time of the network layer and router updates is
+	 * recorded to them.
 	 * @param simulateConnections Should network layer be updated too
 	 */
 	public void update(boolean simulateConnections) {
+		Metrics metrics = this.metrics;
 		if (!isRadioActive()) {
 			// Make sure inactive nodes don't have connections
 			tearDownAllConnections();
 			return;
 		}
 
+		long start = 0;
 		if (simulateConnections) {
+			if (metrics != null) {
+				start = metrics.start(Metrics.CONNECTIVITY);
+			}
 			for (NetworkInterface i : net) {
 				i.update();
 			}
+			if (metrics != null) {
+				metrics.stop(Metrics.CONNECTIVITY, start);
+			}
+		}
+		if (metrics != null) {
+			Metrics.Timer timer = metrics.getRouterTimer(router.getClass());
+			start = timer.start();
+			this.router.update();
+			timer.stop(start);
+		}
+		else {
+			this.router.update();
+		}
+
+		this.updatedX = this.location.getX();
+		this.updatedY = this.location.getY();
+		this.connectedAfterUpdate = false;
+		for (NetworkInterface i : net) {
+			if (i.getConnections().size() > 0) {
+				this.connectedAfterUpdate = true;
+				break;
+			}
 		}
-		this.router.update();
+	}
+
+	/**
+	 * Returns true if calling {@link #update(boolean)} would currently change
+	 * nothing, i.e., if the host hasn't moved and had no connections since
+	 * the previous update, and all its interfaces and the router are idle.
+	 * A host that is found idle is not checked again until it may move or
+	 * its interfaces or router may become busy, unless something happens
+	 * to the host (see {@link #requestUpdate()}).
+	 * @param simulateConnections Would the network layer be updated too
+	 * @return true if the host is idle
+	 */
+	boolean isIdle(boolean simulateConnections) {
+		double now = clock.currentTime();
+		if (now < this.idleUntil) {
+			return true;
+		}
+
+		double end = Double.POSITIVE_INFINITY;
+		if (simulateConnections) {
+			if (this.connectedAfterUpdate ||
+					this.location.getX() != this.updatedX ||
+					this.location.getY() != this.updatedY) {
+				return false;
+			}
+			/* waiting hosts stay where they are until the wait is over */
+			end = Math.max(getWaitEndTime(), Math.nextUp(now));
+		}
+		for (int i=0, n=net.size(); i < n && end > now; i++) {
+			end = Math.min(end, net.get(i).getIdleEndTime());
+		}
+		if (end > now) {
+			end = Math.min(end, this.router.getIdleEndTime());
+		}
+
+		this.idleUntil = end;
+		return now < end;
+	}
+
+	/**
+	 * Requests the host to be updated on the next update round even if it
+	 * was found idle before. Must be called when something that the host
+	 * doesn't notice itself (e.g., a new message in the router) may have
+	 * made the host busy.
+	 */
+	public void requestUpdate() {
+		this.idleUntil = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Sets the metrics where the updates of this host are recorded to
+	 * @param metrics The metrics or null if they are not collected
+	 */
+	void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
 	}
 
 	/**
@@ -392,7 +546,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		double distance;
 		double dx, dy;
 
-		if (!isMovementActive() || SimClock.getTime() < this.nextTimeToMove) {
+		if (!isMovementActive() || clock.currentTime() < this.nextTimeToMove) {
 			return;
 		}
 		if (this.destination == null) {
@@ -422,6 +576,21 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location.translate(dx, dy);
 	}
 
+	/**
+	 * Returns the time until which {@link #move(double)} does nothing, i.e.,
+	 * the time of the next path if the node is waiting for it and its
+	 * movement model stays active, or negative infinity if the node must
+	 * be moved on every update round
+	 * @return The time when the node needs to be moved next
+	 */
+	double getWaitEndTime() {
+		if (clock.currentTime() < this.nextTimeToMove &&
+				this.movement.isAlwaysActive()) {
+			return this.nextTimeToMove;
+		}
+		return Double.NEGATIVE_INFINITY;
+	}
+
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
 	 * on the path.
@@ -429,6 +598,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * should wait
 	 */
 	private boolean setNextWaypoint() {
+		this.segmentVersion++;
 		if (path == null) {
 			path = movement.getPath();
 		}
@@ -7,8 +7,14 @@ import gui.DTNSimGUI;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import report.EnsembleStatistics;
 import ui.DTNSimTextUI;
 
 /**
@@ -20,12 +26,20 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the batch mode run count, the
+	 * batch runs are executed concurrently using the given number of
+	 * threads */
+	public static final String CONCURRENT_RUNS_FLAG = "-p";
+	/** Prefix of the run specific report sub directories used when batch
+	 * runs are executed concurrently ({@value}) */
+	public static final String RUN_REPORT_DIR_PREFIX = "run";
 
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
 	public static final String RESET_METHOD_NAME = "reset";
 	/** List of class names that should be reset between batch runs */
-	private static List<Class<?>> resetList = new ArrayList<Class<?>>();
+	private static List<Class<?>> resetList =
+		Collections.synchronizedList(new ArrayList<Class<?>>());
 
 	/**
 	 * Starts the user interface with given arguments.
@@ -34,14 +48,24 @@ public class DTNSim {
 	 * or a with a combination of starting run and the number of runs,
 	 * delimited with a {@value #RANGE_DELIMETER}. Different settings from run
 	 * arrays are used for different runs (see
-	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings
+	 * {@link Settings#setRunIndex(int)}). The number of runs can be followed
+	 * by {@value #CONCURRENT_RUNS_FLAG} and the number of runs to execute
+	 * concurrently in separate threads. Each concurrent run has its own
+	 * {@link RunContext} and writes its reports to a run specific sub
+	 * directory of the report directory. Following arguments are the settings
 	 * files for the simulation run (if any). For GUI mode, the number before
 	 * settings files (if given) is the run index to use for that run.
+	 * <P>If the ensemble mode is enabled in the settings (see
+	 * {@link EnsembleStatistics}), the batch runs are replicas of a
+	 * Monte-Carlo ensemble: their metrics are aggregated while they run and
+	 * the remaining runs are skipped once the confidence intervals are
+	 * narrow enough.</P>
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
 		boolean batchMode = false;
 		int nrofRuns[] = {0,1};
+		int nrofThreads = 1;
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
@@ -59,6 +83,11 @@ public class DTNSim {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
                 }
+				if (args.length > firstConfIndex + 1 &&
+						args[firstConfIndex].equals(CONCURRENT_RUNS_FLAG)) {
+					nrofThreads = parseNrofThreads(args[firstConfIndex + 1]);
+					firstConfIndex += 2;
+				}
 			}
 			else { /* GUI mode */
 				try { /* is there a run index for the GUI mode ? */
@@ -78,11 +107,36 @@ public class DTNSim {
 
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			EnsembleStatistics ensemble = null;
+			if (EnsembleStatistics.isEnabled()) {
+				ensemble = new EnsembleStatistics();
+				EnsembleStatistics.setInstance(ensemble);
+			}
+
+			if (nrofThreads > 1) {
+				runConcurrently(nrofRuns, nrofThreads, ensemble);
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					if (ensemble != null && ensemble.isConverged()) {
+						break;
+					}
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new DTNSimTextUI().start();
+					if (ensemble != null) {
+						ensemble.runDone();
+					}
+				}
+			}
+
+			if (ensemble != null) {
+				EnsembleStatistics.setInstance(null);
+				ensemble.done();
+				print("Ensemble of " + ensemble.getNrofRuns() + " runs " +
+						(ensemble.isConverged() ? "converged" :
+							"did not converge"));
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +147,62 @@ public class DTNSim {
 		}
 	}
 
+	/**
+	 * Executes the batch runs concurrently. Every run is executed in a
+	 * thread bound to its own {@link RunContext}.
+	 * @param nrofRuns The first and (last_run_index - 1) in an array
+	 * @param nrofThreads Maximum number of runs to execute at the same time
+	 * @param ensemble Statistics of the ensemble or null if not in the
+	 * ensemble mode. The runs that haven't started when the ensemble
+	 * converges are skipped.
+	 */
+	private static void runConcurrently(final int[] nrofRuns,
+			int nrofThreads, final EnsembleStatistics ensemble) {
+		ExecutorService executor = Executors.newFixedThreadPool(nrofThreads);
+		List<Future<?>> runs = new ArrayList<Future<?>>();
+
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			final int runIndex = i;
+			runs.add(executor.submit(new Runnable() {
+				public void run() {
+					if (ensemble != null && ensemble.isConverged()) {
+						return;
+					}
+					RunContext context = new RunContext(runIndex);
+					context.setReportSubDir(RUN_REPORT_DIR_PREFIX +
+							(runIndex + 1));
+					RunContext.bind(context);
+					EnsembleStatistics.setInstance(ensemble);
+					try {
+						print("Run " + (runIndex+1) + "/" + nrofRuns[1]);
+						resetForNextRun();
+						new DTNSimTextUI().start();
+						if (ensemble != null) {
+							ensemble.runDone();
+						}
+					}
+					finally {
+						RunContext.bind(null);
+					}
+				}
+			}));
+		}
+		executor.shutdown();
+
+		for (Future<?> run : runs) {
+			try {
+				run.get();
+			} catch (ExecutionException e) {
+				System.err.println("Batch run failed: " + e.getCause());
+				e.getCause().printStackTrace();
+				System.exit(-1);
+			} catch (InterruptedException e) {
+				System.err.println("Interrupted while waiting for batch runs");
+				System.exit(-1);
+			}
+		}
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings
@@ -160,10 +270,15 @@ public class DTNSim {
 	}
 
 	/**
-	 * Resets all registered classes.
+	 * Resets all registered classes. Resetting is done for the
+	 * {@link RunContext} of the calling thread.
 	 */
 	private static void resetForNextRun() {
-		for (Class<?> c : resetList) {
+		List<Class<?>> classes;
+		synchronized (resetList) {
+			classes = new ArrayList<Class<?>>(resetList);
+		}
+		for (Class<?> c : classes) {
 			try {
 				Method m = c.getMethod(RESET_METHOD_NAME);
 				m.invoke(null);
@@ -216,6 +331,30 @@ public class DTNSim {
 		return val;
 	}
 
+	/**
+	 * Parses the number of concurrent runs from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of concurrent runs
+	 */
+	private static int parseNrofThreads(String arg) {
+		int val = 1;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of concurrent runs");
+			System.exit(-1);
+		}
+
+		if (val < 1) {
+			System.err.println("Number of concurrent runs can't be smaller " +
+					"than 1");
+			System.exit(-1);
+		}
+
+		return val;
+	}
+
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
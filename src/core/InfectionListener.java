@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Interface for classes that want to be informed about the infection state
+ * changes of the hosts (see {@link SeirEngine}).
+ */
+public interface InfectionListener {
+
+	/**
+	 * Method is called when a host gets exposed to the infection
+	 * @param host The host that was exposed
+	 * @param infector The infectious host that transmitted the infection or
+	 * null if the host was one of the initially infected hosts
+	 * @param chainId Identifier of the infection chain (the initially
+	 * infected host the chain started from)
+	 */
+	public void hostExposed(DTNHost host, DTNHost infector, String chainId);
+
+	/**
+	 * Method is called when an exposed host becomes infectious
+	 * @param host The host that became infectious
+	 */
+	public void hostInfectious(DTNHost host);
+
+	/**
+	 * Method is called when an infectious host recovers
+	 * @param host The host that recovered
+	 */
+	public void hostRecovered(DTNHost host);
+}
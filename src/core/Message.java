@@ -4,16 +4,22 @@
  */
 package core;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
- * A message that is created at a node or passed between nodes.
+ * A message that is created at a node or passed between nodes. The replicas
+ * of a message share the id, the path the message has passed before the
+ * replication and the properties (until a replica modifies them), so the
+ * memory use of the replicas doesn't grow with the length of the path.
  */
-public class Message implements Comparable<Message> {
+public class Message implements Comparable<Message>, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
 	private DTNHost from;
@@ -22,10 +28,8 @@ public class Message implements Comparable<Message> {
 	private String id;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path;
-	/** Next unique identifier to be given */
-	private static int nextUniqueId;
+	/** The last node this message has passed (the end of the path) */
+	private Hop lastHop;
 	/** Unique ID of this message */
 	private int uniqueId;
 	/** The time this message was received */
@@ -42,9 +46,12 @@ public class Message implements Comparable<Message> {
 	private Message requestMsg;
 
 	/** Container for generic message properties. Note that all values
-	 * stored in the properties should be immutable because only a shallow
-	 * copy of the properties is made when replicating messages */
+	 * stored in the properties should be immutable because the replicas of
+	 * the message share the values */
 	private Map<String, Object> properties;
+	/** Is the properties container shared with other replicas (and must be
+	 * copied before it's modified) */
+	private boolean propertiesShared;
 
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -67,8 +74,8 @@ public class Message implements Comparable<Message> {
 		this.to = to;
 		this.id = id;
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
-		this.uniqueId = nextUniqueId;
+		this.lastHop = null;
+		this.uniqueId = RunContext.current().nextMessageId++;
 
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
@@ -78,7 +85,6 @@ public class Message implements Comparable<Message> {
 		this.properties = null;
 		this.appID = null;
 
-		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 
@@ -128,15 +134,15 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.lastHop = new Hop(node, this.lastHop);
 	}
 
 	/**
 	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * @return The list as an unmodifiable view to the path
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		return new HopList(this.lastHop);
 	}
 
 	/**
@@ -144,7 +150,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return (lastHop == null ? 0 : lastHop.count) -1;
 	}
 
 	/**
@@ -164,6 +170,19 @@ public class Message implements Comparable<Message> {
 	}
 
 
+	/**
+	 * Returns the time after which the TTL of this message has expired
+	 * (i.e., {@link #getTtl()} returns zero or less)
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		/* getTtl() rounds towards zero -> less than a minute left is zero */
+		return this.timeCreated + (this.initTtl - 1) * 60.0;
+	}
+
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -250,13 +269,15 @@ public class Message implements Comparable<Message> {
 	}
 
 	/**
-	 * Deep copies message data from other message. If new fields are
+	 * Copies message data from other message. The path and the properties
+	 * are shared with the other message; the properties are copied when
+	 * either one of the messages modifies them. If new fields are
 	 * introduced to this class, most likely they should be copied here too
 	 * (unless done in constructor).
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.lastHop = m.lastHop;
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
@@ -264,10 +285,8 @@ public class Message implements Comparable<Message> {
 		this.appID = m.appID;
 
 		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
+			this.properties = m.properties;
+			this.propertiesShared = m.propertiesShared = true;
 		}
 	}
 
@@ -317,6 +336,11 @@ public class Message implements Comparable<Message> {
 			   that don't use the property feature  */
 			this.properties = new HashMap<String, Object>();
 		}
+		else if (this.propertiesShared) {
+			/* copy on write; the other replicas keep the old values */
+			this.properties = new HashMap<String, Object>(this.properties);
+			this.propertiesShared = false;
+		}
 
 		this.properties.put(key, value);
 	}
@@ -343,7 +367,7 @@ public class Message implements Comparable<Message> {
 	 * Resets all static fields to default values
 	 */
 	public static void reset() {
-		nextUniqueId = 0;
+		RunContext.current().nextMessageId = 0;
 	}
 
 	/**
@@ -360,4 +384,76 @@ public class Message implements Comparable<Message> {
 		this.appID = appID;
 	}
 
+	/**
+	 * A node on the path of a message. The hops before the node are shared
+	 * by all the replicas that were made after the message passed the node.
+	 */
+	private static class Hop implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private final DTNHost node;
+		private final Hop previous;
+		/** number of nodes on the path up to (and including) this node */
+		private final int count;
+
+		private Hop(DTNHost node, Hop previous) {
+			this.node = node;
+			this.previous = previous;
+			this.count = (previous == null ? 0 : previous.count) + 1;
+		}
+	}
+
+	/**
+	 * Unmodifiable list view to the path that ends with a hop
+	 */
+	private static class HopList extends AbstractList<DTNHost> {
+		private final Hop last;
+
+		private HopList(Hop last) {
+			this.last = last;
+		}
+
+		@Override
+		public int size() {
+			return last == null ? 0 : last.count;
+		}
+
+		@Override
+		public DTNHost get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index +
+						", Size: " + size());
+			}
+			Hop h = last;
+			for (int i = size() - 1; i > index; i--) {
+				h = h.previous;
+			}
+			return h.node;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			for (Hop h = last; h != null; h = h.previous) {
+				if (h.node == o || (o != null && o.equals(h.node))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public Object[] toArray() {
+			DTNHost[] nodes = new DTNHost[size()];
+			int i = nodes.length;
+			for (Hop h = last; h != null; h = h.previous) {
+				nodes[--i] = h.node;
+			}
+			return nodes;
+		}
+
+		@Override
+		public Iterator<DTNHost> iterator() {
+			return Arrays.asList((DTNHost[])toArray()).iterator();
+		}
+	}
+
 }
@@ -0,0 +1,570 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <P>
+ * Live metrics of a running simulation: timers of the world update phases
+ * (external events, movement, connectivity, routers and update listeners),
+ * of every router class and report class, counters of the updates, and
+ * gauges of the active connections, buffered messages, bytes in flight and
+ * infected hosts.</P>
+ *
+ * <P>The timers that are called for every host (connectivity, routers and
+ * reports) are sampled: every call is counted, but only every
+ * {@link #SAMPLING_S}th call is timed and the total time is estimated from
+ * the samples. The counters are {@link LongAdder}s, so they can be read from
+ * other threads at any time. The gauges are computed by the simulation
+ * thread every {@link #INTERVAL_S} seconds (of real time), when also a JSON
+ * line of all the metrics is appended to the {@link #FILE_S metrics file}
+ * (if defined). The metrics are also available through JMX as the MXBean
+ * <CODE>one:type=Metrics,run=N</CODE> (see {@link MetricsMXBean}).</P>
+ *
+ * <P>The time of the router phase is the sum of the router classes' times.
+ * The reports that listen to messages and connections are called from the
+ * hosts' updates, so their times are included in the connectivity and
+ * router times too.</P>
+ *
+ * <P>All the settings are in the {@value #METRICS_NS} namespace. The
+ * metrics are not part of the checkpoints; a resumed run starts from
+ * zero.</P>
+ */
+public class Metrics implements MetricsMXBean {
+	/** Namespace of the metrics settings ({@value}) */
+	public static final String METRICS_NS = "Metrics";
+	/** Are the metrics collected -setting id ({@value}). Boolean. Default is
+	 * false. */
+	public static final String ENABLED_S = "enabled";
+	/** Metrics file -setting id ({@value}). A line of JSON is written to the
+	 * file every interval and when the run is done. Value fillers can be
+	 * used. By default no file is written. */
+	public static final String FILE_S = "file";
+	/** Sampling interval of the metrics -setting id ({@value}). Real time
+	 * seconds. Default is {@value #DEF_INTERVAL}. */
+	public static final String INTERVAL_S = "interval";
+	/** Are the metrics registered to the platform MBean server -setting id
+	 * ({@value}). Boolean. Default is true. */
+	public static final String JMX_S = "jmx";
+	/** Sampling rate of the per host timers -setting id ({@value}). Every
+	 * Nth call is timed. Must be a power of two. Default is
+	 * {@value #DEF_SAMPLING}. */
+	public static final String SAMPLING_S = "sampling";
+
+	/** Default value of {@link #INTERVAL_S} */
+	public static final double DEF_INTERVAL = 10;
+	/** Default value of {@link #SAMPLING_S} */
+	public static final int DEF_SAMPLING = 16;
+
+	/** Index of the external events phase */
+	public static final int EVENTS = 0;
+	/** Index of the movement phase */
+	public static final int MOVE = 1;
+	/** Index of the connectivity phase */
+	public static final int CONNECTIVITY = 2;
+	/** Index of the routers phase */
+	public static final int ROUTERS = 3;
+	/** Index of the update listeners phase */
+	public static final int LISTENERS = 4;
+	/** Names of the phases */
+	public static final String[] PHASES = {"events", "move", "connectivity",
+		"routers", "listeners"};
+
+	private final SimScenario scenario;
+	private final int samplingMask;
+	private final long interval;
+	private final Timer[] phases;
+	private final Map<String, Timer> routers;
+	private final Map<String, Timer> reports;
+	private Class<?> lastRouterClass;
+	private Timer lastRouterTimer;
+
+	private final LongAdder updates;
+	private final LongAdder hostUpdates;
+	private final LongAdder idleHostUpdates;
+
+	private final long startTime;
+	private long nextSample;
+	private long lastSampleTime;
+	private volatile double simTime;
+	private volatile double simSecondsPerSecond;
+	private volatile int activeConnections;
+	private volatile long bufferedMessages;
+	private volatile long bytesInFlight;
+	private volatile int infectedHosts;
+
+	private final String fileName;
+	private PrintWriter out;
+	private ObjectName name;
+
+	/**
+	 * Creates the metrics of a scenario if they are enabled in the settings
+	 * @param scenario The scenario
+	 * @return The metrics or null if they are not enabled
+	 */
+	static Metrics create(SimScenario scenario) {
+		Settings s = new Settings(METRICS_NS);
+		if (!s.getBoolean(ENABLED_S, false)) {
+			return null;
+		}
+		return new Metrics(s, scenario);
+	}
+
+	private Metrics(Settings s, SimScenario scenario) {
+		this.scenario = scenario;
+		int sampling = s.getInt(SAMPLING_S, DEF_SAMPLING);
+		if (sampling < 1 || Integer.bitCount(sampling) != 1) {
+			throw new SettingsError("Invalid value (" + sampling + ") for " +
+					METRICS_NS + "." + SAMPLING_S + ". Must be a power of two");
+		}
+		this.samplingMask = sampling - 1;
+		double seconds = s.getDouble(INTERVAL_S, DEF_INTERVAL);
+		s.ensurePositiveValue(seconds, INTERVAL_S);
+		this.interval = (long)(seconds * 1e9);
+
+		this.phases = new Timer[PHASES.length];
+		for (int i=0; i < phases.length; i++) {
+			phases[i] = new Timer(i == CONNECTIVITY ? samplingMask : 0);
+		}
+		this.routers = new ConcurrentHashMap<String, Timer>();
+		this.reports = new ConcurrentHashMap<String, Timer>();
+		this.updates = new LongAdder();
+		this.hostUpdates = new LongAdder();
+		this.idleHostUpdates = new LongAdder();
+
+		this.startTime = System.nanoTime();
+		this.lastSampleTime = startTime;
+		this.simTime = SimClock.getTime();
+		this.nextSample = startTime + interval;
+
+		if (s.contains(FILE_S)) {
+			this.fileName = s.valueFillString(s.getSetting(FILE_S));
+			try {
+				this.out = new PrintWriter(new OutputStreamWriter(
+						new FileOutputStream(fileName),
+						StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new SimError("Can't open metrics file " + fileName, e);
+			}
+		}
+		else {
+			this.fileName = null;
+		}
+
+		if (s.getBoolean(JMX_S, true)) {
+			register();
+		}
+	}
+
+	/**
+	 * Registers the metrics to the platform MBean server. A bean of an
+	 * earlier run with the same index is replaced.
+	 */
+	private void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName n = new ObjectName("one:type=Metrics,run=" +
+					RunContext.current().getRunIndex());
+			if (server.isRegistered(n)) {
+				server.unregisterMBean(n);
+			}
+			server.registerMBean(this, n);
+			this.name = n;
+		} catch (JMException e) {
+			throw new SimError("Can't register the metrics MBean", e);
+		}
+	}
+
+	/**
+	 * Starts timing a phase of the world update
+	 * @param phase Index of the phase
+	 * @return Start time to give to {@link #stop(int, long)}
+	 */
+	public long start(int phase) {
+		return phases[phase].start();
+	}
+
+	/**
+	 * Stops timing a phase of the world update
+	 * @param phase Index of the phase
+	 * @param start The value returned by {@link #start(int)}
+	 */
+	public void stop(int phase, long start) {
+		phases[phase].stop(start);
+	}
+
+	/**
+	 * Returns the timer of a router class
+	 * @param c The class of the router
+	 * @return The timer
+	 */
+	public Timer getRouterTimer(Class<?> c) {
+		if (c != lastRouterClass) {
+			lastRouterTimer = getTimer(routers, c.getSimpleName());
+			lastRouterClass = c;
+		}
+		return lastRouterTimer;
+	}
+
+	/**
+	 * Returns the timer of a report class
+	 * @param c The class of the report
+	 * @return The timer
+	 */
+	public Timer getReportTimer(Class<?> c) {
+		return getTimer(reports, c.getSimpleName());
+	}
+
+	private Timer getTimer(Map<String, Timer> timers, String name) {
+		Timer t = timers.get(name);
+		if (t == null) {
+			t = new Timer(samplingMask);
+			timers.put(name, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Counts an update of a host
+	 * @param idle Was the update skipped because the host was idle
+	 */
+	public void hostUpdated(boolean idle) {
+		if (idle) {
+			idleHostUpdates.increment();
+		}
+		else {
+			hostUpdates.increment();
+		}
+	}
+
+	/**
+	 * Called by the world at the end of every update. Computes the gauges
+	 * and writes a line to the metrics file if it is time for a sample.
+	 * @param hosts All the hosts
+	 */
+	public void worldUpdated(List<DTNHost> hosts) {
+		updates.increment();
+		long now = System.nanoTime();
+		if (now >= nextSample) {
+			sample(hosts, now);
+			nextSample = now + interval;
+		}
+	}
+
+	/**
+	 * Takes the last sample and closes the metrics file. Called when the
+	 * simulation is done.
+	 */
+	public void done() {
+		sample(scenario.getHosts(), System.nanoTime());
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+		if (name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+						name);
+			} catch (JMException e) {
+				// already unregistered
+			}
+			name = null;
+		}
+	}
+
+	/**
+	 * Computes the gauges and writes a line of the metrics
+	 */
+	private void sample(List<DTNHost> hosts, long now) {
+		int connections = 0;
+		long messages = 0;
+		long bytes = 0;
+		for (int i=0, n=hosts.size(); i < n; i++) {
+			DTNHost h = hosts.get(i);
+			messages += h.getNrofMessages();
+			List<NetworkInterface> net = h.getInterfaces();
+			for (int j=0, m=net.size(); j < m; j++) {
+				List<Connection> cons = net.get(j).getConnections();
+				for (int k=0, l=cons.size(); k < l; k++) {
+					Connection c = cons.get(k);
+					if (c.isInitiator(h)) {
+						connections++;
+						if (c.isTransferring()) {
+							bytes += c.getRemainingByteCount();
+						}
+					}
+				}
+			}
+		}
+		SeirEngine seir = scenario.getSeirEngine();
+
+		double time = SimClock.getTime();
+		if (now > lastSampleTime) {
+			this.simSecondsPerSecond = (time - simTime) * 1e9 /
+				(now - lastSampleTime);
+		}
+		this.lastSampleTime = now;
+		this.simTime = time;
+		this.activeConnections = connections;
+		this.bufferedMessages = messages;
+		this.bytesInFlight = bytes;
+		this.infectedHosts = seir == null ? -1 :
+			seir.getNrofHosts(SeirEngine.EXPOSED) +
+			seir.getNrofHosts(SeirEngine.INFECTIOUS);
+
+		if (out != null) {
+			out.println(toJson((now - startTime) / 1e9));
+			out.flush();
+			if (out.checkError()) {
+				throw new SimError("Can't write metrics file " + fileName);
+			}
+		}
+	}
+
+	/**
+	 * Returns the metrics as a line of JSON
+	 * @param wallTime Real time since the start of the run (seconds)
+	 */
+	private String toJson(double wallTime) {
+		StringBuilder b = new StringBuilder(512);
+		b.append("{\"wallTime\":").append(wallTime);
+		b.append(",\"simTime\":").append(getSimTime());
+		b.append(",\"simSecondsPerSecond\":").append(
+				json(getSimSecondsPerSecond()));
+		b.append(",\"updates\":").append(getUpdates());
+		b.append(",\"events\":").append(getEvents());
+		b.append(",\"hostUpdates\":").append(getHostUpdates());
+		b.append(",\"idleHostUpdates\":").append(getIdleHostUpdates());
+		b.append(",\"activeConnections\":").append(getActiveConnections());
+		b.append(",\"bufferedMessages\":").append(getBufferedMessages());
+		b.append(",\"bytesInFlight\":").append(getBytesInFlight());
+		b.append(",\"infectedHosts\":").append(getInfectedHosts());
+		b.append(",\"phases\":");
+		Map<String, Timer> phaseTimers = new TreeMap<String, Timer>();
+		for (int i=0; i < PHASES.length; i++) {
+			phaseTimers.put(PHASES[i], i == ROUTERS ?
+					sum(routers) : phases[i]);
+		}
+		json(b, phaseTimers);
+		b.append(",\"routers\":");
+		json(b, new TreeMap<String, Timer>(routers));
+		b.append(",\"reports\":");
+		json(b, new TreeMap<String, Timer>(reports));
+		return b.append('}').toString();
+	}
+
+	private static void json(StringBuilder b, Map<String, Timer> timers) {
+		b.append('{');
+		boolean first = true;
+		for (Map.Entry<String, Timer> e : timers.entrySet()) {
+			if (!first) {
+				b.append(',');
+			}
+			first = false;
+			b.append('"').append(e.getKey()).append("\":{\"calls\":").
+				append(e.getValue().getCalls()).append(",\"ms\":").
+				append(json(e.getValue().getMillis())).append('}');
+		}
+		b.append('}');
+	}
+
+	/**
+	 * Returns a double as a JSON value (null for NaN and infinities)
+	 */
+	private static String json(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return "null";
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Returns a timer whose calls and time are the sums of the timers
+	 */
+	private static Timer sum(Map<String, Timer> timers) {
+		Timer sum = new Timer(0);
+		for (Timer t : timers.values()) {
+			sum.calls.add(t.getCalls());
+			sum.add((long)(t.getMillis() * 1e6));
+		}
+		return sum;
+	}
+
+	private static Map<String, Double> millis(Map<String, Timer> timers) {
+		Map<String, Double> m = new TreeMap<String, Double>();
+		for (Map.Entry<String, Timer> e : timers.entrySet()) {
+			m.put(e.getKey(), e.getValue().getMillis());
+		}
+		return m;
+	}
+
+	public double getSimTime() {
+		return this.simTime;
+	}
+
+	public double getSimSecondsPerSecond() {
+		return this.simSecondsPerSecond;
+	}
+
+	public long getUpdates() {
+		return updates.sum();
+	}
+
+	public long getEvents() {
+		return phases[EVENTS].getCalls();
+	}
+
+	public long getHostUpdates() {
+		return hostUpdates.sum();
+	}
+
+	public long getIdleHostUpdates() {
+		return idleHostUpdates.sum();
+	}
+
+	public Map<String, Double> getPhaseMillis() {
+		Map<String, Double> m = new TreeMap<String, Double>();
+		for (int i=0; i < PHASES.length; i++) {
+			m.put(PHASES[i], i == ROUTERS ? sum(routers).getMillis() :
+				phases[i].getMillis());
+		}
+		return m;
+	}
+
+	public Map<String, Double> getRouterMillis() {
+		return millis(routers);
+	}
+
+	public Map<String, Double> getReportMillis() {
+		return millis(reports);
+	}
+
+	public Map<String, Long> getTimerCalls() {
+		Map<String, Long> m = new TreeMap<String, Long>();
+		for (int i=0; i < PHASES.length; i++) {
+			if (i != ROUTERS) {
+				m.put("phase." + PHASES[i], phases[i].getCalls());
+			}
+		}
+		for (Map.Entry<String, Timer> e : routers.entrySet()) {
+			m.put("router." + e.getKey(), e.getValue().getCalls());
+		}
+		for (Map.Entry<String, Timer> e : reports.entrySet()) {
+			m.put("report." + e.getKey(), e.getValue().getCalls());
+		}
+		return m;
+	}
+
+	public int getActiveConnections() {
+		return this.activeConnections;
+	}
+
+	public long getBufferedMessages() {
+		return this.bufferedMessages;
+	}
+
+	public long getBytesInFlight() {
+		return this.bytesInFlight;
+	}
+
+	public int getInfectedHosts() {
+		return this.infectedHosts;
+	}
+
+	/**
+	 * Sampled timer. Every call is counted but only the calls selected by
+	 * the sampling mask are timed; the total time is estimated by scaling
+	 * the timed calls' time by the number of calls.
+	 */
+	public static class Timer {
+		/** Start time of the calls that are not timed */
+		public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+		private final int mask;
+		/** sampling counter (races only skew the sampling) */
+		private int tick;
+		private final LongAdder calls;
+		private final LongAdder samples;
+		private final LongAdder sampledNanos;
+		/** time added outside of the sampled calls */
+		private final LongAdder addedNanos;
+
+		/**
+		 * Creates a timer
+		 * @param mask Sampling mask: the calls whose sequence number has
+		 * none of the mask's bits set are timed (0 times all the calls)
+		 */
+		public Timer(int mask) {
+			this.mask = mask;
+			this.calls = new LongAdder();
+			this.samples = new LongAdder();
+			this.sampledNanos = new LongAdder();
+			this.addedNanos = new LongAdder();
+		}
+
+		/**
+		 * Counts a call and starts timing it if it is sampled
+		 * @return The start time or {@link #NOT_SAMPLED}
+		 */
+		public long start() {
+			calls.increment();
+			if ((tick++ & mask) != 0) {
+				return NOT_SAMPLED;
+			}
+			return System.nanoTime();
+		}
+
+		/**
+		 * Stops timing a call
+		 * @param start The value returned by {@link #start()}
+		 */
+		public void stop(long start) {
+			if (start != NOT_SAMPLED) {
+				sampledNanos.add(System.nanoTime() - start);
+				samples.increment();
+			}
+		}
+
+		private void add(long nanos) {
+			addedNanos.add(nanos);
+		}
+
+		/**
+		 * Returns the number of calls
+		 * @return the number of calls
+		 */
+		public long getCalls() {
+			return calls.sum();
+		}
+
+		/**
+		 * Returns the estimated total time of the calls
+		 * @return the estimated total time (milliseconds)
+		 */
+		public double getMillis() {
+			double nanos = addedNanos.sum();
+			long n = samples.sum();
+			if (n > 0) {
+				nanos += (double)sampledNanos.sum() * calls.sum() / n;
+			}
+			return nanos / 1e6;
+		}
+	}
+}
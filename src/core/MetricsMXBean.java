@@ -0,0 +1,48 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Map;
+
+/**
+ * Management interface of the live metrics of a run (see {@link Metrics}).
+ * The times are estimated totals (milliseconds) since the start of the run
+ * and the gauges are the values at the latest sample.
+ */
+public interface MetricsMXBean {
+	/** @return the simulation time of the latest sample */
+	public double getSimTime();
+	/** @return simulated seconds per real second between the two latest
+	 * samples */
+	public double getSimSecondsPerSecond();
+	/** @return the number of world updates */
+	public long getUpdates();
+	/** @return the number of processed external events */
+	public long getEvents();
+	/** @return the number of host updates */
+	public long getHostUpdates();
+	/** @return the number of skipped updates of idle hosts */
+	public long getIdleHostUpdates();
+
+	/** @return the time spent in each phase of the world update */
+	public Map<String, Double> getPhaseMillis();
+	/** @return the time spent in the routers' updates by router class */
+	public Map<String, Double> getRouterMillis();
+	/** @return the time spent in the reports by report class */
+	public Map<String, Double> getReportMillis();
+	/** @return the number of calls of each timer ("phase.", "router." or
+	 * "report." + name) */
+	public Map<String, Long> getTimerCalls();
+
+	/** @return the number of active connections */
+	public int getActiveConnections();
+	/** @return the number of messages in the hosts' buffers */
+	public long getBufferedMessages();
+	/** @return bytes left of the ongoing transfers */
+	public long getBytesInFlight();
+	/** @return the number of exposed and infectious hosts or -1 if the
+	 * infection engine is not enabled */
+	public int getInfectedHosts();
+}
@@ -6,9 +6,14 @@ package core;
 
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.ConnectivityOptimizer.InterfaceVisitor;
+import interfaces.KineticContactOptimizer;
+import interfaces.PackedConnectivityGrid;
 
 import java.awt.*;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 
@@ -19,7 +24,8 @@ import util.ActivenessHandler;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -49,8 +55,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
+	/** how often (seconds) contacts can be made */
+	public static final int CONTACT_PERIOD = 60*30;
 
-	private static Random rng;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -61,6 +68,10 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** use the kinetic contact optimizer instead of the connectivity grid */
+	private boolean kineticContacts;
+	/** use the packed connectivity grid instead of the connectivity grid */
+	private boolean packedGrid;
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
@@ -96,7 +107,21 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * Resets the static fields of the class
 	 */
 	public static void reset() {
-		rng = new Random(0);
+		RunContext.current().put(NetworkInterface.class, new Random(0));
+	}
+
+	/**
+	 * Returns the random number generator of the current run
+	 * @return the random number generator of the current run
+	 */
+	private static Random getRandom() {
+		RunContext context = RunContext.current();
+		Random rng = (Random)context.get(NetworkInterface.class);
+		if (rng == null) {
+			rng = new Random(0);
+			context.put(NetworkInterface.class, rng);
+		}
+		return rng;
 	}
 
 	/**
@@ -111,6 +136,12 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		ensurePositiveValue(transmitRange, TRANSMIT_RANGE_S);
 		ensurePositiveValue(transmitSpeed, TRANSMIT_SPEED_S);
 
+		Settings optSettings = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		this.kineticContacts = optSettings.getBoolean(
+				KineticContactOptimizer.KINETIC_CONTACTS_S, false);
+		this.packedGrid = optSettings.getBoolean(
+				PackedConnectivityGrid.PACKED_GRID_S, false);
+
 		if (s.contains(RANGE_COLOR)) {
 			String t = s.getSetting(RANGE_COLOR);
 			if (t.equals("red"))
@@ -145,16 +176,18 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.scanInterval = ni.scanInterval;
 		this.ah = ni.ah;
 		this.rangeColor = ni.rangeColor;
+		this.kineticContacts = ni.kineticContacts;
+		this.packedGrid = ni.packedGrid;
 
 		if (ni.activenessJitterMax > 0) {
-			this.activenessJitterValue = rng.nextInt(ni.activenessJitterMax);
+			this.activenessJitterValue = getRandom().nextInt(ni.activenessJitterMax);
 		} else {
 			this.activenessJitterValue = 0;
 		}
 
 		this.scanInterval = ni.scanInterval;
 		/* draw lastScanTime of [0 -- scanInterval] */
-		this.lastScanTime = rng.nextDouble() * this.scanInterval;
+		this.lastScanTime = getRandom().nextDouble() * this.scanInterval;
 	}
 
 	/**
@@ -187,8 +220,18 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 
 		if (transmitRange > 0) {
-			optimizer = ConnectivityGrid.ConnectivityGridFactory(
-					this.interfacetype.hashCode(), transmitRange);
+			if (kineticContacts) {
+				optimizer = KineticContactOptimizer.getInstance(
+						this.interfacetype.hashCode());
+			}
+			else if (packedGrid) {
+				optimizer = PackedConnectivityGrid.getInstance(
+						this.interfacetype.hashCode(), transmitRange);
+			}
+			else {
+				optimizer = ConnectivityGrid.ConnectivityGridFactory(
+						this.interfacetype.hashCode(), transmitRange);
+			}
 			optimizer.addInterface(this);
 		} else {
 			optimizer = null;
@@ -342,29 +385,68 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public abstract void connect(NetworkInterface anotherInterface);
 
+	/**
+	 * Returns true if a contact from this host to another host is accepted.
+	 * Contacts are accepted only every {@value #CONTACT_PERIOD} seconds and
+	 * then with the probability given by the host's
+	 * {@link DTNHost#getVirusProbability()}. The probability is rolled from
+	 * the {@link RandomStreams#CONNECT_STREAM} keyed by the host addresses
+	 * and the simulation time, so the result is reproducible and the check
+	 * doesn't allocate anything. The derived classes should check this
+	 * before creating the connection object.
+	 * @param anotherInterface The interface to connect to
+	 * @return true if the contact is accepted
+	 */
+	protected boolean isContactAccepted(NetworkInterface anotherInterface) {
+		if (!isContactTime()) {
+			return false;
+		}
+		double roll = RandomStreams.current().uniform(
+				RandomStreams.CONNECT_STREAM, host.getAddress(),
+				anotherInterface.getHost().getAddress(),
+				Double.doubleToLongBits(SimClock.getTime()));
+		return roll < host.getVirusProbability();
+	}
+
+	/**
+	 * Returns true if new contacts can be accepted at the current simulation
+	 * time (i.e., in the beginning of every {@value #CONTACT_PERIOD} second
+	 * period). Searching for new connections can be skipped at other times.
+	 * @return true if it is time to accept new contacts
+	 */
+	protected boolean isContactTime() {
+		return SimClock.getIntTime() % CONTACT_PERIOD == 0;
+	}
+
+	/**
+	 * Returns the start of the next contact time period (see
+	 * {@link #isContactTime()}) after the current time
+	 * @return The time when contacts are accepted next
+	 */
+	protected double nextContactTime() {
+		return (SimClock.getIntTime() / CONTACT_PERIOD + 1) *
+			(double)CONTACT_PERIOD;
+	}
+
 	/**
 	 * Connects this host to another host. The derived class should check
-	 * that all pre-requisites for making a connection are satisfied before
+	 * that all pre-requisites for making a connection (including
+	 * {@link #isContactAccepted(NetworkInterface)}) are satisfied before
 	 * actually connecting.
 	 * @param con The new connection object
 	 * @param anotherInterface The interface to connect to
 	 */
 	protected void connect(Connection con, NetworkInterface anotherInterface) {
-		Random rng = new Random();
-		int secMod = 60*30;
-		double prob = host.getVirusProbability();
-		if (rng.nextDouble() < prob && SimClock.getIntTime()%secMod==0){
-			this.connections.add(con);
+		this.connections.add(con);
 
-			notifyConnectionListeners(CON_UP, anotherInterface.getHost());
+		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
-			// set up bidirectional connection
-			anotherInterface.getConnections().add(con);
+		// set up bidirectional connection
+		anotherInterface.getConnections().add(con);
 
-			// inform routers about the connection
-			this.host.connectionUp(con);
-			anotherInterface.getHost().connectionUp(con);
-		}
+		// inform routers about the connection
+		this.host.connectionUp(con);
+		anotherInterface.getHost().connectionUp(con);
 	}
 
 	/**
@@ -419,6 +501,49 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return false;
 	}
 
+	/**
+	 * Returns the time until which calling {@link #update()} would change
+	 * nothing, given that the host doesn't move and this interface had no
+	 * connections after the previous update: the interface has no
+	 * connections, it has no active times or periods (so only the energy
+	 * level, which doesn't change while the router is idle, can make it
+	 * inactive), no contacts are accepted until the next contact time and
+	 * the connectivity optimizer is up to date. Interfaces whose update does
+	 * more than that must override this method.
+	 * @return The time until which the interface is idle (a time that is
+	 * not after the current time if the interface is not idle now)
+	 */
+	protected double getIdleEndTime() {
+		if (!connections.isEmpty() || isContactTime() || (ah != null &&
+				(!ah.isAlwaysActive() || transmitRange <= 0))) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		double end = nextContactTime();
+		if (optimizer != null) {
+			end = Math.min(end, optimizer.getIdleEndTime(this));
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the interfaces this interface could connect to, as found
+	 * by the connectivity optimizer
+	 * @return A collection of network interfaces within proximity
+	 */
+	protected Collection<NetworkInterface> getNearInterfaces() {
+		return optimizer.getNearInterfaces(this);
+	}
+
+	/**
+	 * Calls the visitor for every interface this interface could connect to.
+	 * Works like {@link #getNearInterfaces()} but lets the connectivity
+	 * optimizer go through the interfaces without creating a collection.
+	 * @param visitor The visitor to call for every near interface
+	 */
+	protected void visitNearInterfaces(InterfaceVisitor visitor) {
+		optimizer.visitNearInterfaces(this, visitor);
+	}
+
 	/**
 	 * Makes sure that a value is positive
 	 * @param value Value to check
@@ -476,6 +601,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 		else if (key.equals(RANGE_ID)) {
 			this.transmitRange = (Double)newValue;
+			this.host.requestUpdate();
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
@@ -490,6 +616,36 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public abstract void createConnection(NetworkInterface anotherInterface);
 
+	/**
+	 * Creates a connection to another host regardless of the contact
+	 * acceptance (see {@link #isContactAccepted(NetworkInterface)}), e.g.,
+	 * for replaying the contacts of an earlier run. Like
+	 * {@link #createConnection(NetworkInterface)}, this does not check
+	 * whether the other node is in range or active.
+	 * @param anotherInterface The interface to create the connection to
+	 */
+	public void replayConnection(NetworkInterface anotherInterface) {
+		if (!isConnected(anotherInterface) && (this != anotherInterface)) {
+			connect(newConnection(anotherInterface), anotherInterface);
+		}
+	}
+
+	/**
+	 * Returns a new connection object from this interface to another
+	 * interface. The default is a constant bit-rate connection whose speed
+	 * is the lower one of the two interfaces' speeds.
+	 * @param anotherInterface The interface the connection is made to
+	 * @return The new connection object
+	 */
+	protected Connection newConnection(NetworkInterface anotherInterface) {
+		int conSpeed = anotherInterface.getTransmitSpeed(this);
+		if (conSpeed > this.transmitSpeed) {
+			conSpeed = this.transmitSpeed;
+		}
+		return new CBRConnection(this.host, this, anotherInterface.getHost(),
+				anotherInterface, conSpeed);
+	}
+
 	/**
 	 * Disconnect a connection between this and another host.
 	 * @param anotherInterface The other host's network interface to disconnect
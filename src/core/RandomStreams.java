@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * <P>
+ * Deterministic random number streams of a simulation run. All streams are
+ * derived from the scenario's random seed ({@link #RNG_SEED_S}) and the run
+ * index, so the results of a run don't depend on what the other runs (or
+ * threads) do or in which order things are drawn from other streams.</P>
+ *
+ * <P>Random draws that are made at arbitrary points of the simulation (like
+ * rolling whether a contact happens) use counter based streams: the value
+ * is a hash of the seed and the keys of the draw (e.g., host addresses and
+ * the simulation time) and needs no generator state or allocations (see
+ * {@link #uniform(long, long, long, long)}). Components that need a
+ * sequence of numbers get their own generator that is seeded from the
+ * stream (see {@link #split(long, long)}).</P>
+ *
+ * <P>The streams are stored in the {@link RunContext} of the calling thread
+ * and created when first needed.</P>
+ */
+public class RandomStreams {
+	/** Scenario's random seed -setting id ({@value}). Long valued. If set,
+	 * also the movement models and message generators that don't have an
+	 * explicit seed draw from the streams derived from this seed. Default
+	 * seed is 0. */
+	public static final String RNG_SEED_S = "rngSeed";
+
+	/** Stream of the connection probability rolls of network interfaces */
+	public static final long CONNECT_STREAM = 1;
+	/** Stream of the movement models */
+	public static final long MOVEMENT_STREAM = 2;
+	/** Stream of the message event generators */
+	public static final long MESSAGE_GENERATOR_STREAM = 3;
+	/** Stream of the infection engine ({@link SeirEngine}) */
+	public static final long SEIR_STREAM = 4;
+
+	/** golden ratio increment of SplitMix64 */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	/** 2^-53 for converting 53 random bits to a double */
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+	/** seed of all the streams of the run */
+	private final long seed;
+	/** was the seed explicitly set in the settings */
+	private final boolean seeded;
+
+	static {
+		DTNSim.registerForReset(RandomStreams.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Creates the streams of a run
+	 * @param scenarioSeed The random seed of the scenario
+	 * @param runIndex The run index
+	 * @param seeded True if the seed was explicitly defined
+	 */
+	public RandomStreams(long scenarioSeed, int runIndex, boolean seeded) {
+		this.seed = mix(mix(scenarioSeed) + runIndex * GOLDEN_GAMMA);
+		this.seeded = seeded;
+	}
+
+	/**
+	 * Returns the random streams of the current run
+	 * @return the random streams of the current run
+	 */
+	public static RandomStreams current() {
+		RunContext context = RunContext.current();
+		RandomStreams streams = context.randomStreams;
+		if (streams == null) {
+			Settings s = new Settings(SimScenario.SCENARIO_NS);
+			boolean seeded = s.contains(RNG_SEED_S);
+			streams = new RandomStreams(seeded ? s.getLong(RNG_SEED_S) : 0,
+					context.getRunIndex(), seeded);
+			context.randomStreams = streams;
+		}
+		return streams;
+	}
+
+	/**
+	 * Resets the streams of the current run (they are recreated, using the
+	 * current run index, when needed next time)
+	 */
+	public static void reset() {
+		RunContext.current().randomStreams = null;
+	}
+
+	/**
+	 * Returns true if the scenario's random seed was set explicitly
+	 * @return true if the seed was set explicitly
+	 */
+	public boolean isSeeded() {
+		return this.seeded;
+	}
+
+	/**
+	 * Returns a uniformly distributed random value that is determined by the
+	 * stream and the keys. The same stream and keys always give the same
+	 * value within a run. Doesn't allocate anything.
+	 * @param stream The stream (e.g., {@link #CONNECT_STREAM})
+	 * @param k1 The first key
+	 * @param k2 The second key
+	 * @param k3 The third key
+	 * @return A value between 0.0 (inclusive) and 1.0 (exclusive)
+	 */
+	public double uniform(long stream, long k1, long k2, long k3) {
+		long h = mix(seed + stream * GOLDEN_GAMMA);
+		h = mix(h + k1 * GOLDEN_GAMMA);
+		h = mix(h + k2 * GOLDEN_GAMMA);
+		h = mix(h + k3 * GOLDEN_GAMMA);
+		return (h >>> 11) * DOUBLE_UNIT;
+	}
+
+	/**
+	 * Returns the seed of a sub stream
+	 * @param stream The stream
+	 * @param key Key of the sub stream within the stream (e.g., host
+	 * address)
+	 * @return The seed
+	 */
+	public long seedOf(long stream, long key) {
+		return mix(mix(seed + stream * GOLDEN_GAMMA) + key * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Returns a new generator for a sub stream
+	 * @param stream The stream
+	 * @param key Key of the sub stream within the stream
+	 * @return A new generator that gives always the same sequence for the
+	 * same stream and key within a run
+	 */
+	public SplittableRandom split(long stream, long key) {
+		return new SplittableRandom(seedOf(stream, key));
+	}
+
+	/**
+	 * Returns a new java.util.Random for a sub stream (for components that
+	 * use the Random API)
+	 * @param stream The stream
+	 * @param key Key of the sub stream within the stream
+	 * @return A new generator seeded from the sub stream
+	 */
+	public Random random(long stream, long key) {
+		return new Random(seedOf(stream, key));
+	}
+
+	/**
+	 * The 64 bit mixing function of SplitMix64 (a bijection with good
+	 * avalanche properties)
+	 * @param z The value to mix
+	 * @return The mixed value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
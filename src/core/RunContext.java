@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the state of a single simulation run that used to be stored in
+ * static fields (simulation time, id counters, random number generators,
+ * run index etc.). Every thread is bound to one run context and all the
+ * static accessors (e.g. {@link SimClock#getTime()}) operate on the context
+ * of the calling thread. This makes it possible to execute several batch
+ * runs at the same time in separate threads of the same JVM.
+ * <P>Threads that have not been explicitly bound to a context use the
+ * default context, so single runs (and the GUI) behave exactly as before.
+ * Threads created by a bound thread inherit its context.</P>
+ * <P>Classes outside of the core package can store their run-specific
+ * state with {@link #get(Object)} and {@link #put(Object, Object)},
+ * normally using their class object as the key. Objects that are not part
+ * of the simulation model (e.g., threads) are stored with
+ * {@link #putResource(Object, Object)} so that they are left out of the
+ * checkpoints (see {@link Checkpoint}). The settings read from
+ * the configuration files are shared by all runs; run-specific values are
+ * resolved using the context's run index.</P>
+ */
+public class RunContext {
+	/** context used by threads that are not bound to any other context */
+	private static final RunContext DEFAULT_CONTEXT = new RunContext(0);
+
+	private static final ThreadLocal<RunContext> current =
+		new InheritableThreadLocal<RunContext>() {
+			protected RunContext initialValue() {
+				return DEFAULT_CONTEXT;
+			}
+	};
+
+	/** run index of this run (see {@link Settings#setRunIndex(int)}) */
+	int runIndex;
+	/** current simulation time */
+	double clockTime;
+	/** clock that shows the time of this context (null if not created) */
+	private SimClock clock;
+	/** address of the next host to create */
+	int nextHostAddress;
+	/** unique id for the next message */
+	int nextMessageId;
+	/** random number streams of the run (or null if not created yet) */
+	RandomStreams randomStreams;
+	/** the settings that have been already written to settings output */
+	final Set<String> writtenSettings;
+	/** sub directory for report files or null for none */
+	private String reportSubDir;
+	/** run specific state of other classes */
+	final Map<Object, Object> state;
+	/** run specific objects that are not saved in checkpoints */
+	private final Map<Object, Object> resources;
+
+	/**
+	 * Creates a new run context.
+	 * @param runIndex Run index for the settings of this run
+	 */
+	public RunContext(int runIndex) {
+		this.runIndex = runIndex;
+		this.writtenSettings = new HashSet<String>();
+		this.state = new HashMap<Object, Object>();
+		this.resources = new HashMap<Object, Object>();
+	}
+
+	/**
+	 * Returns the run context of the calling thread
+	 * @return the run context of the calling thread
+	 */
+	public static RunContext current() {
+		return current.get();
+	}
+
+	/**
+	 * Binds the calling thread (and the threads it creates after this)
+	 * to the given run context
+	 * @param context The context to bind to. If null, the thread is bound
+	 * to the default context.
+	 */
+	public static void bind(RunContext context) {
+		if (context == null) {
+			current.remove();
+		}
+		else {
+			current.set(context);
+		}
+	}
+
+	/**
+	 * Returns the clock that shows the time of this context
+	 * @return the clock of this context
+	 */
+	synchronized SimClock getClock() {
+		if (this.clock == null) {
+			this.clock = new SimClock(this);
+		}
+		return this.clock;
+	}
+
+	/**
+	 * Returns the run index of this context
+	 * @return the run index of this context
+	 */
+	public int getRunIndex() {
+		return this.runIndex;
+	}
+
+	/**
+	 * Sets the sub directory (relative to the report directory) where
+	 * the reports of this run are written to
+	 * @param dir The directory name or null for no sub directory
+	 */
+	public void setReportSubDir(String dir) {
+		this.reportSubDir = dir;
+	}
+
+	/**
+	 * Returns the sub directory where the reports of this run are written to
+	 * @return The sub directory name or null if reports should be written
+	 * directly to the report directory
+	 */
+	public String getReportSubDir() {
+		return this.reportSubDir;
+	}
+
+	/**
+	 * Returns run specific state stored with the given key
+	 * @param key The key the state was stored with
+	 * @return The stored state or null if no state has been stored
+	 */
+	public Object get(Object key) {
+		return this.state.get(key);
+	}
+
+	/**
+	 * Stores run specific state
+	 * @param key The key to store the state with (usually the owning class)
+	 * @param value The state object
+	 */
+	public void put(Object key, Object value) {
+		this.state.put(key, value);
+	}
+
+	/**
+	 * Returns a run specific object stored with the given key
+	 * @param key The key the object was stored with
+	 * @return The stored object or null if no object has been stored
+	 */
+	public Object getResource(Object key) {
+		return this.resources.get(key);
+	}
+
+	/**
+	 * Stores a run specific object that is not part of the simulation model
+	 * (e.g., a thread or statistics collected over several runs). Unlike
+	 * the objects stored with {@link #put(Object, Object)}, the resources
+	 * are not saved in checkpoints.
+	 * @param key The key to store the object with (usually the owning class)
+	 * @param value The object or null to remove the object
+	 */
+	public void putResource(Object key, Object value) {
+		if (value == null) {
+			this.resources.remove(key);
+		}
+		else {
+			this.resources.put(key, value);
+		}
+	}
+
+	/**
+	 * Returns a string presentation of the context
+	 * @return a string presentation of the context
+	 */
+	public String toString() {
+		return "RunContext for run " + (this.runIndex + 1);
+	}
+}
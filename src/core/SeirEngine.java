@@ -0,0 +1,426 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * <P>
+ * Compartmental (SEIR) infection model that spreads the infection directly
+ * on contacts between hosts. Every host is either susceptible, exposed
+ * (infected but not yet infectious), infectious or recovered. When a
+ * susceptible and an infectious host get connected, the susceptible host is
+ * exposed with the {@link #TRANSMISSION_PROB_S transmission probability}.
+ * An exposed host becomes infectious after the incubation time and, at that
+ * moment, may also infect the susceptible hosts it is already connected to.
+ * An infectious host recovers after the infectious time (if defined).</P>
+ *
+ * <P>The states are kept in primitive arrays indexed by the host address and
+ * the pending state transitions in a binary heap ordered by the transition
+ * time, so no messages, buffers or transfers are involved. The random rolls
+ * come from the {@link RandomStreams#SEIR_STREAM} keyed by the hosts and the
+ * time, so the results are reproducible.</P>
+ *
+ * <P>All the settings are in the {@value #SEIR_NS} namespace. The engine is
+ * created by the {@link SimScenario} if {@link #ENABLED_S} is true and the
+ * state changes are reported to the {@link InfectionListener}s.</P>
+ */
+public class SeirEngine implements ConnectionListener, UpdateListener,
+		Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Namespace of the infection engine settings ({@value}) */
+	public static final String SEIR_NS = "Seir";
+	/** Is the engine enabled -setting id ({@value}). Boolean. Default is
+	 * false. */
+	public static final String ENABLED_S = "enabled";
+	/** Initially infected hosts' address range -setting id ({@value}).
+	 * The lower bound is inclusive and upper bound exclusive. Default is
+	 * 0,2 */
+	public static final String SEED_HOSTS_S = "seedHosts";
+	/** Number of initially infected hosts -setting id ({@value}). Default
+	 * is 1. The hosts are drawn from the {@link #SEED_HOSTS_S} range. */
+	public static final String NROF_SEEDS_S = "nrofSeeds";
+	/** Time when the initially infected hosts are exposed -setting id
+	 * ({@value}). Default is 1000. */
+	public static final String SEED_TIME_S = "seedTime";
+	/** Incubation time -setting id ({@value}). Time from exposure until the
+	 * host is infectious. A single value or a min,max range (seconds).
+	 * Default is 3600. */
+	public static final String INCUBATION_TIME_S = "incubationTime";
+	/** Infectious time -setting id ({@value}). Time from becoming
+	 * infectious until recovery. A single value or a min,max range
+	 * (seconds). By default the hosts never recover. */
+	public static final String INFECTIOUS_TIME_S = "infectiousTime";
+	/** Transmission probability -setting id ({@value}). Probability that a
+	 * contact between an infectious and a susceptible host transmits the
+	 * infection. Default is 1.0 */
+	public static final String TRANSMISSION_PROB_S = "transmissionProb";
+	/** Prefix of the infection chain identifiers -setting id ({@value}).
+	 * Chains are numbered from 1 in the order of the initially infected
+	 * hosts. Default is "M" */
+	public static final String PREFIX_S = "prefix";
+
+	/** State of hosts that can be infected */
+	public static final byte SUSCEPTIBLE = 0;
+	/** State of infected hosts that are not yet infectious */
+	public static final byte EXPOSED = 1;
+	/** State of infectious hosts */
+	public static final byte INFECTIOUS = 2;
+	/** State of recovered hosts */
+	public static final byte RECOVERED = 3;
+
+	/** rng key of the seed host draw */
+	private static final long SEED_KEY = -1;
+	/** rng key offset of the duration draws */
+	private static final long DURATION_KEY = 1L << 32;
+
+	/** hosts by their address */
+	private final DTNHost[] hosts;
+	private final byte[] state;
+	/** index of the chain (initially infected host) of the infection */
+	private final int[] chain;
+	/** time of the next state transition (for the hosts in the heap) */
+	private final double[] transitionTime;
+	/** binary heap of host addresses ordered by the transition time */
+	private final int[] heap;
+	/** position of every host in the heap or -1 if not in the heap */
+	private final int[] heapPos;
+	private int heapSize;
+	private final int[] nrofInState;
+
+	private final int[] incubationTime;
+	private final int[] infectiousTime;
+	private final double transmissionProb;
+	private final String[] chainIds;
+	private transient List<InfectionListener> listeners;
+	private transient RandomStreams streams;
+
+	/**
+	 * Creates a new engine with the settings in the {@value #SEIR_NS}
+	 * namespace
+	 * @param hosts All the hosts of the simulation
+	 */
+	public SeirEngine(List<DTNHost> hosts) {
+		Settings s = new Settings(SEIR_NS);
+		int[] seedHosts = s.contains(SEED_HOSTS_S) ?
+				s.getCsvInts(SEED_HOSTS_S, 2) : new int[] {0, 2};
+		int nrofSeeds = s.getInt(NROF_SEEDS_S, 1);
+		double seedTime = s.getDouble(SEED_TIME_S, 1000);
+		this.incubationTime = s.contains(INCUBATION_TIME_S) ?
+				getRange(s, INCUBATION_TIME_S) : new int[] {3600, 3600};
+		this.infectiousTime = s.contains(INFECTIOUS_TIME_S) ?
+				getRange(s, INFECTIOUS_TIME_S) : null;
+		this.transmissionProb = s.getDouble(TRANSMISSION_PROB_S, 1.0);
+		String prefix = s.getSetting(PREFIX_S, "M");
+
+		s.assertValidRange(seedHosts, SEED_HOSTS_S);
+		s.ensurePositiveValue(seedTime, SEED_TIME_S);
+		s.ensurePositiveValue(transmissionProb, TRANSMISSION_PROB_S);
+		if (nrofSeeds > seedHosts[1] - seedHosts[0]) {
+			throw new SettingsError("Can't draw " + nrofSeeds + " hosts from "+
+					"the " + SEED_HOSTS_S + " range " + seedHosts[0] + "-" +
+					seedHosts[1]);
+		}
+
+		int maxAddress = -1;
+		for (DTNHost h : hosts) {
+			maxAddress = Math.max(maxAddress, h.getAddress());
+		}
+		int n = maxAddress + 1;
+		if (seedHosts[1] > n) {
+			throw new SettingsError("The " + SEED_HOSTS_S + " range is " +
+					"larger than the number of hosts (" + n + ")");
+		}
+
+		this.hosts = new DTNHost[n];
+		for (DTNHost h : hosts) {
+			this.hosts[h.getAddress()] = h;
+		}
+		this.state = new byte[n];
+		this.chain = new int[n];
+		this.transitionTime = new double[n];
+		this.heap = new int[n];
+		this.heapPos = new int[n];
+		this.heapSize = 0;
+		this.nrofInState = new int[RECOVERED + 1];
+		this.nrofInState[SUSCEPTIBLE] = hosts.size();
+		this.listeners = new ArrayList<InfectionListener>();
+		this.streams = RandomStreams.current();
+
+		for (int i=0; i < n; i++) {
+			heapPos[i] = -1;
+		}
+
+		/* draw the initially infected hosts (partial Fisher-Yates shuffle)
+		 * and schedule their exposure */
+		int[] range = new int[seedHosts[1] - seedHosts[0]];
+		for (int i=0; i < range.length; i++) {
+			range[i] = seedHosts[0] + i;
+		}
+		SplittableRandom rng = streams.split(RandomStreams.SEIR_STREAM,
+				SEED_KEY);
+		this.chainIds = new String[nrofSeeds];
+		for (int i=0; i < nrofSeeds; i++) {
+			int j = i + rng.nextInt(range.length - i);
+			int address = range[j];
+			range[j] = range[i];
+			range[i] = address;
+
+			if (this.hosts[address] == null) {
+				throw new SettingsError("No host with address " + address +
+						" for the " + SEED_HOSTS_S + " range");
+			}
+			chainIds[i] = prefix + (i + 1);
+			chain[address] = i;
+			schedule(address, seedTime);
+		}
+	}
+
+	/**
+	 * Restores the engine from a checkpoint. The listeners are not restored
+	 * and the random streams of the current run are used.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.listeners = new ArrayList<InfectionListener>();
+		this.streams = RandomStreams.current();
+	}
+
+	/**
+	 * Reads a single value or a min,max range setting
+	 */
+	private int[] getRange(Settings s, String name) {
+		int[] range = s.getCsvInts(name);
+		if (range.length == 1) {
+			range = new int[] {range[0], range[0]};
+		}
+		s.assertValidRange(range, name);
+		return range;
+	}
+
+	/**
+	 * Adds a listener for the infection state changes
+	 * @param l The listener
+	 */
+	public void addInfectionListener(InfectionListener l) {
+		this.listeners.add(l);
+	}
+
+	/**
+	 * Returns the infection state of a host
+	 * @param host The host
+	 * @return The state ({@link #SUSCEPTIBLE}, {@link #EXPOSED},
+	 * {@link #INFECTIOUS} or {@link #RECOVERED})
+	 */
+	public byte getState(DTNHost host) {
+		return state[host.getAddress()];
+	}
+
+	/**
+	 * Returns the number of hosts in a state
+	 * @param s The state
+	 * @return The number of hosts in the state
+	 */
+	public int getNrofHosts(byte s) {
+		return nrofInState[s];
+	}
+
+	/**
+	 * Handles the state transitions that are due by the current time
+	 */
+	public void updated(List<DTNHost> hostList) {
+		double now = SimClock.getTime();
+		while (heapSize > 0 && transitionTime[heap[0]] <= now) {
+			int address = heap[0];
+			double time = transitionTime[address];
+			remove(address);
+			switch (state[address]) {
+			case SUSCEPTIBLE: // initially infected host
+				expose(address, null, time);
+				break;
+			case EXPOSED:
+				becomeInfectious(address, time);
+				break;
+			case INFECTIOUS:
+				setState(address, RECOVERED);
+				for (InfectionListener l : listeners) {
+					l.hostRecovered(hosts[address]);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Tries transmission if an infectious and a susceptible host got
+	 * connected
+	 */
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		int a1 = host1.getAddress();
+		int a2 = host2.getAddress();
+		if (state[a1] == INFECTIOUS && state[a2] == SUSCEPTIBLE) {
+			tryTransmit(a1, a2, SimClock.getTime());
+		}
+		else if (state[a2] == INFECTIOUS && state[a1] == SUSCEPTIBLE) {
+			tryTransmit(a2, a1, SimClock.getTime());
+		}
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
+
+	/**
+	 * Makes a host infectious and tries to infect the susceptible hosts it
+	 * is connected to
+	 * @param address Address of the host
+	 * @param time The time of the transition
+	 */
+	private void becomeInfectious(int address, double time) {
+		DTNHost host = hosts[address];
+		setState(address, INFECTIOUS);
+		if (infectiousTime != null) {
+			schedule(address, time +
+					drawDuration(infectiousTime, address, INFECTIOUS));
+		}
+		for (InfectionListener l : listeners) {
+			l.hostInfectious(host);
+		}
+
+		List<Connection> connections = host.getConnections();
+		for (int i=0, n = connections.size(); i < n; i++) {
+			int other = connections.get(i).getOtherNode(host).getAddress();
+			if (state[other] == SUSCEPTIBLE) {
+				tryTransmit(address, other, time);
+			}
+		}
+	}
+
+	/**
+	 * Rolls whether the infection is transmitted and exposes the
+	 * susceptible host if it is
+	 * @param from Address of the infectious host
+	 * @param to Address of the susceptible host
+	 * @param time The time of the contact (or of the transition that made
+	 * the host infectious)
+	 */
+	private void tryTransmit(int from, int to, double time) {
+		if (transmissionProb < 1.0 && streams.uniform(
+				RandomStreams.SEIR_STREAM, from, to,
+				Double.doubleToLongBits(time)) >= transmissionProb) {
+			return;
+		}
+		chain[to] = chain[from];
+		expose(to, hosts[from], time);
+	}
+
+	/**
+	 * Exposes a host and schedules the end of its incubation
+	 * @param address Address of the host
+	 * @param infector The infector or null for the initially infected hosts
+	 * @param time The time of the exposure
+	 */
+	private void expose(int address, DTNHost infector, double time) {
+		if (heapPos[address] >= 0) {
+			remove(address); // scheduled to be an initially infected host
+		}
+		setState(address, EXPOSED);
+		schedule(address, time +
+				drawDuration(incubationTime, address, EXPOSED));
+		String chainId = chainIds[chain[address]];
+		for (InfectionListener l : listeners) {
+			l.hostExposed(hosts[address], infector, chainId);
+		}
+	}
+
+	private void setState(int address, byte newState) {
+		nrofInState[state[address]]--;
+		nrofInState[newState]++;
+		state[address] = newState;
+	}
+
+	/**
+	 * Draws the duration of a state
+	 */
+	private double drawDuration(int[] range, int address, byte forState) {
+		if (range[0] == range[1]) {
+			return range[0];
+		}
+		return range[0] + (range[1] - range[0]) * streams.uniform(
+				RandomStreams.SEIR_STREAM, DURATION_KEY + address, forState, 0);
+	}
+
+	/* binary heap of the pending transitions; ties are resolved by the
+	 * address so the order doesn't depend on the insertion order */
+
+	private void schedule(int address, double time) {
+		transitionTime[address] = time;
+		heap[heapSize] = address;
+		heapPos[address] = heapSize;
+		heapSize++;
+		siftUp(heapSize - 1);
+	}
+
+	private void remove(int address) {
+		int pos = heapPos[address];
+		heapSize--;
+		heapPos[address] = -1;
+		if (pos == heapSize) {
+			return;
+		}
+		heap[pos] = heap[heapSize];
+		heapPos[heap[pos]] = pos;
+		siftDown(pos);
+		siftUp(pos);
+	}
+
+	private boolean before(int a1, int a2) {
+		double t1 = transitionTime[a1];
+		double t2 = transitionTime[a2];
+		return t1 < t2 || (t1 == t2 && a1 < a2);
+	}
+
+	private void siftUp(int pos) {
+		int address = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!before(address, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			heapPos[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = address;
+		heapPos[address] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int address = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], address)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapPos[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = address;
+		heapPos[address] = pos;
+	}
+}
@@ -8,7 +8,6 @@ import java.io.*;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
@@ -33,7 +32,8 @@ import util.Range;
  * </P>
  */
 public class Settings {
-	/** properties object where the setting files are read into */
+	/** properties object where the setting files are read into. Shared
+	 * by all (concurrent) runs; run specific state is in {@link RunContext}*/
 	protected static Properties props;
 	/** file name of the default settings file ({@value}) */
 	public static final String DEF_SETTINGS_FILE ="my_settings.txt";
@@ -51,10 +51,7 @@ public class Settings {
 
 	/** Stream where all read settings are written to */
 	private static PrintStream out = null;
-	private static Set<String> writtenSettings = new HashSet<String>();
 
-	/** run index for run-specific settings */
-	private static int runIndex = 0;
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -91,12 +88,15 @@ public class Settings {
 	 * To disable whole run-index-thing, set index to value smaller than
 	 * zero (e.g. -1). When disabled, run-arrays are returned as normal values,
 	 * including the brackets.
+	 * The run index is stored in the {@link RunContext} of the calling
+	 * thread.
 	 * @param index The run index to use for subsequent settings calls, or
 	 * -1 to disable run indexing
 	 */
 	public static void setRunIndex(int index) {
-		runIndex = index;
-		writtenSettings.clear();
+		RunContext context = RunContext.current();
+		context.runIndex = index;
+		context.writtenSettings.clear();
 	}
 
 	/**
@@ -330,11 +330,18 @@ public class Settings {
 	 * @param setting The string to write
 	 */
 	private static void outputSetting(String setting) {
-		if (out != null && !writtenSettings.contains(setting)) {
-			if (writtenSettings.size() == 0) {
-				out.println("# Settings for run " + (runIndex + 1));
+		if (out == null) {
+			return;
+		}
+		RunContext context = RunContext.current();
+		Set<String> writtenSettings = context.writtenSettings;
+		if (!writtenSettings.contains(setting)) {
+			synchronized (out) {
+				if (writtenSettings.size() == 0) {
+					out.println("# Settings for run " + (context.runIndex + 1));
+				}
+				out.println(setting);
 			}
-			out.println(setting);
 			writtenSettings.add(setting);
 		}
 	}
@@ -445,6 +452,7 @@ public class Settings {
 		final String RUN_ARRAY_END = "]";
 		final String RUN_ARRAY_DELIM = ";";
 		final int MIN_LENGTH = 3; // minimum run is one value. e.g. "[v]"
+		int runIndex = RunContext.current().runIndex;
 
 		if (!value.startsWith(RUN_ARRAY_START) ||
 			!value.endsWith(RUN_ARRAY_END) ||
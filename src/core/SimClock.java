@@ -4,14 +4,28 @@
  */
 package core;
 
+import java.io.Serializable;
+
 /**
- * Wall clock for checking the simulation time.
+ * Wall clock for checking the simulation time. The time is stored in the
+ * {@link RunContext} of the calling thread. Every run context has its own
+ * clock instance; objects that check the time often can keep the instance
+ * in a field and use {@link #currentTime()}, which doesn't need to look up
+ * the context of the calling thread. A deserialized clock is the clock of
+ * the run context of the deserializing thread.
  */
-public class SimClock {
-	private static double clockTime = 0.0;
-	private static SimClock clock = null;
+public class SimClock implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** the run context whose time this clock shows */
+	private final transient RunContext context;
 
-	private SimClock() {}
+	/**
+	 * Creates the clock of a run context
+	 * @param context The context
+	 */
+	SimClock(RunContext context) {
+		this.context = context;
+	}
 
 	static {
 		DTNSim.registerForReset(SimClock.class.getCanonicalName());
@@ -20,13 +34,10 @@ public class SimClock {
 
 	/**
 	 * Get the instance of the class that can also change the time.
-	 * @return The instance of this clock
+	 * @return The clock of the run context of the calling thread
 	 */
 	public static SimClock getInstance() {
-		if (clock == null) {
-			clock = new SimClock();
-		}
-		return clock;
+		return RunContext.current().getClock();
 	}
 
 	/**
@@ -34,7 +45,7 @@ public class SimClock {
 	 * @return Time as a double
 	 */
 	public static double getTime() {
-		return clockTime;
+		return RunContext.current().clockTime;
 	}
 
 	/**
@@ -42,7 +53,7 @@ public class SimClock {
 	 * @return Time as integer
 	 */
 	public static int getIntTime() {
-		return (int)Math.round(clockTime);
+		return (int)Math.round(RunContext.current().clockTime);
 	}
 
 	/**
@@ -52,7 +63,17 @@ public class SimClock {
 	 * @return The sim time
 	 */
 	public static String getFormattedTime(int decimals) {
-		return String.format("%." + decimals + "f", clockTime);
+		return String.format("%." + decimals + "f",
+				RunContext.current().clockTime);
+	}
+
+	/**
+	 * Returns the current time of this clock. Same as {@link #getTime()}
+	 * for the clock of the calling thread's run context.
+	 * @return Time as a double
+	 */
+	public double currentTime() {
+		return context.clockTime;
 	}
 
 	/**
@@ -60,7 +81,7 @@ public class SimClock {
 	 * @param time Nrof seconds to increase the time
 	 */
 	public void advance(double time) {
-		clockTime += time;
+		context.clockTime += time;
 	}
 
 	/**
@@ -68,7 +89,7 @@ public class SimClock {
 	 * @param time the time to set
 	 */
 	public void setTime(double time) {
-		clockTime = time;
+		context.clockTime = time;
 	}
 
 	/**
@@ -76,13 +97,21 @@ public class SimClock {
 	 * @return the current simulation time in a string
 	 */
 	public String toString() {
-		return "SimTime: " + clockTime;
+		return "SimTime: " + context.clockTime;
+	}
+
+	/**
+	 * Replaces a deserialized clock with the clock of the current run
+	 * @return the clock of the run context of the calling thread
+	 */
+	private Object readResolve() {
+		return getInstance();
 	}
 
 	/**
 	 * Resets the static fields of the class
 	 */
 	public static void reset() {
-		clockTime = 0;
+		RunContext.current().clockTime = 0;
 	}
 }
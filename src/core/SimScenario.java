@@ -4,6 +4,7 @@
  */
 package core;
 
+import input.ContactPlanWriter;
 import input.EventQueue;
 import input.EventQueueHandler;
 
@@ -14,6 +15,7 @@ import java.util.List;
 
 import movement.MapBasedMovement;
 import movement.MovementModel;
+import movement.MovementTraceRecorder;
 import movement.map.SimMap;
 import routing.MessageRouter;
 
@@ -22,9 +24,9 @@ import routing.MessageRouter;
  * simulation run.
  */
 public class SimScenario implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	/** a way to get a hold of this... */
-	private static SimScenario myinstance=null;
 
 	/** namespace of scenario settings ({@value})*/
 	public static final String SCENARIO_NS = "Scenario";
@@ -121,6 +123,14 @@ public class SimScenario implements Serializable {
 	private List<UpdateListener> updateListeners;
 	/** Global application event listeners */
 	private List<ApplicationListener> appListeners;
+	/** Infection engine or null if not enabled */
+	private SeirEngine seirEngine;
+	/** Recorder of the hosts' movement or null if it is not recorded */
+	private MovementTraceRecorder traceRecorder;
+	/** Recorder of the contacts or null if they are not recorded */
+	private ContactPlanWriter contactPlanWriter;
+	/** Live metrics of the run or null if they are not enabled */
+	private transient Metrics metrics;
 
 	static {
 		DTNSim.registerForReset(SimScenario.class.getCanonicalName());
@@ -128,7 +138,7 @@ public class SimScenario implements Serializable {
 	}
 
 	public static void reset() {
-		myinstance = null;
+		RunContext.current().put(SimScenario.class, null);
 	}
 
 	/**
@@ -157,25 +167,48 @@ public class SimScenario implements Serializable {
 		this.appListeners = new ArrayList<ApplicationListener>();
 		this.eqHandler = new EventQueueHandler();
 
+		this.contactPlanWriter = ContactPlanWriter.create();
+		if (this.contactPlanWriter != null) {
+			this.connectionListeners.add(contactPlanWriter);
+		}
+
 		/* TODO: check size from movement models */
 		s.setNameSpace(MovementModel.MOVEMENT_MODEL_NS);
 		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE, 2);
 		this.worldSizeX = worldSize[0];
 		this.worldSizeY = worldSize[1];
 
+		this.traceRecorder = MovementTraceRecorder.create();
 		createHosts();
 
+		s.setNameSpace(SeirEngine.SEIR_NS);
+		if (s.getBoolean(SeirEngine.ENABLED_S, false)) {
+			this.seirEngine = new SeirEngine(hosts);
+			this.connectionListeners.add(seirEngine);
+			this.updateListeners.add(seirEngine);
+		}
+		else {
+			this.seirEngine = null;
+		}
+
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval,
 				updateListeners, simulateConnections,
 				eqHandler.getEventQueues());
+
+		this.metrics = Metrics.create(this);
+		this.world.setMetrics(metrics);
 	}
 
 	/**
-	 * Returns the SimScenario instance and creates one if it doesn't exist yet
+	 * Returns the SimScenario instance of the current run and creates one
+	 * if it doesn't exist yet
 	 */
 	public static SimScenario getInstance() {
+		RunContext context = RunContext.current();
+		SimScenario myinstance = (SimScenario)context.get(SimScenario.class);
 		if (myinstance == null) {
 			myinstance = new SimScenario();
+			context.put(SimScenario.class, myinstance);
 		}
 		return myinstance;
 	}
@@ -303,6 +336,88 @@ public class SimScenario implements Serializable {
 		return this.updateListeners;
 	}
 
+	/**
+	 * Returns the global listener lists (connection, message, movement,
+	 * update and application listeners)
+	 * @return the listener lists
+	 */
+	List<List<?>> getListenerLists() {
+		List<List<?>> lists = new ArrayList<List<?>>();
+		lists.add(connectionListeners);
+		lists.add(messageListeners);
+		lists.add(movementListeners);
+		lists.add(updateListeners);
+		lists.add(appListeners);
+		return lists;
+	}
+
+	/**
+	 * Called when the scenario has been restored from a checkpoint. Reads
+	 * the settings that may differ from the checkpointed run (the end time)
+	 * and creates the infection engine if it is enabled but wasn't used in
+	 * the checkpointed run.
+	 */
+	void resumed() {
+		Settings s = new Settings(SCENARIO_NS);
+		this.endTime = s.getDouble(END_TIME_S);
+		s.ensurePositiveValue(endTime, END_TIME_S);
+
+		s.setNameSpace(SeirEngine.SEIR_NS);
+		if (this.seirEngine == null &&
+				s.getBoolean(SeirEngine.ENABLED_S, false)) {
+			this.seirEngine = new SeirEngine(hosts);
+			this.connectionListeners.add(seirEngine);
+			this.updateListeners.add(seirEngine);
+		}
+
+		this.metrics = Metrics.create(this);
+		this.world.setMetrics(metrics);
+	}
+
+	/**
+	 * Called when the simulation is done. Writes the movement trace and the
+	 * contact plan if they were recorded and the last sample of the
+	 * metrics.
+	 */
+	public void done() {
+		if (this.traceRecorder != null) {
+			this.traceRecorder.write();
+		}
+		if (this.contactPlanWriter != null) {
+			this.contactPlanWriter.write();
+		}
+		if (this.metrics != null) {
+			this.metrics.done();
+		}
+	}
+
+	/**
+	 * Returns the live metrics of the run
+	 * @return the metrics or null if they are not enabled
+	 */
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Returns the infection engine of the scenario
+	 * @return the infection engine or null if it is not enabled
+	 */
+	public SeirEngine getSeirEngine() {
+		return this.seirEngine;
+	}
+
+	/**
+	 * Adds a new infection listener. Nothing is done if the infection
+	 * engine is not enabled.
+	 * @param il The listener
+	 */
+	public void addInfectionListener(InfectionListener il) {
+		if (this.seirEngine != null) {
+			this.seirEngine.addInfectionListener(il);
+		}
+	}
+
 	/**
 	 * Adds a new application event listener for all nodes.
 	 * @param al The listener
@@ -417,6 +532,9 @@ public class SimScenario implements Serializable {
 			if (mmProto instanceof MapBasedMovement) {
 				this.simMap = ((MapBasedMovement)mmProto).getMap();
 			}
+			if (traceRecorder != null) {
+				mmProto = traceRecorder.wrap(mmProto);
+			}
 
 			// creates hosts of ith group
 			for (int j=0; j<nrofHosts; j++) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * Listener that passes the events to another listener (e.g., a report) and
+ * times the calls with a {@link Metrics.Timer}. Implements all the listener
+ * interfaces, but should be registered only as the listeners that the
+ * wrapped object implements.
+ */
+public class TimedListener implements MessageListener, ConnectionListener,
+		MovementListener, UpdateListener, ApplicationListener,
+		InfectionListener {
+	private final Object listener;
+	private final Metrics.Timer timer;
+
+	/**
+	 * Creates a timed listener
+	 * @param listener The listener whose calls are timed
+	 * @param timer The timer
+	 */
+	public TimedListener(Object listener, Metrics.Timer timer) {
+		this.listener = listener;
+		this.timer = timer;
+	}
+
+	public void newMessage(Message m) {
+		long start = timer.start();
+		((MessageListener)listener).newMessage(m);
+		timer.stop(start);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		long start = timer.start();
+		((MessageListener)listener).messageTransferStarted(m, from, to);
+		timer.stop(start);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		long start = timer.start();
+		((MessageListener)listener).messageDeleted(m, where, dropped);
+		timer.stop(start);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		long start = timer.start();
+		((MessageListener)listener).messageTransferAborted(m, from, to);
+		timer.stop(start);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		long start = timer.start();
+		((MessageListener)listener).messageTransferred(m, from, to,
+				firstDelivery);
+		timer.stop(start);
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		long start = timer.start();
+		((ConnectionListener)listener).hostsConnected(host1, host2);
+		timer.stop(start);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		long start = timer.start();
+		((ConnectionListener)listener).hostsDisconnected(host1, host2);
+		timer.stop(start);
+	}
+
+	public void newDestination(DTNHost host, Coord destination,
+			double speed) {
+		long start = timer.start();
+		((MovementListener)listener).newDestination(host, destination, speed);
+		timer.stop(start);
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		long start = timer.start();
+		((MovementListener)listener).initialLocation(host, location);
+		timer.stop(start);
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		long start = timer.start();
+		((UpdateListener)listener).updated(hosts);
+		timer.stop(start);
+	}
+
+	public void gotEvent(String event, Object params, Application app,
+			DTNHost host) {
+		long start = timer.start();
+		((ApplicationListener)listener).gotEvent(event, params, app, host);
+		timer.stop(start);
+	}
+
+	public void hostExposed(DTNHost host, DTNHost infector, String chainId) {
+		long start = timer.start();
+		((InfectionListener)listener).hostExposed(host, infector, chainId);
+		timer.stop(start);
+	}
+
+	public void hostInfectious(DTNHost host) {
+		long start = timer.start();
+		((InfectionListener)listener).hostInfectious(host);
+		timer.stop(start);
+	}
+
+	public void hostRecovered(DTNHost host) {
+		long start = timer.start();
+		((InfectionListener)listener).hostRecovered(host);
+		timer.stop(start);
+	}
+}
@@ -8,16 +8,22 @@ import input.EventQueue;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 
 /**
  * World contains all the nodes and is responsible for updating their
  * location and connections.
  */
-public class World {
+public class World implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** name space of optimization settings ({@value})*/
 	public static final String OPTIMIZATION_SETTINGS_NS = "Optimization";
 
@@ -37,11 +43,24 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Should the updates of idle hosts be skipped -setting id ({@value}).
+	 * Boolean (true/false) variable. Default is false. A host is idle if it
+	 * hasn't moved and had no connections since its previous update, its
+	 * interfaces have no activeness restrictions, it's not time to look for
+	 * new contacts and the router has nothing to do (see
+	 * {@link routing.MessageRouter#getIdleEndTime()}; only the routers that
+	 * override it can be idle). An idle host is not checked again until it
+	 * may move or become busy. Skipping the update of an idle host changes
+	 * nothing, so the results are the same with and without this setting.
+	 */
+	public static final String LAZY_UPDATES_S = "lazyUpdates";
+
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
 	private double updateInterval;
-	private SimClock simClock;
+	private transient SimClock simClock;
 	private double nextQueueEventTime;
 	private EventQueue nextEventQueue;
 	/** list of nodes; nodes are indexed by their network address */
@@ -56,6 +75,15 @@ public class World {
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
+	/** should the updates of idle hosts be skipped */
+	private boolean lazyUpdates;
+	/** addresses of the hosts that may need to be moved (null if the
+	 * waiting hosts are not known yet) */
+	private transient BitSet movingHosts;
+	/** hosts that wait for their next path, by the end of the wait */
+	private transient PriorityQueue<WaitingHost> waitingHosts;
+	/** live metrics of the run or null if they are not collected */
+	private transient Metrics metrics;
 
 	/**
 	 * Constructor.
@@ -90,6 +118,7 @@ public class World {
 			randomizeUpdates = s.getBoolean(RANDOMIZE_UPDATES_S);
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
+		lazyUpdates = s.getBoolean(LAZY_UPDATES_S, false);
 
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
@@ -100,6 +129,26 @@ public class World {
 		}
 	}
 
+	/**
+	 * Restores the world from a checkpoint (see {@link Checkpoint})
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.simClock = SimClock.getInstance();
+	}
+
+	/**
+	 * Sets the metrics where the updates are recorded to
+	 * @param metrics The metrics or null if they are not collected
+	 */
+	void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+		for (DTNHost host : this.hosts) {
+			host.setMetrics(metrics);
+		}
+	}
+
 	/**
 	 * Moves hosts in the world for the time given time initialize host
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
@@ -148,7 +197,9 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
-		double runUntil = SimClock.getTime() + this.updateInterval;
+		double runUntil = simClock.currentTime() + this.updateInterval;
+		Metrics m = this.metrics;
+		long start = 0;
 
 		setNextEventQueue();
 
@@ -156,20 +207,39 @@ public class World {
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
+			if (m != null) {
+				start = m.start(Metrics.EVENTS);
+			}
 			ee.processEvent(this);
+			if (m != null) {
+				m.stop(Metrics.EVENTS, start);
+			}
 			updateHosts(); // update all hosts after every event
 			setNextEventQueue();
 		}
 
+		if (m != null) {
+			start = m.start(Metrics.MOVE);
+		}
 		moveHosts(this.updateInterval);
+		if (m != null) {
+			m.stop(Metrics.MOVE, start);
+		}
 		simClock.setTime(runUntil);
 
 		updateHosts();
 
 		/* inform all update listeners */
+		if (m != null) {
+			start = m.start(Metrics.LISTENERS);
+		}
 		for (UpdateListener ul : this.updateListeners) {
 			ul.updated(this.hosts);
 		}
+		if (m != null) {
+			m.stop(Metrics.LISTENERS, start);
+			m.worldUpdated(this.hosts);
+		}
 	}
 
 	/**
@@ -178,25 +248,35 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		List<DTNHost> order;
+
 		if (this.updateOrder == null) { // randomizing is off
-			for (int i=0, n = hosts.size();i < n; i++) {
-				if (this.isCancelled) {
-					break;
-				}
-				hosts.get(i).update(simulateConnections);
-			}
+			order = this.hosts;
 		}
 		else { // update order randomizing is on
 			assert this.updateOrder.size() == this.hosts.size() :
 				"Nrof hosts has changed unexpectedly";
 			Random rng = new Random(SimClock.getIntTime());
 			Collections.shuffle(this.updateOrder, rng);
-			for (int i=0, n = hosts.size();i < n; i++) {
-				if (this.isCancelled) {
-					break;
+			order = this.updateOrder;
+		}
+
+		Metrics m = this.metrics;
+		for (int i=0, n = order.size();i < n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			DTNHost host = order.get(i);
+			if (lazyUpdates && host.isIdle(simulateConnections)) {
+				if (m != null) {
+					m.hostUpdated(true);
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				continue;
+			}
+			if (m != null) {
+				m.hostUpdated(false);
 			}
+			host.update(simulateConnections);
 		}
 
 		if (simulateConOnce && simulateConnections) {
@@ -205,13 +285,34 @@ public class World {
 	}
 
 	/**
-	 * Moves all hosts in the world for a given amount of time
+	 * Moves all hosts in the world for a given amount of time. Hosts that
+	 * wait for their next path (and whose activeness can't change) are
+	 * kept aside until the wait is over, so only the hosts that may move
+	 * are gone through, in the order of their addresses.
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
-		for (int i=0,n = hosts.size(); i<n; i++) {
+		int n = hosts.size();
+		if (this.movingHosts == null) {
+			this.movingHosts = new BitSet(n);
+			this.movingHosts.set(0, n);
+			this.waitingHosts = new PriorityQueue<WaitingHost>();
+		}
+
+		double now = simClock.currentTime();
+		while (!waitingHosts.isEmpty() && waitingHosts.peek().time <= now) {
+			movingHosts.set(waitingHosts.poll().address);
+		}
+
+		for (int i = movingHosts.nextSetBit(0); i >= 0 && i < n;
+				i = movingHosts.nextSetBit(i + 1)) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);
+			double waitEnd = host.getWaitEndTime();
+			if (waitEnd > now) {
+				movingHosts.clear(i);
+				waitingHosts.add(new WaitingHost(waitEnd, i));
+			}
 		}
 	}
 
@@ -272,4 +373,22 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * A host that waits for its next path
+	 */
+	private static class WaitingHost implements Comparable<WaitingHost> {
+		/** time when the host needs to be moved again */
+		private final double time;
+		private final int address;
+
+		public WaitingHost(double time, int address) {
+			this.time = time;
+			this.address = address;
+		}
+
+		public int compareTo(WaitingHost other) {
+			return Double.compare(this.time, other.time);
+		}
+	}
 }
@@ -33,6 +33,14 @@ public class DTNSimGUI extends DTNSimUI {
 	private GUIControls guiControls;
 	private EventLogPanel eventLogPanel;
 	private InfoPanel infoPanel;
+	/** is a view update waiting to be run in the event dispatch thread */
+	private volatile boolean viewUpdatePending;
+	private final Runnable viewUpdater = new Runnable() {
+		public void run() {
+			viewUpdatePending = false;
+			updateView();
+		}
+	};
 
 	private void startGUI() {
 		try {
@@ -114,6 +122,7 @@ public class DTNSimGUI extends DTNSimUI {
 			else {
 				try {
 					world.update();
+					checkpointIfDue();
 				} catch (AssertionError e) {
 					// handles both assertion errors and SimErrors
 					processAssertionError(e);
@@ -185,28 +194,23 @@ public class DTNSimGUI extends DTNSimUI {
 	}
 
     /**
-     * Updates the GUI
+     * Updates the GUI. The state of the hosts is copied to the play field's
+     * snapshot and the view is updated later in the event dispatch thread,
+     * so the simulation does not wait for the drawing.
      */
     public void update(boolean forcedUpdate) {
 	double guiUpdateInterval = guiControls.getUpdateInterval();
 
 	// update only if long enough simTime has passed (and not forced)
-		if (!forcedUpdate && guiUpdateInterval > (SimClock.getTime()
-				- this.lastUpdate)) {
+		if (!forcedUpdate && !field.isSnapshotRequested() &&
+				guiUpdateInterval > (SimClock.getTime() - this.lastUpdate)) {
 			return;
 		}
 
-		try {
-			// run update in EDT, TODO: optimize threading
-			SwingUtilities.invokeAndWait(new Runnable() {
-			    public void run() {
-					updateView();
-			    }
-			});
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			e.printStackTrace();
+		this.lastUpdate = field.captureSnapshot();
+		if (!viewUpdatePending) { // no earlier update waiting in the EDT
+			viewUpdatePending = true;
+			SwingUtilities.invokeLater(viewUpdater);
 		}
 
 	// wait a while if we don't want to run simulation at full speed
@@ -221,11 +225,9 @@ public class DTNSimGUI extends DTNSimUI {
      *
      */
     private void updateView() {
-		double simTime = SimClock.getTime();
-		this.lastUpdate = simTime;
-		guiControls.setSimTime(simTime); //update time to control panel
+		guiControls.setSimTime(this.lastUpdate); //update time to control panel
 
-		this.field.updateField();
+		this.field.repaint();
     }
 
     /**
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package gui.playfield;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * State of all hosts at one simulation time, copied to primitive arrays so
+ * that the play field can be painted in the event dispatch thread while the
+ * simulation goes on. The arrays are indexed by host address and reused
+ * from one capture to the next.
+ */
+class HostSnapshot {
+	/** Simulation time of the snapshot */
+	double simTime;
+	/** Number of hosts in the snapshot */
+	int nrofHosts;
+
+	DTNHost[] hosts = new DTNHost[0];
+	double[] x = new double[0];
+	double[] y = new double[0];
+	int[] nrofMessages = new int[0];
+
+	/** Is the coverage of the host shown (radio active and coverage drawn) */
+	boolean[] coverage = new boolean[0];
+	/** Color of the coverage circles */
+	Color[] rangeColor = new Color[0];
+	/** Largest transmit range of the host's interfaces */
+	double[] maxRange = new double[0];
+	/** Host i's transmit ranges are in ranges[rangeStart[i]..
+	 * rangeStart[i+1]-1] */
+	int[] rangeStart = new int[1];
+	double[] ranges = new double[0];
+
+	/** Number of connections in the snapshot */
+	int nrofConnections;
+	/** Addresses of the connections' end points */
+	int[] conFrom = new int[0];
+	int[] conTo = new int[0];
+
+	/**
+	 * Copies the state of the hosts to this snapshot. Must be called from
+	 * the simulation thread.
+	 * @param list The hosts (in address order)
+	 * @param time The current simulation time
+	 * @param withCoverage Should the radio coverage be captured
+	 * @param withConnections Should the connections be captured
+	 */
+	void capture(List<DTNHost> list, double time, boolean withCoverage,
+			boolean withConnections) {
+		int n = list.size();
+		this.simTime = time;
+		this.nrofHosts = n;
+		if (hosts.length < n) {
+			hosts = new DTNHost[n];
+			x = new double[n];
+			y = new double[n];
+			nrofMessages = new int[n];
+			coverage = new boolean[n];
+			rangeColor = new Color[n];
+			maxRange = new double[n];
+			rangeStart = new int[n + 1];
+		}
+
+		int nrofRanges = 0;
+		nrofConnections = 0;
+		for (int i=0; i < n; i++) {
+			DTNHost h = list.get(i);
+			Coord loc = h.getLocation();
+			List<NetworkInterface> net = h.getInterfaces();
+
+			hosts[i] = h;
+			x[i] = loc.getX();
+			y[i] = loc.getY();
+			nrofMessages[i] = h.getNrofMessages();
+			rangeStart[i] = nrofRanges;
+			maxRange[i] = 0;
+			coverage[i] = withCoverage && h.isRadioActive();
+
+			if (coverage[i]) {
+				rangeColor[i] = net.size() > 0 ? net.get(0).getRangeColor() :
+					null;
+				for (int j=0, m=net.size(); j < m; j++) {
+					if (nrofRanges == ranges.length) {
+						ranges = Arrays.copyOf(ranges, 2 * nrofRanges + 16);
+					}
+					double range = net.get(j).getTransmitRange();
+					ranges[nrofRanges++] = range;
+					maxRange[i] = Math.max(maxRange[i], range);
+				}
+			}
+
+			if (withConnections) {
+				for (int j=0, m=net.size(); j < m; j++) {
+					List<Connection> cons = net.get(j).getConnections();
+					for (int k=0, l=cons.size(); k < l; k++) {
+						DTNHost other = cons.get(k).getOtherNode(h);
+						if (other == null || other.getAddress() < i) {
+							continue; /* added from the other end */
+						}
+						addConnection(i, other.getAddress());
+					}
+				}
+			}
+		}
+		rangeStart[n] = nrofRanges;
+	}
+
+	private void addConnection(int from, int to) {
+		if (nrofConnections == conFrom.length) {
+			int size = 2 * nrofConnections + 16;
+			conFrom = Arrays.copyOf(conFrom, size);
+			conTo = Arrays.copyOf(conTo, size);
+		}
+		conFrom[nrofConnections] = from;
+		conTo[nrofConnections] = to;
+		nrofConnections++;
+	}
+
+	/**
+	 * Returns the index of the host in this snapshot
+	 * @param host The host
+	 * @return The index or -1 if the host is not in the snapshot
+	 */
+	int indexOf(DTNHost host) {
+		int i = host.getAddress();
+		if (i >= 0 && i < nrofHosts && hosts[i] == host) {
+			return i;
+		}
+		return -1;
+	}
+}
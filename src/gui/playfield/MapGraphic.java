@@ -6,46 +6,139 @@ package gui.playfield;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 
 import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
 
 /**
- * PlayfieldGraphic for SimMap visualization
- *
+ * PlayfieldGraphic for SimMap visualization. The map is drawn to an image
+ * that is reused until the zoom level changes or the visible area moves
+ * out of the drawn area. The image covers the visible area and some margin
+ * around it (within the bounds of the map).
  */
 public class MapGraphic extends PlayFieldGraphic {
 	private SimMap simMap;
 	private final Color PATH_COLOR = Color.BLACK;
 	private final Color BG_COLOR = Color.WHITE;
 
+	/** world coordinates of the map's bounding box */
+	private double minX, minY, maxX, maxY;
+
+	/** the cached map image, its scale and the area it covers */
+	private BufferedImage image;
+	private double imageScale;
+	private Rectangle imageArea;
+
 	public MapGraphic(SimMap simMap) {
 		this.simMap = simMap;
+		this.minX = this.minY = Double.MAX_VALUE;
+		this.maxX = this.maxY = -Double.MAX_VALUE;
 
+		if (simMap != null) {
+			for (MapNode n : simMap.getNodes()) {
+				Coord c = n.getLocation();
+				minX = Math.min(minX, c.getX());
+				minY = Math.min(minY, c.getY());
+				maxX = Math.max(maxX, c.getX());
+				maxY = Math.max(maxY, c.getY());
+			}
+		}
 	}
 
-	// TODO: draw only once and store to buffer
 	@Override
 	public void draw(Graphics2D g2) {
-		Coord c,c2;
+		if (simMap == null || simMap.getNodes().isEmpty()) {
+			return;
+		}
 
-		if (simMap == null) {
+		Rectangle area = g2.getClipBounds();
+		if (area == null) { // nothing to limit the drawing -> no caching
+			drawEdges(g2, null);
 			return;
 		}
 
+		if (image == null || imageScale != scale ||
+				!imageArea.contains(area.intersection(getBounds()))) {
+			if (!updateImage(area)) {
+				return; // map is not in the visible area
+			}
+		}
+
+		g2.drawImage(image, imageArea.x, imageArea.y, null);
+	}
+
+	/**
+	 * Returns the bounds of the map in the graphics space
+	 * @return the bounds of the map
+	 */
+	private Rectangle getBounds() {
+		int x = scale(minX) - 1;
+		int y = scale(minY) - 1;
+		return new Rectangle(x, y, scale(maxX) + 2 - x, scale(maxY) + 2 - y);
+	}
+
+	/**
+	 * Draws the map to a new image that covers the visible area and a
+	 * margin around it
+	 * @param area The visible area
+	 * @return false if the map is not in the area (no image was drawn)
+	 */
+	private boolean updateImage(Rectangle area) {
+		Rectangle drawArea = new Rectangle(area.x - area.width / 4,
+				area.y - area.height / 4, area.width + area.width / 2,
+				area.height + area.height / 2);
+		drawArea = drawArea.intersection(getBounds());
+		if (drawArea.isEmpty()) {
+			return false;
+		}
+
+		BufferedImage img = new BufferedImage(drawArea.width,
+				drawArea.height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D ig = img.createGraphics();
+		ig.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		ig.translate(-drawArea.x, -drawArea.y);
+		drawEdges(ig, drawArea);
+		ig.dispose();
+
+		this.image = img;
+		this.imageScale = scale;
+		this.imageArea = drawArea;
+		return true;
+	}
+
+	/**
+	 * Draws the edges between map nodes (bidirectional edges twice)
+	 * @param g2 The graphics context to draw to
+	 * @param area The area where to draw or null to draw all edges
+	 */
+	private void drawEdges(Graphics2D g2, Rectangle area) {
+		Coord c,c2;
+
 		g2.setColor(PATH_COLOR);
 		g2.setBackground(BG_COLOR);
 
-		// draws all edges between map nodes (bidirectional edges twice)
 		for (MapNode n : simMap.getNodes()) {
 			c = n.getLocation();
+			int x = scale(c.getX());
+			int y = scale(c.getY());
 
 			// draw a line to adjacent nodes
 			for (MapNode n2 : n.getNeighbors()) {
 				c2 = n2.getLocation();
-				g2.drawLine(scale(c2.getX()), scale(c2.getY()),
-						scale(c.getX()), scale(c.getY()));
+				int x2 = scale(c2.getX());
+				int y2 = scale(c2.getY());
+				if (area != null && (Math.max(x, x2) < area.x ||
+						Math.min(x, x2) > area.x + area.width ||
+						Math.max(y, y2) < area.y ||
+						Math.min(y, y2) > area.y + area.height)) {
+					continue;
+				}
+				g2.drawLine(x2, y2, x, y);
 			}
 		}
 	}
@@ -6,7 +6,7 @@ package gui.playfield;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.Polygon;
+import java.awt.Rectangle;
 
 import core.DTNHost;
 
@@ -29,15 +29,22 @@ public class MessageGraphic extends PlayFieldGraphic {
 	public void draw(Graphics2D g2) {
 		g2.setColor(msgColor);
 
-		int fromX = scale(from.getLocation().getX());
-		int fromY = scale(from.getLocation().getY());
-		int toX = scale(to.getLocation().getX());
-		int toY = scale(to.getLocation().getY());
-
 		// line from "from host" to "to host"
-		Polygon p = new Polygon(new int[] {fromX, toX},
-				new int[] {fromY,toY}, 2);
+		g2.drawLine(scale(from.getLocation().getX()),
+				scale(from.getLocation().getY()),
+				scale(to.getLocation().getX()), scale(to.getLocation().getY()));
+	}
 
-		g2.draw(p);
+	@Override
+	public boolean intersects(Rectangle area) {
+		double x1 = from.getLocation().getX();
+		double y1 = from.getLocation().getY();
+		double x2 = to.getLocation().getX();
+		double y2 = to.getLocation().getY();
+
+		return scale(Math.max(x1, x2)) >= area.x &&
+			scale(Math.min(x1, x2)) <= area.x + area.width &&
+			scale(Math.max(y1, y2)) >= area.y &&
+			scale(Math.min(y1, y2)) <= area.y + area.height;
 	}
 }
@@ -5,19 +5,17 @@
 package gui.playfield;
 
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
-import java.awt.geom.Ellipse2D;
-import java.util.ArrayList;
+import java.awt.Rectangle;
 import java.util.List;
 
-import core.Connection;
-import core.Coord;
 import core.DTNHost;
-import core.NetworkInterface;
 
 /**
- * Visualization of a DTN Node
- *
+ * Visualization of the DTN nodes. The nodes are drawn from a
+ * {@link HostSnapshot} and only the nodes that are inside the clip area
+ * of the graphics context are drawn.
  */
 public class NodeGraphic extends PlayFieldGraphic {
 	private static boolean drawCoverage;
@@ -36,95 +34,146 @@ public class NodeGraphic extends PlayFieldGraphic {
 
 	private static Color highlightedNodeColor = Color.MAGENTA;
 
-	private DTNHost node;
+	private static final int BAR_HEIGHT = 5;
+	private static final int BAR_WIDTH = 5;
+	private static final int BAR_DISPLACEMENT = 2;
 
-	public NodeGraphic(DTNHost node) {
-		this.node = node;
+	private HostSnapshot snapshot;
+
+	/**
+	 * Sets the snapshot whose nodes are drawn
+	 * @param snapshot The snapshot
+	 */
+	void setSnapshot(HostSnapshot snapshot) {
+		this.snapshot = snapshot;
 	}
 
 	@Override
 	public void draw(Graphics2D g2) {
-		drawHost(g2);
-		if (drawBuffer) {
-			drawMessages(g2);
+		HostSnapshot s = this.snapshot;
+		if (s == null) {
+			return;
+		}
+		Rectangle area = g2.getClipBounds();
+		FontMetrics fm = g2.getFontMetrics();
+
+		if (drawConnections) {
+			drawConnections(g2, s, area);
+		}
+
+		for (int i=0; i < s.nrofHosts; i++) {
+			if (area != null && !isVisible(s, i, area, fm)) {
+				continue;
+			}
+			drawHost(g2, s, i);
+			if (drawBuffer) {
+				drawMessages(g2, s, i);
+			}
+		}
+
+		List<DTNHost> highlighted = highlightedNodes;
+		if (highlighted != null) {
+			g2.setColor(highlightedNodeColor);
+			for (DTNHost h : highlighted) {
+				int i = s.indexOf(h);
+				if (i >= 0) {
+					g2.fillRect(scale(s.x[i]) - 3, scale(s.y[i]) - 3, 6, 6);
+				}
+			}
 		}
 	}
 
 	/**
-	 * @return true if the node this graphic represents should be highlighted
+	 * Returns true if some of the graphics of a node are inside an area
+	 * @param s The snapshot
+	 * @param i Index of the node
+	 * @param area The area
+	 * @param fm Metrics of the font used for node names
+	 * @return true if the node is (possibly) visible in the area
 	 */
-	private boolean isHighlighted() {
-		if (highlightedNodes == null) {
-			return false;
-		} else {
-			return highlightedNodes.contains(node);
+	private boolean isVisible(HostSnapshot s, int i, Rectangle area,
+			FontMetrics fm) {
+		int x = scale(s.x[i]);
+		int y = scale(s.y[i]);
+		int pad = Math.max(scale(2), 3) + 1;
+		int left = pad, right = pad, up = pad, down = pad;
+
+		if (s.coverage[i]) {
+			int r = scale(s.maxRange[i]) + 1;
+			left = Math.max(left, r);
+			right = Math.max(right, r);
+			up = Math.max(up, r);
+			down = Math.max(down, r);
 		}
+		if (drawBuffer) {
+			int bars = Math.max(s.nrofMessages[i] % 10, s.nrofMessages[i] / 10);
+			left = Math.max(left, scale(BAR_DISPLACEMENT + 2 * BAR_WIDTH) + 1);
+			up = Math.max(up,
+					scale(BAR_DISPLACEMENT + bars * BAR_HEIGHT) + 1);
+		}
+		if (drawNodeName) {
+			right = Math.max(right, fm.stringWidth(s.hosts[i].toString()));
+			up = Math.max(up, fm.getAscent());
+			down = Math.max(down, fm.getDescent());
+		}
+
+		return x + right >= area.x && x - left <= area.x + area.width &&
+			y + down >= area.y && y - up <= area.y + area.height;
 	}
 
 	/**
-	 * Visualize node's location, radio ranges and connections
+	 * Visualize the connections between the nodes
 	 * @param g2 The graphic context to draw to
+	 * @param s The snapshot
+	 * @param area The area to draw to or null for no culling
 	 */
-	private void drawHost(Graphics2D g2) {
-		Coord loc = node.getLocation();
-
-		if (drawCoverage && node.isRadioActive()) {
-			ArrayList<NetworkInterface> interfaces =
-				new ArrayList<NetworkInterface>();
-			interfaces.addAll(node.getInterfaces());
-			for (NetworkInterface ni : interfaces) {
-				double range = ni.getTransmitRange();
-				Ellipse2D.Double coverage;
-
-				coverage = new Ellipse2D.Double(scale(loc.getX()-range),
-						scale(loc.getY()-range), scale(range * 2),
-						scale(range * 2));
-
-				// draw the "range" circle
-				if (node.getInterfaces().size() > 0) {
-					g2.setColor(node.getInterfaces().get(0).getRangeColor());
-				} else {
-					g2.setColor(rangeColor);
-				}
-				g2.draw(coverage);
+	private void drawConnections(Graphics2D g2, HostSnapshot s,
+			Rectangle area) {
+		g2.setColor(conColor);
+		for (int c=0; c < s.nrofConnections; c++) {
+			int x1 = scale(s.x[s.conFrom[c]]);
+			int y1 = scale(s.y[s.conFrom[c]]);
+			int x2 = scale(s.x[s.conTo[c]]);
+			int y2 = scale(s.y[s.conTo[c]]);
+			if (area != null && (Math.max(x1, x2) < area.x ||
+					Math.min(x1, x2) > area.x + area.width ||
+					Math.max(y1, y2) < area.y ||
+					Math.min(y1, y2) > area.y + area.height)) {
+				continue;
 			}
+			g2.drawLine(x1, y1, x2, y2);
 		}
+	}
 
-		if (drawConnections) {
-			g2.setColor(conColor);
-			Coord c1 = node.getLocation();
-			ArrayList<Connection> conList = new ArrayList<Connection>();
-			// create a copy to prevent concurrent modification exceptions
-			conList.addAll(node.getConnections());
-			for (Connection c : conList) {
-				DTNHost otherNode = c.getOtherNode(node);
-				Coord c2;
-
-				if (otherNode == null) {
-					continue; /* disconnected before drawn */
-				}
-				c2 = otherNode.getLocation();
-				g2.drawLine(scale(c1.getX()), scale(c1.getY()),
-						scale(c2.getX()), scale(c2.getY()));
+	/**
+	 * Visualize node's location and radio ranges
+	 * @param g2 The graphic context to draw to
+	 * @param s The snapshot
+	 * @param i Index of the node in the snapshot
+	 */
+	private void drawHost(Graphics2D g2, HostSnapshot s, int i) {
+		double x = s.x[i];
+		double y = s.y[i];
+
+		if (s.coverage[i]) {
+			// draw the "range" circles
+			g2.setColor(s.rangeColor[i] != null ? s.rangeColor[i] :
+				rangeColor);
+			for (int j=s.rangeStart[i]; j < s.rangeStart[i+1]; j++) {
+				double range = s.ranges[j];
+				g2.drawOval(scale(x-range), scale(y-range), scale(range * 2),
+						scale(range * 2));
 			}
 		}
 
-
 		/* draw node rectangle */
 		g2.setColor(hostColor);
-		g2.drawRect(scale(loc.getX()-1),scale(loc.getY()-1),
-		scale(2),scale(2));
-
-		if (isHighlighted()) {
-			g2.setColor(highlightedNodeColor);
-			g2.fillRect(scale(loc.getX()) - 3 ,scale(loc.getY()) - 3, 6, 6);
-		}
+		g2.drawRect(scale(x-1),scale(y-1), scale(2),scale(2));
 
 		if (drawNodeName) {
 			g2.setColor(hostNameColor);
 			// Draw node's address next to it
-			g2.drawString(node.toString(), scale(loc.getX()),
-					scale(loc.getY()));
+			g2.drawString(s.hosts[i].toString(), scale(x), scale(y));
 		}
 	}
 
@@ -160,34 +209,49 @@ public class NodeGraphic extends PlayFieldGraphic {
 		drawBuffer = draw;
 	}
 
+	/**
+	 * Returns true if the radio coverage of nodes is drawn
+	 * @return true if the radio coverage of nodes is drawn
+	 */
+	static boolean isDrawCoverage() {
+		return drawCoverage;
+	}
+
+	/**
+	 * Returns true if the connections between nodes are drawn
+	 * @return true if the connections between nodes are drawn
+	 */
+	static boolean isDrawConnections() {
+		return drawConnections;
+	}
+
 	public static void setHighlightedNodes(List<DTNHost> nodes) {
 		highlightedNodes = nodes;
 	}
 
 	/**
-	 * Visualize the messages this node is carrying
+	 * Visualize the messages a node is carrying
 	 * @param g2 The graphic context to draw to
+	 * @param s The snapshot
+	 * @param i Index of the node in the snapshot
 	 */
-	private void drawMessages(Graphics2D g2) {
-		int nrofMessages = node.getNrofMessages();
-		Coord loc = node.getLocation();
+	private void drawMessages(Graphics2D g2, HostSnapshot s, int i) {
+		int nrofMessages = s.nrofMessages[i];
 
-		drawBar(g2,loc, nrofMessages % 10, 1);
-		drawBar(g2,loc, nrofMessages / 10, 2);
+		drawBar(g2, s.x[i], s.y[i], nrofMessages % 10, 1);
+		drawBar(g2, s.x[i], s.y[i], nrofMessages / 10, 2);
 	}
 
 	/**
 	 * Draws a bar (stack of squares) next to a location
 	 * @param g2 The graphic context to draw to
-	 * @param loc The location where to draw
+	 * @param x The X coordinate of the location where to draw
+	 * @param y The Y coordinate of the location where to draw
 	 * @param nrof How many squares in the stack
 	 * @param col Which column
 	 */
-	private void drawBar(Graphics2D g2, Coord loc, int nrof, int col) {
-		final int BAR_HEIGHT = 5;
-		final int BAR_WIDTH = 5;
-		final int BAR_DISPLACEMENT = 2;
-
+	private void drawBar(Graphics2D g2, double x, double y, int nrof,
+			int col) {
 		// draws a stack of squares next loc
 		for (int i=1; i <= nrof; i++) {
 			if (i%2 == 0) { // use different color for every other msg
@@ -202,8 +266,8 @@ public class NodeGraphic extends PlayFieldGraphic {
 				}
 			}
 
-			g2.fillRect(scale(loc.getX()-BAR_DISPLACEMENT-(BAR_WIDTH*col)),
-					scale(loc.getY()- BAR_DISPLACEMENT- i* BAR_HEIGHT),
+			g2.fillRect(scale(x-BAR_DISPLACEMENT-(BAR_WIDTH*col)),
+					scale(y- BAR_DISPLACEMENT- i* BAR_HEIGHT),
 					scale(BAR_WIDTH), scale(BAR_HEIGHT));
 		}
 
@@ -6,6 +6,7 @@ package gui.playfield;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.util.List;
 
 import movement.Path;
@@ -18,6 +19,8 @@ import core.Coord;
 public class PathGraphic extends PlayFieldGraphic {
 	private final static Color PATH_COLOR = Color.RED;
 	private List<Coord> coords;
+	/** world coordinates of the path's bounding box */
+	private double minX, minY, maxX, maxY;
 
 	public PathGraphic(Path path) {
 		if (path == null) {
@@ -27,6 +30,15 @@ public class PathGraphic extends PlayFieldGraphic {
 			this.coords = path.getCoords();
 			assert this.coords != null && this.coords.size() > 0 :
 			"No coordinates in the path (" + path + ")";
+
+			minX = minY = Double.MAX_VALUE;
+			maxX = maxY = -Double.MAX_VALUE;
+			for (Coord c : coords) {
+				minX = Math.min(minX, c.getX());
+				minY = Math.min(minY, c.getY());
+				maxX = Math.max(maxX, c.getX());
+				maxY = Math.max(maxY, c.getY());
+			}
 		}
 	}
 
@@ -51,4 +63,11 @@ public class PathGraphic extends PlayFieldGraphic {
 		}
 	}
 
+	@Override
+	public boolean intersects(Rectangle area) {
+		return coords != null && scale(maxX) >= area.x &&
+			scale(minX) <= area.x + area.width && scale(maxY) >= area.y &&
+			scale(minY) <= area.y + area.height;
+	}
+
 }
@@ -21,11 +21,16 @@ import movement.Path;
 import movement.map.SimMap;
 import core.Coord;
 import core.DTNHost;
+import core.SimClock;
 import core.World;
 
 /**
  * The canvas where node graphics and message visualizations are drawn.
- *
+ * The state of the hosts is copied to a {@link HostSnapshot} in the
+ * simulation thread and the snapshots are painted in the event dispatch
+ * thread, so the simulation does not have to wait for the painting. There
+ * are three snapshots: the one that is being captured, the latest complete
+ * one and the one that is being painted.
  */
 public class PlayField extends JPanel {
 	public static final int PLAYFIELD_OFFSET = 10;
@@ -43,6 +48,18 @@ public class PlayField extends JPanel {
 	private boolean focusOnClick;
 	private boolean zoomWheelInvert;
 
+	private NodeGraphic nodeGraphic;
+	/** snapshot that the simulation thread captures */
+	private HostSnapshot captured;
+	/** the latest complete snapshot */
+	private HostSnapshot ready;
+	/** is the ready snapshot newer than the painted snapshot */
+	private boolean readyIsNew;
+	/** snapshot that the event dispatch thread paints */
+	private HostSnapshot painted;
+	private final Object snapshotLock = new Object();
+	private volatile boolean snapshotRequested;
+
 	private BufferedImage underlayImage;
 	private AffineTransform imageTransform;
 	private AffineTransform curTransform;
@@ -60,6 +77,12 @@ public class PlayField extends JPanel {
 		this.gui = gui;
 
 		this.refGraphic = new ScaleReferenceGraphic();
+		this.nodeGraphic = new NodeGraphic();
+		this.captured = new HostSnapshot();
+		this.ready = new HostSnapshot();
+		this.readyIsNew = false;
+		this.painted = new HostSnapshot();
+		this.snapshotRequested = true;
 		updateFieldSize();
         this.setBackground(bgColor);
         this.overlayGraphics = Collections.synchronizedList(
@@ -80,12 +103,62 @@ public class PlayField extends JPanel {
 	}
 
 	/**
-	 * Schedule the play field to be drawn
+	 * Schedule the play field to be drawn. Also requests a new snapshot of
+	 * the hosts (e.g., because the things to draw changed).
+	 * @see #isSnapshotRequested()
 	 */
 	public void updateField() {
+		this.snapshotRequested = true;
 		this.repaint();
 	}
 
+	/**
+	 * Returns true if a new snapshot has been requested with
+	 * {@link #updateField()} after the latest {@link #captureSnapshot()}
+	 * @return true if a new snapshot should be captured
+	 */
+	public boolean isSnapshotRequested() {
+		return this.snapshotRequested;
+	}
+
+	/**
+	 * Copies the current state of the hosts to a new snapshot that is
+	 * drawn the next time the field is painted. Must be called from the
+	 * simulation thread (while the world is not updated).
+	 * @return Simulation time of the snapshot
+	 */
+	public double captureSnapshot() {
+		double time = SimClock.getTime();
+		this.snapshotRequested = false;
+		captured.capture(w.getHosts(), time, NodeGraphic.isDrawCoverage(),
+				NodeGraphic.isDrawConnections());
+
+		synchronized (snapshotLock) {
+			HostSnapshot old = ready;
+			ready = captured;
+			captured = old;
+			readyIsNew = true;
+		}
+		return time;
+	}
+
+	/**
+	 * Takes the latest complete snapshot (if there is a new one) to be
+	 * painted
+	 * @return The snapshot to paint
+	 */
+	private HostSnapshot takeSnapshot() {
+		synchronized (snapshotLock) {
+			if (readyIsNew) {
+				HostSnapshot old = painted;
+				painted = ready;
+				ready = old;
+				readyIsNew = false;
+			}
+			return painted;
+		}
+	}
+
 	/**
 	 * Sets an image to show under the host graphics
 	 * @param image The image to set or null to remove the image
@@ -226,13 +299,18 @@ public class PlayField extends JPanel {
 		}
 
 		// draw hosts
-		for (DTNHost h : w.getHosts()) {
-			new NodeGraphic(h).draw(g2);
-		}
-
-		// draw overlay graphics
-		for (int i=0, n=overlayGraphics.size(); i<n; i++) {
-			overlayGraphics.get(i).draw(g2);
+		nodeGraphic.setSnapshot(takeSnapshot());
+		nodeGraphic.draw(g2);
+
+		// draw overlay graphics that are in the visible area
+		Rectangle area = g2.getClipBounds();
+		synchronized (overlayGraphics) {
+			for (int i=0, n=overlayGraphics.size(); i<n; i++) {
+				PlayFieldGraphic pfg = overlayGraphics.get(i);
+				if (area == null || pfg.intersects(area)) {
+					pfg.draw(g2);
+				}
+			}
 		}
 
 		// draw reference scale
@@ -325,17 +403,21 @@ public class PlayField extends JPanel {
 	 * @param y The Y coordinate
 	 */
 	private void focusClosestNode(int x, int y) {
+		HostSnapshot s = takeSnapshot();
 		DTNHost closest = w.getHosts().get(0);
 		double closestDist = Double.MAX_VALUE;
 		double dist;
 
 		Coord clickLoc = getWorldPosition(new Coord(x,y));
 
-		for (DTNHost h : w.getHosts()) {
-			dist = h.getLocation().distance(clickLoc);
+		// use the drawn locations (the hosts may have moved since)
+		for (int i=0; i < s.nrofHosts; i++) {
+			double dx = s.x[i] - clickLoc.getX();
+			double dy = s.y[i] - clickLoc.getY();
+			dist = Math.sqrt(dx*dx + dy*dy);
 
 			if (dist < closestDist) {
-				closest = h;
+				closest = s.hosts[i];
 				closestDist = dist;
 			}
 		}
@@ -5,6 +5,7 @@
 package gui.playfield;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 
 /**
  * Superclass for all graphics to be drawn on the "play field".
@@ -37,6 +38,17 @@ public abstract class PlayFieldGraphic {
 	 */
 	public abstract void draw(Graphics2D g2);
 
+	/**
+	 * Returns true if the graphic may have something to draw in the given
+	 * area (of the graphics space). The play field skips graphics that are
+	 * not in the visible area. This implementation always returns true.
+	 * @param area The area
+	 * @return true if the graphic should be drawn to the area
+	 */
+	public boolean intersects(Rectangle area) {
+		return true;
+	}
+
 
 	/**
 	 * Scales the value according to current zoom level
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Reads external events from a compact binary file created with
+ * {@link CompactEventsWriter}. The file is memory mapped and the events are
+ * read straight from the mapped records, so even traces with millions of
+ * events don't need to fit in the heap.</P>
+ *
+ * <P>File format (version {@value #VERSION}, big-endian):</P>
+ * <PRE>
+ * header (32 bytes):
+ *   int magic ({@link #MAGIC}), int version, long number of events,
+ *   long string table offset, int number of strings, int (unused)
+ * records (32 bytes each, in time order):
+ *   double time, byte type, byte flag, short (unused), int from address,
+ *   int to address, int string index, int size, int response size
+ * string table:
+ *   int[number of strings + 1] start offsets of the strings (relative to the
+ *   first string), UTF-8 bytes of the strings
+ * </PRE>
+ * <P>The message ids and interface ids are stored only once in the string
+ * table (string index -1 means no string). The flag is the stage of a
+ * relay event, and 1 for dropping delete events and "up" connection
+ * events.</P>
+ *
+ * <P>{@link #nextEvent()} returns the same event object for all events of the
+ * same type, so the returned events are valid only until the next call.
+ * {@link #readEvents(int)} returns new event objects.</P>
+ */
+public class CompactEventsReader implements ExternalEventsReader {
+	/** Extension of compact external events files ({@value}) */
+	public static final String COMPACT_EXT = ".cee";
+	/** Magic number in the beginning of the files ("ONEE") */
+	public static final int MAGIC = 0x4F4E4545;
+	/** Current version of the file format ({@value}) */
+	public static final int VERSION = 1;
+
+	/** Size of the header (bytes) */
+	static final int HEADER_SIZE = 32;
+	/** Size of one event record (bytes) */
+	static final int RECORD_SIZE = 32;
+
+	/** Record type of message create events */
+	static final byte CREATE = 1;
+	/** Record type of message relay events */
+	static final byte RELAY = 2;
+	/** Record type of message delete events */
+	static final byte DELETE = 3;
+	/** Record type of connection events */
+	static final byte CONNECTION = 4;
+
+	/** How many records are mapped at once */
+	private static final int WINDOW_RECORDS = 1 << 20;
+	/** Size of the decoded string cache (must be a power of two) */
+	private static final int STRING_CACHE_SIZE = 4096;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private final long nrofEvents;
+	private long nextIndex;
+
+	/** mapped window of records and the index of its first record */
+	private MappedByteBuffer window;
+	private long windowStart;
+	private int windowRecords;
+
+	private MappedByteBuffer stringTable;
+	private int stringDataStart;
+	/** recently decoded strings and their indexes (direct mapped) */
+	private String[] cachedStrings;
+	private int[] cachedIndexes;
+	private byte[] stringBuffer;
+
+	/** reusable events returned by {@link #nextEvent()} */
+	private final MessageCreateEvent createEvent;
+	private final MessageRelayEvent relayEvent;
+	private final MessageDeleteEvent deleteEvent;
+	private final ConnectionEvent connectionEvent;
+	private final ExternalEvent endEvent;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public CompactEventsReader(File eventsFile) {
+		try {
+			this.file = new RandomAccessFile(eventsFile, "r");
+			this.channel = file.getChannel();
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new SimError("Invalid compact external events file: " +
+						eventsFile.getAbsolutePath());
+			}
+			int version = header.getInt();
+			if (version > VERSION) {
+				throw new SimError("Unsupported version " + version + " of " +
+						"compact external events file " +
+						eventsFile.getAbsolutePath());
+			}
+			this.nrofEvents = header.getLong();
+			long stringTableOffset = header.getLong();
+			int nrofStrings = header.getInt();
+
+			long tableSize = channel.size() - stringTableOffset;
+			if (tableSize > Integer.MAX_VALUE) {
+				throw new SimError("Too large string table in " +
+						eventsFile.getAbsolutePath());
+			}
+			this.stringTable = channel.map(FileChannel.MapMode.READ_ONLY,
+					stringTableOffset, tableSize);
+			this.stringDataStart = (nrofStrings + 1) * 4;
+			this.cachedStrings = new String[STRING_CACHE_SIZE];
+			this.cachedIndexes = new int[STRING_CACHE_SIZE];
+			Arrays.fill(cachedIndexes, -1);
+			this.stringBuffer = new byte[64];
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+
+		this.nextIndex = 0;
+		this.windowStart = 0;
+		this.windowRecords = 0;
+
+		this.createEvent = new MessageCreateEvent(0, 0, null, 0, 0, 0);
+		this.relayEvent = new MessageRelayEvent(0, 0, null, 0, 0);
+		this.deleteEvent = new MessageDeleteEvent(0, null, 0, false);
+		this.connectionEvent = new ConnectionEvent(0, 1, null, false, 0);
+		this.endEvent = new ExternalEvent(Double.MAX_VALUE);
+	}
+
+	/**
+	 * Checks if the given file is a compact external events file
+	 * @param file The file to check
+	 * @return True if the file name ends with {@link #COMPACT_EXT} and the
+	 * file starts with the magic number
+	 */
+	public static boolean isCompactEeFile(File file) {
+		if (!file.getName().endsWith(COMPACT_EXT)) {
+			return false;
+		}
+
+		try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+			return f.length() >= HEADER_SIZE && f.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of events that haven't been read yet
+	 * @return the number of events left
+	 */
+	public long eventsLeft() {
+		return nrofEvents - nextIndex;
+	}
+
+	/**
+	 * Returns the time of the next event or Double.MAX_VALUE if there are no
+	 * events left
+	 * @return The next event's time
+	 */
+	public double nextEventsTime() {
+		if (nextIndex >= nrofEvents) {
+			return Double.MAX_VALUE;
+		}
+		return window().getDouble(recordPosition());
+	}
+
+	/**
+	 * Returns the next event or an ExternalEvent with time Double.MAX_VALUE
+	 * if there are no events left. The returned object is reused by the
+	 * following calls.
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (nextIndex >= nrofEvents) {
+			return endEvent;
+		}
+
+		ByteBuffer b = window();
+		int p = recordPosition();
+		nextIndex++;
+
+		double time = b.getDouble(p);
+		byte type = b.get(p + 8);
+		byte flag = b.get(p + 9);
+		int from = b.getInt(p + 12);
+		int to = b.getInt(p + 16);
+		String str = getString(b.getInt(p + 20));
+
+		switch (type) {
+		case CREATE:
+			createEvent.time = time;
+			createEvent.fromAddr = from;
+			createEvent.toAddr = to;
+			createEvent.id = str;
+			createEvent.size = b.getInt(p + 24);
+			createEvent.responseSize = b.getInt(p + 28);
+			return createEvent;
+		case RELAY:
+			relayEvent.time = time;
+			relayEvent.fromAddr = from;
+			relayEvent.toAddr = to;
+			relayEvent.id = str;
+			relayEvent.stage = flag;
+			return relayEvent;
+		case DELETE:
+			deleteEvent.time = time;
+			deleteEvent.fromAddr = from;
+			deleteEvent.toAddr = from;
+			deleteEvent.id = str;
+			deleteEvent.drop = flag != 0;
+			return deleteEvent;
+		case CONNECTION:
+			connectionEvent.time = time;
+			connectionEvent.fromAddr = from;
+			connectionEvent.toAddr = to;
+			connectionEvent.interfaceId = str;
+			connectionEvent.isUp = flag != 0;
+			return connectionEvent;
+		default:
+			throw new SimError("Unknown event type " + type + " in record " +
+					(nextIndex - 1) + " of compact external events file");
+		}
+	}
+
+	/**
+	 * Read events from the file as new event objects
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(
+				(int)Math.min(nrof, eventsLeft()));
+
+		for (int i=0; i < nrof && nextIndex < nrofEvents; i++) {
+			ExternalEvent ee = nextEvent();
+			if (ee instanceof MessageCreateEvent) {
+				MessageCreateEvent ce = (MessageCreateEvent)ee;
+				events.add(new MessageCreateEvent(ce.fromAddr, ce.toAddr,
+						ce.id, ce.size, ce.responseSize, ce.time));
+			}
+			else if (ee instanceof MessageRelayEvent) {
+				MessageRelayEvent re = (MessageRelayEvent)ee;
+				events.add(new MessageRelayEvent(re.fromAddr, re.toAddr,
+						re.id, re.time, re.stage));
+			}
+			else if (ee instanceof MessageDeleteEvent) {
+				MessageDeleteEvent de = (MessageDeleteEvent)ee;
+				events.add(new MessageDeleteEvent(de.fromAddr, de.id,
+						de.time, de.drop));
+			}
+			else {
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				events.add(new ConnectionEvent(ce.fromAddr, ce.toAddr,
+						ce.interfaceId, ce.isUp, ce.time));
+			}
+		}
+
+		return events;
+	}
+
+	/**
+	 * Returns the mapped window that contains the next record, mapping a new
+	 * window if necessary
+	 * @return The window
+	 */
+	private ByteBuffer window() {
+		if (window == null || nextIndex >= windowStart + windowRecords) {
+			windowStart = nextIndex;
+			windowRecords = (int)Math.min(WINDOW_RECORDS,
+					nrofEvents - nextIndex);
+			try {
+				window = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + windowStart * RECORD_SIZE,
+						(long)windowRecords * RECORD_SIZE);
+			} catch (IOException e) {
+				throw new SimError(e);
+			}
+		}
+		return window;
+	}
+
+	/**
+	 * Returns the position of the next record in the current window
+	 * @return the position of the next record
+	 */
+	private int recordPosition() {
+		return (int)(nextIndex - windowStart) * RECORD_SIZE;
+	}
+
+	/**
+	 * Returns a string from the string table. Recently used strings are
+	 * cached so the events of the same message share the id string.
+	 * @param index Index of the string or -1 for no string
+	 * @return The string or null if the index was -1
+	 */
+	private String getString(int index) {
+		if (index < 0) {
+			return null;
+		}
+
+		int slot = index & (STRING_CACHE_SIZE - 1);
+		String s = cachedStrings[slot];
+		if (cachedIndexes[slot] != index) {
+			int start = stringTable.getInt(index * 4);
+			int len = stringTable.getInt(index * 4 + 4) - start;
+			if (len > stringBuffer.length) {
+				stringBuffer = new byte[Math.max(len, stringBuffer.length * 2)];
+			}
+			ByteBuffer data = stringTable.duplicate();
+			data.position(stringDataStart + start);
+			data.get(stringBuffer, 0, len);
+			s = new String(stringBuffer, 0, len, StandardCharsets.UTF_8);
+			cachedStrings[slot] = s;
+			cachedIndexes[slot] = index;
+		}
+		return s;
+	}
+
+	public void close() {
+		window = null;
+		stringTable = null;
+		try {
+			file.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+}
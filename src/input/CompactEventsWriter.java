@@ -0,0 +1,227 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Writes external events to a compact binary file that can be read with
+ * {@link CompactEventsReader}. The message and interface ids are interned
+ * so every id is stored only once. The events must be written in time
+ * order.</P>
+ *
+ * <P>The class can also be run as a program that converts a standard (text)
+ * or a binary ({@link BinaryEventsReader#BINARY_EXT}) external events file
+ * to a compact file:</P>
+ * <PRE>
+ * java -cp target input.CompactEventsWriter &lt;input file&gt; &lt;output file&gt;
+ * </PRE>
+ */
+public class CompactEventsWriter {
+	/** How many events are read at once when converting files */
+	private static final int CONVERT_CHUNK = 10000;
+
+	private final File outFile;
+	private DataOutputStream out;
+	private long nrofEvents;
+	private double lastTime;
+
+	private HashMap<String, Integer> stringIndex;
+	private List<String> strings;
+
+	/**
+	 * Creates a writer that writes to the given file
+	 * @param outFile The file to write the events to
+	 * @throws IOException if the file can't be created
+	 */
+	public CompactEventsWriter(File outFile) throws IOException {
+		this.outFile = outFile;
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(outFile), 1 << 16));
+		this.nrofEvents = 0;
+		this.lastTime = Double.NEGATIVE_INFINITY;
+		this.stringIndex = new HashMap<String, Integer>();
+		this.strings = new ArrayList<String>();
+
+		// header is written again in the end when the counts are known
+		writeHeader(out, 0, 0, 0);
+	}
+
+	/**
+	 * Writes an event to the file
+	 * @param ee The event to write
+	 * @throws IOException if writing fails
+	 */
+	public void write(ExternalEvent ee) throws IOException {
+		if (ee.time < lastTime) {
+			throw new SimError("Event " + ee + " is not in time order");
+		}
+		lastTime = ee.time;
+
+		if (ee instanceof MessageCreateEvent) {
+			MessageCreateEvent ce = (MessageCreateEvent)ee;
+			writeRecord(ce.time, CompactEventsReader.CREATE, 0, ce.fromAddr,
+					ce.toAddr, ce.id, ce.size, ce.responseSize);
+		}
+		else if (ee instanceof MessageRelayEvent) {
+			MessageRelayEvent re = (MessageRelayEvent)ee;
+			writeRecord(re.time, CompactEventsReader.RELAY, re.stage,
+					re.fromAddr, re.toAddr, re.id, 0, 0);
+		}
+		else if (ee instanceof MessageDeleteEvent) {
+			MessageDeleteEvent de = (MessageDeleteEvent)ee;
+			writeRecord(de.time, CompactEventsReader.DELETE, de.drop ? 1 : 0,
+					de.fromAddr, de.toAddr, de.id, 0, 0);
+		}
+		else if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			writeRecord(ce.time, CompactEventsReader.CONNECTION,
+					ce.isUp ? 1 : 0, ce.fromAddr, ce.toAddr, ce.interfaceId,
+					0, 0);
+		}
+		else {
+			throw new SimError("Can't store event " + ee + " of type " +
+					ee.getClass().getName() + " to a compact events file");
+		}
+	}
+
+	/**
+	 * Writes the string table and the final header and closes the file
+	 * @throws IOException if writing fails
+	 */
+	public void close() throws IOException {
+		long tableOffset = CompactEventsReader.HEADER_SIZE +
+			nrofEvents * CompactEventsReader.RECORD_SIZE;
+
+		List<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+		int offset = 0;
+		out.writeInt(offset);
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			offset += bytes.length;
+			out.writeInt(offset);
+		}
+		for (byte[] bytes : encoded) {
+			out.write(bytes);
+		}
+		out.close();
+
+		try (RandomAccessFile f = new RandomAccessFile(outFile, "rw")) {
+			f.seek(0);
+			ByteArrayOutputStream header = new ByteArrayOutputStream(
+					CompactEventsReader.HEADER_SIZE);
+			writeHeader(new DataOutputStream(header), nrofEvents, tableOffset,
+					strings.size());
+			f.write(header.toByteArray());
+		}
+	}
+
+	private void writeRecord(double time, byte type, int flag, int from,
+			int to, String str, int size, int responseSize)
+			throws IOException {
+		out.writeDouble(time);
+		out.writeByte(type);
+		out.writeByte(flag);
+		out.writeShort(0);
+		out.writeInt(from);
+		out.writeInt(to);
+		out.writeInt(intern(str));
+		out.writeInt(size);
+		out.writeInt(responseSize);
+		nrofEvents++;
+	}
+
+	/**
+	 * Returns the index of the string in the string table, adding it there
+	 * if it's not there yet
+	 * @param s The string (or null)
+	 * @return Index of the string or -1 for null
+	 */
+	private int intern(String s) {
+		if (s == null) {
+			return -1;
+		}
+		Integer index = stringIndex.get(s);
+		if (index == null) {
+			index = strings.size();
+			strings.add(s);
+			stringIndex.put(s, index);
+		}
+		return index;
+	}
+
+	private static void writeHeader(DataOutputStream dos, long nrofEvents,
+			long tableOffset, int nrofStrings) throws IOException {
+		dos.writeInt(CompactEventsReader.MAGIC);
+		dos.writeInt(CompactEventsReader.VERSION);
+		dos.writeLong(nrofEvents);
+		dos.writeLong(tableOffset);
+		dos.writeInt(nrofStrings);
+		dos.writeInt(0);
+		dos.flush();
+	}
+
+	/**
+	 * Converts a standard or binary external events file to a compact file
+	 * @param inFile The file to convert
+	 * @param outFile The compact file to create
+	 * @return Number of converted events
+	 * @throws IOException if reading or writing fails
+	 */
+	public static long convert(File inFile, File outFile) throws IOException {
+		ExternalEventsReader reader;
+		if (BinaryEventsReader.isBinaryEeFile(inFile)) {
+			reader = new BinaryEventsReader(inFile);
+		}
+		else {
+			reader = new StandardEventsReader(inFile);
+		}
+
+		CompactEventsWriter writer = new CompactEventsWriter(outFile);
+		List<ExternalEvent> events = reader.readEvents(CONVERT_CHUNK);
+		while (events.size() > 0) {
+			for (ExternalEvent ee : events) {
+				writer.write(ee);
+			}
+			events = reader.readEvents(CONVERT_CHUNK);
+		}
+		reader.close();
+		writer.close();
+
+		return writer.nrofEvents;
+	}
+
+	/**
+	 * Converts an external events file to a compact file
+	 * @param args input file and output file
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: CompactEventsWriter <input file> " +
+					"<output file" + CompactEventsReader.COMPACT_EXT + ">");
+			System.exit(1);
+		}
+		String outName = args[1];
+		if (!outName.endsWith(CompactEventsReader.COMPACT_EXT)) {
+			outName += CompactEventsReader.COMPACT_EXT;
+		}
+		long nrof = convert(new File(args[0]), new File(outName));
+		System.out.println("Wrote " + nrof + " events to " + outName);
+	}
+}
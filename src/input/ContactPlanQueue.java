@@ -0,0 +1,245 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import core.DTNHost;
+import core.Settings;
+import core.SimError;
+import core.World;
+
+/**
+ * <P>
+ * Event queue that replays the contacts of a contact plan file (see
+ * {@link ContactPlanWriter}). The plan is memory mapped and the contacts
+ * are read straight from the file. All the connection changes of the same
+ * time are applied as one event, so the hosts are updated only once per
+ * time instant. In every instant the contacts that go down are torn down
+ * before the new contacts are created (except contacts that also come up
+ * in the same instant).</P>
+ *
+ * <P>The connections are created with {@link DTNHost#replayConnection(
+ * DTNHost, String, boolean)}, so the connectivity simulation should be
+ * disabled ({@code Scenario.simulateConnections = false}) and the hosts
+ * need not move. The interfaces' contact acceptance is not applied to the
+ * replayed contacts, so the plan is replayed as it is with any random seed
+ * and contact probabilities.</P>
+ *
+ * <P>The queue is configured as a class based event queue, e.g.,
+ * <CODE>Events1.class = ContactPlanQueue</CODE> and
+ * <CODE>Events1.file = plan.bin</CODE>.</P>
+ */
+public class ContactPlanQueue implements EventQueue, Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Contact plan file -setting id ({@value}). Value fillers can be
+	 * used. */
+	public static final String FILE_S = "file";
+
+	/** Magic number in the beginning of the files ("ONEP") */
+	public static final int MAGIC = 0x4F4E4550;
+	/** Current version of the file format ({@value}) */
+	public static final int VERSION = 1;
+
+	/** Size of the header (bytes) */
+	static final int HEADER_SIZE = 24;
+	/** Size of one contact record (bytes) */
+	static final int RECORD_SIZE = 28;
+
+	private final String fileName;
+	private int nrofContacts;
+	private int nrofDowns;
+	/** position of the down order in the file */
+	private int downOrderStart;
+	private String[] interfaceTypes;
+	private transient ByteBuffer buffer;
+
+	/** index of the next contact to come up */
+	private int nextUp;
+	/** index of the next down event in the down order */
+	private int nextDown;
+	/** the event for the next time instant */
+	private final ContactsEvent event;
+
+	/**
+	 * Creates a queue based on the settings
+	 * @param s The settings
+	 */
+	public ContactPlanQueue(Settings s) {
+		this(s.valueFillString(s.getSetting(FILE_S)));
+	}
+
+	/**
+	 * Creates a queue that replays a contact plan file
+	 * @param fileName Name of the file
+	 * @throws SimError if the file can't be read or it is not a contact plan
+	 */
+	public ContactPlanQueue(String fileName) {
+		this.fileName = fileName;
+		map();
+		ByteBuffer b = this.buffer;
+		this.nrofContacts = b.getInt(8);
+		this.nrofDowns = b.getInt(12);
+		this.interfaceTypes = new String[b.getInt(16)];
+		this.downOrderStart = HEADER_SIZE + nrofContacts * RECORD_SIZE;
+
+		int p = downOrderStart + nrofDowns * 4;
+		for (int i=0; i < interfaceTypes.length; i++) {
+			byte[] bytes = new byte[b.getInt(p)];
+			b.position(p + 4);
+			b.get(bytes);
+			interfaceTypes[i] = new String(bytes, StandardCharsets.UTF_8);
+			p += 4 + bytes.length;
+		}
+
+		this.nextUp = 0;
+		this.nextDown = 0;
+		this.event = new ContactsEvent();
+	}
+
+	/**
+	 * Maps the file to memory and checks the header
+	 */
+	private void map() {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_SIZE ||
+					channel.size() > Integer.MAX_VALUE) {
+				throw new SimError(fileName + " is not a contact plan");
+			}
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} catch (IOException e) {
+			throw new SimError("Can't read contact plan " + fileName, e);
+		}
+
+		if (buffer.getInt(0) != MAGIC) {
+			throw new SimError(fileName + " is not a contact plan");
+		}
+		if (buffer.getInt(4) > VERSION) {
+			throw new SimError("Unsupported version " + buffer.getInt(4) +
+					" of contact plan " + fileName);
+		}
+	}
+
+	/**
+	 * Returns the number of contacts in the plan
+	 * @return the number of contacts in the plan
+	 */
+	public int getNrofContacts() {
+		return this.nrofContacts;
+	}
+
+	public double nextEventsTime() {
+		double upTime = nextUp < nrofContacts ? upTime(nextUp) :
+			Double.MAX_VALUE;
+		double downTime = nextDown < nrofDowns ?
+				downTime(downContact(nextDown)) : Double.MAX_VALUE;
+		return Math.min(upTime, downTime);
+	}
+
+	/**
+	 * Returns the connection changes of the next time instant as one event
+	 * or an ExternalEvent with time Double.MAX_VALUE if there are no
+	 * contacts left. The returned object is reused by the following calls.
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		double time = nextEventsTime();
+		if (time == Double.MAX_VALUE) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		event.time = time;
+		event.firstUp = nextUp;
+		while (nextUp < nrofContacts && upTime(nextUp) == time) {
+			nextUp++;
+		}
+		event.lastUp = nextUp;
+		event.firstDown = nextDown;
+		while (nextDown < nrofDowns &&
+				downTime(downContact(nextDown)) == time) {
+			nextDown++;
+		}
+		event.lastDown = nextDown;
+		return event;
+	}
+
+	private double upTime(int contact) {
+		return buffer.getDouble(HEADER_SIZE + contact * RECORD_SIZE);
+	}
+
+	private double downTime(int contact) {
+		return buffer.getDouble(HEADER_SIZE + contact * RECORD_SIZE + 8);
+	}
+
+	private int downContact(int downIndex) {
+		return buffer.getInt(downOrderStart + downIndex * 4);
+	}
+
+	/**
+	 * Sets a contact up or down
+	 */
+	private void setContact(World world, int contact, boolean up) {
+		int p = HEADER_SIZE + contact * RECORD_SIZE + 16;
+		DTNHost from = world.getNodeByAddress(buffer.getInt(p));
+		DTNHost to = world.getNodeByAddress(buffer.getInt(p + 4));
+		int iface = buffer.getInt(p + 8);
+		from.replayConnection(to, iface < 0 ? null : interfaceTypes[iface],
+				up);
+	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		map();
+	}
+
+	/**
+	 * The connection changes of one time instant
+	 */
+	private class ContactsEvent extends ExternalEvent {
+		private static final long serialVersionUID = 42L;
+		private int firstUp;
+		private int lastUp;
+		private int firstDown;
+		private int lastDown;
+
+		private ContactsEvent() {
+			super(0);
+		}
+
+		@Override
+		public void processEvent(World world) {
+			for (int i = firstDown; i < lastDown; i++) {
+				int c = downContact(i);
+				if (upTime(c) < time) {
+					setContact(world, c, false);
+				}
+			}
+			for (int c = firstUp; c < lastUp; c++) {
+				setContact(world, c, true);
+			}
+			for (int i = firstDown; i < lastDown; i++) {
+				int c = downContact(i);
+				if (upTime(c) == time) { // contacts of zero duration
+					setContact(world, c, false);
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "CONTACTS @" + time + " " + (lastUp - firstUp) + " up " +
+				(lastDown - firstDown) + " down";
+		}
+	}
+}
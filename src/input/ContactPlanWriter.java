@@ -0,0 +1,377 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Connection;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * <P>
+ * Records the contacts of a run to a contact plan file that
+ * {@link ContactPlanQueue} can replay. Every contact is stored as
+ * (up time, down time, initiator address, other address, interface type).
+ * The contacts are in the order they came up and the order in which they
+ * went down is stored separately, so no sorting is needed in either end.
+ * Contacts that are still up when the run ends have down time
+ * Double.MAX_VALUE.</P>
+ *
+ * <P>The writer is enabled with the {@link #RECORD_S} setting in the
+ * {@value #CONTACT_PLAN_NS} namespace and the file is written when the
+ * simulation is done.</P>
+ *
+ * <P>The class can also be run as a program that converts the connection
+ * events of an external events file (e.g., created with
+ * ConnectivityONEReport) to a contact plan:</P>
+ * <PRE>
+ * java -cp target input.ContactPlanWriter &lt;input file&gt; &lt;output file&gt;
+ * </PRE>
+ *
+ * <P>File format (version {@value ContactPlanQueue#VERSION}, big-endian):</P>
+ * <PRE>
+ * header (24 bytes):
+ *   int magic ({@link ContactPlanQueue#MAGIC}), int version,
+ *   int number of contacts, int number of down events,
+ *   int number of strings, int (unused)
+ * contacts (28 bytes each, in up time order):
+ *   double up time, double down time, int initiator address,
+ *   int other address, int interface type string index (-1 for none)
+ * down order:
+ *   int contact index for each down event, in down time order
+ * strings:
+ *   int length and UTF-8 bytes of each interface type
+ * </PRE>
+ */
+public class ContactPlanWriter implements ConnectionListener, Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Namespace of the contact plan settings ({@value}) */
+	public static final String CONTACT_PLAN_NS = "ContactPlan";
+	/** File where the contacts of the run are recorded to -setting id
+	 * ({@value}). Value fillers (e.g., "%%Scenario.name%%") can be used. If
+	 * not defined, the contacts are not recorded. */
+	public static final String RECORD_S = "record";
+
+	/** How many events are read at once when converting files */
+	private static final int CONVERT_CHUNK = 10000;
+
+	private final String fileName;
+
+	private double[] upTimes;
+	private double[] downTimes;
+	private int[] initiators;
+	private int[] others;
+	private int[] interfaces;
+	private int nrofContacts;
+	private int[] downOrder;
+	private int nrofDowns;
+	private double lastTime;
+
+	/** contacts that are up and their indexes */
+	private Map<ContactKey, Integer> openContacts;
+	private Map<String, Integer> stringIndex;
+	private List<String> strings;
+
+	/**
+	 * Creates a writer
+	 * @param fileName Name of the file where the plan is written to
+	 */
+	public ContactPlanWriter(String fileName) {
+		this.fileName = fileName;
+		this.upTimes = new double[64];
+		this.downTimes = new double[64];
+		this.initiators = new int[64];
+		this.others = new int[64];
+		this.interfaces = new int[64];
+		this.downOrder = new int[64];
+		this.lastTime = Double.NEGATIVE_INFINITY;
+		this.openContacts = new HashMap<ContactKey, Integer>();
+		this.stringIndex = new HashMap<String, Integer>();
+		this.strings = new ArrayList<String>();
+	}
+
+	/**
+	 * Creates a writer if contact recording is defined in the settings
+	 * @return the writer or null if the contacts are not recorded
+	 */
+	public static ContactPlanWriter create() {
+		Settings s = new Settings(CONTACT_PLAN_NS);
+		if (!s.contains(RECORD_S)) {
+			return null;
+		}
+		return new ContactPlanWriter(s.valueFillString(
+				s.getSetting(RECORD_S)));
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		contactUp(SimClock.getTime(), host1.getAddress(),
+				host2.getAddress(), interfaceOf(host1, host2, true));
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		contactDown(SimClock.getTime(), host1.getAddress(),
+				host2.getAddress(), interfaceOf(host1, host2, false));
+	}
+
+	/**
+	 * Returns the type of the interface whose connection between the hosts
+	 * changed state
+	 * @param host1 The host that notified about the change
+	 * @param host2 The other host
+	 * @param up Was the connection set up (or torn down)
+	 * @return The interface type or null if it's not known
+	 */
+	private String interfaceOf(DTNHost host1, DTNHost host2, boolean up) {
+		List<NetworkInterface> net = host1.getInterfaces();
+		if (net.size() == 1) {
+			return net.get(0).getInterfaceType();
+		}
+		for (NetworkInterface ni : net) {
+			for (Connection con : ni.getConnections()) {
+				if (con.getOtherNode(host1) == host2 && con.isUp() == up &&
+						openContacts.containsKey(new ContactKey(
+						host1.getAddress(), host2.getAddress(),
+						intern(ni.getInterfaceType()))) != up) {
+					return ni.getInterfaceType();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a contact that comes up
+	 * @param time Time of the event
+	 * @param initiator Address of the host that initiated the contact
+	 * @param other Address of the other host
+	 * @param interfaceType Type of the interface or null if it's not known
+	 */
+	public void contactUp(double time, int initiator, int other,
+			String interfaceType) {
+		checkTime(time);
+		int iface = intern(interfaceType);
+		ContactKey key = new ContactKey(initiator, other, iface);
+		if (openContacts.containsKey(key)) {
+			return; // already up
+		}
+
+		if (nrofContacts == upTimes.length) {
+			int n = nrofContacts * 2;
+			upTimes = Arrays.copyOf(upTimes, n);
+			downTimes = Arrays.copyOf(downTimes, n);
+			initiators = Arrays.copyOf(initiators, n);
+			others = Arrays.copyOf(others, n);
+			interfaces = Arrays.copyOf(interfaces, n);
+		}
+		upTimes[nrofContacts] = time;
+		downTimes[nrofContacts] = Double.MAX_VALUE;
+		initiators[nrofContacts] = initiator;
+		others[nrofContacts] = other;
+		interfaces[nrofContacts] = iface;
+		openContacts.put(key, nrofContacts);
+		nrofContacts++;
+	}
+
+	/**
+	 * Ends a contact that is up
+	 * @param time Time of the event
+	 * @param host1 Address of one of the hosts
+	 * @param host2 Address of the other host
+	 * @param interfaceType Type of the interface or null if it's not known
+	 */
+	public void contactDown(double time, int host1, int host2,
+			String interfaceType) {
+		checkTime(time);
+		Integer index = openContacts.remove(new ContactKey(host1, host2,
+				intern(interfaceType)));
+		if (index == null) {
+			return; // wasn't up
+		}
+
+		downTimes[index] = time;
+		if (nrofDowns == downOrder.length) {
+			downOrder = Arrays.copyOf(downOrder, nrofDowns * 2);
+		}
+		downOrder[nrofDowns++] = index;
+	}
+
+	private void checkTime(double time) {
+		if (time < lastTime) {
+			throw new SimError("Contact at " + time + " is not in time order");
+		}
+		lastTime = time;
+	}
+
+	/**
+	 * Returns the index of the string in the string table, adding it there
+	 * if it's not there yet
+	 * @param s The string (or null)
+	 * @return Index of the string or -1 for null
+	 */
+	private int intern(String s) {
+		if (s == null) {
+			return -1;
+		}
+		Integer index = stringIndex.get(s);
+		if (index == null) {
+			index = strings.size();
+			strings.add(s);
+			stringIndex.put(s, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of contacts added so far
+	 * @return the number of contacts
+	 */
+	public int getNrofContacts() {
+		return this.nrofContacts;
+	}
+
+	/**
+	 * Writes the plan to the file
+	 * @throws SimError if the file can't be written
+	 */
+	public void write() {
+		File file = new File(fileName);
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file),
+						1 << 16))) {
+			out.writeInt(ContactPlanQueue.MAGIC);
+			out.writeInt(ContactPlanQueue.VERSION);
+			out.writeInt(nrofContacts);
+			out.writeInt(nrofDowns);
+			out.writeInt(strings.size());
+			out.writeInt(0);
+
+			for (int i=0; i < nrofContacts; i++) {
+				out.writeDouble(upTimes[i]);
+				out.writeDouble(downTimes[i]);
+				out.writeInt(initiators[i]);
+				out.writeInt(others[i]);
+				out.writeInt(interfaces[i]);
+			}
+			for (int i=0; i < nrofDowns; i++) {
+				out.writeInt(downOrder[i]);
+			}
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't write contact plan " + fileName, e);
+		}
+	}
+
+	/**
+	 * Converts the connection events of an external events file to a
+	 * contact plan. Other events are ignored.
+	 * @param inFile The events file (standard, binary or compact)
+	 * @param outFileName Name of the contact plan file
+	 * @return Number of contacts in the plan
+	 */
+	public static int convert(File inFile, String outFileName) {
+		ExternalEventsReader reader;
+		if (CompactEventsReader.isCompactEeFile(inFile)) {
+			reader = new CompactEventsReader(inFile);
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(inFile)) {
+			reader = new BinaryEventsReader(inFile);
+		}
+		else {
+			reader = new StandardEventsReader(inFile);
+		}
+
+		ContactPlanWriter writer = new ContactPlanWriter(outFileName);
+		List<ExternalEvent> events = reader.readEvents(CONVERT_CHUNK);
+		while (events.size() > 0) {
+			for (ExternalEvent ee : events) {
+				if (!(ee instanceof ConnectionEvent)) {
+					continue;
+				}
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				if (ce.isUp) {
+					writer.contactUp(ce.time, ce.fromAddr, ce.toAddr,
+							ce.interfaceId);
+				}
+				else {
+					writer.contactDown(ce.time, ce.fromAddr, ce.toAddr,
+							ce.interfaceId);
+				}
+			}
+			events = reader.readEvents(CONVERT_CHUNK);
+		}
+		reader.close();
+		writer.write();
+
+		return writer.nrofContacts;
+	}
+
+	/**
+	 * Converts an external events file to a contact plan
+	 * @param args input file and output file
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: ContactPlanWriter <input file> " +
+					"<output file>");
+			System.exit(1);
+		}
+		int nrof = convert(new File(args[0]), args[1]);
+		System.out.println("Wrote " + nrof + " contacts to " + args[1]);
+	}
+
+	/**
+	 * Key of a contact: the hosts (in any order) and the interface
+	 */
+	private static class ContactKey implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private final int host1;
+		private final int host2;
+		private final int iface;
+
+		private ContactKey(int a, int b, int iface) {
+			this.host1 = Math.min(a, b);
+			this.host2 = Math.max(a, b);
+			this.iface = iface;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof ContactKey)) {
+				return false;
+			}
+			ContactKey k = (ContactKey)o;
+			return host1 == k.host1 && host2 == k.host2 && iface == k.iface;
+		}
+
+		@Override
+		public int hashCode() {
+			return (host1 * 31 + host2) * 31 + iface;
+		}
+	}
+}
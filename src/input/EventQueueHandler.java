@@ -4,6 +4,7 @@
  */
 package input;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,7 +33,8 @@ import core.Settings;
  * is loaded when the name of the class is defined with
  * <code>CLASS_SETTING</code>.
  */
-public class EventQueueHandler  {
+public class EventQueueHandler implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Event queue settings main namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "Events";
 	/** number of event queues -setting id ({@value})*/
@@ -12,7 +12,9 @@ import core.Settings;
 
 /**
  * Queue of external events. This class also takes care of buffering
- * the events and preloading only a proper amount of them.
+ * the events and preloading only a proper amount of them. Compact events
+ * files ({@link CompactEventsReader#COMPACT_EXT}) are read directly from the
+ * memory mapped file without preloading.
  */
 public class ExternalEventsQueue implements EventQueue {
 	/** ExternalEvents namespace ({@value})*/
@@ -27,6 +29,7 @@ public class ExternalEventsQueue implements EventQueue {
 
 	private File eventsFile;
 	private ExternalEventsReader reader;
+	private CompactEventsReader compactReader;
 	private int nextEventIndex;
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
@@ -36,9 +39,11 @@ public class ExternalEventsQueue implements EventQueue {
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * the file is assumed to be a binary file and if it ends with
+	 * {@link CompactEventsReader#COMPACT_EXT} a compact events file.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
+	 * @see CompactEventsWriter
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
@@ -77,6 +82,11 @@ public class ExternalEventsQueue implements EventQueue {
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
 
+		if (CompactEventsReader.isCompactEeFile(eventsFile)) {
+			this.compactReader = new CompactEventsReader(eventsFile);
+			return; // events are read straight from the file
+		}
+
 		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
@@ -94,6 +104,9 @@ public class ExternalEventsQueue implements EventQueue {
 	 * @return Next event's time
 	 */
 	public double nextEventsTime() {
+		if (compactReader != null) {
+			return compactReader.nextEventsTime();
+		}
 		if (eventsLeftInBuffer() <= 0 ) {
 			// in case user request time of an event that doesn't exist
 			return Double.MAX_VALUE;
@@ -105,10 +118,14 @@ public class ExternalEventsQueue implements EventQueue {
 
 	/**
 	 * Returns the next event in the queue or ExternalEvent with time of
-	 * double.MAX_VALUE if there are no events left
+	 * double.MAX_VALUE if there are no events left. Events of compact
+	 * events files are valid only until the next call.
 	 * @return The next event
 	 */
 	public ExternalEvent nextEvent() {
+		if (compactReader != null) {
+			return compactReader.nextEvent();
+		}
 		if (queue.size() == 0) { // no more events
 			return new ExternalEvent(Double.MAX_VALUE);
 		}
@@ -126,10 +143,14 @@ public class ExternalEventsQueue implements EventQueue {
 
 	/**
 	 * Returns the amount of events left in the buffer at the moment
-	 * (the amount can increase later if more events are read).
+	 * (the amount can increase later if more events are read). For compact
+	 * events files, all events left in the file are in the buffer.
 	 * @return The amount of events left or 0 there aren't any events
 	 */
 	public int eventsLeftInBuffer() {
+		if (compactReader != null) {
+			return (int)Math.min(Integer.MAX_VALUE, compactReader.eventsLeft());
+		}
 		if (queue == null || queue.size() == 0) {
 			return 0;
 		}
@@ -4,8 +4,10 @@
  */
 package input;
 
+import java.io.Serializable;
 import java.util.Random;
 
+import core.RandomStreams;
 import core.Settings;
 import core.SettingsError;
 
@@ -14,7 +16,8 @@ import core.SettingsError;
  * message creation patterns whose message size and inter-message intervals can
  * be configured.
  */
-public class MessageEventGenerator implements EventQueue {
+public class MessageEventGenerator implements EventQueue, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Message size range -setting id ({@value}). Can be either a single
 	 * value or a range (min, max) of uniformly distributed random values.
 	 * Defines the message size (bytes). */
@@ -91,7 +94,14 @@ public class MessageEventGenerator implements EventQueue {
 		}
 
 		/* if prefix is unique, so will be the rng's sequence */
-		this.rng = new Random(idPrefix.hashCode());
+		RandomStreams streams = RandomStreams.current();
+		if (streams.isSeeded()) {
+			this.rng = streams.random(RandomStreams.MESSAGE_GENERATOR_STREAM,
+					idPrefix.hashCode());
+		}
+		else {
+			this.rng = new Random(idPrefix.hashCode());
+		}
 
 		if (this.sizeRange.length == 1) {
 			/* convert single value to range with 0 length */
@@ -4,6 +4,7 @@
  */
 package input;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,7 +13,8 @@ import java.util.List;
  * at the specified simulation time. Multiple updates at the same time
  * are merged to a single update.
  */
-public class ScheduledUpdatesQueue implements EventQueue {
+public class ScheduledUpdatesQueue implements EventQueue, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Time of the event (simulated seconds) */
 	private ExternalEvent nextEvent;
 	private List<ExternalEvent> updates;
@@ -7,6 +7,8 @@ import core.Settings;
  */
 public class SingleMessageGenerator
 extends MessageEventGenerator {
+	private static final long serialVersionUID = 42L;
+
   /**
    * Constructor, initializes the interval between events,
    * and the size of messages generated, as well as number
@@ -4,6 +4,7 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -13,6 +14,7 @@ import movement.MovementModel;
 import core.Coord;
 import core.DTNSim;
 import core.NetworkInterface;
+import core.RunContext;
 import core.Settings;
 import core.SettingsError;
 import core.World;
@@ -40,6 +42,7 @@ import core.World;
  * from zero to conserve memory.
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Cell based optimization cell size multiplier -setting id ({@value}).
@@ -59,11 +62,6 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	private int cellSize;
 	private int rows;
 	private int cols;
-	private static int worldSizeX;
-	private static int worldSizeY;
-	private static int cellSizeMultiplier;
-
-	static HashMap<Integer,ConnectivityGrid> gridobjects;
 
 	static {
 		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
@@ -71,33 +69,31 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 	public static void reset() {
-		gridobjects = new HashMap<Integer, ConnectivityGrid>();
-
-		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
-		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
-		worldSizeX = worldSize[0];
-		worldSizeY = worldSize[1];
+		RunContext.current().put(ConnectivityGrid.class, new GridObjects());
+	}
 
-		s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);
-		if (s.contains(CELL_SIZE_MULT_S)) {
-			cellSizeMultiplier = s.getInt(CELL_SIZE_MULT_S);
-		}
-		else {
-			cellSizeMultiplier = DEF_CON_CELL_SIZE_MULT;
-		}
-		if (cellSizeMultiplier < 1) {
-			throw new SettingsError("Too small value (" + cellSizeMultiplier +
-					") for " + World.OPTIMIZATION_SETTINGS_NS +
-					"." + CELL_SIZE_MULT_S);
+	/**
+	 * Returns the grid objects of the current run
+	 * @return the grid objects of the current run
+	 */
+	static GridObjects getGridObjects() {
+		RunContext context = RunContext.current();
+		GridObjects grids = (GridObjects)context.get(ConnectivityGrid.class);
+		if (grids == null) {
+			grids = new GridObjects();
+			context.put(ConnectivityGrid.class, grids);
 		}
+		return grids;
 	}
 
 	/**
 	 * Creates a new overlay connectivity grid
 	 * @param cellSize Cell's edge's length (must be larger than the largest
 	 * 	radio coverage's diameter)
+	 * @param worldSizeX Width of the world
+	 * @param worldSizeY Height of the world
 	 */
-	private ConnectivityGrid(int cellSize) {
+	private ConnectivityGrid(int cellSize, int worldSizeX, int worldSizeY) {
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
 		// leave empty cells on both sides to make neighbor search easier
@@ -121,13 +117,15 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public static ConnectivityGrid ConnectivityGridFactory(int key,
 			double maxRange) {
-		if (gridobjects.containsKey((Integer)key)) {
-			return (ConnectivityGrid)gridobjects.get((Integer)key);
+		GridObjects grids = getGridObjects();
+		if (grids.gridobjects.containsKey((Integer)key)) {
+			return (ConnectivityGrid)grids.gridobjects.get((Integer)key);
 		} else {
 			ConnectivityGrid newgrid =
 				new ConnectivityGrid((int)Math.ceil(maxRange *
-						cellSizeMultiplier));
-			gridobjects.put((Integer)key,newgrid);
+						grids.cellSizeMultiplier),
+						grids.worldSizeX, grids.worldSizeY);
+			grids.gridobjects.put((Integer)key,newgrid);
 			return newgrid;
 		}
 	}
@@ -264,7 +262,9 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * A single cell in the cell grid. Contains the interfaces that are
 	 * currently in that part of the grid.
 	 */
-	public class GridCell {
+	public class GridCell implements Serializable {
+		private static final long serialVersionUID = 42L;
+
 		// how large array is initially chosen
 		private static final int EXPECTED_INTERFACE_COUNT = 5;
 		private ArrayList<NetworkInterface> interfaces;
@@ -320,4 +320,40 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		}
 	}
 
+
+	/**
+	 * Connectivity grids and the grid settings of a simulation run
+	 */
+	static class GridObjects implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private HashMap<Integer,ConnectivityGrid> gridobjects;
+		HashMap<Integer,PackedConnectivityGrid> packedGrids;
+		int worldSizeX;
+		int worldSizeY;
+		int cellSizeMultiplier;
+
+		private GridObjects() {
+			gridobjects = new HashMap<Integer, ConnectivityGrid>();
+			packedGrids = new HashMap<Integer, PackedConnectivityGrid>();
+
+			Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+			int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+			worldSizeX = worldSize[0];
+			worldSizeY = worldSize[1];
+
+			s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);
+			if (s.contains(CELL_SIZE_MULT_S)) {
+				cellSizeMultiplier = s.getInt(CELL_SIZE_MULT_S);
+			}
+			else {
+				cellSizeMultiplier = DEF_CON_CELL_SIZE_MULT;
+			}
+			if (cellSizeMultiplier < 1) {
+				throw new SettingsError("Too small value (" +
+						cellSizeMultiplier + ") for " +
+						World.OPTIMIZATION_SETTINGS_NS +
+						"." + CELL_SIZE_MULT_S);
+			}
+		}
+	}
 }
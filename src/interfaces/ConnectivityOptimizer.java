@@ -4,6 +4,7 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.Collection;
 
 import core.NetworkInterface;
@@ -12,7 +13,8 @@ import core.NetworkInterface;
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
-abstract public class ConnectivityOptimizer {
+abstract public class ConnectivityOptimizer implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -30,6 +32,19 @@ abstract public class ConnectivityOptimizer {
 	 */
 	abstract public void updateLocation(NetworkInterface ni);
 
+	/**
+	 * Returns the time until which {@link #updateLocation(NetworkInterface)}
+	 * doesn't need to be called for the interface if its location doesn't
+	 * change. This implementation returns positive infinity (the location is
+	 * all that matters).
+	 * @param ni The interface
+	 * @return The time until which the update call is not needed (a time
+	 * that is not after the current time if the call is needed now)
+	 */
+	public double getIdleEndTime(NetworkInterface ni) {
+		return Double.POSITIVE_INFINITY;
+	}
+
 	/**
 	 * Finds all network interfaces that might be located so that they can be
 	 * connected with the network interface
@@ -40,9 +55,40 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Calls the visitor for every network interface that might be located so
+	 * that it can be connected with the network interface. The default
+	 * implementation iterates over {@link #getNearInterfaces(NetworkInterface)};
+	 * optimizers that can visit the interfaces without creating a collection
+	 * should override this.
+	 * @param ni network interface that needs to be connected
+	 * @param visitor The visitor to call for every interface within proximity
+	 */
+	public void visitNearInterfaces(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		for (NetworkInterface other : getNearInterfaces(ni)) {
+			visitor.visit(other);
+		}
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
 	 */
 	abstract public Collection<NetworkInterface> getAllInterfaces();
+
+	/**
+	 * Interface for classes that want to go through the near interfaces
+	 * of an interface. Visitors are serializable, so interfaces that keep
+	 * their visitor in a field can be checkpointed.
+	 * @see ConnectivityOptimizer#visitNearInterfaces(NetworkInterface,
+	 * InterfaceVisitor)
+	 */
+	public interface InterfaceVisitor extends Serializable {
+		/**
+		 * Called for every near interface
+		 * @param ni The near interface
+		 */
+		public void visit(NetworkInterface ni);
+	}
 }
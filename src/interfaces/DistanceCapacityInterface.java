@@ -17,6 +17,7 @@ import core.VBRConnection;
  * values using setting {@link #TRANSMIT_SPEEDS_S}.
  */
 public class DistanceCapacityInterface extends NetworkInterface {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Comma-separated list of speed values -setting id ({@value} ). The first
@@ -60,7 +61,8 @@ public class DistanceCapacityInterface extends NetworkInterface {
 				&& anotherInterface.getHost().isRadioActive()
 				&& isWithinRange(anotherInterface)
 				&& !isConnected(anotherInterface)
-				&& (this != anotherInterface)) {
+				&& (this != anotherInterface)
+				&& isContactAccepted(anotherInterface)) {
 
 			Connection con = new VBRConnection(this.host, this,
 					anotherInterface.getHost(), anotherInterface);
@@ -95,8 +97,7 @@ public class DistanceCapacityInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
+		Collection<NetworkInterface> interfaces = getNearInterfaces();
 		for (NetworkInterface i : interfaces) {
 			connect(i);
 		}
@@ -113,13 +114,23 @@ public class DistanceCapacityInterface extends NetworkInterface {
 	 * @param anotherInterface The interface to create the connection to
 	 */
 	public void createConnection(NetworkInterface anotherInterface) {
-		if (!isConnected(anotherInterface) && (this != anotherInterface)) {
-			Connection con = new VBRConnection(this.host, this,
-					anotherInterface.getHost(), anotherInterface);
-			connect(con,anotherInterface);
+		if (!isConnected(anotherInterface) && (this != anotherInterface)
+				&& isContactAccepted(anotherInterface)) {
+			connect(newConnection(anotherInterface), anotherInterface);
 		}
 	}
 
+	/**
+	 * Returns a new variable bit-rate connection to another interface
+	 * @param anotherInterface The interface the connection is made to
+	 * @return The new connection object
+	 */
+	@Override
+	protected Connection newConnection(NetworkInterface anotherInterface) {
+		return new VBRConnection(this.host, this, anotherInterface.getHost(),
+				anotherInterface);
+	}
+
 	/**
 	 * Returns the transmit speed to another interface based on the
 	 * distance to this interface
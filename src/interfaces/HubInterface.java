@@ -19,6 +19,7 @@ import java.util.Set;
  */
 public class HubInterface
 extends SimpleBroadcastInterface {
+	private static final long serialVersionUID = 42L;
 
   //=============================================================================//
   // Settings
@@ -46,7 +47,8 @@ extends SimpleBroadcastInterface {
         && isWithinRange(anotherInterface)
         && !isConnected(anotherInterface)
         && (this != anotherInterface)
-        && this.isHubConnection( anotherInterface ) ) {
+        && this.isHubConnection( anotherInterface )
+        && isContactAccepted( anotherInterface ) ) {
 
       // new contact within range
       // connection speed is the lower one of the two speeds
@@ -18,6 +18,8 @@ import core.VBRConnection;
  * transmissions. The configured transmit speed is the maximum obtainable speed.
  */
 public class InterferenceLimitedInterface extends NetworkInterface {
+	private static final long serialVersionUID = 42L;
+
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
 
@@ -63,7 +65,8 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 				&& anotherInterface.getHost().isRadioActive()
 				&& isWithinRange(anotherInterface)
 				&& !isConnected(anotherInterface)
-				&& (this != anotherInterface)) {
+				&& (this != anotherInterface)
+				&& isContactAccepted(anotherInterface)) {
 			// new contact within range
 
 			Connection con = new VBRConnection(this.host, this,
@@ -98,8 +101,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
+		Collection<NetworkInterface> interfaces = getNearInterfaces();
 		for (NetworkInterface i : interfaces)
 			connect(i);
 
@@ -139,15 +141,23 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 	 * @param anotherInterface The interface to create the connection to
 	 */
 	public void createConnection(NetworkInterface anotherInterface) {
-		if (!isConnected(anotherInterface) && (this != anotherInterface)) {
-			// new contact within range
-
-			Connection con = new VBRConnection(this.host, this,
-					anotherInterface.getHost(), anotherInterface);
-			connect(con,anotherInterface);
+		if (!isConnected(anotherInterface) && (this != anotherInterface)
+				&& isContactAccepted(anotherInterface)) {
+			connect(newConnection(anotherInterface), anotherInterface);
 		}
 	}
 
+	/**
+	 * Returns a new variable bit-rate connection to another interface
+	 * @param anotherInterface The interface the connection is made to
+	 * @return The new connection object
+	 */
+	@Override
+	protected Connection newConnection(NetworkInterface anotherInterface) {
+		return new VBRConnection(this.host, this, anotherInterface.getHost(),
+				anotherInterface);
+	}
+
 	/**
 	 * Returns true if this interface is actually transmitting data
 	 */
@@ -0,0 +1,459 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.RunContext;
+import core.SimClock;
+
+/**
+ * <P>
+ * Event driven (kinetic) connectivity optimizer. Instead of checking the
+ * proximity of the interfaces on every update, the optimizer computes for
+ * every pair of interfaces the time when the pair will next enter or leave
+ * the radio range, assuming that both nodes keep moving along their current
+ * linear movement segment (see {@link DTNHost#getSegmentVersion()}). The
+ * times are kept in a priority queue and a pair is re-checked only when its
+ * time has come, or when either of the nodes changes its movement segment
+ * (gets a new waypoint, starts waiting, stops or changes its range).</P>
+ *
+ * <P>{@link #getNearInterfaces(NetworkInterface)} returns the interfaces
+ * that are currently within range of the given interface, so the cost of
+ * an update is proportional to the number of contacts and movement changes
+ * instead of the number of nodes in the world. The in-range state of a pair
+ * is always confirmed from the actual node locations when the pair is
+ * re-checked, so predictions that are off because of rounding errors are
+ * corrected on the next update.</P>
+ *
+ * <P>The checks of a pair that are scheduled before either of its nodes
+ * changes movement are left in the queue and skipped when their time comes.
+ * The queue is pruned of such checks whenever they might make up more than
+ * half of it, so its size stays proportional to the number of pairs that
+ * are approaching or within range.</P>
+ *
+ * <P>The optimizer is enabled with the {@link #KINETIC_CONTACTS_S} setting
+ * in the {@link core.World#OPTIMIZATION_SETTINGS_NS} namespace.</P>
+ */
+public class KineticContactOptimizer extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Kinetic contacts -setting id ({@value}). Boolean (true/false) variable
+	 * in the optimization namespace. If true, the {@link
+	 * KineticContactOptimizer} is used instead of the {@link
+	 * ConnectivityGrid}. Default is false.
+	 */
+	public static final String KINETIC_CONTACTS_S = "kineticContacts";
+
+	/** all interfaces in the order they were added */
+	private List<NetworkInterface> interfaces;
+	/** state of the interfaces */
+	private List<Slot> slots;
+	private HashMap<NetworkInterface, Slot> slotMap;
+	/** upcoming pair re-checks */
+	private PriorityQueue<PairEvent> events;
+	/** upper bound for the number of invalid re-checks in the queue */
+	private int staleEvents;
+	/** slots whose movement changed in the current update */
+	private List<Slot> changed;
+	/** sim time of the last update or NaN if not updated yet */
+	private double lastUpdate;
+	private int updateRound;
+
+	/**
+	 * Creates a new optimizer
+	 */
+	private KineticContactOptimizer() {
+		this.interfaces = new ArrayList<NetworkInterface>();
+		this.slots = new ArrayList<Slot>();
+		this.slotMap = new HashMap<NetworkInterface, Slot>();
+		this.events = new PriorityQueue<PairEvent>();
+		this.staleEvents = 0;
+		this.changed = new ArrayList<Slot>();
+		this.lastUpdate = Double.NaN;
+		this.updateRound = 0;
+	}
+
+	/**
+	 * Returns the kinetic optimizer of the current run for the given key
+	 * (creates a new one if it didn't exist).
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @return The optimizer for the given key
+	 */
+	@SuppressWarnings("unchecked")
+	public static KineticContactOptimizer getInstance(int key) {
+		RunContext context = RunContext.current();
+		HashMap<Integer, KineticContactOptimizer> optimizers =
+			(HashMap<Integer, KineticContactOptimizer>)context.get(
+					KineticContactOptimizer.class);
+		if (optimizers == null) {
+			optimizers = new HashMap<Integer, KineticContactOptimizer>();
+			context.put(KineticContactOptimizer.class, optimizers);
+		}
+
+		KineticContactOptimizer kco = optimizers.get(key);
+		if (kco == null) {
+			kco = new KineticContactOptimizer();
+			optimizers.put(key, kco);
+		}
+		return kco;
+	}
+
+	/**
+	 * Adds a network interface to the optimizer (unless it is already present)
+	 * @param ni The interface to add
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (slotMap.containsKey(ni)) {
+			return;
+		}
+		Slot s = new Slot(ni, slots.size());
+		slots.add(s);
+		slotMap.put(ni, s);
+		interfaces.add(ni);
+	}
+
+	/**
+	 * Adds a collection of network interfaces to the optimizer
+	 * @param interfaces The collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface ni : interfaces) {
+			addInterface(ni);
+		}
+	}
+
+	/**
+	 * Brings the contact state of all interfaces up to date with the current
+	 * simulation time. Nothing is done if the state is already up to date.
+	 * @param ni The interface whose location may have changed
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		double now = SimClock.getTime();
+		if (now == lastUpdate) {
+			return;
+		}
+		lastUpdate = now;
+		updateRound++;
+
+		// find out whose movement segments have changed
+		changed.clear();
+		for (Slot s : slots) {
+			if (s.refresh(now)) {
+				s.changedRound = updateRound;
+				changed.add(s);
+				staleEvents += s.liveEvents; // those are now invalid
+				s.liveEvents = 0;
+			}
+		}
+
+		// pairs with a changed node must be predicted again
+		for (Slot a : changed) {
+			for (Slot b : slots) {
+				if (b == a || (b.changedRound == updateRound &&
+						b.index < a.index)) {
+					continue; // same slot or pair already checked
+				}
+				check(a, b, now);
+			}
+		}
+
+		// re-check the pairs whose predicted time has come
+		while (!events.isEmpty() && events.peek().time <= now) {
+			PairEvent e = events.poll();
+			if (e.isValid()) {
+				e.a.liveEvents--;
+				e.b.liveEvents--;
+				check(e.a, e.b, now);
+			}
+			else {
+				staleEvents--;
+			}
+		}
+
+		if (staleEvents > events.size() / 2) {
+			pruneEvents();
+		}
+	}
+
+	/**
+	 * Removes the re-checks that have been invalidated by movement changes
+	 * from the queue
+	 */
+	private void pruneEvents() {
+		for (Iterator<PairEvent> i = events.iterator(); i.hasNext(); ) {
+			if (!i.next().isValid()) {
+				i.remove();
+			}
+		}
+		staleEvents = 0;
+	}
+
+	/**
+	 * Returns the number of pair re-checks in the queue, including the ones
+	 * that have been invalidated but not pruned yet
+	 * @return the number of scheduled re-checks
+	 */
+	public int getNrofScheduledChecks() {
+		return events.size();
+	}
+
+	/**
+	 * Returns the end of the current time instant if the state has already
+	 * been brought up to date with it (by any of the interfaces). The state
+	 * must be brought up to date on every update round.
+	 * @param ni The interface
+	 * @return The time until which the update call is not needed
+	 */
+	@Override
+	public double getIdleEndTime(NetworkInterface ni) {
+		double now = SimClock.getTime();
+		return now == lastUpdate ? Math.nextUp(now) : Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the interfaces that are within range of the given interface
+	 * @param ni The interface whose neighbors are requested
+	 * @return A read-only collection of the interfaces within range
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		Slot s = slotMap.get(ni);
+		if (s == null) {
+			return Collections.emptyList();
+		}
+		return s.readOnlyInRange;
+	}
+
+	/**
+	 * Returns all interfaces of this optimizer
+	 * @return all interfaces of this optimizer
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return this.interfaces;
+	}
+
+	/**
+	 * Checks if a pair is within range, updates the contact state and
+	 * schedules the next check for the pair
+	 * @param a The first slot of the pair
+	 * @param b The second slot of the pair
+	 * @param now Current sim time
+	 */
+	private void check(Slot a, Slot b, double now) {
+		Coord la = a.ni.getHost().getLocation();
+		Coord lb = b.ni.getHost().getLocation();
+		double range = Math.min(a.range, b.range);
+		boolean inRange = la.distance(lb) <= range;
+
+		setInRange(a, b, inRange);
+
+		double next = nextChange(lb.getX() - la.getX(), lb.getY() - la.getY(),
+				b.vx - a.vx, b.vy - a.vy, range, inRange);
+		if (Double.isInfinite(next)) {
+			return; // the state of the pair won't change on these segments
+		}
+
+		double time = now + next;
+		if (time <= now) {
+			time = Math.nextUp(now); // check again on the next update
+		}
+		if (time <= a.segmentEnd && time <= b.segmentEnd) {
+			events.add(new PairEvent(time, a, b));
+			a.liveEvents++;
+			b.liveEvents++;
+		} // else one of the nodes changes segment first -> pair is re-checked
+	}
+
+	/**
+	 * Returns the time after which two nodes with the given relative location
+	 * and velocity cross the range
+	 * @param dx Relative x-coordinate
+	 * @param dy Relative y-coordinate
+	 * @param dvx Relative speed in x-direction
+	 * @param dvy Relative speed in y-direction
+	 * @param range The range
+	 * @param inRange Are the nodes currently within range
+	 * @return Time (seconds from now) when the nodes leave the range (if
+	 * inRange is true) or enter the range (if false), or positive infinity
+	 * if that never happens
+	 */
+	private static double nextChange(double dx, double dy, double dvx,
+			double dvy, double range, boolean inRange) {
+		// solve |d + dv*t| = range for t
+		double a = dvx * dvx + dvy * dvy;
+		if (a == 0) {
+			return Double.POSITIVE_INFINITY; // no relative movement
+		}
+		double b = 2 * (dx * dvx + dy * dvy);
+		double c = dx * dx + dy * dy - range * range;
+		double disc = b * b - 4 * a * c;
+		if (disc < 0) {
+			// never within range (if in range now, it's a rounding error)
+			return inRange ? 0 : Double.POSITIVE_INFINITY;
+		}
+
+		double sqrtDisc = Math.sqrt(disc);
+		double enter = (-b - sqrtDisc) / (2 * a);
+		double leave = (-b + sqrtDisc) / (2 * a);
+
+		if (inRange) {
+			return leave > 0 ? leave : 0;
+		}
+		else if (enter > 0) {
+			return enter;
+		}
+		else {
+			// moving away (or inside the range because of rounding errors)
+			return leave < 0 ? Double.POSITIVE_INFINITY : 0;
+		}
+	}
+
+	/**
+	 * Sets the in-range state of a pair of slots
+	 * @param a The first slot
+	 * @param b The second slot
+	 * @param inRange True if the slots are within range
+	 */
+	private void setInRange(Slot a, Slot b, boolean inRange) {
+		boolean wasInRange = a.inRange.contains(b.ni);
+		if (inRange && !wasInRange) {
+			a.inRange.add(b.ni);
+			b.inRange.add(a.ni);
+		}
+		else if (!inRange && wasInRange) {
+			a.inRange.remove(b.ni);
+			b.inRange.remove(a.ni);
+		}
+	}
+
+	/**
+	 * Movement and contact state of one interface
+	 */
+	private static class Slot implements Serializable {
+		private static final long serialVersionUID = 42L;
+
+		private final NetworkInterface ni;
+		private final int index;
+		private final List<NetworkInterface> inRange;
+		private final Collection<NetworkInterface> readOnlyInRange;
+		/** incremented when the movement state of the slot changes */
+		private int epoch;
+		/** number of re-checks scheduled for the slot in this epoch */
+		private int liveEvents;
+		private int changedRound;
+
+		private int segmentVersion;
+		private boolean active;
+		private double range;
+		private double vx;
+		private double vy;
+		/** sim time when the node reaches its current destination */
+		private double segmentEnd;
+
+		private Slot(NetworkInterface ni, int index) {
+			this.ni = ni;
+			this.index = index;
+			this.inRange = new ArrayList<NetworkInterface>();
+			this.readOnlyInRange = Collections.unmodifiableList(inRange);
+			this.epoch = 0;
+			this.changedRound = -1;
+			this.segmentVersion = -1; // forces refresh on the first update
+		}
+
+		/**
+		 * Refreshes the movement state of the slot if the node's movement
+		 * segment, activity, or the range has changed
+		 * @param now Current sim time
+		 * @return True if the state changed
+		 */
+		private boolean refresh(double now) {
+			DTNHost host = ni.getHost();
+			int version = host.getSegmentVersion();
+			boolean isActive = host.isMovementActive();
+			double r = ni.getTransmitRange();
+
+			if (version == segmentVersion && isActive == active &&
+					r == range) {
+				return false;
+			}
+
+			this.segmentVersion = version;
+			this.active = isActive;
+			this.range = r;
+			this.epoch++;
+
+			Coord loc = host.getLocation();
+			Coord dest = host.getDestination();
+			double dist = dest == null ? 0 : loc.distance(dest);
+			double speed = host.getSpeed();
+
+			if (isActive && dist > 0 && speed > 0) {
+				this.vx = (dest.getX() - loc.getX()) / dist * speed;
+				this.vy = (dest.getY() - loc.getY()) / dist * speed;
+				this.segmentEnd = now + dist / speed;
+			}
+			else {
+				this.vx = 0;
+				this.vy = 0;
+				this.segmentEnd = Double.POSITIVE_INFINITY;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Scheduled re-check of a pair of slots
+	 */
+	private static class PairEvent implements Comparable<PairEvent>,
+			Serializable {
+		private static final long serialVersionUID = 42L;
+
+		private final double time;
+		private final Slot a;
+		private final Slot b;
+		private final int epochA;
+		private final int epochB;
+
+		private PairEvent(double time, Slot a, Slot b) {
+			this.time = time;
+			this.a = a;
+			this.b = b;
+			this.epochA = a.epoch;
+			this.epochB = b.epoch;
+		}
+
+		/**
+		 * Returns true if neither of the slots has changed its movement
+		 * since this event was created
+		 * @return true if the event is still valid
+		 */
+		private boolean isValid() {
+			return a.epoch == epochA && b.epoch == epochB;
+		}
+
+		public int compareTo(PairEvent other) {
+			if (this.time != other.time) {
+				return this.time < other.time ? -1 : 1;
+			}
+			if (this.a.index != other.a.index) {
+				return this.a.index - other.a.index;
+			}
+			return this.b.index - other.b.index;
+		}
+	}
+}
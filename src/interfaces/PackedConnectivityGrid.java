@@ -0,0 +1,421 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.RandomAccess;
+
+import core.Coord;
+import core.NetworkInterface;
+
+/**
+ * <P>
+ * Overlay grid of the world that works like {@link ConnectivityGrid} but
+ * keeps its state in primitive arrays so that updating the locations and
+ * finding the near interfaces don't create any objects.</P>
+ *
+ * <P>Every interface gets an integer slot when it is added. The grid cells
+ * are stored in a flat array (with empty cells on all sides of the world)
+ * and every cell keeps the slots of its interfaces in an int array, in the
+ * order the interfaces entered the cell, so the near interfaces are returned
+ * in the same order as by {@link ConnectivityGrid}. The arrays only grow
+ * when a cell gets more interfaces than ever before.</P>
+ *
+ * <P>{@link #getNearInterfaces(NetworkInterface)} returns a view of a
+ * reusable per-interface buffer that is valid until the next call for the
+ * same interface. {@link #visitNearInterfaces(NetworkInterface,
+ * ConnectivityOptimizer.InterfaceVisitor)} goes through the cells directly
+ * without the buffer.</P>
+ *
+ * <P><strong>Note:</strong> this class does NOT support negative
+ * coordinates.</P>
+ */
+public class PackedConnectivityGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Packed grid -setting id ({@value}). Boolean (true/false) variable in
+	 * the {@link core.World#OPTIMIZATION_SETTINGS_NS} name space. If true,
+	 * this grid is used instead of the {@link ConnectivityGrid}.
+	 * Default is false.
+	 */
+	public static final String PACKED_GRID_S = "packedGrid";
+
+	/** how large cell array is initially chosen */
+	private static final int EXPECTED_INTERFACE_COUNT = 5;
+	/** how many interface slots are initially allocated */
+	private static final int INITIAL_SLOT_COUNT = 64;
+
+	private int cellSize;
+	private int rows;
+	private int cols;
+	/** width of a row in the flat cell array (including the empty cells) */
+	private int rowWidth;
+
+	/** interfaces by their slot */
+	private NetworkInterface[] interfaces;
+	private int nrofSlots;
+	private IdentityHashMap<NetworkInterface, Integer> slotOf;
+	/** index of the cell each slot is in */
+	private int[] cellOf;
+	/** slots of the interfaces in every cell */
+	private int[][] cellSlots;
+	/** number of interfaces in every cell */
+	private int[] cellCount;
+
+	/** near interface buffers and their views, by slot */
+	private NetworkInterface[][] nearBuffers;
+	private NearList[] nearLists;
+
+	/** view of the interfaces (recreated when restored from a checkpoint) */
+	private transient Collection<NetworkInterface> allInterfaces;
+
+	/**
+	 * Creates a new packed overlay connectivity grid
+	 * @param cellSize Cell's edge's length (must be larger than the largest
+	 * 	radio coverage's diameter)
+	 * @param worldSizeX Width of the world
+	 * @param worldSizeY Height of the world
+	 */
+	public PackedConnectivityGrid(int cellSize, int worldSizeX,
+			int worldSizeY) {
+		this.rows = worldSizeY/cellSize + 1;
+		this.cols = worldSizeX/cellSize + 1;
+		this.rowWidth = cols + 2;
+		this.cellSize = cellSize;
+
+		// leave empty cells on both sides to make neighbor search easier
+		int nrofCells = (rows + 2) * rowWidth;
+		this.cellSlots = new int[nrofCells][];
+		this.cellCount = new int[nrofCells];
+
+		this.interfaces = new NetworkInterface[INITIAL_SLOT_COUNT];
+		this.cellOf = new int[INITIAL_SLOT_COUNT];
+		this.nearBuffers = new NetworkInterface[INITIAL_SLOT_COUNT][];
+		this.nearLists = new NearList[INITIAL_SLOT_COUNT];
+		this.nrofSlots = 0;
+		this.slotOf = new IdentityHashMap<NetworkInterface, Integer>();
+		this.allInterfaces = Collections.unmodifiableCollection(
+				slotOf.keySet());
+	}
+
+	/**
+	 * Restores the grid from a checkpoint
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.allInterfaces = Collections.unmodifiableCollection(
+				slotOf.keySet());
+	}
+
+	/**
+	 * Returns a packed connectivity grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param maxRange Maximum range used by the radio technology using this
+	 *  connectivity grid.
+	 * @return The connectivity grid object for a specific interface
+	 */
+	public static PackedConnectivityGrid getInstance(int key,
+			double maxRange) {
+		ConnectivityGrid.GridObjects grids = ConnectivityGrid.getGridObjects();
+		PackedConnectivityGrid grid = grids.packedGrids.get(key);
+		if (grid == null) {
+			grid = new PackedConnectivityGrid((int)Math.ceil(maxRange *
+					grids.cellSizeMultiplier), grids.worldSizeX,
+					grids.worldSizeY);
+			grids.packedGrids.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Adds a network interface to the overlay grid (unless it is already
+	 * present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (slotOf.containsKey(ni)) {
+			return;
+		}
+		if (nrofSlots == interfaces.length) {
+			growSlots();
+		}
+
+		int slot = nrofSlots++;
+		interfaces[slot] = ni;
+		slotOf.put(ni, slot);
+		nearBuffers[slot] = new NetworkInterface[EXPECTED_INTERFACE_COUNT];
+		nearLists[slot] = new NearList(slot);
+
+		int cell = cellFromCoord(ni.getLocation());
+		cellOf[slot] = cell;
+		addToCell(slot, cell);
+	}
+
+	/**
+	 * Removes a network interface from the overlay grid. The interface in
+	 * the last slot is moved to the freed slot so that the slots stay
+	 * packed.
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		Integer slot = slotOf.remove(ni);
+		if (slot == null) {
+			return;
+		}
+		int s = slot;
+		removeFromCell(s, cellOf[s]);
+
+		int last = --nrofSlots;
+		if (s != last) {
+			int[] members = cellSlots[cellOf[last]];
+			for (int i=0, n = cellCount[cellOf[last]]; i < n; i++) {
+				if (members[i] == last) {
+					members[i] = s;
+					break;
+				}
+			}
+			interfaces[s] = interfaces[last];
+			cellOf[s] = cellOf[last];
+			nearBuffers[s] = nearBuffers[last];
+			nearLists[s] = new NearList(s);
+			slotOf.put(interfaces[s], s);
+		}
+		interfaces[last] = null;
+		nearBuffers[last] = null;
+		nearLists[last] = null;
+	}
+
+	/**
+	 * Adds interfaces to overlay grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's position in the grid
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		Integer slot = slotOf.get(ni);
+		if (slot == null) {
+			return;
+		}
+		int s = slot;
+		int oldCell = cellOf[s];
+		int newCell = cellFromCoord(ni.getLocation());
+
+		if (newCell != oldCell) {
+			addToCell(s, newCell);
+			removeFromCell(s, oldCell);
+			cellOf[s] = newCell;
+		}
+	}
+
+	/**
+	 * Returns all interfaces that are "near" (i.e., in neighboring grid cells)
+	 * and use the same technology and channel as the given interface.
+	 * The returned list is reused: it is valid only until the next call
+	 * for the same interface.
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @return List of near interfaces
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		Integer slot = slotOf.get(ni);
+		if (slot == null) {
+			return Collections.emptyList();
+		}
+		int s = slot;
+		int center = cellFromCoord(ni.getLocation());
+		NetworkInterface[] buffer = nearBuffers[s];
+		int count = 0;
+
+		for (int dRow = -1; dRow <= 1; dRow++) {
+			int rowStart = center + dRow * rowWidth;
+			for (int cell = rowStart - 1; cell <= rowStart + 1; cell++) {
+				int n = cellCount[cell];
+				if (n == 0) {
+					continue;
+				}
+				if (count + n > buffer.length) {
+					NetworkInterface[] larger = new NetworkInterface[
+						Math.max(buffer.length * 2, count + n)];
+					System.arraycopy(buffer, 0, larger, 0, count);
+					buffer = larger;
+					nearBuffers[s] = buffer;
+				}
+				int[] members = cellSlots[cell];
+				for (int i=0; i < n; i++) {
+					buffer[count++] = interfaces[members[i]];
+				}
+			}
+		}
+
+		NearList list = nearLists[s];
+		list.size = count;
+		return list;
+	}
+
+	/**
+	 * Calls the visitor for all interfaces that are "near" (i.e., in
+	 * neighboring grid cells) the given interface
+	 * @param ni The interface whose neighboring interfaces are visited
+	 * @param visitor The visitor to call
+	 */
+	@Override
+	public void visitNearInterfaces(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		if (!slotOf.containsKey(ni)) {
+			return;
+		}
+		int center = cellFromCoord(ni.getLocation());
+
+		for (int dRow = -1; dRow <= 1; dRow++) {
+			int rowStart = center + dRow * rowWidth;
+			for (int cell = rowStart - 1; cell <= rowStart + 1; cell++) {
+				int[] members = cellSlots[cell];
+				for (int i=0, n = cellCount[cell]; i < n; i++) {
+					visitor.visit(interfaces[members[i]]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return this.allInterfaces;
+	}
+
+	/**
+	 * Returns the index of the cell having the specific coordinates
+	 * @param c Coordinates
+	 * @return The index of the cell
+	 */
+	private int cellFromCoord(Coord c) {
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " +
+		c + " is out of world's bounds";
+
+		return row * rowWidth + col;
+	}
+
+	/**
+	 * Adds a slot to the end of a cell
+	 * @param slot The slot to add
+	 * @param cell Index of the cell
+	 */
+	private void addToCell(int slot, int cell) {
+		int[] members = cellSlots[cell];
+		int n = cellCount[cell];
+		if (members == null) {
+			members = new int[EXPECTED_INTERFACE_COUNT];
+			cellSlots[cell] = members;
+		}
+		else if (n == members.length) {
+			int[] larger = new int[members.length * 2];
+			System.arraycopy(members, 0, larger, 0, n);
+			members = larger;
+			cellSlots[cell] = members;
+		}
+		members[n] = slot;
+		cellCount[cell] = n + 1;
+	}
+
+	/**
+	 * Removes a slot from a cell keeping the order of the other slots
+	 * @param slot The slot to remove
+	 * @param cell Index of the cell
+	 */
+	private void removeFromCell(int slot, int cell) {
+		int[] members = cellSlots[cell];
+		int n = cellCount[cell];
+		for (int i=0; i < n; i++) {
+			if (members[i] == slot) {
+				System.arraycopy(members, i + 1, members, i, n - i - 1);
+				cellCount[cell] = n - 1;
+				return;
+			}
+		}
+		assert false : "interface " + interfaces[slot] +
+			" not found from cell " + cell;
+	}
+
+	/**
+	 * Doubles the size of the slot arrays
+	 */
+	private void growSlots() {
+		int size = interfaces.length * 2;
+		NetworkInterface[] newInterfaces = new NetworkInterface[size];
+		int[] newCellOf = new int[size];
+		NetworkInterface[][] newBuffers = new NetworkInterface[size][];
+		NearList[] newLists = new NearList[size];
+
+		System.arraycopy(interfaces, 0, newInterfaces, 0, nrofSlots);
+		System.arraycopy(cellOf, 0, newCellOf, 0, nrofSlots);
+		System.arraycopy(nearBuffers, 0, newBuffers, 0, nrofSlots);
+		System.arraycopy(nearLists, 0, newLists, 0, nrofSlots);
+
+		this.interfaces = newInterfaces;
+		this.cellOf = newCellOf;
+		this.nearBuffers = newBuffers;
+		this.nearLists = newLists;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
+
+	/**
+	 * Read-only list view of the near interface buffer of a slot
+	 */
+	private class NearList extends AbstractList<NetworkInterface>
+			implements RandomAccess, Serializable {
+		private static final long serialVersionUID = 42L;
+		private final int slot;
+		private int size;
+
+		private NearList(int slot) {
+			this.slot = slot;
+			this.size = 0;
+		}
+
+		@Override
+		public NetworkInterface get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index +
+						", Size: " + size);
+			}
+			return nearBuffers[slot][index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -4,18 +4,25 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.CBRConnection;
 import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
+import interfaces.ConnectivityOptimizer.InterfaceVisitor;
 
 /**
  * A simple Network Interface that provides a constant bit-rate service, where
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	private static final long serialVersionUID = 42L;
+
+	/** tries to connect to every visited interface */
+	private final InterfaceVisitor connectVisitor = new InterfaceVisitor() {
+		public void visit(NetworkInterface ni) {
+			connect(ni);
+		}
+	};
 
 	/**
 	 * Reads the interface settings from the Settings file
@@ -46,7 +53,8 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 				&& anotherInterface.getHost().isRadioActive()
 				&& isWithinRange(anotherInterface)
 				&& !isConnected(anotherInterface)
-				&& (this != anotherInterface)) {
+				&& (this != anotherInterface)
+				&& isContactAccepted(anotherInterface)) {
 			// new contact within range
 			// connection speed is the lower one of the two speeds
 			int conSpeed = anotherInterface.getTransmitSpeed(this);
@@ -86,11 +94,10 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 				i++;
 			}
 		}
-		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
+		// Then find new possible connections (no contacts are accepted
+		// between the contact times, so the search can be skipped)
+		if (isContactTime()) {
+			visitNearInterfaces(connectVisitor);
 		}
 	}
 
@@ -100,16 +107,9 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 	 * @param anotherInterface The interface to create the connection to
 	 */
 	public void createConnection(NetworkInterface anotherInterface) {
-		if (!isConnected(anotherInterface) && (this != anotherInterface)) {
-			// connection speed is the lower one of the two speeds
-			int conSpeed = anotherInterface.getTransmitSpeed(this);
-			if (conSpeed > this.transmitSpeed) {
-				conSpeed = this.transmitSpeed;
-			}
-
-			Connection con = new CBRConnection(this.host, this,
-					anotherInterface.getHost(), anotherInterface, conSpeed);
-			connect(con,anotherInterface);
+		if (!isConnected(anotherInterface) && (this != anotherInterface)
+				&& isContactAccepted(anotherInterface)) {
+			connect(newConnection(anotherInterface), anotherInterface);
 		}
 	}
 
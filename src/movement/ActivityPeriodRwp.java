@@ -9,6 +9,7 @@ import core.SimClock;
  */
 public class ActivityPeriodRwp
 extends MovementModel {
+	private static final long serialVersionUID = 42L;
 
   //==========================================================================//
   // Settings
@@ -36,6 +37,11 @@ extends MovementModel {
     return ( curTime >= this.activeStart ) && ( curTime <= this.activeEnd );
   }
 
+  @Override
+  public boolean isAlwaysActive() {
+    return false;
+  }
+
   @Override
   public double nextPathAvailable() {
     final double curTime = SimClock.getTime();
@@ -79,8 +85,8 @@ extends MovementModel {
   }
 
   private Coord randomCoord() {
-    return new Coord( rng.nextDouble() * super.getMaxX(),
-                      rng.nextDouble() * super.getMaxY() );
+    return new Coord( getRandom().nextDouble() * super.getMaxX(),
+                      getRandom().nextDouble() * super.getMaxY() );
   }
   //==========================================================================//
 
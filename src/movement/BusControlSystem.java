@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -11,6 +12,7 @@ import java.util.List;
 import movement.map.SimMap;
 import core.Coord;
 import core.DTNSim;
+import core.RunContext;
 
 /**
  * This class controls busses and passengers that can use the bus.
@@ -19,11 +21,10 @@ import core.DTNSim;
  *
  * @author Frans Ekman
  */
-public class BusControlSystem {
+public class BusControlSystem implements Serializable {
+	private static final long serialVersionUID = 42L;
 	public static final String BUS_CONTROL_SYSTEM_NR = "busControlSystemNr";
 
-	private static HashMap<Integer, BusControlSystem> systems;
-
 	private HashMap<Integer, BusMovement> busses;
 	private HashMap<Integer, BusTravellerMovement> travellers;
 	private List<Coord> busStops;
@@ -46,7 +47,25 @@ public class BusControlSystem {
 	}
 
 	public static void reset() {
-		systems = new HashMap<Integer, BusControlSystem>();
+		RunContext.current().put(BusControlSystem.class,
+				new HashMap<Integer, BusControlSystem>());
+	}
+
+	/**
+	 * Returns the bus control systems of the current run
+	 * @return the bus control systems of the current run
+	 */
+	@SuppressWarnings("unchecked")
+	private static HashMap<Integer, BusControlSystem> getSystems() {
+		RunContext context = RunContext.current();
+		HashMap<Integer, BusControlSystem> systems =
+			(HashMap<Integer, BusControlSystem>)context.get(
+					BusControlSystem.class);
+		if (systems == null) {
+			systems = new HashMap<Integer, BusControlSystem>();
+			context.put(BusControlSystem.class, systems);
+		}
+		return systems;
 	}
 
 	/**
@@ -84,6 +103,7 @@ public class BusControlSystem {
 	 */
 	public static BusControlSystem getBusControlSystem(int systemID) {
 		Integer id = new Integer(systemID);
+		HashMap<Integer, BusControlSystem> systems = getSystems();
 
 		if (systems.containsKey(id)) {
 			return systems.get(id);
@@ -6,6 +6,7 @@ package movement;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import movement.map.MapNode;
 import core.Coord;
@@ -18,10 +19,11 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class BusMovement extends MapRouteMovement {
+	private static final long serialVersionUID = 42L;
 
 	private BusControlSystem controlSystem;
 	private int id;
-	private static int nextID = 0;
+	private static final AtomicInteger nextID = new AtomicInteger();
 	private boolean startMode;
 	private List<Coord> stops;
 
@@ -34,7 +36,7 @@ public class BusMovement extends MapRouteMovement {
 		int bcs = settings.getInt(BusControlSystem.BUS_CONTROL_SYSTEM_NR);
 		controlSystem = BusControlSystem.getBusControlSystem(bcs);
 		controlSystem.setMap(super.getMap());
-		this.id = nextID++;
+		this.id = nextID.getAndIncrement();
 		controlSystem.registerBus(this);
 		startMode = true;
 		stops = new LinkedList<Coord>();
@@ -52,7 +54,7 @@ public class BusMovement extends MapRouteMovement {
 	public BusMovement(BusMovement proto) {
 		super(proto);
 		this.controlSystem = proto.controlSystem;
-		this.id = nextID++;
+		this.id = nextID.getAndIncrement();
 		controlSystem.registerBus(this);
 		startMode = true;
 	}
@@ -4,8 +4,10 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
@@ -27,6 +29,7 @@ import core.Settings;
  */
 public class BusTravellerMovement extends MapBasedMovement implements
 	SwitchableMovement, TransportMovement {
+		private static final long serialVersionUID = 42L;
 
 	public static final String PROBABILITIES_STRING = "probs";
 	public static final String PROBABILITY_TAKE_OTHER_BUS = "probTakeOtherBus";
@@ -52,7 +55,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 
 	private boolean takeBus;
 
-	private static int nextID = 0;
+	private static final AtomicInteger nextID = new AtomicInteger();
 
 	/**
 	 * Creates a BusTravellerModel
@@ -62,7 +65,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		super(settings);
 		int bcs = settings.getInt(BusControlSystem.BUS_CONTROL_SYSTEM_NR);
 		controlSystem = BusControlSystem.getBusControlSystem(bcs);
-		id = nextID++;
+		id = nextID.getAndIncrement();
 		controlSystem.registerTraveller(this);
 		nextPath = new Path();
 		state = STATE_WALKING_ELSEWHERE;
@@ -72,8 +75,8 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		if (settings.contains(PROBABILITY_TAKE_OTHER_BUS)) {
 			probTakeOtherBus = settings.getDouble(PROBABILITY_TAKE_OTHER_BUS);
 		}
-		cbtd = new ContinueBusTripDecider(rng, probabilities);
-		pathFinder = new DijkstraPathFinder(null);
+		cbtd = new ContinueBusTripDecider(getRandom(), probabilities);
+		pathFinder = new DijkstraPathFinder(getMap(), null);
 		takeBus = true;
 	}
 
@@ -89,10 +92,10 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			location = proto.location.clone();
 		}
 		nextPath = proto.nextPath;
-		id = nextID++;
+		id = nextID.getAndIncrement();
 		controlSystem.registerTraveller(this);
 		probabilities = proto.probabilities;
-		cbtd = new ContinueBusTripDecider(rng, probabilities);
+		cbtd = new ContinueBusTripDecider(getRandom(), probabilities);
 		pathFinder = proto.pathFinder;
 		this.probTakeOtherBus = proto.probTakeOtherBus;
 		takeBus = true;
@@ -103,7 +106,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 
 		MapNode[] mapNodes = (MapNode[])getMap().getNodes().
 			toArray(new MapNode[0]);
-		int index = rng.nextInt(mapNodes.length - 1);
+		int index = getRandom().nextInt(mapNodes.length - 1);
 		location = mapNodes[index].getLocation().clone();
 
 		List<Coord> allStops = controlSystem.getBusStops();
@@ -205,7 +208,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			this.nextPath = null;
 			/* It might decide not to start walking somewhere and wait
 			   for the next bus */
-			if (rng.nextDouble() > probTakeOtherBus) {
+			if (getRandom().nextDouble() > probTakeOtherBus) {
 				state = STATE_WALKING_ELSEWHERE;
 				latestBusStop = location.clone();
 			}
@@ -229,7 +232,8 @@ public class BusTravellerMovement extends MapBasedMovement implements
 	 *
 	 * @author Frans Ekman
 	 */
-	class ContinueBusTripDecider {
+	class ContinueBusTripDecider implements Serializable {
+		private static final long serialVersionUID = 42L;
 
 		private double[] probabilities; // Probability to travel with bus
 		private int state;
@@ -351,7 +355,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 	}
 
 	public static void reset() {
-		nextID = 0;
+		nextID.set(0);
 	}
 
 }
@@ -18,6 +18,7 @@ import core.Settings;
  */
 public class CarMovement extends MapBasedMovement implements
 	SwitchableMovement, TransportMovement {
+		private static final long serialVersionUID = 42L;
 
 	private Coord from;
 	private Coord to;
@@ -30,7 +31,7 @@ public class CarMovement extends MapBasedMovement implements
 	 */
 	public CarMovement(Settings settings) {
 		super(settings);
-		pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		pathFinder = new DijkstraPathFinder(getMap(), getOkMapNodeTypes());
 	}
 
 	/**
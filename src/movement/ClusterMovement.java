@@ -14,6 +14,8 @@ import core.Coord;
 import core.Settings;
 
 public class ClusterMovement extends RandomWaypoint {
+	private static final long serialVersionUID = 42L;
+
 	/** Range of the cluster */
 	public static final String	CLUSTER_RANGE = "clusterRange";
 	/** Center point of the cluster */
@@ -44,11 +46,11 @@ public class ClusterMovement extends RandomWaypoint {
 
 	@Override
 	protected Coord randomCoord() {
-		double x = (rng.nextDouble()*2 - 1)*this.p_range;
-		double y = (rng.nextDouble()*2 - 1)*this.p_range;
+		double x = (getRandom().nextDouble()*2 - 1)*this.p_range;
+		double y = (getRandom().nextDouble()*2 - 1)*this.p_range;
 		while (x*x + y*y>this.p_range*this.p_range) {
-			x = (rng.nextDouble()*2 - 1)*this.p_range;
-			y = (rng.nextDouble()*2 - 1)*this.p_range;
+			x = (getRandom().nextDouble()*2 - 1)*this.p_range;
+			y = (getRandom().nextDouble()*2 - 1)*this.p_range;
 		}
 		x += this.p_x_center;
 		y += this.p_y_center;
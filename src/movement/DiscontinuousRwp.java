@@ -8,6 +8,7 @@ import core.Settings;
  */
 public class DiscontinuousRwp
 extends MovementModel {
+	private static final long serialVersionUID = 42L;
 
   //==========================================================================//
   // Implementation
@@ -42,8 +43,8 @@ extends MovementModel {
   }
 
   private Coord randomCoord() {
-    return new Coord( rng.nextDouble() * super.getMaxX(),
-        rng.nextDouble() * super.getMaxY() );
+    return new Coord( getRandom().nextDouble() * super.getMaxX(),
+        getRandom().nextDouble() * super.getMaxY() );
   }
   //==========================================================================//
 
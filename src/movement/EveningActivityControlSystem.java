@@ -10,6 +10,7 @@ import java.util.Random;
 
 import core.Coord;
 import core.DTNSim;
+import core.RunContext;
 
 /**
  * This class controls the group mobility of the people meeting their friends in
@@ -25,9 +26,6 @@ public class EveningActivityControlSystem {
 
 	private Random rng;
 
-	private static HashMap<Integer, EveningActivityControlSystem>
-		controlSystems;
-
 	static {
 		DTNSim.registerForReset(EveningActivityControlSystem.class.
 				getCanonicalName());
@@ -44,7 +42,27 @@ public class EveningActivityControlSystem {
 	}
 
 	public static void reset() {
-		controlSystems = new HashMap<Integer, EveningActivityControlSystem>();
+		RunContext.current().put(EveningActivityControlSystem.class,
+				new HashMap<Integer, EveningActivityControlSystem>());
+	}
+
+	/**
+	 * Returns the evening activity control systems of the current run
+	 * @return the evening activity control systems of the current run
+	 */
+	@SuppressWarnings("unchecked")
+	private static HashMap<Integer, EveningActivityControlSystem>
+			getControlSystems() {
+		RunContext context = RunContext.current();
+		HashMap<Integer, EveningActivityControlSystem> controlSystems =
+			(HashMap<Integer, EveningActivityControlSystem>)context.get(
+					EveningActivityControlSystem.class);
+		if (controlSystems == null) {
+			controlSystems =
+				new HashMap<Integer, EveningActivityControlSystem>();
+			context.put(EveningActivityControlSystem.class, controlSystems);
+		}
+		return controlSystems;
 	}
 
 	/**
@@ -127,6 +145,8 @@ public class EveningActivityControlSystem {
 	 */
 	public static EveningActivityControlSystem getEveningActivityControlSystem(
 			int id) {
+		HashMap<Integer, EveningActivityControlSystem> controlSystems =
+			getControlSystems();
 		if (controlSystems.containsKey(new Integer(id))) {
 			return controlSystems.get(new Integer(id));
 		} else {
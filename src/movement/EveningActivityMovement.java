@@ -9,6 +9,7 @@ import input.WKTReader;
 import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
@@ -26,6 +27,7 @@ import core.Settings;
  */
 public class EveningActivityMovement extends MapBasedMovement
 	implements SwitchableMovement {
+		private static final long serialVersionUID = 42L;
 
 	private static final int WALKING_TO_MEETING_SPOT_MODE = 0;
 	private static final int EVENING_ACTIVITY_MODE = 1;
@@ -44,7 +46,7 @@ public class EveningActivityMovement extends MapBasedMovement
 	public static final String MAX_WAIT_TIME_SETTING =
 		"maxAfterShoppingStopTime";
 
-	private static int nrOfMeetingSpots = 10;
+	private int nrOfMeetingSpots = 10;
 
 	private int mode;
 	private boolean ready;
@@ -60,7 +62,7 @@ public class EveningActivityMovement extends MapBasedMovement
 
 	private int id;
 
-	private static int nextID = 0;
+	private static final AtomicInteger nextID = new AtomicInteger();
 
 	private int minGroupSize;
 	private int maxGroupSize;
@@ -72,7 +74,7 @@ public class EveningActivityMovement extends MapBasedMovement
 	public EveningActivityMovement(Settings settings) {
 		super(settings);
 		super.backAllowed = false;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = new DijkstraPathFinder(getMap(), null);
 		mode = WALKING_TO_MEETING_SPOT_MODE;
 
 		nrOfMeetingSpots = settings.getInt(NR_OF_MEETING_SPOTS_SETTING);
@@ -120,12 +122,12 @@ public class EveningActivityMovement extends MapBasedMovement
 			}
 		}
 
-		this.id = nextID++;
+		this.id = nextID.getAndIncrement();
 
 		int scsID = settings.getInt(EVENING_ACTIVITY_CONTROL_SYSTEM_NR_SETTING);
 
 		scs = EveningActivityControlSystem.getEveningActivityControlSystem(scsID);
-		scs.setRandomNumberGenerator(rng);
+		scs.setRandomNumberGenerator(getRandom());
 		scs.addEveningActivityNode(this);
 		scs.setMeetingSpots(meetingSpotLocations);
 
@@ -144,7 +146,7 @@ public class EveningActivityMovement extends MapBasedMovement
 		super(proto);
 		this.pathFinder = proto.pathFinder;
 		this.mode = proto.mode;
-		this.id = nextID++;
+		this.id = nextID.getAndIncrement();
 		scs = proto.scs;
 		scs.addEveningActivityNode(this);
 		this.setMinGroupSize(proto.getMinGroupSize());
@@ -163,7 +165,7 @@ public class EveningActivityMovement extends MapBasedMovement
 
 		MapNode[] mapNodes = (MapNode[])getMap().getNodes().
 			toArray(new MapNode[0]);
-		int index = rng.nextInt(mapNodes.length - 1);
+		int index = getRandom().nextInt(mapNodes.length - 1);
 		lastWaypoint = mapNodes[index].getLocation().clone();
 		return lastWaypoint.clone();
 	}
@@ -199,7 +201,7 @@ public class EveningActivityMovement extends MapBasedMovement
 					lastWaypoint = super.lastMapNode.getLocation();
 					trip.setPath(path);
 					double waitTimeAtEnd = (maxWaitTime - minWaitTime) *
-						rng.nextDouble() + minWaitTime;
+						getRandom().nextDouble() + minWaitTime;
 					trip.setWaitTimeAtEnd(waitTimeAtEnd);
 					trip.setDestination(lastWaypoint);
 				}
@@ -277,7 +279,7 @@ public class EveningActivityMovement extends MapBasedMovement
 	}
 
 	public static void reset() {
-		nextID = 0;
+		nextID.set(0);
 	}
 
 	public int getMinGroupSize() {
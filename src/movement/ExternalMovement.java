@@ -16,6 +16,7 @@ import util.Tuple;
 
 import core.Coord;
 import core.DTNSim;
+import core.RunContext;
 import core.Settings;
 import core.SimClock;
 
@@ -23,6 +24,8 @@ import core.SimClock;
  * Movement model that uses external data of node locations.
  */
 public class ExternalMovement extends MovementModel {
+	private static final long serialVersionUID = 42L;
+
 	/** Namespace for settings */
 	public static final String EXTERNAL_MOVEMENT_NS = "ExternalMovement";
 	/** external locations file's path -setting id ({@value})*/
@@ -32,24 +35,12 @@ public class ExternalMovement extends MovementModel {
 
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
-	private static ExternalMovementReader reader;
-	private static String inputFileName;
-
-	/** mapping of external id to movement model */
-	private static Map<String, ExternalMovement> idMapping;
-	/** initial locations for nodes */
-	private static List<Tuple<String, Coord>> initLocations;
-	/** time of the very first location data */
-	private static double initTime;
-	/** sampling interval (seconds) of the location data */
-	private static double samplingInterval;
-	/** last read time stamp after preloading */
-	private static double lastPreloadTime;
-	/** how many time intervals to load on every preload run */
-	private static double nrofPreload = 10;
 	/** minimum number intervals that should be preloaded ahead of sim time */
 	private static final double MIN_AHEAD_INTERVALS = 2;
 
+	/** state of the location data shared by all nodes of the run */
+	private TraceState trace;
+
 	/** the very first location of the node */
 	private Coord intialLocation;
 	/** queue of path-start-time, path tuples */
@@ -77,25 +68,30 @@ public class ExternalMovement extends MovementModel {
 	public ExternalMovement(Settings settings) {
 		super(settings);
 
-		if (idMapping == null) {
+		RunContext context = RunContext.current();
+		this.trace = (TraceState)context.get(ExternalMovement.class);
+		if (this.trace == null) {
 			// run these the first time object is created or after reset call
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
-			idMapping = new HashMap<String, ExternalMovement>();
-			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
+			TraceState t = new TraceState();
+			t.idMapping = new HashMap<String, ExternalMovement>();
+			t.inputFileName = s.getSetting(MOVEMENT_FILE_S);
+			t.reader = new ExternalMovementReader(t.inputFileName);
 
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
-			samplingInterval = -1;
-			lastPreloadTime = -1;
+			t.initLocations = t.reader.readNextMovements();
+			t.initTime = t.reader.getLastTimeStamp();
+			t.samplingInterval = -1;
+			t.lastPreloadTime = -1;
 
 			s.setNameSpace(EXTERNAL_MOVEMENT_NS);
 			if (s.contains(NROF_PRELOAD_S)) {
-				nrofPreload = s.getInt(NROF_PRELOAD_S);
-				if (nrofPreload <= 0) {
-					nrofPreload = 1;
+				t.nrofPreload = s.getInt(NROF_PRELOAD_S);
+				if (t.nrofPreload <= 0) {
+					t.nrofPreload = 1;
 				}
 			}
+			context.put(ExternalMovement.class, t);
+			this.trace = t;
 		}
 	}
 
@@ -107,17 +103,18 @@ public class ExternalMovement extends MovementModel {
 	private ExternalMovement(MovementModel mm) {
 		super(mm);
 
+		this.trace = ((ExternalMovement)mm).trace;
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
 
-		if (initLocations.size() > 0) { // we have location data left
+		if (trace.initLocations.size() > 0) { // we have location data left
 			// gets a new location from the list
-			Tuple<String, Coord> initLoc = initLocations.remove(0);
+			Tuple<String, Coord> initLoc = trace.initLocations.remove(0);
 			this.intialLocation = this.latestLocation = initLoc.getValue();
-			this.latestPathStartTime = initTime;
+			this.latestPathStartTime = trace.initTime;
 
 			// puts the new model to model map for later updates
-			idMapping.put(initLoc.getKey(), this);
+			trace.idMapping.put(initLoc.getKey(), this);
 			isActive = true;
 		}
 		else {
@@ -131,16 +128,16 @@ public class ExternalMovement extends MovementModel {
 	 * Checks if more paths should be preloaded and preloads them if
 	 * needed.
 	 */
-	private static void checkPathNeed() {
-		if (samplingInterval == -1) { // first preload
-			lastPreloadTime = readMorePaths();
+	private static void checkPathNeed(TraceState t) {
+		if (t.samplingInterval == -1) { // first preload
+			t.lastPreloadTime = readMorePaths(t);
 		}
 
-		if (!Double.isNaN(lastPreloadTime) && SimClock.getTime() >=
-				lastPreloadTime - (samplingInterval * MIN_AHEAD_INTERVALS) ) {
-			for (int i=0; i < nrofPreload &&
-					!Double.isNaN(lastPreloadTime); i++) {
-				lastPreloadTime = readMorePaths();
+		if (!Double.isNaN(t.lastPreloadTime) && SimClock.getTime() >=
+				t.lastPreloadTime - (t.samplingInterval * MIN_AHEAD_INTERVALS)) {
+			for (int i=0; i < t.nrofPreload &&
+					!Double.isNaN(t.lastPreloadTime); i++) {
+				t.lastPreloadTime = readMorePaths(t);
 			}
 		}
 	}
@@ -155,6 +152,11 @@ public class ExternalMovement extends MovementModel {
 		return isActive;
 	}
 
+	@Override
+	public boolean isAlwaysActive() {
+		return false;
+	}
+
 	/**
 	 * Adds a new location with a time to this model's move pattern. If the
 	 * node stayed stationary during the update, the current path is put to the
@@ -163,7 +165,7 @@ public class ExternalMovement extends MovementModel {
 	 * @param time When should the node be there
 	 */
 	private void addLocation(Coord loc, double time) {
-		assert samplingInterval > 0 : "Non-positive sampling interval!";
+		assert trace.samplingInterval > 0 : "Non-positive sampling interval!";
 
 		if (loc.equals(latestLocation)) { // node didn't move
 			if (latestPath != null) {
@@ -181,7 +183,8 @@ public class ExternalMovement extends MovementModel {
 			latestPath = new Path();
 		}
 
-		double speed = loc.distance(this.latestLocation) / samplingInterval;
+		double speed = loc.distance(this.latestLocation) /
+			trace.samplingInterval;
 		latestPath.addWaypoint(loc, speed);
 
 		this.latestLocation = loc;
@@ -205,7 +208,7 @@ public class ExternalMovement extends MovementModel {
 	public Path getPath() {
 		Path p;
 
-		checkPathNeed(); // check if we should preload more paths
+		checkPathNeed(trace); // check if we should preload more paths
 
 		if (SimClock.getTime() < this.nextPathAvailable()) {
 			return null;
@@ -224,12 +227,12 @@ public class ExternalMovement extends MovementModel {
 
 	@Override
 	public int getMaxX() {
-		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		return (int)(trace.reader.getMaxX() - trace.reader.getMinX()) + 1;
 	}
 
 	@Override
 	public int getMaxY() {
-		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		return (int)(trace.reader.getMaxY() - trace.reader.getMinY()) + 1;
 	}
 
 
@@ -240,19 +243,20 @@ public class ExternalMovement extends MovementModel {
 
 	/**
 	 * Reads paths for the next time instance from the reader
+	 * @param trace The location data state to read the paths for
 	 * @return The time stamp of the reading or Double.NaN if no movements
 	 * were read.
 	 */
-	private static double readMorePaths() {
-		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+	private static double readMorePaths(TraceState trace) {
+		List<Tuple<String, Coord>> list = trace.reader.readNextMovements();
+		double time = trace.reader.getLastTimeStamp();
 
-		if (samplingInterval == -1) {
-			samplingInterval = time - initTime;
+		if (trace.samplingInterval == -1) {
+			trace.samplingInterval = time - trace.initTime;
 		}
 
 		for (Tuple<String, Coord> t : list) {
-			ExternalMovement em = idMapping.get(t.getKey());
+			ExternalMovement em = trace.idMapping.get(t.getKey());
 			if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
 				// ...init phase or if there are more IDs than nodes
 				em.addLocation(t.getValue(), time);
@@ -271,7 +275,29 @@ public class ExternalMovement extends MovementModel {
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
-		idMapping = null;
+		RunContext.current().put(ExternalMovement.class, null);
+	}
+
+	/**
+	 * Location data state that is shared by all external movement models of
+	 * a simulation run.
+	 */
+	private static class TraceState {
+		private ExternalMovementReader reader;
+		private String inputFileName;
+
+		/** mapping of external id to movement model */
+		private Map<String, ExternalMovement> idMapping;
+		/** initial locations for nodes */
+		private List<Tuple<String, Coord>> initLocations;
+		/** time of the very first location data */
+		private double initTime;
+		/** sampling interval (seconds) of the location data */
+		private double samplingInterval;
+		/** last read time stamp after preloading */
+		private double lastPreloadTime;
+		/** how many time intervals to load on every preload run */
+		private double nrofPreload = 10;
 	}
 
 }
@@ -21,6 +21,8 @@ import core.SimClock;
  *
  */
 public class ExternalPathMovement extends MovementModel {
+	private static final long serialVersionUID = 42L;
+
 	/** external locations file's path -setting id ({@value})*/
 	public static final String MOVEMENT_FILE_S = "traceFile";
 	/** activity file's path -setting id ({@value})*/
@@ -81,6 +83,11 @@ public class ExternalPathMovement extends MovementModel {
 		return false;
 	}
 
+	@Override
+	public boolean isAlwaysActive() {
+		return false;
+	}
+
 	@Override
 	public Path getPath() {
 		// Make sure to not give out paths when the node is not active
@@ -12,6 +12,8 @@ import core.SimScenario;
  * Location (movement) model that sets the nodes in a grid formation
  */
 public class GridLocation extends MovementModel {
+	private static final long serialVersionUID = 42L;
+
 	/** Sub name space for the grid location settings ({@value}) */
 	public static final String GRIDLOC_NS = "GridLocation";
 	/** How many rows of nodes there are -setting ({@value}).
@@ -63,11 +65,11 @@ public class GridLocation extends MovementModel {
 
 		x = proto.startCoords[0] +
 			((proto.nodeCount) % proto.cols) * proto.spacing;
-		x += rng.nextDouble() * proto.offset;
+		x += getRandom().nextDouble() * proto.offset;
 
 		y = proto.startCoords[1] +
 			((proto.nodeCount) / proto.cols) * proto.spacing;
-		y += rng.nextDouble() * proto.offset;
+		y += getRandom().nextDouble() * proto.offset;
 
 		this.loc = new Coord(x,y);
 
@@ -26,6 +26,7 @@ import core.SimClock;
  */
 public class HomeActivityMovement extends MapBasedMovement
 	implements SwitchableMovement {
+		private static final long serialVersionUID = 42L;
 
 	private static final int WALKING_HOME_MODE = 0;
 	private static final int AT_HOME_MODE = 1;
@@ -56,7 +57,7 @@ public class HomeActivityMovement extends MapBasedMovement
 	public HomeActivityMovement(Settings settings) {
 		super(settings);
 		distance = 100;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = new DijkstraPathFinder(getMap(), null);
 		mode = WALKING_HOME_MODE;
 
 		if (settings.contains("dayStart")){
@@ -74,7 +75,7 @@ public class HomeActivityMovement extends MapBasedMovement
 		if (homeLocationsFile == null) {
 			MapNode[] mapNodes = (MapNode[])getMap().getNodes().
 				toArray(new MapNode[0]);
-			int homeIndex = rng.nextInt(mapNodes.length - 1);
+			int homeIndex = getRandom().nextInt(mapNodes.length - 1);
 			homeLocation = mapNodes[homeIndex].getLocation().clone();
 		} else {
 			try {
@@ -91,20 +92,20 @@ public class HomeActivityMovement extends MapBasedMovement
 					coord.translate(offset.getX(), offset.getY());
 					allHomes.add(coord);
 				}
-				homeLocation = allHomes.get(rng.nextInt(allHomes.size())).clone();
+				homeLocation = allHomes.get(getRandom().nextInt(allHomes.size())).clone();
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
 
 		if (timeDiffSTD == -1) {
-			timeDifference = rng.nextInt(DAY_LENGTH) - DAY_LENGTH/2;
+			timeDifference = getRandom().nextInt(DAY_LENGTH) - DAY_LENGTH/2;
 		} else if (timeDiffSTD == 0) {
 			timeDifference = 0;
 		} else {
 			timeDifference = (int)Math.min(
 									Math.max(
-											(rng.nextGaussian() * timeDiffSTD),
+											(getRandom().nextGaussian() * timeDiffSTD),
 											-DAY_LENGTH/2
 										),
 									DAY_LENGTH/2
@@ -127,21 +128,21 @@ public class HomeActivityMovement extends MapBasedMovement
 		if (proto.allHomes == null) {
 			MapNode[] mapNodes = (MapNode[])getMap().getNodes().
 				toArray(new MapNode[0]);
-			int homeIndex = rng.nextInt(mapNodes.length - 1);
+			int homeIndex = getRandom().nextInt(mapNodes.length - 1);
 			homeLocation = mapNodes[homeIndex].getLocation().clone();
 		} else {
 			this.allHomes = proto.allHomes;
-			homeLocation = allHomes.get(rng.nextInt(allHomes.size())).clone();
+			homeLocation = allHomes.get(getRandom().nextInt(allHomes.size())).clone();
 		}
 
 		if (timeDiffSTD == -1) {
-			timeDifference = rng.nextInt(DAY_LENGTH) - DAY_LENGTH/2;
+			timeDifference = getRandom().nextInt(DAY_LENGTH) - DAY_LENGTH/2;
 		} else if (timeDiffSTD == 0) {
 			timeDifference = 0;
 		} else {
 			timeDifference = (int)Math.min(
 									Math.max(
-											(rng.nextGaussian() * timeDiffSTD),
+											(getRandom().nextGaussian() * timeDiffSTD),
 											-DAY_LENGTH/2
 										),
 									DAY_LENGTH/2
@@ -151,8 +152,8 @@ public class HomeActivityMovement extends MapBasedMovement
 
 	@Override
 	public Coord getInitialLocation() {
-		double x = rng.nextDouble() * getMaxX();
-		double y = rng.nextDouble() * getMaxY();
+		double x = getRandom().nextDouble() * getMaxX();
+		double y = getRandom().nextDouble() * getMaxY();
 		Coord c = new Coord(x,y);
 
 		this.lastWaypoint = c;
@@ -178,14 +179,14 @@ public class HomeActivityMovement extends MapBasedMovement
 			lastWaypoint = homeLocation.clone();
 			mode = AT_HOME_MODE;
 
-			double newX = lastWaypoint.getX() + (rng.nextDouble() - 0.5) *
+			double newX = lastWaypoint.getX() + (getRandom().nextDouble() - 0.5) *
 				distance;
 			if (newX > getMaxX()) {
 				newX = getMaxX();
 			} else if (newX < 0) {
 				newX = 0;
 			}
-			double newY = lastWaypoint.getY() + (rng.nextDouble() - 0.5) *
+			double newY = lastWaypoint.getY() + (getRandom().nextDouble() - 0.5) *
 				distance;
 			if (newY > getMaxY()) {
 				newY = getMaxY();
@@ -14,6 +14,8 @@ import movement.Path;
  * (work in progress)
  */
 public class LinearMovement extends MovementModel {
+	private static final long serialVersionUID = 42L;
+
 	/** Name space of the settings (append to group name space) */
 	public static final String LINEAR_MOVEMENT_NS = "LinearMovement.";
 	/** Per node group setting for defining the start coordinates of
@@ -108,8 +110,8 @@ public class LinearMovement extends MovementModel {
 			dx = placementFraction * xDiff;
 			dy = placementFraction * yDiff;
 		} else { /* random */
-			dx = rng.nextDouble() * xDiff;
-			dy = rng.nextDouble() * yDiff;
+			dx = getRandom().nextDouble() * xDiff;
+			dy = getRandom().nextDouble() * yDiff;
 		}
 
 		c.translate(dx, dy);
@@ -29,6 +29,8 @@ import core.SimError;
  * roads of a SimMap.
  */
 public class MapBasedMovement extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 42L;
+
 	/** sim map for the model */
 	private SimMap map = null;
 	/** node where the last path ended or node next to initial placement */
@@ -60,7 +62,8 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 
 	/** how many map files are read */
 	private int nrofMapFilesRead = 0;
-	/** map cache -- in case last mm read the same map, use it without loading*/
+	/** map cache -- in case last mm read the same map, use it without loading.
+	 * Shared by all (concurrent) runs; access is synchronized on this class */
 	private static SimMap cachedMap = null;
 	/** names of the previously cached map's files (for hit comparison) */
 	private static List<String> cachedMapFiles = null;
@@ -71,7 +74,9 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	 */
 	public MapBasedMovement(Settings settings) {
 		super(settings);
-		map = readMap();
+		synchronized (MapBasedMovement.class) {
+			map = readMap();
+		}
 		readOkMapNodeTypes(settings);
 		maxPathLength = 100;
 		minPathLength = 10;
@@ -144,15 +149,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		MapNode n,n2;
 		Coord n2Location, nLocation, placement;
 		double dx, dy;
-		double rnd = rng.nextDouble();
+		double rnd = getRandom().nextDouble();
 
 		// choose a random node (from OK types if such are defined)
 		do {
-			n = nodes.get(rng.nextInt(nodes.size()));
+			n = nodes.get(getRandom().nextInt(nodes.size()));
 		} while (okMapNodeTypes != null && !n.isType(okMapNodeTypes));
 
 		// choose a random neighbor of the selected node
-		n2 = n.getNeighbors().get(rng.nextInt(n.getNeighbors().size()));
+		n2 = n.getNeighbors().get(getRandom().nextInt(n.getNeighbors().size()));
 
 		nLocation = n.getLocation();
 		n2Location = n2.getLocation();
@@ -191,7 +196,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		// start paths from current node
 		p.addWaypoint(curNode.getLocation());
 
-		int pathLength = rng.nextInt(maxPathLength-minPathLength) +
+		int pathLength = getRandom().nextInt(maxPathLength-minPathLength) +
 			minPathLength;
 
 		for (int i=0; i<pathLength; i++) {
@@ -216,7 +221,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 				nextNode = prevNode;
 			}
 			else { // choose a random node from remaining neighbors
-				nextNode = n2.get(rng.nextInt(n2.size()));
+				nextNode = n2.get(getRandom().nextInt(n2.size()));
 			}
 
 			prevNode = curNode;
@@ -243,7 +248,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	protected MapNode selectRandomOkNode(List<MapNode> nodes) {
 		MapNode n;
 		do {
-			n = nodes.get(rng.nextInt(nodes.size()));
+			n = nodes.get(getRandom().nextInt(nodes.size()));
 		} while (okMapNodeTypes != null && !n.isType(okMapNodeTypes));
 
 		return n;
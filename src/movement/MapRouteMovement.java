@@ -21,6 +21,7 @@ import core.Settings;
  */
 public class MapRouteMovement extends MapBasedMovement implements
 	SwitchableMovement {
+		private static final long serialVersionUID = 42L;
 
 	/** Per node group setting used for selecting a route file ({@value}) */
 	public static final String ROUTE_FILE_S = "routeFile";
@@ -60,7 +61,7 @@ public class MapRouteMovement extends MapBasedMovement implements
 		int type = settings.getInt(ROUTE_TYPE_S);
 		allRoutes = MapRoute.readRoutes(fileName, type, getMap());
 		nextRouteIndex = 0;
-		pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		pathFinder = new DijkstraPathFinder(getMap(), getOkMapNodeTypes());
 		this.route = this.allRoutes.get(this.nextRouteIndex).replicate();
 		if (this.nextRouteIndex >= this.allRoutes.size()) {
 			this.nextRouteIndex = 0;
@@ -88,7 +89,7 @@ public class MapRouteMovement extends MapBasedMovement implements
 
 		if (firstStopIndex < 0) {
 			/* set a random starting position on the route */
-			this.route.setNextIndex(rng.nextInt(route.getNrofStops()-1));
+			this.route.setNextIndex(getRandom().nextInt(route.getNrofStops()-1));
 		} else {
 			/* use the one defined in the config file */
 			this.route.setNextIndex(this.firstStopIndex);
@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import util.ActivenessHandler;
@@ -12,6 +13,8 @@ import core.Coord;
 import core.DTNHost;
 import core.DTNSim;
 import core.ModuleCommunicationBus;
+import core.RandomStreams;
+import core.RunContext;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -26,7 +29,8 @@ import core.SimError;
  * {@link #getInitialLocation()} and {@link #getPath()} are worthwhile to
  * override.</P>
  */
-public abstract class MovementModel {
+public abstract class MovementModel implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** node's speed CSV (min, max) -setting id ({@value})*/
 	public static final String SPEED = "speed";
 	/** node's wait time CSV (min, max) -setting id ({@value})*/
@@ -45,9 +49,6 @@ public abstract class MovementModel {
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
 
-	/** common rng for all movement models in the simulation */
-	protected static Random rng;
-
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
 
@@ -62,6 +63,8 @@ public abstract class MovementModel {
 	private int maxY;
 
 	protected ModuleCommunicationBus comBus;
+	/** the common rng of the run (or null if not looked up yet) */
+	private Random rng;
 
 	// static initialization of all movement models' random number generator
 	static {
@@ -174,10 +177,7 @@ public abstract class MovementModel {
 	 * @return A new speed between min and max values
 	 */
 	protected double generateSpeed() {
-		if (rng == null) {
-			return 1;
-		}
-		return (maxSpeed - minSpeed) * rng.nextDouble() + minSpeed;
+		return (maxSpeed - minSpeed) * getRandom().nextDouble() + minSpeed;
 	}
 
 	/**
@@ -187,10 +187,7 @@ public abstract class MovementModel {
 	 * @return The time as a double
 	 */
 	protected double generateWaitTime() {
-		if (rng == null) {
-			return 0;
-		}
-		return (maxWaitTime - minWaitTime) * rng.nextDouble() +
+		return (maxWaitTime - minWaitTime) * getRandom().nextDouble() +
 			minWaitTime;
 	}
 
@@ -232,6 +229,18 @@ public abstract class MovementModel {
 		return ah.isActive();
 	}
 
+	/**
+	 * Returns true if the node stays active from now on, i.e., if
+	 * {@link #isActive()} would return true whenever it is called. The host
+	 * does not need to check the activeness of such nodes while they wait
+	 * for the next path. Models that override {@link #isActive()} must
+	 * also override this method.
+	 * @return true if the node is known to stay active
+	 */
+	public boolean isAlwaysActive() {
+		return ah != null && ah.isAlwaysActive();
+	}
+
 	/**
 	 * Returns a sim time when the next path is available. This implementation
 	 * returns a random time in future that is {@link #WAIT_TIME} from now.
@@ -272,17 +281,57 @@ public abstract class MovementModel {
 	public abstract MovementModel replicate();
 
 	/**
-	 * Resets all static fields to default values
+	 * Returns the common rng for all movement models of the run this model
+	 * belongs to. The rng is looked up from the run context only once.
+	 * @return the common rng for all movement models of the run
 	 */
-	public static void reset() {
+	protected Random getRandom() {
+		if (this.rng == null) {
+			this.rng = getRunRandom();
+		}
+		return this.rng;
+	}
+
+	/**
+	 * Returns the common rng for all movement models of the current run
+	 * @return the common rng for all movement models of the current run
+	 */
+	private static Random getRunRandom() {
+		RunContext context = RunContext.current();
+		Random rng = (Random)context.get(MovementModel.class);
+		if (rng == null) {
+			rng = createRandom();
+			context.put(MovementModel.class, rng);
+		}
+		return rng;
+	}
+
+	/**
+	 * Creates a new rng seeded with the {@link #RNG_SEED} setting. If the
+	 * setting is not defined, but the scenario's random seed is, the rng is
+	 * seeded from the movement stream of the run's {@link RandomStreams}.
+	 * @return A new rng
+	 */
+	private static Random createRandom() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
+		RandomStreams streams = RandomStreams.current();
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			return new Random(seed);
+		}
+		else if (streams.isSeeded()) {
+			return streams.random(RandomStreams.MOVEMENT_STREAM, 0);
 		}
 		else {
-			rng = new Random(0);
+			return new Random(0);
 		}
 	}
 
+	/**
+	 * Resets all static fields to default values
+	 */
+	public static void reset() {
+		RunContext.current().put(MovementModel.class, createRandom());
+	}
+
 }
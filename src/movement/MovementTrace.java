@@ -0,0 +1,355 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Binary file of the movement of all the hosts of a run (see
+ * {@link MovementTraceRecorder} and {@link TraceReplayMovement}).</P>
+ *
+ * <P>The file has a header (magic number, version, number of hosts and the
+ * offsets of the columns) followed by the columns of each host. Every call
+ * of the movement model's methods appends to the host's columns:
+ * <UL>
+ * <LI>{@link #PATHS}: size of each path (0 for null, number of waypoints +
+ * 1 otherwise) and, for non-empty paths, the number of speeds (1 for a
+ * constant speed path)</LI>
+ * <LI>{@link #X} and {@link #Y}: coordinates of the initial location and
+ * of the waypoints</LI>
+ * <LI>{@link #SPEEDS}: speeds of the paths</LI>
+ * <LI>{@link #WAITS}: the times when the next paths are available</LI>
+ * <LI>{@link #ACTIVITY}: times when the activeness changes and the new
+ * values</LI>
+ * </UL>
+ * Counts are written as variable length integers and doubles as the XOR of
+ * their bits and the previous value's bits of the same column, without the
+ * leading and trailing zero bytes. Consecutive values of a column are
+ * usually close to each other, so most of the values take only a few
+ * bytes.</P>
+ *
+ * <P>The file is memory mapped for reading, so the runs that replay the
+ * same file share the pages and only the read positions are per host.</P>
+ */
+public class MovementTrace implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Magic number of the movement trace files ("ONEM") */
+	public static final int MAGIC = 0x4f4e454d;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	/** Column of the path sizes */
+	public static final int PATHS = 0;
+	/** Column of the x coordinates */
+	public static final int X = 1;
+	/** Column of the y coordinates */
+	public static final int Y = 2;
+	/** Column of the path speeds */
+	public static final int SPEEDS = 3;
+	/** Column of the next path availability times */
+	public static final int WAITS = 4;
+	/** Column of the activeness changes */
+	public static final int ACTIVITY = 5;
+	/** Number of columns per host */
+	public static final int NROF_COLUMNS = 6;
+
+	/** Size of the header before the column offsets */
+	private static final int HEADER_SIZE = 12;
+
+	private final String fileName;
+	private final int nrofHosts;
+	private transient ByteBuffer buffer;
+
+	/**
+	 * Opens a movement trace file for reading
+	 * @param fileName Name of the file
+	 * @throws SimError if the file can't be read or it is not a movement
+	 * trace file
+	 */
+	public MovementTrace(String fileName) {
+		this.fileName = fileName;
+		map();
+		this.nrofHosts = buffer.getInt(8);
+	}
+
+	/**
+	 * Maps the file to memory and checks the header
+	 */
+	private void map() {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(fileName, "r");
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_SIZE ||
+					channel.size() > Integer.MAX_VALUE) {
+				throw new SimError(fileName + " is not a movement trace");
+			}
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} catch (IOException e) {
+			throw new SimError("Can't read movement trace " + fileName, e);
+		} finally {
+			if (file != null) {
+				try {
+					file.close(); // the mapping stays valid
+				} catch (IOException e) {
+					throw new SimError("Can't close " + fileName, e);
+				}
+			}
+		}
+
+		if (buffer.getInt(0) != MAGIC) {
+			throw new SimError(fileName + " is not a movement trace");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new SimError("Unsupported version " + buffer.getInt(4) +
+					" of movement trace " + fileName);
+		}
+	}
+
+	/**
+	 * Returns the number of hosts in the trace
+	 * @return the number of hosts in the trace
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * Returns a cursor to the beginning of a column of a host
+	 * @param host Index (address) of the host
+	 * @param column The column
+	 * @return a new cursor
+	 */
+	public Cursor cursor(int host, int column) {
+		int i = HEADER_SIZE + (host * NROF_COLUMNS + column) * 4;
+		return new Cursor(this, buffer.getInt(i), buffer.getInt(i + 4));
+	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		map();
+	}
+
+	/**
+	 * Writes a movement trace file
+	 * @param fileName Name of the file
+	 * @param hosts The columns of all the hosts
+	 * @throws SimError if the file can't be written
+	 */
+	public static void write(String fileName, List<Column[]> hosts) {
+		File file = new File(fileName);
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(hosts.size());
+
+			/* offsets of all columns and the end of the last one */
+			long offset = HEADER_SIZE +
+				(hosts.size() * NROF_COLUMNS + 1) * 4L;
+			for (Column[] columns : hosts) {
+				for (Column c : columns) {
+					out.writeInt((int)offset);
+					offset += c.size;
+				}
+			}
+			if (offset > Integer.MAX_VALUE) {
+				throw new SimError("Movement trace " + fileName +
+						" would be too big (" + offset + " bytes)");
+			}
+			out.writeInt((int)offset);
+
+			for (Column[] columns : hosts) {
+				for (Column c : columns) {
+					out.write(c.bytes, 0, c.size);
+				}
+			}
+			out.close();
+			out = null;
+		} catch (IOException e) {
+			throw new SimError("Can't write movement trace " + fileName, e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// the original exception is more interesting
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates new, empty columns for a host
+	 * @return the columns
+	 */
+	public static Column[] newColumns() {
+		Column[] columns = new Column[NROF_COLUMNS];
+		for (int i=0; i < NROF_COLUMNS; i++) {
+			columns[i] = new Column();
+		}
+		return columns;
+	}
+
+	/**
+	 * Growing byte array where the values of a column are encoded to
+	 */
+	public static class Column implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private byte[] bytes = new byte[64];
+		private int size;
+		private long previous;
+
+		/**
+		 * Appends a byte
+		 * @param b The byte
+		 */
+		public void writeByte(int b) {
+			if (size == bytes.length) {
+				bytes = Arrays.copyOf(bytes, size * 2);
+			}
+			bytes[size++] = (byte)b;
+		}
+
+		/**
+		 * Appends a non-negative integer as a variable length integer
+		 * (7 bits per byte, least significant first)
+		 * @param value The value
+		 */
+		public void writeVarInt(int value) {
+			assert value >= 0 : "Negative value " + value;
+			while (value >= 0x80) {
+				writeByte((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			writeByte(value);
+		}
+
+		/**
+		 * Appends a double as the XOR of its bits and the previous double's
+		 * bits. The first byte tells the number of leading zero bytes (high
+		 * nibble) and significant bytes (low nibble) of the XOR or is zero
+		 * if the value didn't change.
+		 * @param value The value
+		 */
+		public void writeDouble(double value) {
+			long bits = Double.doubleToRawLongBits(value);
+			long xor = bits ^ previous;
+			previous = bits;
+
+			if (xor == 0) {
+				writeByte(0);
+				return;
+			}
+			int leading = Long.numberOfLeadingZeros(xor) / 8;
+			int trailing = Long.numberOfTrailingZeros(xor) / 8;
+			int significant = 8 - leading - trailing;
+			writeByte((leading << 4) | significant);
+			for (int i = significant - 1; i >= 0; i--) {
+				writeByte((int)(xor >>> ((trailing + i) * 8)));
+			}
+		}
+
+		/**
+		 * Returns the number of bytes in the column
+		 * @return the number of bytes in the column
+		 */
+		public int size() {
+			return this.size;
+		}
+	}
+
+	/**
+	 * Read position of a column
+	 */
+	public static class Cursor implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private final MovementTrace trace;
+		private int position;
+		private final int end;
+		private long previous;
+
+		private Cursor(MovementTrace trace, int start, int end) {
+			this.trace = trace;
+			this.position = start;
+			this.end = end;
+		}
+
+		/**
+		 * Returns true if there are more values in the column
+		 * @return true if there are more values in the column
+		 */
+		public boolean hasNext() {
+			return position < end;
+		}
+
+		/**
+		 * Reads a byte
+		 * @return the byte (0-255)
+		 */
+		public int readByte() {
+			if (position >= end) {
+				throw new SimError("Movement trace " + trace.fileName +
+						" ended unexpectedly");
+			}
+			return trace.buffer.get(position++) & 0xff;
+		}
+
+		/**
+		 * Reads a variable length integer
+		 * @return the value
+		 */
+		public int readVarInt() {
+			int value = 0;
+			for (int shift = 0; ; shift += 7) {
+				int b = readByte();
+				value |= (b & 0x7f) << shift;
+				if (b < 0x80) {
+					return value;
+				}
+			}
+		}
+
+		/**
+		 * Reads a double
+		 * @return the value
+		 */
+		public double readDouble() {
+			int header = readByte();
+			if (header != 0) {
+				int leading = header >>> 4;
+				int significant = header & 0xf;
+				long xor = 0;
+				for (int i=0; i < significant; i++) {
+					xor = (xor << 8) | readByte();
+				}
+				previous ^= xor << ((8 - leading - significant) * 8);
+			}
+			return Double.longBitsToDouble(previous);
+		}
+	}
+}
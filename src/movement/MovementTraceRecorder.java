@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.MovementTrace.Column;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * <P>
+ * Records the movement of all the hosts of a run to a
+ * {@link MovementTrace} file that {@link TraceReplayMovement} can replay.
+ * The movement models of the host groups are wrapped to models that pass
+ * all the calls to the original models and record the initial locations,
+ * the paths, the path availability times and the activeness of the hosts.
+ * The file is written when the simulation is done.</P>
+ *
+ * <P>The settings are in the {@value #MOVEMENT_TRACE_NS} namespace.</P>
+ */
+public class MovementTraceRecorder implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Namespace of the movement trace settings ({@value}) */
+	public static final String MOVEMENT_TRACE_NS = "MovementTrace";
+	/** File where the movement of the run is recorded to -setting id
+	 * ({@value}). Value fillers (e.g., "%%Scenario.name%%") can be used. If
+	 * not defined, the movement is not recorded. */
+	public static final String RECORD_S = "record";
+
+	private final String fileName;
+	/** columns of the hosts by the host address */
+	private final List<Column[]> hosts;
+
+	/**
+	 * Creates a recorder
+	 * @param fileName Name of the file where the trace is written to
+	 */
+	public MovementTraceRecorder(String fileName) {
+		this.fileName = fileName;
+		this.hosts = new ArrayList<Column[]>();
+	}
+
+	/**
+	 * Creates a recorder if one is defined in the settings
+	 * @return the recorder or null if the movement is not recorded
+	 */
+	public static MovementTraceRecorder create() {
+		Settings s = new Settings(MOVEMENT_TRACE_NS);
+		if (!s.contains(RECORD_S)) {
+			return null;
+		}
+		return new MovementTraceRecorder(s.valueFillString(
+				s.getSetting(RECORD_S)));
+	}
+
+	/**
+	 * Returns a movement model prototype that records the movement of the
+	 * hosts created from it
+	 * @param mmProto The original movement model prototype
+	 * @return the recording prototype
+	 */
+	public MovementModel wrap(MovementModel mmProto) {
+		return new RecordingMovement(mmProto, this);
+	}
+
+	/**
+	 * Writes the recorded movement to the file
+	 */
+	public void write() {
+		MovementTrace.write(fileName, hosts);
+	}
+
+	/**
+	 * Returns the columns of a host
+	 */
+	private Column[] columnsOf(int address) {
+		while (hosts.size() <= address) {
+			hosts.add(MovementTrace.newColumns());
+		}
+		return hosts.get(address);
+	}
+
+	/**
+	 * Movement model that records the movement of another model
+	 */
+	private static class RecordingMovement extends MovementModel {
+		private static final long serialVersionUID = 42L;
+		private final MovementModel model;
+		private final MovementTraceRecorder recorder;
+		private Column[] columns;
+		/** the latest recorded activeness (null before the first) */
+		private Boolean active;
+
+		private RecordingMovement(MovementModel model,
+				MovementTraceRecorder recorder) {
+			super(); // the wrapped model has the settings
+			this.model = model;
+			this.recorder = recorder;
+		}
+
+		@Override
+		public void setHost(DTNHost host) {
+			super.setHost(host);
+			model.setHost(host);
+			this.columns = recorder.columnsOf(host.getAddress());
+		}
+
+		@Override
+		public void setComBus(ModuleCommunicationBus comBus) {
+			super.setComBus(comBus);
+			model.setComBus(comBus);
+		}
+
+		@Override
+		public int getMaxX() {
+			return model.getMaxX();
+		}
+
+		@Override
+		public int getMaxY() {
+			return model.getMaxY();
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			Coord c = model.getInitialLocation();
+			columns[MovementTrace.X].writeDouble(c.getX());
+			columns[MovementTrace.Y].writeDouble(c.getY());
+			return c;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = model.getPath();
+			Column paths = columns[MovementTrace.PATHS];
+			if (p == null) {
+				paths.writeVarInt(0);
+				return null;
+			}
+
+			List<Coord> coords = p.getCoords();
+			List<Double> speeds = p.getSpeeds();
+			int n = coords.size();
+			paths.writeVarInt(n + 1);
+			if (n == 0) {
+				return p;
+			}
+
+			/* constant speed paths have one speed, others one per waypoint
+			 * (missing speeds, which the path would fail on, as NaNs) */
+			boolean constant = speeds.size() <= 1;
+			paths.writeVarInt(constant ? 1 : n);
+			for (int i=0, k = constant ? 1 : n; i < k; i++) {
+				columns[MovementTrace.SPEEDS].writeDouble(i < speeds.size() ?
+						speeds.get(i) : Double.NaN);
+			}
+			for (Coord c : coords) {
+				columns[MovementTrace.X].writeDouble(c.getX());
+				columns[MovementTrace.Y].writeDouble(c.getY());
+			}
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			double time = model.nextPathAvailable();
+			columns[MovementTrace.WAITS].writeDouble(time);
+			return time;
+		}
+
+		@Override
+		public boolean isActive() {
+			boolean isActive = model.isActive();
+			if (active == null || active.booleanValue() != isActive) {
+				active = isActive;
+				Column c = columns[MovementTrace.ACTIVITY];
+				c.writeDouble(SimClock.getTime());
+				c.writeByte(isActive ? 1 : 0);
+			}
+			return isActive;
+		}
+
+		@Override
+		public boolean isAlwaysActive() {
+			return model.isAlwaysActive() && active != null &&
+				active.booleanValue();
+		}
+
+		@Override
+		public String toString() {
+			return model.toString();
+		}
+
+		@Override
+		public MovementModel replicate() {
+			return new RecordingMovement(model.replicate(), recorder);
+		}
+	}
+}
@@ -30,6 +30,7 @@ import core.SimClock;
  */
 public class OfficeActivityMovement extends MapBasedMovement implements
 	SwitchableMovement {
+		private static final long serialVersionUID = 42L;
 
 	private static final int WALKING_TO_OFFICE_MODE = 0;
 	private static final int AT_OFFICE_MODE = 1;
@@ -47,7 +48,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	public static final String OFFICE_LOCATIONS_FILE_SETTING =
 		"officeLocationsFile";
 
-	private static int nrOfOffices = 50;
+	private int nrOfOffices = 50;
 
 	private int mode;
 	private int workDayLength;
@@ -87,7 +88,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		officeMaxWaitTime = settings.getDouble(OFFICE_MAX_WAIT_TIME_SETTING);
 
 		startedWorkingTime = -1;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = new DijkstraPathFinder(getMap(), null);
 		mode = WALKING_TO_OFFICE_MODE;
 
 		String officeLocationsFile = null;
@@ -101,7 +102,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		if (officeLocationsFile == null) {
 			MapNode[] mapNodes = (MapNode[])getMap().getNodes().
 				toArray(new MapNode[0]);
-			int officeIndex = rng.nextInt(mapNodes.length - 1) /
+			int officeIndex = getRandom().nextInt(mapNodes.length - 1) /
 				(mapNodes.length/nrOfOffices);
 			officeLocation = mapNodes[officeIndex].getLocation().clone();
 		} else {
@@ -120,14 +121,14 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 					allOffices.add(coord);
 				}
 				officeLocation = allOffices.get(
-						rng.nextInt(allOffices.size())).clone();
+						getRandom().nextInt(allOffices.size())).clone();
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
 
 		deskLocation = getRandomCoorinateInsideOffice();
-		paretoRNG = new ParetoRNG(rng, officeWaitTimeParetoCoeff,
+		paretoRNG = new ParetoRNG(getRandom(), officeWaitTimeParetoCoeff,
 				officeMinWaitTime, officeMaxWaitTime);
 	}
 
@@ -138,6 +139,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	public OfficeActivityMovement(OfficeActivityMovement proto) {
 		super(proto);
 		this.workDayLength = proto.workDayLength;
+		this.nrOfOffices = proto.nrOfOffices;
 		startedWorkingTime = -1;
 		this.distance = proto.distance;
 		this.pathFinder = proto.pathFinder;
@@ -146,13 +148,13 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		if (proto.allOffices == null) {
 			MapNode[] mapNodes = (MapNode[])getMap().getNodes().
 				toArray(new MapNode[0]);
-			int officeIndex = rng.nextInt(mapNodes.length - 1) /
+			int officeIndex = getRandom().nextInt(mapNodes.length - 1) /
 				(mapNodes.length/nrOfOffices);
 			officeLocation = mapNodes[officeIndex].getLocation().clone();
 		} else {
 			this.allOffices = proto.allOffices;
 			officeLocation = allOffices.get(
-					rng.nextInt(allOffices.size())).clone();
+					getRandom().nextInt(allOffices.size())).clone();
 		}
 
 		officeWaitTimeParetoCoeff = proto.officeWaitTimeParetoCoeff;
@@ -165,14 +167,14 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 
 	public Coord getRandomCoorinateInsideOffice() {
 		double x_coord = officeLocation.getX() +
-			(0.5 - rng.nextDouble()) * distance;
+			(0.5 - getRandom().nextDouble()) * distance;
 		if (x_coord > getMaxX()) {
 			x_coord = getMaxX();
 		} else if (x_coord < 0) {
 			x_coord = 0;
 		}
 		double y_coord = officeLocation.getY() +
-			(0.5 - rng.nextDouble()) * distance;
+			(0.5 - getRandom().nextDouble()) * distance;
 		if (y_coord > getMaxY()) {
 			y_coord = getMaxY();
 		} else if (y_coord < 0) {
@@ -183,8 +185,8 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 
 	@Override
 	public Coord getInitialLocation() {
-		double x = rng.nextDouble() * getMaxX();
-		double y = rng.nextDouble() * getMaxY();
+		double x = getRandom().nextDouble() * getMaxX();
+		double y = getRandom().nextDouble() * getMaxY();
 		Coord c = new Coord(x,y);
 
 		this.lastWaypoint = c;
@@ -265,7 +267,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	 * @see SwitchableMovement
 	 */
 	public void setLocation(Coord lastWaypoint) {
-		officeLocation = allOffices.get(rng.nextInt(allOffices.size())).clone();
+		officeLocation = allOffices.get(getRandom().nextInt(allOffices.size())).clone();
 		if (officeLocation.equals(allOffices.get(9).clone())){
 			distance = 50;
 		}
@@ -15,6 +15,7 @@ import java.util.List;
  */
 public class ProhibitedPolygonRwp
 extends MovementModel {
+	private static final long serialVersionUID = 42L;
 
   //==========================================================================//
   // Settings
@@ -83,8 +84,8 @@ extends MovementModel {
 
   private Coord randomCoord() {
     return new Coord(
-        rng.nextDouble() * super.getMaxX(),
-        rng.nextDouble() * super.getMaxY() );
+        getRandom().nextDouble() * super.getMaxX(),
+        getRandom().nextDouble() * super.getMaxY() );
   }
   //==========================================================================//
 
@@ -13,6 +13,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class RandomWalk extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 42L;
 
 	private Coord lastWaypoint;
 	private double minDistance;
@@ -36,9 +37,8 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 	 */
 	@Override
 	public Coord getInitialLocation() {
-		assert rng != null : "MovementModel not initialized!";
-		double x = rng.nextDouble() * getMaxX();
-		double y = rng.nextDouble() * getMaxY();
+		double x = getRandom().nextDouble() * getMaxX();
+		double y = getRandom().nextDouble() * getMaxY();
 		Coord c = new Coord(x,y);
 
 		this.lastWaypoint = c;
@@ -56,8 +56,8 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		Coord c = null;
 		while (true) {
 
-			double angle = rng.nextDouble() * 2 * Math.PI;
-			double distance = minDistance + rng.nextDouble() *
+			double angle = getRandom().nextDouble() * 2 * Math.PI;
+			double distance = minDistance + getRandom().nextDouble() *
 				(maxDistance - minDistance);
 
 			double x = lastWaypoint.getX() + distance * Math.cos(angle);
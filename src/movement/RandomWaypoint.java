@@ -12,6 +12,8 @@ import core.Settings;
  * simulation area.
  */
 public class RandomWaypoint extends MovementModel {
+	private static final long serialVersionUID = 42L;
+
 	/** how many waypoints should there be per path */
 	private static final int PATH_LENGTH = 1;
 	private Coord lastWaypoint;
@@ -30,7 +32,6 @@ public class RandomWaypoint extends MovementModel {
 	 */
 	@Override
 	public Coord getInitialLocation() {
-		assert rng != null : "MovementModel not initialized!";
 		Coord c = randomCoord();
 
 		this.lastWaypoint = c;
@@ -59,7 +60,7 @@ public class RandomWaypoint extends MovementModel {
 	}
 
 	protected Coord randomCoord() {
-		return new Coord(rng.nextDouble() * getMaxX(),
-				rng.nextDouble() * getMaxY());
+		return new Coord(getRandom().nextDouble() * getMaxX(),
+				getRandom().nextDouble() * getMaxY());
 	}
 }
@@ -13,6 +13,7 @@ import core.Settings;
  */
 public class StatefulRwp
 extends MovementModel {
+	private static final long serialVersionUID = 42L;
 
   //==========================================================================//
   // Instance vars
@@ -57,11 +58,11 @@ extends MovementModel {
   private Coord randomCoord() {
     final double x;
     if ( this.state == State.LEFT ) {
-      x = rng.nextDouble() * super.getMaxX() / 2;
+      x = getRandom().nextDouble() * super.getMaxX() / 2;
     } else {
-      x = ( rng.nextDouble() + 1 ) * super.getMaxX() / 2;
+      x = ( getRandom().nextDouble() + 1 ) * super.getMaxX() / 2;
     }
-    return new Coord( x, rng.nextDouble() * super.getMaxY());
+    return new Coord( x, getRandom().nextDouble() * super.getMaxY());
   }
   //==========================================================================//
 
@@ -88,7 +89,7 @@ extends MovementModel {
   // State
   //==========================================================================//
   private State getRandomState() {
-    if ( rng.nextDouble() < 0.05 ) {
+    if ( getRandom().nextDouble() < 0.05 ) {
       return State.LEFT;
     } else {
       return State.RIGHT;
@@ -106,11 +107,11 @@ extends MovementModel {
   private State updateState( final State state ) {
     switch ( state ) {
       case LEFT: {
-        final double r = rng.nextDouble();
+        final double r = getRandom().nextDouble();
         return ( r < 0.05 ) ? ( State.LEFT ) : ( State.RIGHT );
       }
       case RIGHT: {
-        final double r = rng.nextDouble();
+        final double r = getRandom().nextDouble();
         return ( r < 0.05 ) ? ( State.LEFT ) : ( State.RIGHT );
       }
       default: {
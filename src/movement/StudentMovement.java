@@ -18,6 +18,7 @@ import core.SimClock;
  * @author Frans Ekman
  */
 public class StudentMovement extends ExtendedMovementModel {
+	private static final long serialVersionUID = 42L;
 
     private BusTravellerMovement busTravellerMM;
     private OfficeActivityMovement workerMM;
@@ -75,7 +76,7 @@ public class StudentMovement extends ExtendedMovementModel {
         switch (mode) {
             case WORK_MODE:
                 if (workerMM.isReady()) {
-                    if ((rng.nextDouble() < ksprob) && (SimClock.getTime() % 86400) < dayend){
+                    if ((getRandom().nextDouble() < ksprob) && (SimClock.getTime() % 86400) < dayend){
                         setCurrentMovementModel(workerMM);
                         mode = WORK_MODE;
                         break;
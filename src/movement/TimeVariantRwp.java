@@ -13,6 +13,7 @@ import core.SimScenario;
  */
 public class TimeVariantRwp
 extends MovementModel {
+	private static final long serialVersionUID = 42L;
 
   //==========================================================================//
   // Instance vars
@@ -28,8 +29,8 @@ extends MovementModel {
   @Override
   public Coord getInitialLocation() {
     this.lastWaypoint = new Coord(
-        rng.nextDouble() * super.getMaxX() / 2,
-        rng.nextDouble() * super.getMaxY() / 2);
+        getRandom().nextDouble() * super.getMaxX() / 2,
+        getRandom().nextDouble() * super.getMaxY() / 2);
     return this.lastWaypoint;
   }
 
@@ -62,8 +63,8 @@ extends MovementModel {
     final double hx = super.getMaxX() / 2;
     final double hy = super.getMaxY() / 2;
     return new Coord(
-        k * hx + ( rng.nextDouble() * hx ),
-        k * hy + ( rng.nextDouble() * hy ) );
+        k * hx + ( getRandom().nextDouble() * hx ),
+        k * hy + ( getRandom().nextDouble() * hy ) );
   }
   //==========================================================================//
 
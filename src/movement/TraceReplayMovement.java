@@ -0,0 +1,188 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import movement.MovementTrace.Cursor;
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.RunContext;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * <P>
+ * Movement model that replays the movement recorded by
+ * {@link MovementTraceRecorder}. Each host gets the initial location, paths,
+ * path availability times and activeness that the host with the same
+ * address had in the recorded run, so the hosts move exactly like in the
+ * recorded run without computing the movement (e.g., the map routes).</P>
+ *
+ * <P>The hosts of the run must be created in the same order as in the
+ * recorded run (usually the same host groups) and all their groups should
+ * use this model. When a host's trace ends, the host stops where it is.
+ * The trace file (setting {@link #FILE_S} in the
+ * {@value #TRACE_REPLAY_NS} namespace) is memory mapped once per run.</P>
+ */
+public class TraceReplayMovement extends MovementModel {
+	private static final long serialVersionUID = 42L;
+	/** Namespace of the trace replay settings ({@value}) */
+	public static final String TRACE_REPLAY_NS = "TraceReplayMovement";
+	/** Movement trace file -setting id ({@value}) */
+	public static final String FILE_S = "file";
+
+	private MovementTrace trace;
+
+	private Cursor paths;
+	private Cursor xs;
+	private Cursor ys;
+	private Cursor speeds;
+	private Cursor waits;
+	private Cursor activity;
+
+	/** is the host active */
+	private boolean active;
+	/** time of the next activeness change */
+	private double nextChangeTime;
+
+	static {
+		DTNSim.registerForReset(TraceReplayMovement.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Creates a new prototype based on the settings
+	 * @param settings The settings
+	 */
+	public TraceReplayMovement(Settings settings) {
+		super(settings);
+		RunContext context = RunContext.current();
+		this.trace = (MovementTrace)context.get(TraceReplayMovement.class);
+		if (this.trace == null) {
+			Settings s = new Settings(TRACE_REPLAY_NS);
+			this.trace = new MovementTrace(s.getSetting(FILE_S));
+			context.put(TraceReplayMovement.class, this.trace);
+		}
+	}
+
+	/**
+	 * Copy constructor
+	 * @param proto The prototype
+	 */
+	protected TraceReplayMovement(TraceReplayMovement proto) {
+		super(proto);
+		this.trace = proto.trace;
+	}
+
+	/**
+	 * Sets the host and moves the read positions to the host's columns
+	 * @param host The host
+	 * @throws SimError if the trace doesn't have the host
+	 */
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		int address = host.getAddress();
+		if (address >= trace.getNrofHosts()) {
+			throw new SimError("Movement trace has only " +
+					trace.getNrofHosts() + " hosts; no trace for " + host);
+		}
+
+		this.paths = trace.cursor(address, MovementTrace.PATHS);
+		this.xs = trace.cursor(address, MovementTrace.X);
+		this.ys = trace.cursor(address, MovementTrace.Y);
+		this.speeds = trace.cursor(address, MovementTrace.SPEEDS);
+		this.waits = trace.cursor(address, MovementTrace.WAITS);
+		this.activity = trace.cursor(address, MovementTrace.ACTIVITY);
+		this.active = true;
+		readActivityChange();
+	}
+
+	@Override
+	public Coord getInitialLocation() {
+		if (!xs.hasNext()) {
+			return new Coord(0,0); // host wasn't placed in the recorded run
+		}
+		return new Coord(xs.readDouble(), ys.readDouble());
+	}
+
+	@Override
+	public Path getPath() {
+		if (!paths.hasNext()) {
+			return null; // end of the trace
+		}
+		int n = paths.readVarInt() - 1;
+		if (n < 0) {
+			return null;
+		}
+
+		Path p = new Path();
+		if (n == 0) {
+			return p;
+		}
+		int nrofSpeeds = paths.readVarInt();
+		if (nrofSpeeds == 1) {
+			p.setSpeed(speeds.readDouble());
+		}
+		double[] wpSpeeds = new double[nrofSpeeds == 1 ? 0 : n];
+		for (int i=0; i < wpSpeeds.length; i++) {
+			wpSpeeds[i] = speeds.readDouble();
+		}
+
+		for (int i=0; i < n; i++) {
+			Coord c = new Coord(xs.readDouble(), ys.readDouble());
+			if (nrofSpeeds == 1) {
+				p.addWaypoint(c);
+			}
+			else {
+				p.addWaypoint(c, wpSpeeds[i]);
+			}
+		}
+		return p;
+	}
+
+	@Override
+	public double nextPathAvailable() {
+		if (!waits.hasNext()) {
+			return Double.MAX_VALUE; // end of the trace
+		}
+		return waits.readDouble();
+	}
+
+	@Override
+	public boolean isActive() {
+		while (SimClock.getTime() >= nextChangeTime) {
+			active = activity.readByte() != 0;
+			readActivityChange();
+		}
+		return active;
+	}
+
+	@Override
+	public boolean isAlwaysActive() {
+		return active && nextChangeTime == Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Reads the time of the next activeness change
+	 */
+	private void readActivityChange() {
+		this.nextChangeTime = activity.hasNext() ? activity.readDouble() :
+			Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public TraceReplayMovement replicate() {
+		return new TraceReplayMovement(this);
+	}
+
+	/**
+	 * Resets the trace of the current run
+	 */
+	public static void reset() {
+		RunContext.current().put(TraceReplayMovement.class, null);
+	}
+}
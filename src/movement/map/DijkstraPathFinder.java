@@ -4,6 +4,7 @@
  */
 package movement.map;
 
+import java.io.Serializable;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,7 +18,8 @@ import java.util.Set;
 /**
  * Implementation of the Dijkstra's shortest path algorithm.
  */
-public class DijkstraPathFinder {
+public class DijkstraPathFinder implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Value for infinite distance  */
 	private static final Double INFINITY = Double.MAX_VALUE;
 	/** Initial size of the priority queue */
@@ -34,6 +36,14 @@ public class DijkstraPathFinder {
 
 	private int [] okMapNodes;
 
+	/** the map whose routing service is used (or null if not used) */
+	private SimMap map;
+	/** the routing service the workspace is for (the scratch workspace is
+	 * not checkpointed but created again when needed) */
+	private transient MapRoutingService routing;
+	/** search state for the routing service */
+	private transient MapRoutingService.Workspace workspace;
+
 	/**
 	 * Constructor.
 	 * @param okMapNodes The map node types that are OK for paths or null if
@@ -44,6 +54,19 @@ public class DijkstraPathFinder {
 		this.okMapNodes = okMapNodes;
 	}
 
+	/**
+	 * Constructor for a path finder that uses the (cached) shortest path
+	 * trees of the map's {@link MapRoutingService} for the nodes of the map.
+	 * The paths are the same as without the service.
+	 * @param map The map whose nodes the paths are requested for
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 */
+	public DijkstraPathFinder(SimMap map, int [] okMapNodes) {
+		this(okMapNodes);
+		this.map = map;
+	}
+
 	/**
 	 * Initializes a new search with a source node
 	 * @param node The path's source node
@@ -71,6 +94,18 @@ public class DijkstraPathFinder {
 	 * a list of MapNodes or an empty list if such path is not available
 	 */
 	public List<MapNode> getShortestPath(MapNode from, MapNode to) {
+		if (map != null) {
+			MapRoutingService service = map.getRoutingService();
+			if (service.contains(from) && service.contains(to)) {
+				if (service != routing) {
+					routing = service;
+					workspace = service.newWorkspace();
+				}
+				return service.getShortestPath(from, to, okMapNodes,
+						workspace);
+			}
+		}
+
 		List<MapNode> path = new LinkedList<MapNode>();
 
 		if (from.compareTo(to) == 0) { // source and destination are the same
@@ -4,6 +4,7 @@
  */
 package movement.map;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Vector;
 
@@ -14,7 +15,8 @@ import core.SettingsError;
  * A node in a SimMap. Node has a location, 0-n neighbors that it is
  * connected to and possibly a type identifier.
  */
-public class MapNode implements Comparable<MapNode> {
+public class MapNode implements Comparable<MapNode>, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Smallest valid type of a node: {@value}*/
 	public static final int MIN_TYPE = 1;
 	/** Biggest valid type of a node: {@value} */
@@ -25,6 +27,8 @@ public class MapNode implements Comparable<MapNode> {
 	private Vector<MapNode> neighbors;
 	// bit mask of map node's types or 0 if no type's are defined
 	private int type;
+	/** id of the node in the map's routing service (or -1 if none) */
+	private int routingId;
 
 	/**
 	 * Constructor. Creates a map node to a location.
@@ -34,6 +38,7 @@ public class MapNode implements Comparable<MapNode> {
 		this.location = location;
 		this.neighbors = new Vector<MapNode>();
 		type = 0;
+		routingId = -1;
 	}
 
 	/**
@@ -83,11 +88,35 @@ public class MapNode implements Comparable<MapNode> {
 	 * @return A bit mask for the given type
 	 * @throws SettingsError if the type is out of range
 	 */
-	private int typeToBitMask(int type) {
+	static int typeToBitMask(int type) {
 		assert type >= MIN_TYPE && type <= MAX_TYPE : "Invalid node type "+type;
 		return 1 << type; // create the mask by bitwise shift
 	}
 
+	/**
+	 * Returns the bit mask of this node's types (0 if no types are defined)
+	 * @return The type bit mask
+	 */
+	int getTypeMask() {
+		return this.type;
+	}
+
+	/**
+	 * Returns the id of this node in its map's {@link MapRoutingService}
+	 * @return The routing id or -1 if the node doesn't have one
+	 */
+	int getRoutingId() {
+		return this.routingId;
+	}
+
+	/**
+	 * Sets the id of this node in its map's {@link MapRoutingService}
+	 * @param id The routing id
+	 */
+	void setRoutingId(int id) {
+		this.routingId = id;
+	}
+
 	/**
 	 * Adds the node as this node's neighbour (unless the node is null)
 	 * @param node The node to add or null for no action
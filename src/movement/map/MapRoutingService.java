@@ -0,0 +1,321 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <P>
+ * Shortest path service of a {@link SimMap}. The map nodes get dense integer
+ * ids and the map's graph is stored in compressed sparse row (CSR) arrays.
+ * Shortest path trees are computed with Dijkstra's algorithm using a d-ary
+ * heap and kept in a least recently used cache keyed by the source node and
+ * the allowed map node types, so repeated trips from the same node (homes,
+ * offices, bus stops, points of interest...) don't need new searches.</P>
+ *
+ * <P>The nodes are taken from the heap in the order of their distance and,
+ * for equal distances, in the order of {@link MapNode#compareTo(MapNode)},
+ * like {@link DijkstraPathFinder} does, so the paths are the same as the
+ * ones found by the original search.</P>
+ *
+ * <P>The service can be shared by concurrent simulation runs; the per-search
+ * state is kept in {@link Workspace} objects that must not be shared.</P>
+ */
+public class MapRoutingService implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Default maximum number of cached shortest path trees ({@value}) */
+	public static final int DEF_CACHE_SIZE = 256;
+	/** Arity of the heap */
+	private static final int D = 4;
+	/** Value for infinite distance */
+	private static final double INFINITY = Double.MAX_VALUE;
+	/** Heap position value for nodes not in the heap */
+	private static final int NOT_IN_HEAP = -1;
+	/** Heap position value for visited nodes */
+	private static final int VISITED = -2;
+
+	/** nodes by their id */
+	private final MapNode[] nodes;
+	/** position of the node in the MapNode's natural ordering, by id */
+	private final int[] rank;
+	/** type bit masks of the nodes, by id */
+	private final int[] typeMask;
+	/** index of the first edge of each node (and end index for the last) */
+	private final int[] edgeStart;
+	/** target node ids of the edges */
+	private final int[] edgeTarget;
+	/** lengths of the edges */
+	private final double[] edgeLength;
+
+	/** cached trees (parent node ids) */
+	private final LinkedHashMap<Long, int[]> cache;
+
+	/**
+	 * Creates a routing service for the given nodes
+	 * @param mapNodes All the nodes of the map
+	 * @param cacheSize Maximum number of cached shortest path trees
+	 */
+	public MapRoutingService(List<MapNode> mapNodes, final int cacheSize) {
+		int n = mapNodes.size();
+		this.nodes = mapNodes.toArray(new MapNode[n]);
+		this.rank = new int[n];
+		this.typeMask = new int[n];
+		this.edgeStart = new int[n + 1];
+
+		int nrofEdges = 0;
+		for (int i=0; i < n; i++) {
+			nodes[i].setRoutingId(i);
+			typeMask[i] = nodes[i].getTypeMask();
+			nrofEdges += nodes[i].getNeighbors().size();
+		}
+
+		MapNode[] sorted = nodes.clone();
+		Arrays.sort(sorted);
+		for (int i=0; i < n; i++) {
+			rank[sorted[i].getRoutingId()] = i;
+		}
+
+		this.edgeTarget = new int[nrofEdges];
+		this.edgeLength = new double[nrofEdges];
+		int e = 0;
+		for (int i=0; i < n; i++) {
+			edgeStart[i] = e;
+			for (MapNode neighbor : nodes[i].getNeighbors()) {
+				edgeTarget[e] = neighbor.getRoutingId();
+				edgeLength[e] = nodes[i].getLocation().distance(
+						neighbor.getLocation());
+				e++;
+			}
+		}
+		edgeStart[n] = e;
+
+		this.cache = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns true if the node belongs to the map of this service
+	 * @param node The node to check
+	 * @return true if the node belongs to the map of this service
+	 */
+	public boolean contains(MapNode node) {
+		int id = node.getRoutingId();
+		return id >= 0 && id < nodes.length && nodes[id] == node;
+	}
+
+	/**
+	 * Creates a new workspace for the searches of one user of the service
+	 * @return A new workspace
+	 */
+	public Workspace newWorkspace() {
+		return new Workspace(nodes.length);
+	}
+
+	/**
+	 * Finds and returns a shortest path between two map nodes
+	 * @param from The source of the path
+	 * @param to The destination of the path
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param ws The workspace to use if a new search is needed
+	 * @return a shortest path between the source and destination nodes in
+	 * a list of MapNodes or an empty list if such path is not available
+	 */
+	public List<MapNode> getShortestPath(MapNode from, MapNode to,
+			int[] okMapNodes, Workspace ws) {
+		if (from.compareTo(to) == 0) { // source and destination are the same
+			List<MapNode> path = new ArrayList<MapNode>(1);
+			path.add(from);
+			return path;
+		}
+
+		int[] parent = getTree(from.getRoutingId(), okMapNodes, ws);
+		int target = to.getRoutingId();
+		if (parent[target] < 0) {
+			return new ArrayList<MapNode>(0); // no path available
+		}
+
+		List<MapNode> path = new ArrayList<MapNode>();
+		for (int id = target; id >= 0; id = parent[id]) {
+			path.add(nodes[id]);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Returns the shortest path tree from a source node, from the cache if
+	 * available
+	 * @param source Id of the source node
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param ws The workspace to use if a new search is needed
+	 * @return Parent node ids of all nodes in the tree (-1 for the source
+	 * and the nodes that can't be reached)
+	 */
+	private int[] getTree(int source, int[] okMapNodes, Workspace ws) {
+		int mask = 0;
+		if (okMapNodes != null) {
+			for (int type : okMapNodes) {
+				mask |= MapNode.typeToBitMask(type);
+			}
+		}
+		long key = ((long)source << 33) |
+			(okMapNodes != null ? 1L << 32 : 0) | (mask & 0xFFFFFFFFL);
+
+		int[] tree;
+		synchronized (cache) {
+			tree = cache.get(key);
+		}
+		if (tree == null) {
+			tree = ws.search(source, okMapNodes != null, mask);
+			synchronized (cache) {
+				cache.put(key, tree);
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * Search state of one user of the service: distances and the d-ary heap
+	 * of the unvisited nodes.
+	 */
+	public class Workspace {
+		private final double[] dist;
+		/** heap position of each node, or NOT_IN_HEAP or VISITED */
+		private final int[] pos;
+		private final int[] heap;
+		private int size;
+
+		private Workspace(int nrofNodes) {
+			this.dist = new double[nrofNodes];
+			this.pos = new int[nrofNodes];
+			this.heap = new int[nrofNodes];
+		}
+
+		/**
+		 * Computes a shortest path tree from the source node
+		 * @param source Id of the source node
+		 * @param useMask If true, only the nodes with a type in the mask are
+		 * used as next hops
+		 * @param mask Type bit mask of the allowed nodes
+		 * @return Parent node ids of all nodes in the tree
+		 */
+		private int[] search(int source, boolean useMask, int mask) {
+			int[] parent = new int[nodes.length];
+			Arrays.fill(parent, -1);
+			Arrays.fill(dist, INFINITY);
+			Arrays.fill(pos, NOT_IN_HEAP);
+			size = 0;
+
+			dist[source] = 0;
+			push(source);
+
+			while (size > 0) {
+				int node = pop();
+				pos[node] = VISITED;
+				double nodeDist = dist[node];
+
+				for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+					int n = edgeTarget[e];
+					if (pos[n] == VISITED) {
+						continue; // skip visited nodes
+					}
+					if (useMask && (typeMask[n] & mask) == 0) {
+						continue; // skip nodes that are not OK
+					}
+
+					double nDist = nodeDist + edgeLength[e];
+					if (dist[n] > nDist) { // stored distance > found dist?
+						parent[n] = node;
+						dist[n] = nDist;
+						if (pos[n] == NOT_IN_HEAP) {
+							push(n);
+						}
+						else {
+							siftUp(pos[n]);
+						}
+					}
+				}
+			}
+			return parent;
+		}
+
+		/**
+		 * Returns true if node a should be taken from the heap before b
+		 */
+		private boolean before(int a, int b) {
+			return dist[a] < dist[b] || (dist[a] == dist[b] && rank[a] < rank[b]);
+		}
+
+		private void push(int node) {
+			heap[size] = node;
+			pos[node] = size;
+			size++;
+			siftUp(size - 1);
+		}
+
+		private int pop() {
+			int top = heap[0];
+			size--;
+			if (size > 0) {
+				heap[0] = heap[size];
+				pos[heap[0]] = 0;
+				siftDown(0);
+			}
+			return top;
+		}
+
+		private void siftUp(int i) {
+			int node = heap[i];
+			while (i > 0) {
+				int parentIndex = (i - 1) / D;
+				int p = heap[parentIndex];
+				if (!before(node, p)) {
+					break;
+				}
+				heap[i] = p;
+				pos[p] = i;
+				i = parentIndex;
+			}
+			heap[i] = node;
+			pos[node] = i;
+		}
+
+		private void siftDown(int i) {
+			int node = heap[i];
+			while (true) {
+				int first = i * D + 1;
+				if (first >= size) {
+					break;
+				}
+				int best = first;
+				int last = Math.min(first + D, size);
+				for (int c = first + 1; c < last; c++) {
+					if (before(heap[c], heap[best])) {
+						best = c;
+					}
+				}
+				if (!before(heap[best], node)) {
+					break;
+				}
+				heap[i] = heap[best];
+				pos[heap[i]] = i;
+				i = best;
+			}
+			heap[i] = node;
+			pos[node] = i;
+		}
+	}
+}
@@ -15,6 +15,8 @@ import core.Coord;
  * A simulation map for node movement.
  */
 public class SimMap implements Serializable {
+	private static final long serialVersionUID = 42L;
+
 	private Coord minBound;
 	private Coord maxBound;
 	/** list representation of the map for efficient list-returning */
@@ -27,7 +29,9 @@ public class SimMap implements Serializable {
 	private boolean isMirrored;
 
 	/** is re-hash needed before using hash mode (some coordinates changed) */
-	private boolean needsRehash = false;
+	private volatile boolean needsRehash = false;
+	/** shortest path service of the map (created when first needed) */
+	private transient volatile MapRoutingService routing = null;
 
 	public SimMap(Map<Coord, MapNode> nodes) {
 		this.offset = new Coord(0,0);
@@ -53,15 +57,48 @@ public class SimMap implements Serializable {
 	 */
 	public MapNode getNodeByCoord(Coord c) {
 		if (needsRehash) { // some coordinates have changed after creating hash
-			nodesMap.clear();
-			for (MapNode node : getNodes()) {
-				nodesMap.put(node.getLocation(), node); // re-hash
-			}
+			rehash();
 		}
 
 		return nodesMap.get(c);
 	}
 
+	/**
+	 * Re-hashes the map nodes by their (changed) coordinates. The same map
+	 * can be shared by concurrent simulation runs so re-hashing is done only
+	 * once and under a lock.
+	 */
+	private synchronized void rehash() {
+		if (!needsRehash) {
+			return; // another thread already did it
+		}
+		nodesMap.clear();
+		for (MapNode node : getNodes()) {
+			nodesMap.put(node.getLocation(), node); // re-hash
+		}
+		needsRehash = false;
+	}
+
+	/**
+	 * Returns the shortest path service of this map. The service is created
+	 * on the first call and re-created if the map is translated or mirrored.
+	 * @return The shortest path service of this map
+	 */
+	public MapRoutingService getRoutingService() {
+		MapRoutingService service = this.routing;
+		if (service == null) {
+			synchronized (this) {
+				service = this.routing;
+				if (service == null) {
+					service = new MapRoutingService(nodes,
+							MapRoutingService.DEF_CACHE_SIZE);
+					this.routing = service;
+				}
+			}
+		}
+		return service;
+	}
+
 	/**
 	 * Returns the upper left corner coordinate of the map
 	 * @return the upper left corner coordinate of the map
@@ -111,6 +148,7 @@ public class SimMap implements Serializable {
 		offset.translate(dx, dy);
 
 		needsRehash = true;
+		routing = null;
 	}
 
 	/**
@@ -127,6 +165,7 @@ public class SimMap implements Serializable {
 		setBounds();
 		this.isMirrored = true;
 		needsRehash = true;
+		routing = null;
 	}
 
 	/**
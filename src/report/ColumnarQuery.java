@@ -0,0 +1,432 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.FileNotFoundException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Query tool for the columnar report files (see {@link ColumnarWriter}).
+ * Filters the rows, optionally groups and aggregates them, and writes the
+ * result as CSV (with a header line).</P>
+ * <PRE>
+ * java -cp target report.ColumnarQuery &lt;file&gt; [options]
+ *   -schema                 print the columns and the number of rows
+ *   -select c1,c2,...       columns to output (default: all)
+ *   -where &lt;col&gt;&lt;op&gt;&lt;value&gt;  only rows where the condition holds; op is
+ *                           one of = != &lt; &lt;= &gt; &gt;= (can be repeated)
+ *   -group c1,c2,...        group the rows by the values of the columns
+ *   -agg f1,f2,...          aggregates of the groups (or all the rows):
+ *                           count, sum:col, avg:col, min:col or max:col
+ *   -out &lt;file&gt;             write to the file instead of standard output
+ * </PRE>
+ * <P>Numeric columns are compared as numbers and string columns as
+ * strings. Example: delivery delays from host p3 grouped by destination:
+ * <CODE>-where from=p3 -group to -agg count,avg:deliveryTime</CODE></P>
+ */
+public class ColumnarQuery {
+	private static final String[] OPERATORS = {"!=", "<=", ">=", "=", "<",
+		">"};
+	private static final String[] FUNCTIONS = {"count", "sum", "avg", "min",
+		"max"};
+
+	private String fileName;
+	private boolean schema;
+	private String[] select;
+	private List<String> where;
+	private String[] group;
+	private String[] agg;
+
+	/**
+	 * Creates a query from the command line arguments
+	 * @param args The arguments (file name first, then the options)
+	 * @throws SimError if the arguments are invalid
+	 */
+	public ColumnarQuery(String[] args) {
+		if (args.length == 0) {
+			throw new SimError("No file given");
+		}
+		this.fileName = args[0];
+		this.where = new ArrayList<String>();
+
+		for (int i=1; i < args.length; i++) {
+			String option = args[i];
+			if (option.equals("-schema")) {
+				schema = true;
+				continue;
+			}
+			if (i + 1 == args.length) {
+				throw new SimError("Missing value of option " + option);
+			}
+			String value = args[++i];
+			if (option.equals("-select")) {
+				select = value.split(",");
+			} else if (option.equals("-where")) {
+				where.add(value);
+			} else if (option.equals("-group")) {
+				group = value.split(",");
+			} else if (option.equals("-agg")) {
+				agg = value.split(",");
+			} else if (option.equals("-out")) {
+				/* handled in main */
+			} else {
+				throw new SimError("Unknown option " + option);
+			}
+		}
+		if (select != null && (group != null || agg != null)) {
+			throw new SimError("-select can't be used with -group or -agg");
+		}
+	}
+
+	/**
+	 * Runs the query and writes the result
+	 * @param out Where the result is written to
+	 * @return Number of rows written (excluding the header)
+	 * @throws SimError if the file can't be read or the query refers to
+	 * unknown columns
+	 */
+	public int execute(PrintWriter out) {
+		ColumnarReader reader = new ColumnarReader(fileName);
+		try {
+			if (schema) {
+				return printSchema(reader, out);
+			}
+			List<Filter> filters = new ArrayList<Filter>();
+			for (String condition : where) {
+				filters.add(new Filter(reader, condition));
+			}
+			if (group != null || agg != null) {
+				return aggregate(reader, filters, out);
+			}
+			return select(reader, filters, out);
+		} finally {
+			reader.close();
+			out.flush();
+		}
+	}
+
+	private int printSchema(ColumnarReader reader, PrintWriter out) {
+		long rows = 0;
+		while (reader.nextBlock()) {
+			rows += reader.getNrofRows();
+		}
+		out.println("column,type");
+		for (int i=0; i < reader.getNrofColumns(); i++) {
+			out.println(reader.getName(i) + "," +
+					typeName(reader.getType(i)));
+		}
+		out.println("# " + rows + " rows");
+		return reader.getNrofColumns();
+	}
+
+	private int select(ColumnarReader reader, List<Filter> filters,
+			PrintWriter out) {
+		int[] columns;
+		if (select == null) {
+			columns = new int[reader.getNrofColumns()];
+			for (int i=0; i < columns.length; i++) {
+				columns[i] = i;
+			}
+		} else {
+			columns = columns(reader, select);
+		}
+
+		for (int i=0; i < columns.length; i++) {
+			out.print((i > 0 ? "," : "") + csv(reader.getName(columns[i])));
+		}
+		out.println();
+
+		int nrofRows = 0;
+		while (reader.nextBlock()) {
+			for (int row=0, n=reader.getNrofRows(); row < n; row++) {
+				if (!matches(filters, row)) {
+					continue;
+				}
+				for (int i=0; i < columns.length; i++) {
+					if (i > 0) {
+						out.print(',');
+					}
+					out.print(csv(reader.getText(columns[i], row)));
+				}
+				out.println();
+				nrofRows++;
+			}
+		}
+		return nrofRows;
+	}
+
+	private int aggregate(ColumnarReader reader, List<Filter> filters,
+			PrintWriter out) {
+		int[] groupColumns = group == null ? new int[0] :
+			columns(reader, group);
+		String[] functions = agg == null ? new String[] {"count"} : agg;
+		int[] function = new int[functions.length];
+		int[] aggColumns = new int[functions.length];
+		for (int i=0; i < functions.length; i++) {
+			String[] parts = functions[i].split(":", 2);
+			function[i] = -1;
+			for (int j=0; j < FUNCTIONS.length; j++) {
+				if (FUNCTIONS[j].equals(parts[0])) {
+					function[i] = j;
+				}
+			}
+			if (function[i] < 0 || (function[i] > 0) != (parts.length == 2)) {
+				throw new SimError("Invalid aggregate " + functions[i]);
+			}
+			aggColumns[i] = function[i] == 0 ? -1 :
+				columns(reader, new String[] {parts[1]})[0];
+		}
+
+		Map<String, Aggregate> groups = new LinkedHashMap<String, Aggregate>();
+		StringBuilder key = new StringBuilder();
+		while (reader.nextBlock()) {
+			for (int row=0, n=reader.getNrofRows(); row < n; row++) {
+				if (!matches(filters, row)) {
+					continue;
+				}
+				key.setLength(0);
+				for (int c : groupColumns) {
+					key.append(reader.getText(c, row)).append('\0');
+				}
+				String k = key.toString();
+				Aggregate a = groups.get(k);
+				if (a == null) {
+					String[] values = new String[groupColumns.length];
+					for (int i=0; i < values.length; i++) {
+						values[i] = reader.getText(groupColumns[i], row);
+					}
+					a = new Aggregate(values, functions.length);
+					groups.put(k, a);
+				}
+				a.count++;
+				for (int i=0; i < aggColumns.length; i++) {
+					if (aggColumns[i] >= 0) {
+						a.add(i, reader.getNumber(aggColumns[i], row));
+					}
+				}
+			}
+		}
+
+		for (int i=0; i < groupColumns.length; i++) {
+			out.print(csv(reader.getName(groupColumns[i])) + ",");
+		}
+		for (int i=0; i < functions.length; i++) {
+			out.print((i > 0 ? "," : "") + csv(function[i] == 0 ? "count" :
+				FUNCTIONS[function[i]] + "(" + reader.getName(aggColumns[i]) +
+				")"));
+		}
+		out.println();
+
+		for (Aggregate a : groups.values()) {
+			for (String v : a.groupValues) {
+				out.print(csv(v) + ",");
+			}
+			for (int i=0; i < functions.length; i++) {
+				if (i > 0) {
+					out.print(',');
+				}
+				out.print(function[i] == 0 ? Long.toString(a.count) :
+					Double.toString(a.get(i, function[i])));
+			}
+			out.println();
+		}
+		return groups.size();
+	}
+
+	private boolean matches(List<Filter> filters, int row) {
+		for (int i=0, n=filters.size(); i < n; i++) {
+			if (!filters.get(i).matches(row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[] columns(ColumnarReader reader, String[] names) {
+		int[] columns = new int[names.length];
+		for (int i=0; i < names.length; i++) {
+			columns[i] = reader.getColumn(names[i]);
+			if (columns[i] < 0) {
+				throw new SimError("No column " + names[i]);
+			}
+		}
+		return columns;
+	}
+
+	private static String typeName(byte type) {
+		switch (type) {
+		case ColumnarWriter.TIME: return "time";
+		case ColumnarWriter.INT: return "int";
+		case ColumnarWriter.DOUBLE: return "double";
+		case ColumnarWriter.STRING: return "string";
+		default: return "unknown";
+		}
+	}
+
+	/**
+	 * Quotes a CSV value if needed
+	 */
+	private static String csv(String value) {
+		for (int i=0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+				return "\"" + value.replace("\"", "\"\"") + "\"";
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Condition of a column's value
+	 */
+	private static class Filter {
+		private final ColumnarReader reader;
+		private final int column;
+		private final int operator;
+		private final String value;
+		private final double number;
+		private final boolean numeric;
+
+		private Filter(ColumnarReader reader, String condition) {
+			int at = -1;
+			int op = -1;
+			for (int i=0; i < OPERATORS.length; i++) {
+				int index = condition.indexOf(OPERATORS[i]);
+				if (index > 0 && (at < 0 || index < at)) {
+					at = index;
+					op = i;
+				}
+			}
+			if (op < 0) {
+				throw new SimError("Invalid condition " + condition);
+			}
+			this.reader = reader;
+			this.operator = op;
+			this.column = columns(reader, new String[] {
+					condition.substring(0, at)})[0];
+			this.value = condition.substring(at + OPERATORS[op].length());
+			this.numeric = reader.getType(column) != ColumnarWriter.STRING;
+			if (numeric) {
+				try {
+					this.number = Double.parseDouble(value);
+				} catch (NumberFormatException e) {
+					throw new SimError("Invalid number in condition " +
+							condition);
+				}
+			} else {
+				this.number = Double.NaN;
+			}
+		}
+
+		private boolean matches(int row) {
+			int cmp;
+			if (numeric) {
+				double v = reader.getNumber(column, row);
+				if (Double.isNaN(v)) {
+					return operator == 0; // missing values differ from all
+				}
+				cmp = Double.compare(v, number);
+			} else {
+				cmp = reader.getText(column, row).compareTo(value);
+			}
+
+			switch (operator) {
+			case 0: return cmp != 0;
+			case 1: return cmp <= 0;
+			case 2: return cmp >= 0;
+			case 3: return cmp == 0;
+			case 4: return cmp < 0;
+			default: return cmp > 0;
+			}
+		}
+	}
+
+	/**
+	 * Aggregated values of one group
+	 */
+	private static class Aggregate {
+		private final String[] groupValues;
+		private long count;
+		private final double[] sums;
+		private final double[] mins;
+		private final double[] maxs;
+		private final long[] nrofValues;
+
+		private Aggregate(String[] groupValues, int n) {
+			this.groupValues = groupValues;
+			this.sums = new double[n];
+			this.mins = new double[n];
+			this.maxs = new double[n];
+			this.nrofValues = new long[n];
+			Arrays.fill(mins, Double.POSITIVE_INFINITY);
+			Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+		}
+
+		private void add(int i, double value) {
+			if (Double.isNaN(value)) {
+				return; // missing values are ignored
+			}
+			sums[i] += value;
+			mins[i] = Math.min(mins[i], value);
+			maxs[i] = Math.max(maxs[i], value);
+			nrofValues[i]++;
+		}
+
+		private double get(int i, int function) {
+			if (nrofValues[i] == 0) {
+				return Double.NaN;
+			}
+			switch (function) {
+			case 1: return sums[i];
+			case 2: return sums[i] / nrofValues[i];
+			case 3: return mins[i];
+			default: return maxs[i];
+			}
+		}
+	}
+
+	/**
+	 * Runs a query given on the command line
+	 * @param args file name and options
+	 */
+	public static void main(String[] args) {
+		String outFile = null;
+		for (int i=1; i < args.length - 1; i++) {
+			if (args[i].equals("-out")) {
+				outFile = args[i + 1];
+			}
+		}
+
+		try {
+			ColumnarQuery query = new ColumnarQuery(args);
+			PrintWriter out = outFile == null ?
+					new PrintWriter(new OutputStreamWriter(System.out)) :
+					new PrintWriter(outFile);
+			query.execute(out);
+			if (outFile != null) {
+				out.close();
+			}
+		} catch (SimError e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: ColumnarQuery <file> [-schema] " +
+					"[-select c1,c2] [-where <col><op><value>]... " +
+					"[-group c1,c2] [-agg count,sum:c,avg:c,min:c,max:c] " +
+					"[-out file]");
+			System.exit(1);
+		} catch (FileNotFoundException e) {
+			System.err.println("Can't write " + outFile);
+			System.exit(1);
+		}
+	}
+}
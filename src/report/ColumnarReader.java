@@ -0,0 +1,369 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import core.SimError;
+
+/**
+ * Reader of the columnar report files written by {@link ColumnarWriter}.
+ * The file is read one block at a time: {@link #nextBlock()} decodes the
+ * next block and the values of its rows are then available by column and
+ * row index.
+ */
+public class ColumnarReader {
+	private final String fileName;
+	private final DataInputStream in;
+	private final String[] names;
+	private final byte[] types;
+
+	/** decoded values of the block's time and double columns */
+	private final double[][] doubles;
+	/** decoded values of the block's integer columns and the dictionary
+	 * indexes of the string columns */
+	private final long[][] longs;
+	private final List<List<String>> dictionaries;
+	private final Inflater inflater;
+	private byte[] raw;
+	private byte[] compressed;
+	private int pos;
+
+	private int nrofRows;
+	private boolean ended;
+
+	/**
+	 * Opens a columnar file and reads its header
+	 * @param fileName Name of the file
+	 * @throws SimError if the file can't be read or it is not a columnar
+	 * report file
+	 */
+	public ColumnarReader(String fileName) {
+		this.fileName = fileName;
+		try {
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(fileName), 1 << 16));
+		} catch (IOException e) {
+			throw new SimError("Can't read columnar file " + fileName, e);
+		}
+
+		try {
+			if (in.readInt() != ColumnarWriter.MAGIC) {
+				throw new SimError(fileName + " is not a columnar file");
+			}
+			int version = in.readInt();
+			if (version > ColumnarWriter.VERSION) {
+				throw new SimError("Unsupported version " + version +
+						" of columnar file " + fileName);
+			}
+			int n = in.readInt();
+			this.names = new String[n];
+			this.types = new byte[n];
+			for (int i=0; i < n; i++) {
+				types[i] = in.readByte();
+				names[i] = in.readUTF();
+			}
+		} catch (EOFException e) {
+			close();
+			throw new SimError(fileName + " is not a columnar file");
+		} catch (IOException e) {
+			close();
+			throw new SimError("Can't read columnar file " + fileName, e);
+		}
+
+		int n = names.length;
+		this.doubles = new double[n][0];
+		this.longs = new long[n][0];
+		this.dictionaries = new ArrayList<List<String>>(n);
+		for (int i=0; i < n; i++) {
+			dictionaries.add(types[i] == ColumnarWriter.STRING ?
+					new ArrayList<String>() : null);
+		}
+		this.inflater = new Inflater();
+		this.raw = new byte[0];
+		this.compressed = new byte[0];
+	}
+
+	/**
+	 * Returns the number of columns
+	 * @return the number of columns
+	 */
+	public int getNrofColumns() {
+		return this.names.length;
+	}
+
+	/**
+	 * Returns the name of a column
+	 * @param column Index of the column
+	 * @return the name of the column
+	 */
+	public String getName(int column) {
+		return this.names[column];
+	}
+
+	/**
+	 * Returns the type of a column
+	 * @param column Index of the column
+	 * @return the type of the column (see {@link ColumnarWriter})
+	 */
+	public byte getType(int column) {
+		return this.types[column];
+	}
+
+	/**
+	 * Returns the index of a column
+	 * @param name Name of the column
+	 * @return the index of the column or -1 if there is no such column
+	 */
+	public int getColumn(String name) {
+		for (int i=0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads and decodes the next block of rows
+	 * @return true if a block was read, false if the end of the file was
+	 * reached
+	 * @throws SimError if the file can't be read
+	 */
+	public boolean nextBlock() {
+		if (ended) {
+			return false;
+		}
+
+		try {
+			nrofRows = in.readInt();
+			if (nrofRows == 0) {
+				ended = true;
+				close();
+				return false;
+			}
+			for (int i=0; i < names.length; i++) {
+				readColumn(i);
+			}
+		} catch (EOFException e) {
+			close();
+			throw new SimError("Columnar file " + fileName + " is truncated");
+		} catch (IOException e) {
+			close();
+			throw new SimError("Can't read columnar file " + fileName, e);
+		} catch (DataFormatException e) {
+			close();
+			throw new SimError("Corrupted columnar file " + fileName, e);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads, decompresses and decodes one column of the block
+	 */
+	private void readColumn(int c) throws IOException, DataFormatException {
+		int rawLength = in.readInt();
+		int length = in.readInt();
+		if (compressed.length < length) {
+			compressed = new byte[length];
+		}
+		if (raw.length < rawLength) {
+			raw = new byte[rawLength];
+		}
+		in.readFully(compressed, 0, length);
+		inflater.reset();
+		inflater.setInput(compressed, 0, length);
+		int n = 0;
+		while (n < rawLength) {
+			int m = inflater.inflate(raw, n, rawLength - n);
+			if (m == 0 && (inflater.finished() || inflater.needsInput())) {
+				throw new DataFormatException("Column " + names[c] +
+						" is shorter than expected");
+			}
+			n += m;
+		}
+		pos = 0;
+
+		switch (types[c]) {
+		case ColumnarWriter.TIME:
+			double[] times = doubleArray(c);
+			long bits = 0;
+			for (int i=0; i < nrofRows; i++) {
+				bits += zigzag();
+				times[i] = Double.longBitsToDouble(bits);
+			}
+			break;
+		case ColumnarWriter.DOUBLE:
+			double[] values = doubleArray(c);
+			for (int i=0; i < nrofRows; i++) {
+				long v = 0;
+				for (int j=0; j < 8; j++) {
+					v = (v << 8) | (raw[pos++] & 0xFF);
+				}
+				values[i] = Double.longBitsToDouble(v);
+			}
+			break;
+		case ColumnarWriter.INT:
+			long[] ints = longArray(c);
+			for (int i=0; i < nrofRows; i++) {
+				ints[i] = zigzag();
+			}
+			break;
+		case ColumnarWriter.STRING:
+			List<String> dictionary = dictionaries.get(c);
+			for (int i=0, m=(int)varint(); i < m; i++) {
+				int strLength = (int)varint();
+				dictionary.add(new String(raw, pos, strLength,
+						StandardCharsets.UTF_8));
+				pos += strLength;
+			}
+			long[] indexes = longArray(c);
+			for (int i=0; i < nrofRows; i++) {
+				indexes[i] = varint();
+			}
+			break;
+		default:
+			throw new SimError("Unknown type " + types[c] + " of column " +
+					names[c] + " in " + fileName);
+		}
+	}
+
+	private double[] doubleArray(int c) {
+		if (doubles[c].length < nrofRows) {
+			doubles[c] = new double[nrofRows];
+		}
+		return doubles[c];
+	}
+
+	private long[] longArray(int c) {
+		if (longs[c].length < nrofRows) {
+			longs[c] = new long[nrofRows];
+		}
+		return longs[c];
+	}
+
+	private long varint() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = raw[pos++];
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	private long zigzag() {
+		long v = varint();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Returns the number of rows in the current block
+	 * @return the number of rows in the current block
+	 */
+	public int getNrofRows() {
+		return this.nrofRows;
+	}
+
+	/**
+	 * Returns a value of a time or double column
+	 * @param column Index of the column
+	 * @param row Index of the row in the current block
+	 * @return The value
+	 */
+	public double getDouble(int column, int row) {
+		return doubles[column][row];
+	}
+
+	/**
+	 * Returns a value of an integer column
+	 * @param column Index of the column
+	 * @param row Index of the row in the current block
+	 * @return The value or {@link ColumnarWriter#NULL_INT}
+	 */
+	public long getInt(int column, int row) {
+		return longs[column][row];
+	}
+
+	/**
+	 * Returns a value of a string column
+	 * @param column Index of the column
+	 * @param row Index of the row in the current block
+	 * @return The value or null
+	 */
+	public String getString(int column, int row) {
+		int index = (int)longs[column][row];
+		return index == 0 ? null : dictionaries.get(column).get(index - 1);
+	}
+
+	/**
+	 * Returns a value of any column as a number. String values are parsed
+	 * as numbers.
+	 * @param column Index of the column
+	 * @param row Index of the row in the current block
+	 * @return The value or NaN if the value is missing or not a number
+	 */
+	public double getNumber(int column, int row) {
+		switch (types[column]) {
+		case ColumnarWriter.INT:
+			long v = longs[column][row];
+			return v == ColumnarWriter.NULL_INT ? Double.NaN : v;
+		case ColumnarWriter.STRING:
+			String s = getString(column, row);
+			try {
+				return s == null ? Double.NaN : Double.parseDouble(s);
+			} catch (NumberFormatException e) {
+				return Double.NaN;
+			}
+		default:
+			return doubles[column][row];
+		}
+	}
+
+	/**
+	 * Returns a value of any column as text
+	 * @param column Index of the column
+	 * @param row Index of the row in the current block
+	 * @return The value as text or an empty string for missing values
+	 */
+	public String getText(int column, int row) {
+		switch (types[column]) {
+		case ColumnarWriter.INT:
+			long v = longs[column][row];
+			return v == ColumnarWriter.NULL_INT ? "" : Long.toString(v);
+		case ColumnarWriter.STRING:
+			String s = getString(column, row);
+			return s == null ? "" : s;
+		default:
+			return Double.toString(doubles[column][row]);
+		}
+	}
+
+	/**
+	 * Closes the file. Called automatically when the end of the file is
+	 * reached.
+	 */
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			// nothing to do
+		}
+		if (inflater != null) {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Writer of typed, columnar binary report files. The rows are added one
+ * value at a time in the column order and collected to blocks of
+ * {@value #BLOCK_ROWS} rows. Every column of a block is encoded separately
+ * and compressed with deflate, so the files are a fraction of the size of
+ * the respective text reports and they can be read without parsing text
+ * (see {@link ColumnarReader} and {@link ColumnarQuery}).</P>
+ *
+ * <P>Column types and their encodings:</P>
+ * <UL>
+ * <LI>{@link #TIME}: double values (e.g., simulation times) that are
+ * usually close to the previous value. Encoded as zigzag varint deltas of
+ * the values' IEEE 754 bits, which is lossless and small for
+ * non-decreasing times.</LI>
+ * <LI>{@link #INT}: integer values as zigzag varints. {@link #NULL_INT}
+ * marks a missing value.</LI>
+ * <LI>{@link #DOUBLE}: any double values as 8 bytes.</LI>
+ * <LI>{@link #STRING}: strings (e.g., host and message IDs) that are
+ * dictionary encoded. Every string is stored only once per file, in the
+ * block where it is first seen, and the rows refer to it with a varint
+ * index (0 for null).</LI>
+ * </UL>
+ *
+ * <P>File format (version {@value #VERSION}, big-endian):</P>
+ * <PRE>
+ * header:
+ *   int magic ({@link #MAGIC}), int version, int number of columns,
+ *   byte type and modified UTF-8 name of each column
+ * blocks:
+ *   int number of rows (&gt; 0),
+ *   int raw length, int compressed length and the deflated bytes of each
+ *   column
+ * end:
+ *   int 0
+ * </PRE>
+ * <P>The delta encoding of times starts over in every block. A string column
+ * starts with the varint number of strings new in the block followed by
+ * their varint lengths and UTF-8 bytes.</P>
+ */
+public class ColumnarWriter {
+	/** Magic number in the beginning of the files ("ONEC") */
+	public static final int MAGIC = 0x4F4E4543;
+	/** Current version of the file format ({@value}) */
+	public static final int VERSION = 1;
+	/** Number of rows in one block ({@value}) */
+	public static final int BLOCK_ROWS = 4096;
+
+	/** Type of time columns ({@value}) */
+	public static final byte TIME = 1;
+	/** Type of integer columns ({@value}) */
+	public static final byte INT = 2;
+	/** Type of double columns ({@value}) */
+	public static final byte DOUBLE = 3;
+	/** Type of string columns ({@value}) */
+	public static final byte STRING = 4;
+	/** Value of missing integers */
+	public static final long NULL_INT = Long.MIN_VALUE;
+
+	private final DataOutputStream out;
+	private final Column[] columns;
+	private final ColumnBuffer[] buffers;
+	/** previous value (bits) of each time column in the block */
+	private final long[] previous;
+	/** dictionaries of the string columns (null for other columns) */
+	private final List<Map<String, Integer>> dictionaries;
+	/** strings added to each string column's dictionary in the block */
+	private final ColumnBuffer[] newStrings;
+	private final int[] nrofNewStrings;
+	private final Deflater deflater;
+	private byte[] compressed;
+
+	private int column;
+	private int nrofRows;
+	private boolean headerWritten;
+	private boolean closed;
+
+	/**
+	 * Creates a new writer
+	 * @param out The stream where the file is written to. Closed when the
+	 * writer is closed.
+	 * @param columns The columns of the file
+	 */
+	public ColumnarWriter(OutputStream out, Column[] columns) {
+		this.out = new DataOutputStream(out);
+		this.columns = columns;
+		int n = columns.length;
+		this.buffers = new ColumnBuffer[n];
+		this.previous = new long[n];
+		this.dictionaries = new ArrayList<Map<String, Integer>>(n);
+		this.newStrings = new ColumnBuffer[n];
+		this.nrofNewStrings = new int[n];
+		for (int i=0; i < n; i++) {
+			buffers[i] = new ColumnBuffer();
+			if (columns[i].type == STRING) {
+				dictionaries.add(new HashMap<String, Integer>());
+				newStrings[i] = new ColumnBuffer();
+			}
+			else {
+				dictionaries.add(null);
+			}
+		}
+		this.deflater = new Deflater(Deflater.BEST_SPEED);
+		this.compressed = new byte[0];
+	}
+
+	/**
+	 * Adds a time value to the next column of the row
+	 * @param value The value
+	 * @return this writer
+	 */
+	public ColumnarWriter time(double value) {
+		int c = next(TIME);
+		long bits = Double.doubleToLongBits(value);
+		buffers[c].zigzag(bits - previous[c]);
+		previous[c] = bits;
+		return this;
+	}
+
+	/**
+	 * Adds an integer value to the next column of the row
+	 * @param value The value or {@link #NULL_INT}
+	 * @return this writer
+	 */
+	public ColumnarWriter integer(long value) {
+		buffers[next(INT)].zigzag(value);
+		return this;
+	}
+
+	/**
+	 * Adds a double value to the next column of the row
+	 * @param value The value
+	 * @return this writer
+	 */
+	public ColumnarWriter real(double value) {
+		buffers[next(DOUBLE)].fixed(Double.doubleToLongBits(value));
+		return this;
+	}
+
+	/**
+	 * Adds a string value to the next column of the row
+	 * @param value The value (its toString() is used) or null
+	 * @return this writer
+	 */
+	public ColumnarWriter string(Object value) {
+		int c = next(STRING);
+		if (value == null) {
+			buffers[c].varint(0);
+			return this;
+		}
+
+		String s = value.toString();
+		Map<String, Integer> dictionary = dictionaries.get(c);
+		Integer index = dictionary.get(s);
+		if (index == null) {
+			index = dictionary.size() + 1;
+			dictionary.put(s, index);
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			newStrings[c].varint(bytes.length);
+			newStrings[c].bytes(bytes);
+			nrofNewStrings[c]++;
+		}
+		buffers[c].varint(index);
+		return this;
+	}
+
+	/**
+	 * Ends the row. All the columns must have been given a value.
+	 * @throws SimError if some of the columns are missing
+	 */
+	public void endRow() {
+		if (column != columns.length) {
+			throw new SimError("Row has " + column + " columns instead of " +
+					columns.length);
+		}
+		column = 0;
+		nrofRows++;
+		if (nrofRows == BLOCK_ROWS) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Writes the rest of the rows and closes the file. Nothing is done if
+	 * the writer is already closed.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (column != 0) {
+			throw new SimError("Unfinished row in columnar output");
+		}
+		writeBlock();
+		try {
+			out.writeInt(0);
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Can't write columnar output", e);
+		}
+		deflater.end();
+	}
+
+	/**
+	 * Moves to the next column and checks its type
+	 * @return Index of the column
+	 */
+	private int next(byte type) {
+		if (column == columns.length) {
+			throw new SimError("Row has more than " + columns.length +
+					" columns");
+		}
+		if (columns[column].type != type) {
+			throw new SimError("Column " + columns[column].name +
+					" is not of type " + type);
+		}
+		return column++;
+	}
+
+	/**
+	 * Writes the header (if not written yet) and the buffered rows
+	 */
+	private void writeBlock() {
+		try {
+			if (!headerWritten) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(columns.length);
+				for (Column c : columns) {
+					out.writeByte(c.type);
+					out.writeUTF(c.name);
+				}
+				headerWritten = true;
+			}
+			if (nrofRows == 0) {
+				return;
+			}
+
+			out.writeInt(nrofRows);
+			for (int i=0; i < columns.length; i++) {
+				ColumnBuffer b = buffers[i];
+				if (columns[i].type == STRING) {
+					ColumnBuffer strings = newStrings[i];
+					ColumnBuffer values = b;
+					b = new ColumnBuffer(strings.length + values.length + 5);
+					b.varint(nrofNewStrings[i]);
+					b.bytes(strings.data, strings.length);
+					b.bytes(values.data, values.length);
+					strings.length = 0;
+					values.length = 0;
+					nrofNewStrings[i] = 0;
+				}
+				writeCompressed(b);
+				buffers[i].length = 0;
+				previous[i] = 0;
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't write columnar output", e);
+		}
+		nrofRows = 0;
+	}
+
+	private void writeCompressed(ColumnBuffer b) throws IOException {
+		deflater.reset();
+		deflater.setInput(b.data, 0, b.length);
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == compressed.length) {
+				compressed = Arrays.copyOf(compressed,
+						Math.max(2 * length, 1024));
+			}
+			length += deflater.deflate(compressed, length,
+					compressed.length - length);
+		}
+		out.writeInt(b.length);
+		out.writeInt(length);
+		out.write(compressed, 0, length);
+	}
+
+	/**
+	 * Name and type of a column
+	 */
+	public static class Column {
+		private final String name;
+		private final byte type;
+
+		/**
+		 * Creates a column
+		 * @param name Name of the column
+		 * @param type Type of the column ({@link ColumnarWriter#TIME},
+		 * {@link ColumnarWriter#INT}, {@link ColumnarWriter#DOUBLE}, or
+		 * {@link ColumnarWriter#STRING})
+		 */
+		public Column(String name, byte type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public byte getType() {
+			return this.type;
+		}
+	}
+
+	/**
+	 * Growable byte buffer of one column's encoded values
+	 */
+	private static class ColumnBuffer {
+		private byte[] data;
+		private int length;
+
+		private ColumnBuffer() {
+			this(1024);
+		}
+
+		private ColumnBuffer(int size) {
+			this.data = new byte[size];
+		}
+
+		private void ensure(int n) {
+			if (length + n > data.length) {
+				data = Arrays.copyOf(data, Math.max(2 * data.length,
+						length + n));
+			}
+		}
+
+		private void varint(long value) {
+			ensure(10);
+			while ((value & ~0x7FL) != 0) {
+				data[length++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			data[length++] = (byte)value;
+		}
+
+		private void zigzag(long value) {
+			varint((value << 1) ^ (value >> 63));
+		}
+
+		private void fixed(long value) {
+			ensure(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				data[length++] = (byte)(value >>> shift);
+			}
+		}
+
+		private void bytes(byte[] bytes) {
+			bytes(bytes, bytes.length);
+		}
+
+		private void bytes(byte[] bytes, int n) {
+			ensure(n);
+			System.arraycopy(bytes, 0, data, length, n);
+			length += n;
+		}
+	}
+}
@@ -13,6 +13,13 @@ import core.DTNHost;
  */
 public class ConnectivityONEReport extends Report
 	implements ConnectionListener {
+	/** Columns of the columnar output. The host with the lower address is
+	 * host1. */
+	private static final ColumnarWriter.Column[] COLUMNS = {
+		new ColumnarWriter.Column("time", ColumnarWriter.TIME),
+		new ColumnarWriter.Column("host1", ColumnarWriter.INT),
+		new ColumnarWriter.Column("host2", ColumnarWriter.INT),
+		new ColumnarWriter.Column("state", ColumnarWriter.STRING)};
 
 	/**
 	 * Constructor.
@@ -27,6 +34,10 @@ public class ConnectivityONEReport extends Report
 			return;
 		}
 		newEvent();
+		if (isColumnar()) {
+			writeRow(h1, h2, "up");
+			return;
+		}
 		write(createTimeStamp() + " CONN " + connectionString(h1, h2) + " up");
 	}
 
@@ -38,9 +49,28 @@ public class ConnectivityONEReport extends Report
 			return;
 		}
 
+		if (isColumnar()) {
+			writeRow(h1, h2, "down");
+			return;
+		}
 		write(createTimeStamp() + " CONN " + conString + " down");
 	}
 
+	/**
+	 * Writes a connection event to the columnar output
+	 */
+	private void writeRow(DTNHost h1, DTNHost h2, String state) {
+		int a1 = h1.getAddress();
+		int a2 = h2.getAddress();
+		row().time(getSimTime()).integer(Math.min(a1, a2)).
+			integer(Math.max(a1, a2)).string(state).endRow();
+	}
+
+	@Override
+	protected ColumnarWriter.Column[] getColumns() {
+		return COLUMNS;
+	}
+
 	/**
 	 * Creates and returns a "@" prefixed time stamp of the current simulation
 	 * time
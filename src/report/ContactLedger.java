@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+import util.LongHashSet;
+
+/**
+ * Bookkeeping of the contacts (or inter-contacts) that are going on, for
+ * the contact time reports. The contacts are stored in an open addressing
+ * hash table that is keyed by the {@link EncounterStatistics#pairKey(int,
+ * int)} of the hosts and stores the start times in a primitive array, so
+ * opening and closing a contact doesn't create any objects (except when
+ * the table grows). A contact can also carry one long of report specific
+ * data.
+ */
+public class ContactLedger {
+	/** marks an empty slot (pair keys are never negative) */
+	private static final long EMPTY = -1;
+
+	private long[] keys;
+	private double[] starts;
+	private long[] data;
+	private int mask;
+	private int size;
+
+	/**
+	 * Creates an empty ledger
+	 */
+	public ContactLedger() {
+		allocate(64);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		this.starts = new double[capacity];
+		this.data = new long[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Returns the slot of a key or the empty slot where it would be
+	 */
+	private int slot(long key) {
+		int i = (int)LongHashSet.mix(key) & mask;
+		while (keys[i] != EMPTY && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Opens a contact between two hosts
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @param time Start time of the contact
+	 * @return false if the contact was already open (nothing is changed)
+	 */
+	public boolean open(int address1, int address2, double time) {
+		return open(address1, address2, time, 0);
+	}
+
+	/**
+	 * Opens a contact between two hosts
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @param time Start time of the contact
+	 * @param value Data of the contact (see {@link #getData(int, int)})
+	 * @return false if the contact was already open (nothing is changed)
+	 */
+	public boolean open(int address1, int address2, double time,
+			long value) {
+		long key = EncounterStatistics.pairKey(address1, address2);
+		int i = slot(key);
+		if (keys[i] == key) {
+			return false;
+		}
+		keys[i] = key;
+		starts[i] = time;
+		data[i] = value;
+		size++;
+		if (2 * size > keys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a contact between the hosts is open
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return true if the contact is open
+	 */
+	public boolean isOpen(int address1, int address2) {
+		long key = EncounterStatistics.pairKey(address1, address2);
+		return keys[slot(key)] == key;
+	}
+
+	/**
+	 * Returns the data of an open contact
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return The data given when the contact was opened or 0 if the
+	 * contact is not open
+	 */
+	public long getData(int address1, int address2) {
+		long key = EncounterStatistics.pairKey(address1, address2);
+		int i = slot(key);
+		return keys[i] == key ? data[i] : 0;
+	}
+
+	/**
+	 * Closes a contact between two hosts
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return Start time of the contact or NaN if the contact was not open
+	 */
+	public double close(int address1, int address2) {
+		long key = EncounterStatistics.pairKey(address1, address2);
+		int i = slot(key);
+		if (keys[i] != key) {
+			return Double.NaN;
+		}
+		double start = starts[i];
+		size--;
+
+		/* shift the following entries of the probe sequence back so that
+		 * no tombstones are needed */
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == EMPTY) {
+				break;
+			}
+			int home = (int)LongHashSet.mix(keys[j]) & mask;
+			/* move the entry if its home slot is not between i and j */
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				keys[i] = keys[j];
+				starts[i] = starts[j];
+				data[i] = data[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+		return start;
+	}
+
+	/**
+	 * Returns the number of open contacts
+	 * @return the number of open contacts
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the sum of the durations of the open contacts
+	 * @param now The current time
+	 * @return The total time the open contacts have been open
+	 */
+	public double getTotalOpenTime(double now) {
+		double total = 0;
+		for (int i=0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				total += now - starts[i];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Doubles the size of the table
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldStarts = starts;
+		long[] oldData = data;
+		allocate(oldKeys.length * 2);
+		for (int i=0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int j = slot(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				starts[j] = oldStarts[i];
+				data[j] = oldData[i];
+			}
+		}
+	}
+}
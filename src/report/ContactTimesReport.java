@@ -4,28 +4,46 @@
  */
 package report;
 
-import java.util.HashMap;
-import java.util.Vector;
-
+import util.Histogram;
+import util.RunningStatistics;
 import core.ConnectionListener;
 import core.DTNHost;
 import core.Settings;
+import core.SettingsError;
 
 /**
  * Reports the node contact time (i.e., how long they were in the range
  * of each other) distribution. Report file contains the count of connections
  * that lasted for certain amount of time. Syntax:<br>
- * <code>time nrofContacts</code>
+ * <code>time nrofContacts</code><br>
+ * If quantiles are requested ({@link #QUANTILES_S}), their estimates are
+ * written after the distribution as comment lines:<br>
+ * <code># quantile probability time</code>
  */
 public class ContactTimesReport extends Report implements ConnectionListener {
-	protected HashMap<ConnectionInfo, ConnectionInfo> connections;
-	private Vector<Integer> nrofContacts;
+	/** The contacts that are going on */
+	protected ContactLedger contacts;
+	private Histogram nrofContacts;
+	/** number of reported intervals */
+	private int nrofIntervals;
+	private RunningStatistics quantiles;
 
 	/** Granularity -setting id ({@value}). Defines how many simulated seconds
 	 * are grouped in one reported interval. */
 	public static final String GRANULARITY = "granularity";
+	/** Logarithmic intervals -setting id ({@value}). Defines how many
+	 * intervals there are per decade. If defined, the first interval is
+	 * [0, granularity) and the following intervals grow logarithmically.
+	 * By default all intervals are {@link #GRANULARITY} seconds long. */
+	public static final String BINS_PER_DECADE_S = "binsPerDecade";
+	/** Quantiles -setting id ({@value}). Comma separated probabilities
+	 * (between 0 and 1) of the time quantiles that are estimated online and
+	 * reported in the end. By default no quantiles are reported. */
+	public static final String QUANTILES_S = "quantiles";
 	/** How many seconds are grouped in one group */
 	protected double granularity;
+	private int binsPerDecade;
+	private double[] quantileProbs;
 
 	/**
 	 * Constructor.
@@ -38,6 +56,16 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 		else {
 			this.granularity = 1.0;
 		}
+		this.binsPerDecade = settings.getInt(BINS_PER_DECADE_S, 0);
+		if (settings.contains(QUANTILES_S)) {
+			this.quantileProbs = settings.getCsvDoubles(QUANTILES_S);
+			for (double p : quantileProbs) {
+				if (p <= 0 || p >= 1) {
+					throw new SettingsError("Invalid quantile " + p + " in " +
+							settings.getFullPropertyName(QUANTILES_S));
+				}
+			}
+		}
 
 		init();
 	}
@@ -45,8 +73,13 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	@Override
 	protected void init() {
 		super.init();
-		this.connections = new HashMap<ConnectionInfo,ConnectionInfo>();
-		this.nrofContacts = new Vector<Integer>();
+		this.contacts = new ContactLedger();
+		this.nrofContacts = new Histogram(this.granularity,
+				this.binsPerDecade);
+		this.nrofIntervals = 0;
+		if (this.quantileProbs != null) {
+			this.quantiles = new RunningStatistics(this.quantileProbs);
+		}
 	}
 
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
@@ -58,29 +91,37 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		newEvent();
-		ConnectionInfo ci = removeConnection(host1, host2);
+		double start = removeConnection(host1, host2);
 
-		if (ci == null) {
+		if (Double.isNaN(start)) {
 			return; /* the connection was started during the warm up period */
 		}
 
-		ci.connectionEnd();
-		increaseTimeCount(ci.getConnectionTime());
+		increaseTimeCount(getSimTime() - start);
 	}
 
+	/**
+	 * Starts recording the time of a contact
+	 * @param host1 One of the hosts
+	 * @param host2 The other host
+	 */
 	protected void addConnection(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = new ConnectionInfo(host1, host2);
+		boolean added = contacts.open(host1.getAddress(), host2.getAddress(),
+				getSimTime());
 
-		assert !connections.containsKey(ci) : "Already contained "+
+		assert added : "Already contained "+
 			" a connection of " + host1 + " and " + host2;
-
-		connections.put(ci,ci);
 	}
 
-	protected ConnectionInfo removeConnection(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = new ConnectionInfo(host1, host2);
-		ci = connections.remove(ci);
-		return ci;
+	/**
+	 * Stops recording the time of a contact
+	 * @param host1 One of the hosts
+	 * @param host2 The other host
+	 * @return Start time of the contact or NaN if the contact wasn't
+	 * recorded
+	 */
+	protected double removeConnection(DTNHost host1, DTNHost host2) {
+		return contacts.close(host1.getAddress(), host2.getAddress());
 	}
 
 	/**
@@ -88,126 +129,39 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	 * @param time The time value that was seen
 	 */
 	protected void increaseTimeCount(double time) {
-		int index = (int)(time/this.granularity);
-
-		if (index >= this.nrofContacts.size()) {
-			/* if biggest index so far, fill array with nulls up to
-			  index+2 to keep the last time count always zero */
-			this.nrofContacts.setSize(index + 2);
+		int index = this.nrofContacts.getBin(time);
+		if (index >= this.nrofIntervals) {
+			/* if biggest index so far, report intervals up to index+2 to
+			  keep the last time count zero */
+			this.nrofIntervals = index + 2;
 		}
-
-		Integer curValue = this.nrofContacts.get(index);
-		if (curValue == null) { // no value found -> put the first
-			this.nrofContacts.set(index, 1);
-		}
-		else { // value found -> increase the number by one
-			this.nrofContacts.set(index, curValue+1);
+		this.nrofContacts.add(time);
+		if (this.quantiles != null) {
+			this.quantiles.add(time);
 		}
 	}
 
 	@Override
 	public void done() {
-
-		for (int i=0, n=this.nrofContacts.size(); i<n; i++) {
-			Integer contacts = nrofContacts.get(i);
-			if (contacts == null) {
-				contacts = 0;
-			}
-			//     time(interval)             nrofContacts
-			write((i*this.granularity) + " " + contacts);
-		}
-
-		super.done();
-	}
-
-
-	/**
-	 * Objects of this class store time information about contacts.
-	 */
-	protected class ConnectionInfo {
-		private double startTime;
-		private double endTime;
-		private DTNHost h1;
-		private DTNHost h2;
-
-		public ConnectionInfo (DTNHost h1, DTNHost h2){
-			this.h1 = h1;
-			this.h2 = h2;
-			this.startTime = getSimTime();
-			this.endTime = -1;
-		}
-
-		/**
-		 * Should be called when the connection ended to record the time.
-		 * Otherwise {@link #getConnectionTime()} will use end time as
-		 * the time of the request.
-		 */
-		public void connectionEnd() {
-			this.endTime = getSimTime();
-		}
-
-		/**
-		 * Returns the time that passed between creation of this info
-		 * and call to {@link #connectionEnd()}. Unless connectionEnd() is
-		 * called, the difference between start time and current sim time
-		 * is returned.
-		 * @return The amount of simulated seconds passed between creation of
-		 * this info and calling connectionEnd()
-		 */
-		public double getConnectionTime() {
-			if (this.endTime == -1) {
-				return getSimTime() - this.startTime;
+		for (int i=0; i<this.nrofIntervals; i++) {
+			String time;
+			if (nrofContacts.isLogarithmic()) {
+				time = format(nrofContacts.getLowerBound(i));
 			}
 			else {
-				return this.endTime - this.startTime;
-			}
-		}
-
-		/**
-		 * Returns true if the other connection info contains the same hosts.
-		 */
-		public boolean equals(Object other) {
-			if (!(other instanceof ConnectionInfo)) {
-				return false;
-			}
-
-			ConnectionInfo ci = (ConnectionInfo)other;
-
-			if ((h1 == ci.h1 && h2 == ci.h2)) {
-				return true;
-			}
-			else if ((h1 == ci.h2 && h2 == ci.h1)) {
-				// bidirectional connection the other way
-				return true;
+				time = String.valueOf(i*this.granularity);
 			}
-			return false;
+			//     time(interval)             nrofContacts
+			write(time + " " + nrofContacts.getCount(i));
 		}
 
-		/**
-		 * Returns the same hash for ConnectionInfos that have the
-		 * same two hosts.
-		 * @return Hash code
-		 */
-		public int hashCode() {
-			String hostString;
-
-			if (this.h1.compareTo(this.h2) < 0) {
-				hostString = h1.toString() + "-" + h2.toString();
+		if (this.quantiles != null) {
+			for (int i=0; i<quantileProbs.length; i++) {
+				write("# quantile " + quantileProbs[i] + " " +
+						format(quantiles.getQuantile(i)));
 			}
-			else {
-				hostString = h2.toString() + "-" + h1.toString();
-			}
-
-			return hostString.hashCode();
 		}
 
-		/**
-		 * Returns a string representation of the info object
-		 * @return a string representation of the info object
-		 */
-		public String toString() {
-			return this.h1 + "<->" + this.h2 + " [" + this.startTime
-				+"-"+ (this.endTime >0 ? this.endTime : "n/a") + "]";
-		}
+		super.done();
 	}
 }
@@ -5,9 +5,9 @@
 package report;
 
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 
+import util.Histogram;
 import core.ConnectionListener;
 import core.DTNHost;
 import core.UpdateListener;
@@ -21,14 +21,21 @@ import core.UpdateListener;
  * inter-contact both nodes wait the exact same time but will meet a different
  * number of nodes.
  *
+ * <P>Every node has a counter of its contacts. When two nodes disconnect,
+ * the values of their counters are stored in a {@link ContactLedger} and
+ * when they meet again, the number of contacts during the inter-contact is
+ * the difference of the counters.</P>
+ *
  * @author Frans Ekman
  */
 public class ContactsDuringAnICTReport extends Report
 	implements ConnectionListener, UpdateListener {
 
-	private boolean[][] areDisconnected;
-	private int[][] contactCount;
-	private LinkedList<Integer> contactsDuringIC;
+	/** the inter-contacts that are going on */
+	private ContactLedger disconnected;
+	/** number of contacts of each node */
+	private int[] contactCount;
+	private Histogram contactsDuringIC;
 
 	private boolean updateHasBeenCalled;
 
@@ -41,7 +48,9 @@ public class ContactsDuringAnICTReport extends Report
 	@Override
 	protected void init() {
 		super.init();
-		contactsDuringIC = new LinkedList<Integer>();
+		disconnected = new ContactLedger();
+		contactCount = new int[0];
+		contactsDuringIC = new Histogram(1);
 	}
 
 
@@ -51,26 +60,35 @@ public class ContactsDuringAnICTReport extends Report
 		}
 		int id1 = host1.getAddress();
 		int id2 = host2.getAddress();
-		if (areDisconnected[id1][id2]) {
-			areDisconnected[id1][id2] = false;
-			areDisconnected[id2][id1] = false;
-			contactsDuringIC.add(new Integer(contactCount[id1][id2]));
-			contactsDuringIC.add(new Integer(contactCount[id2][id1]));
-			contactCount[id1][id2] = 0;
-			contactCount[id2][id1] = 0;
+		ensureNode(Math.max(id1, id2));
+
+		if (disconnected.isOpen(id1, id2)) {
+			long counts = disconnected.getData(id1, id2);
+			disconnected.close(id1, id2);
+			contactsDuringIC.add(contactCount[id1] - count(counts, id1, id2));
+			contactsDuringIC.add(contactCount[id2] - count(counts, id2, id1));
 		}
 
-		incContactForAllDisconnectedNodes(host1);
-		incContactForAllDisconnectedNodes(host2);
+		contactCount[id1]++;
+		contactCount[id2]++;
+	}
 
+	/**
+	 * Returns the contact counter value of a node from the packed counter
+	 * values of a node pair
+	 * @param counts The packed values (smaller address' value first)
+	 * @param id The node whose value is returned
+	 * @param other The other node
+	 * @return The node's value
+	 */
+	private static int count(long counts, int id, int other) {
+		return id < other ? (int)(counts >>> 32) : (int)counts;
 	}
 
-	private void incContactForAllDisconnectedNodes(DTNHost host) {
-		int id = host.getAddress();
-		for (int i=0; i<contactCount[id].length; i++) {
-			if (areDisconnected[id][i]) {
-				contactCount[id][i]++;
-			}
+	private void ensureNode(int id) {
+		if (id >= contactCount.length) {
+			contactCount = Arrays.copyOf(contactCount,
+					Math.max(id + 1, 2 * contactCount.length));
 		}
 	}
 
@@ -78,37 +96,23 @@ public class ContactsDuringAnICTReport extends Report
 		if (!updateHasBeenCalled) {
 			return;
 		}
-		areDisconnected[host1.getAddress()][host2.getAddress()] = true;
-		areDisconnected[host2.getAddress()][host1.getAddress()] = true;
+		int min = Math.min(host1.getAddress(), host2.getAddress());
+		int max = Math.max(host1.getAddress(), host2.getAddress());
+		ensureNode(max);
+		/* if the nodes were already disconnected, the old counters stay */
+		disconnected.open(min, max, getSimTime(),
+				((long)contactCount[min] << 32) |
+				(contactCount[max] & 0xffffffffL));
 	}
 
 	public void updated(List<DTNHost> hosts) {
-		if (areDisconnected == null || contactCount == null) {
-			areDisconnected = new boolean[hosts.size()][hosts.size()];
-			contactCount = new int[hosts.size()][hosts.size()];
-		}
 		updateHasBeenCalled = true;
 	}
 
 	@Override
 	public void done() {
-		Integer[] contacts = (Integer[])contactsDuringIC.toArray(new Integer[0]);
-		Arrays.sort(contacts);
-
-		int count = 0;
-		int last = 0;
-		for (int i=0; i<contacts.length; i++) {
-			if (contacts[i].intValue() == last) {
-				count++;
-				if (i == contacts.length -1) {
-					write(last + "\t" + count);
-				}
-			} else {
-				write(last + "\t" + count);
-				last++;
-				i--;
-				count = 0;
-			}
+		for (int i=0, n=contactsDuringIC.getLastBin(); i<=n; i++) {
+			write(i + "\t" + contactsDuringIC.getCount(i));
 		}
 		super.done();
 	}
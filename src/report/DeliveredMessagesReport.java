@@ -4,7 +4,7 @@
  */
 package report;
 
-import java.util.List;
+import java.util.Iterator;
 
 import core.DTNHost;
 import core.Message;
@@ -18,6 +18,19 @@ import core.MessageListener;
 public class DeliveredMessagesReport extends Report implements MessageListener {
 	public static String HEADER = "# time  ID  size  hopcount  deliveryTime  " +
 		"fromHost  toHost  remainingTtl  isResponse  path";
+	/** Columns of the columnar output (same as in the {@link #HEADER}).
+	 * The remainingTtl is null for messages without a TTL. */
+	private static final ColumnarWriter.Column[] COLUMNS = {
+		new ColumnarWriter.Column("time", ColumnarWriter.TIME),
+		new ColumnarWriter.Column("ID", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("size", ColumnarWriter.INT),
+		new ColumnarWriter.Column("hopcount", ColumnarWriter.INT),
+		new ColumnarWriter.Column("deliveryTime", ColumnarWriter.DOUBLE),
+		new ColumnarWriter.Column("fromHost", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("toHost", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("remainingTtl", ColumnarWriter.INT),
+		new ColumnarWriter.Column("isResponse", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("path", ColumnarWriter.STRING)};
 
 	/**
 	 * Constructor.
@@ -29,7 +42,9 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 	@Override
 	public void init() {
 		super.init();
-		write(HEADER);
+		if (!isColumnar()) {
+			write(HEADER);
+		}
 	}
 
 	/**
@@ -38,11 +53,12 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 	 * @return hop path as a string
 	 */
 	private String getPathString(Message m) {
-		List<DTNHost> hops = m.getHops();
+		Iterator<DTNHost> hops = m.getHops().iterator();
 		String str = m.getFrom().toString();
 
-		for (int i=1; i<hops.size(); i++) {
-			str += "->" + hops.get(i);
+		hops.next(); // the first hop is the source node
+		while (hops.hasNext()) {
+			str += "->" + hops.next();
 		}
 
 		return str;
@@ -52,6 +68,17 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 			boolean firstDelivery) {
 		if (!isWarmupID(m.getId()) && firstDelivery) {
 			int ttl = m.getTtl();
+			if (isColumnar()) {
+				row().time(getSimTime()).string(m.getId()).
+					integer(m.getSize()).integer(m.getHopCount()).
+					real(getSimTime() - m.getCreationTime()).
+					string(m.getFrom()).string(m.getTo()).
+					integer(ttl != Integer.MAX_VALUE ? ttl :
+						ColumnarWriter.NULL_INT).
+					string(m.isResponse() ? "Y" : "N").
+					string(getPathString(m)).endRow();
+				return;
+			}
 			write(format(getSimTime()) + " " + m.getId() + " " +
 					m.getSize() + " " + m.getHopCount() + " " +
 					format(getSimTime() - m.getCreationTime()) + " " +
@@ -61,6 +88,11 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 		}
 	}
 
+	@Override
+	protected ColumnarWriter.Column[] getColumns() {
+		return COLUMNS;
+	}
+
 	public void newMessage(Message m) {
 		if (isWarmup()) {
 			addWarmupID(m.getId());
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import util.HyperLogLog;
+import util.LongHashSet;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.RunContext;
+import core.Settings;
+import core.SettingsError;
+import core.SimScenario;
+
+/**
+ * <P>
+ * Encounter statistics of a run that all the encounter reports (e.g.,
+ * {@link TotalEncountersReport} and {@link UniqueEncountersReport}) share.
+ * Every run has one instance ({@link #getInstance()}) that listens to the
+ * connections, so the encounters are counted only once however many
+ * reports use them.</P>
+ *
+ * <P>The number of encounters of each host is counted exactly. The unique
+ * encounters (number of different hosts a host has met) are counted with a
+ * set of the host pairs that have met (a primitive hash set of the pairs'
+ * {@link #pairKey(int, int)}s), so the memory use grows with the number of
+ * pairs that meet instead of the square of the number of hosts. For very
+ * large populations the unique encounters can instead be estimated with a
+ * HyperLogLog sketch per host ({@link #ESTIMATE_S}), which takes a fixed
+ * amount of memory per host.</P>
+ *
+ * <P>The settings are in the {@value #ENCOUNTERS_NS} namespace.</P>
+ */
+public class EncounterStatistics implements ConnectionListener, Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Namespace of the encounter statistics settings ({@value}) */
+	public static final String ENCOUNTERS_NS = "EncounterStatistics";
+	/** Are the unique encounters estimated -setting id ({@value}). Boolean.
+	 * If true, the unique encounters of each host are estimated with a
+	 * HyperLogLog sketch instead of counted exactly. Default is false. */
+	public static final String ESTIMATE_S = "estimate";
+	/** Precision of the estimates -setting id ({@value}). Each sketch takes
+	 * 2^precision bytes and the relative standard error of the estimates is
+	 * about 1.04/sqrt(2^precision). Default is {@value #DEF_PRECISION}. */
+	public static final String PRECISION_S = "precision";
+	/** Default value for the {@link #PRECISION_S} setting ({@value}) */
+	public static final int DEF_PRECISION = 10;
+
+	private int nrofHosts;
+	private int[] encounters;
+	private int[] uniqueEncounters;
+	/** pairs of hosts that have met (null if estimated) */
+	private LongHashSet pairs;
+	/** unique encounter sketches of the hosts (null if counted exactly) */
+	private HyperLogLog[] sketches;
+	private final int precision;
+
+	/**
+	 * Creates new statistics
+	 * @param nrofHosts Number of hosts
+	 * @param estimate Should the unique encounters be estimated
+	 * @param precision Precision of the estimates
+	 */
+	public EncounterStatistics(int nrofHosts, boolean estimate,
+			int precision) {
+		this.nrofHosts = nrofHosts;
+		this.encounters = new int[nrofHosts];
+		this.precision = precision;
+		if (estimate) {
+			this.sketches = new HyperLogLog[nrofHosts];
+		}
+		else {
+			this.uniqueEncounters = new int[nrofHosts];
+			this.pairs = new LongHashSet(nrofHosts);
+		}
+	}
+
+	/**
+	 * Returns the encounter statistics of the current run. The statistics
+	 * are created (and start listening to the connections of the scenario)
+	 * when this method is called the first time in the run.
+	 * @return the encounter statistics of the current run
+	 */
+	public static EncounterStatistics getInstance() {
+		RunContext context = RunContext.current();
+		EncounterStatistics stats =
+			(EncounterStatistics)context.get(EncounterStatistics.class);
+		if (stats == null) {
+			SimScenario scen = SimScenario.getInstance();
+			Settings s = new Settings(ENCOUNTERS_NS);
+			int precision = s.getInt(PRECISION_S, DEF_PRECISION);
+			if (precision < HyperLogLog.MIN_PRECISION ||
+					precision > HyperLogLog.MAX_PRECISION) {
+				throw new SettingsError("Invalid value for " +
+						s.getFullPropertyName(PRECISION_S) + ": " +
+						precision + ". Must be between " +
+						HyperLogLog.MIN_PRECISION + " and " +
+						HyperLogLog.MAX_PRECISION);
+			}
+			stats = new EncounterStatistics(scen.getHosts().size(),
+					s.getBoolean(ESTIMATE_S, false), precision);
+			scen.addConnectionListener(stats);
+			context.put(EncounterStatistics.class, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Returns a key that identifies the (unordered) pair of hosts. The
+	 * smaller address is in the upper 32 bits of the key.
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return The key of the pair
+	 */
+	public static long pairKey(int address1, int address2) {
+		int min = Math.min(address1, address2);
+		int max = Math.max(address1, address2);
+		return ((long)min << 32) | (max & 0xffffffffL);
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		addEncounter(host1.getAddress(), host2.getAddress());
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
+
+	/**
+	 * Adds an encounter between two hosts
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 */
+	public void addEncounter(int address1, int address2) {
+		ensureHost(Math.max(address1, address2));
+		encounters[address1]++;
+		encounters[address2]++;
+
+		if (pairs != null) {
+			if (pairs.add(pairKey(address1, address2))) {
+				uniqueEncounters[address1]++;
+				uniqueEncounters[address2]++;
+			}
+		}
+		else {
+			sketch(address1).add(address2);
+			sketch(address2).add(address1);
+		}
+	}
+
+	/**
+	 * Makes room for a host's statistics
+	 * @param address Address of the host
+	 */
+	private void ensureHost(int address) {
+		if (address < nrofHosts) {
+			return;
+		}
+		nrofHosts = address + 1;
+		if (nrofHosts > encounters.length) {
+			int n = Math.max(nrofHosts, 2 * encounters.length);
+			encounters = Arrays.copyOf(encounters, n);
+			if (pairs != null) {
+				uniqueEncounters = Arrays.copyOf(uniqueEncounters, n);
+			}
+			else {
+				sketches = Arrays.copyOf(sketches, n);
+			}
+		}
+	}
+
+	private HyperLogLog sketch(int address) {
+		if (sketches[address] == null) {
+			sketches[address] = new HyperLogLog(precision);
+		}
+		return sketches[address];
+	}
+
+	/**
+	 * Returns the number of hosts in the statistics
+	 * @return the number of hosts
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * Returns true if the unique encounters are estimated (instead of
+	 * counted exactly)
+	 * @return true if the unique encounters are estimated
+	 */
+	public boolean isEstimate() {
+		return this.pairs == null;
+	}
+
+	/**
+	 * Returns the number of encounters a host has had
+	 * @param address Address of the host
+	 * @return the number of encounters
+	 */
+	public int getEncounters(int address) {
+		return address < nrofHosts ? encounters[address] : 0;
+	}
+
+	/**
+	 * Returns the number of different hosts a host has encountered. If the
+	 * unique encounters are estimated, the estimate is rounded to the
+	 * closest integer and it is at most the number of other hosts.
+	 * @param address Address of the host
+	 * @return the number of unique encounters
+	 */
+	public int getUniqueEncounters(int address) {
+		if (address >= nrofHosts) {
+			return 0;
+		}
+		if (pairs != null) {
+			return uniqueEncounters[address];
+		}
+		if (sketches[address] == null) {
+			return 0;
+		}
+		long estimate = Math.round(sketches[address].estimate());
+		return (int)Math.min(estimate, nrofHosts - 1);
+	}
+
+	/**
+	 * Returns true if the hosts have encountered each other. Can be used
+	 * only when the unique encounters are counted exactly.
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return true if the hosts have encountered
+	 */
+	public boolean haveEncountered(int address1, int address2) {
+		if (pairs == null) {
+			throw new IllegalStateException("Encounters are only estimated");
+		}
+		return pairs.contains(pairKey(address1, address2));
+	}
+}
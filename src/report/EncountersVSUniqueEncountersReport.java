@@ -4,60 +4,27 @@
  */
 package report;
 
-import java.util.List;
-
-import core.ConnectionListener;
-import core.DTNHost;
-import core.UpdateListener;
-
 /**
- * The total- vs. the unique encounters for each node
+ * The total- vs. the unique encounters for each node. The encounters are
+ * counted by the shared {@link EncounterStatistics} of the run.
  *
  * @author Frans Ekman
  */
-public class EncountersVSUniqueEncountersReport extends Report
-	implements ConnectionListener, UpdateListener {
+public class EncountersVSUniqueEncountersReport extends Report {
 
-	private TotalEncountersReport totalEncountersReport;
-	private UniqueEncountersReport uniqueEncountersReport;
+	private EncounterStatistics stats;
 
 	public EncountersVSUniqueEncountersReport() {
-		totalEncountersReport = new TotalEncountersReport();
-		uniqueEncountersReport = new UniqueEncountersReport();
-	}
-
-	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		totalEncountersReport.hostsConnected(host1, host2);
-		uniqueEncountersReport.hostsConnected(host1, host2);
-	}
-
-	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
-		totalEncountersReport.hostsDisconnected(host1, host2);
-		uniqueEncountersReport.hostsDisconnected(host1, host2);
-	}
-
-	public void updated(List<DTNHost> hosts) {
-		totalEncountersReport.updated(hosts);
-		uniqueEncountersReport.updated(hosts);
+		this.stats = EncounterStatistics.getInstance();
 	}
 
 	@Override
 	public void done() {
-		int[] totalEncounters = totalEncountersReport.getEncounters();
-		int[][] nodeRelationships = uniqueEncountersReport.getNodeRelationships();
-
-		for (int i=0; i<totalEncounters.length; i++) {
+		for (int i=0, n=stats.getNrofHosts(); i<n; i++) {
 			String row = "";
 			row += i + "\t";
-			row += totalEncounters[i] + "\t";
-
-			int count = 0;
-			for (int j=0; j<nodeRelationships.length; j++) {
-				if (nodeRelationships[i][j] > 0) {
-					count++;
-				}
-			}
-			row += count;
+			row += stats.getEncounters(i) + "\t";
+			row += stats.getUniqueEncounters(i);
 			write(row);
 		}
 
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import util.RunningStatistics;
+import core.RunContext;
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * <P>
+ * Aggregates the metrics of the runs of a Monte-Carlo ensemble. When the
+ * ensemble mode is enabled ({@link #ENABLED_S}), the reports add their
+ * per-run metrics (see {@link Report#addEnsembleValue(String, double)})
+ * to the shared statistics as soon as a run finishes. The statistics keep
+ * the running mean, variance and quantile estimates of every metric, so
+ * nothing is post-processed from the report files.</P>
+ *
+ * <P>The ensemble has converged when the confidence intervals of the
+ * {@link #CI_METRICS_S} metrics are narrow enough; the batch runs that
+ * haven't started yet are then skipped. Runs that are already running (in
+ * concurrent mode) are finished and included in the statistics. In the end,
+ * the statistics are written to the {@link #OUTPUT_S} file.</P>
+ *
+ * <P>All the settings are in the {@value #ENSEMBLE_NS} namespace.</P>
+ */
+public class EnsembleStatistics {
+	/** Namespace of the ensemble settings ({@value}) */
+	public static final String ENSEMBLE_NS = "Ensemble";
+	/** Is the ensemble mode enabled -setting id ({@value}). Boolean.
+	 * Default is false. */
+	public static final String ENABLED_S = "enabled";
+	/** Metrics whose confidence intervals decide when to stop -setting id
+	 * ({@value}). Comma separated metric names. If not defined, all the
+	 * batch runs are executed. */
+	public static final String CI_METRICS_S = "ciMetrics";
+	/** Target width of the confidence intervals -setting id ({@value}).
+	 * The full width of the interval relative to the absolute value of the
+	 * mean. Default is 0.1 */
+	public static final String CI_WIDTH_S = "ciWidth";
+	/** Confidence level -setting id ({@value}). Default is 0.95 */
+	public static final String CONFIDENCE_S = "confidence";
+	/** Minimum number of runs before stopping -setting id ({@value}).
+	 * Default is 5 */
+	public static final String MIN_RUNS_S = "minRuns";
+	/** Output file -setting id ({@value}). Default is
+	 * ensemble_statistics.txt in the report directory. */
+	public static final String OUTPUT_S = "output";
+
+	/** Probabilities of the reported quantiles */
+	public static final double[] QUANTILES = {0.05, 0.5, 0.95};
+
+	private final Map<String, RunningStatistics> metrics;
+	private final String[] ciMetrics;
+	private final double ciWidth;
+	private final double confidence;
+	private final int minRuns;
+	private final String outFileName;
+	private int nrofRuns;
+	private boolean converged;
+
+	/**
+	 * Creates new ensemble statistics using the settings
+	 */
+	public EnsembleStatistics() {
+		Settings s = new Settings(ENSEMBLE_NS);
+		this.ciMetrics = s.contains(CI_METRICS_S) ?
+				s.getCsvSetting(CI_METRICS_S) : new String[0];
+		this.ciWidth = s.getDouble(CI_WIDTH_S, 0.1);
+		this.confidence = s.getDouble(CONFIDENCE_S, 0.95);
+		this.minRuns = s.getInt(MIN_RUNS_S, 5);
+
+		if (confidence <= 0 || confidence >= 1) {
+			throw new SettingsError("Invalid " + CONFIDENCE_S + " value " +
+					confidence);
+		}
+		s.ensurePositiveValue(ciWidth, CI_WIDTH_S);
+		if (minRuns < 2) {
+			throw new SettingsError(MIN_RUNS_S + " must be at least 2");
+		}
+
+		if (s.contains(OUTPUT_S)) {
+			this.outFileName = s.getSetting(OUTPUT_S);
+		}
+		else {
+			s.setNameSpace(null);
+			String outDir = s.getSetting(Report.REPORTDIR_SETTING);
+			if (!outDir.endsWith("/")) {
+				outDir += "/";
+			}
+			this.outFileName = outDir + "ensemble_statistics" +
+				Report.OUT_SUFFIX;
+		}
+
+		this.metrics = new TreeMap<String, RunningStatistics>();
+		this.nrofRuns = 0;
+		this.converged = false;
+	}
+
+	/**
+	 * Returns true if the ensemble mode is enabled in the settings
+	 * @return true if the ensemble mode is enabled
+	 */
+	public static boolean isEnabled() {
+		return new Settings(ENSEMBLE_NS).getBoolean(ENABLED_S, false);
+	}
+
+	/**
+	 * Sets the statistics of the ensemble that the run of the calling
+	 * thread's run context belongs to
+	 * @param stats The statistics or null if the run is not part of an
+	 * ensemble
+	 */
+	public static void setInstance(EnsembleStatistics stats) {
+		RunContext.current().putResource(EnsembleStatistics.class, stats);
+	}
+
+	/**
+	 * Adds a value of a metric of the current run to the statistics of the
+	 * ensemble the run belongs to. Nothing is done if the run is not part
+	 * of an ensemble.
+	 * @param metric Name of the metric
+	 * @param value The value
+	 */
+	public static void record(String metric, double value) {
+		EnsembleStatistics stats = (EnsembleStatistics)
+			RunContext.current().getResource(EnsembleStatistics.class);
+		if (stats != null) {
+			stats.add(metric, value);
+		}
+	}
+
+	/**
+	 * Adds a value of a metric. NaN values are ignored.
+	 * @param metric Name of the metric
+	 * @param value The value
+	 */
+	public synchronized void add(String metric, double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		RunningStatistics rs = metrics.get(metric);
+		if (rs == null) {
+			rs = new RunningStatistics(QUANTILES);
+			metrics.put(metric, rs);
+		}
+		rs.add(value);
+	}
+
+	/**
+	 * Tells that a run has finished (and all its values have been added)
+	 * and checks whether the ensemble has converged
+	 */
+	public synchronized void runDone() {
+		nrofRuns++;
+		if (converged || ciMetrics.length == 0 || nrofRuns < minRuns) {
+			return;
+		}
+		for (String metric : ciMetrics) {
+			RunningStatistics rs = metrics.get(metric);
+			if (rs == null || rs.getCount() < 2 ||
+					2 * rs.getConfidenceHalfWidth(confidence) >
+						ciWidth * Math.abs(rs.getMean())) {
+				return;
+			}
+		}
+		converged = true;
+	}
+
+	/**
+	 * Returns true if the confidence intervals of all the
+	 * {@link #CI_METRICS_S} metrics have reached the target width
+	 * @return true if no more runs are needed
+	 */
+	public synchronized boolean isConverged() {
+		return this.converged;
+	}
+
+	/**
+	 * Returns the number of finished runs
+	 * @return the number of finished runs
+	 */
+	public synchronized int getNrofRuns() {
+		return this.nrofRuns;
+	}
+
+	/**
+	 * Returns the statistics of a metric
+	 * @param metric Name of the metric
+	 * @return The statistics or null if no values were added for the metric
+	 */
+	public synchronized RunningStatistics getStatistics(String metric) {
+		return metrics.get(metric);
+	}
+
+	/**
+	 * Writes the statistics of all the metrics to the output file
+	 * @throws SimError if the file can't be written
+	 */
+	public synchronized void done() {
+		File outFile = new File(outFileName);
+		if (outFile.getParentFile() != null) {
+			outFile.getParentFile().mkdirs();
+		}
+
+		PrintWriter out;
+		try {
+			out = new PrintWriter(outFile);
+		} catch (FileNotFoundException e) {
+			throw new SimError("Couldn't write ensemble statistics to " +
+					outFileName, e);
+		}
+
+		out.println("# runs: " + nrofRuns + (converged ? " (converged)" : ""));
+		out.println("# confidence: " + confidence);
+		out.print("metric n mean stddev ci_low ci_high min max");
+		for (double p : QUANTILES) {
+			out.print(" q" + format(p));
+		}
+		out.println();
+
+		for (Map.Entry<String, RunningStatistics> e : metrics.entrySet()) {
+			RunningStatistics rs = e.getValue();
+			double mean = rs.getMean();
+			double hw = rs.getConfidenceHalfWidth(confidence);
+			out.print(e.getKey() + " " + rs.getCount() + " " + format(mean) +
+					" " + format(rs.getStdDev()) + " " + format(mean - hw) +
+					" " + format(mean + hw) + " " + format(rs.getMin()) + " " +
+					format(rs.getMax()));
+			for (int i=0; i < QUANTILES.length; i++) {
+				out.print(" " + format(rs.getQuantile(i)));
+			}
+			out.println();
+		}
+		out.close();
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.US, "%.4f", value);
+	}
+}
@@ -27,6 +27,21 @@ public class EventLogReport extends Report
 	/** Extra info for message relayed event ("delivered again"): {@value} */
 	public static final String MESSAGE_TRANS_DELIVERED_AGAIN = "A";
 
+	/** Columns of the columnar output. Missing hosts, messages and extras
+	 * are null. */
+	private static final ColumnarWriter.Column[] COLUMNS = {
+		new ColumnarWriter.Column("time", ColumnarWriter.TIME),
+		new ColumnarWriter.Column("action", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("host1", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("host2", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("message", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("extra", ColumnarWriter.STRING)};
+
+	@Override
+	protected ColumnarWriter.Column[] getColumns() {
+		return COLUMNS;
+	}
+
 	/**
 	 * Processes a log event by writing a line to the report file
 	 * @param action The action as a string
@@ -37,10 +52,26 @@ public class EventLogReport extends Report
 	 */
 	private void processEvent(final String action, final DTNHost host1,
 			final DTNHost host2, final Message message, final String extra) {
-		write(getSimTime() + " " + action + " " + (host1 != null ? host1 : "")
-				+ (host2 != null ? (" " + host2) : "")
-				+ (message != null ? " " + message : "")
-				+ (extra != null ? " " + extra : ""));
+		if (isColumnar()) {
+			row().time(getSimTime()).string(action).string(host1).
+				string(host2).string(message).string(extra).endRow();
+			return;
+		}
+		ReportWriter line = line().number(getSimTime()).text(" ").text(action).
+			text(" ");
+		if (host1 != null) {
+			line.text(host1);
+		}
+		if (host2 != null) {
+			line.text(" ").text(host2);
+		}
+		if (message != null) {
+			line.text(" ").text(message);
+		}
+		if (extra != null) {
+			line.text(" ").text(extra);
+		}
+		line.endLine();
 	}
 
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
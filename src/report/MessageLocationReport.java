@@ -82,25 +82,23 @@ public class MessageLocationReport extends Report implements UpdateListener {
 	 * @param hosts The list of hosts in the world
 	 */
 	protected void createSnapshot(List<DTNHost> hosts) {
-		boolean isFirstMessage;
-		String reportLine;
+		ReportWriter reportLine;
 
-		write ("[" + (int)getSimTime() + "]"); /* write sim time stamp */
+		/* write sim time stamp */
+		line().text("[").number((int)getSimTime()).text("]").endLine();
 
 		for (DTNHost host : hosts) {
-			isFirstMessage = true;
-			reportLine = "";
+			reportLine = null;
 			for (Message m : host.getMessageCollection()) {
 				if (isTracked(m)) {
-					if (isFirstMessage) {
-						reportLine = host.getLocation().toString();
-						isFirstMessage = false;
+					if (reportLine == null) {
+						reportLine = line().coord(host.getLocation());
 					}
-					reportLine += " " + m.getId();
+					reportLine.text(" ").text(m.getId());
 				}
 			}
-			if (reportLine.length() > 0) {
-				write(reportLine); /* write coordinate and message IDs */
+			if (reportLine != null) {
+				reportLine.endLine(); /* coordinate and message IDs written */
 			}
 		}
 	}
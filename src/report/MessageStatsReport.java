@@ -5,6 +5,7 @@
 package report;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +23,12 @@ import core.MessageListener;
  * double values and zero for integer median(s).
  */
 public class MessageStatsReport extends Report implements MessageListener {
+	/** Columns of the columnar output: the name and value of each
+	 * statistic */
+	private static final ColumnarWriter.Column[] COLUMNS = {
+		new ColumnarWriter.Column("statistic", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("value", ColumnarWriter.DOUBLE)};
+
 	private Map<String, Double> creationTimes;
 	private List<Double> latencies;
 	private List<Integer> hopCounts;
@@ -135,10 +142,48 @@ public class MessageStatsReport extends Report implements MessageListener {
 	}
 
 
+	/**
+	 * Returns the average of the values or NaN for an empty list
+	 */
+	private double average(List<? extends Number> values) {
+		if (values.size() == 0) {
+			return Double.NaN;
+		}
+		double sum = 0;
+		for (Number n : values) {
+			sum += n.doubleValue();
+		}
+		return sum / values.size();
+	}
+
+	/**
+	 * Returns the median of the values
+	 * @param values The values (sorted by this method)
+	 * @param empty The value returned for an empty list
+	 */
+	private <T extends Number & Comparable<? super T>> double median(
+			List<T> values, double empty) {
+		if (values.size() == 0) {
+			return empty;
+		}
+		Collections.sort(values);
+		return values.get(values.size()/2).doubleValue();
+	}
+
+	/**
+	 * Writes a row of a statistic to the columnar output
+	 */
+	private void stat(String name, double value) {
+		row().string(name).real(value).endRow();
+	}
+
+	@Override
+	protected ColumnarWriter.Column[] getColumns() {
+		return COLUMNS;
+	}
+
 	@Override
 	public void done() {
-		write("Message stats for scenario " + getScenarioName() +
-				"\nsim_time: " + format(getSimTime()));
 		double deliveryProb = 0; // delivery probability
 		double responseProb = 0; // request-response success probability
 		double overHead = Double.NaN;	// overhead ratio
@@ -155,27 +200,57 @@ public class MessageStatsReport extends Report implements MessageListener {
 				this.nrofResponseReqCreated;
 		}
 
-		String statsText = "created: " + this.nrofCreated +
-			"\nstarted: " + this.nrofStarted +
-			"\nrelayed: " + this.nrofRelayed +
-			"\naborted: " + this.nrofAborted +
-			"\ndropped: " + this.nrofDropped +
-			"\nremoved: " + this.nrofRemoved +
-			"\ndelivered: " + this.nrofDelivered +
-			"\ndelivery_prob: " + format(deliveryProb) +
-			"\nresponse_prob: " + format(responseProb) +
-			"\noverhead_ratio: " + format(overHead) +
-			"\nlatency_avg: " + getAverage(this.latencies) +
-			"\nlatency_med: " + getMedian(this.latencies) +
-			"\nhopcount_avg: " + getIntAverage(this.hopCounts) +
-			"\nhopcount_med: " + getIntMedian(this.hopCounts) +
-			"\nbuffertime_avg: " + getAverage(this.msgBufferTime) +
-			"\nbuffertime_med: " + getMedian(this.msgBufferTime) +
-			"\nrtt_avg: " + getAverage(this.rtt) +
-			"\nrtt_med: " + getMedian(this.rtt)
-			;
-
-		write(statsText);
+		if (isColumnar()) {
+			stat("sim_time", getSimTime());
+			stat("created", this.nrofCreated);
+			stat("started", this.nrofStarted);
+			stat("relayed", this.nrofRelayed);
+			stat("aborted", this.nrofAborted);
+			stat("dropped", this.nrofDropped);
+			stat("removed", this.nrofRemoved);
+			stat("delivered", this.nrofDelivered);
+			stat("delivery_prob", deliveryProb);
+			stat("response_prob", responseProb);
+			stat("overhead_ratio", overHead);
+			stat("latency_avg", average(this.latencies));
+			stat("latency_med", median(this.latencies, Double.NaN));
+			stat("hopcount_avg", average(this.hopCounts));
+			stat("hopcount_med", median(this.hopCounts, 0));
+			stat("buffertime_avg", average(this.msgBufferTime));
+			stat("buffertime_med", median(this.msgBufferTime, Double.NaN));
+			stat("rtt_avg", average(this.rtt));
+			stat("rtt_med", median(this.rtt, Double.NaN));
+		}
+		else {
+			write("Message stats for scenario " + getScenarioName() +
+					"\nsim_time: " + format(getSimTime()));
+			String statsText = "created: " + this.nrofCreated +
+				"\nstarted: " + this.nrofStarted +
+				"\nrelayed: " + this.nrofRelayed +
+				"\naborted: " + this.nrofAborted +
+				"\ndropped: " + this.nrofDropped +
+				"\nremoved: " + this.nrofRemoved +
+				"\ndelivered: " + this.nrofDelivered +
+				"\ndelivery_prob: " + format(deliveryProb) +
+				"\nresponse_prob: " + format(responseProb) +
+				"\noverhead_ratio: " + format(overHead) +
+				"\nlatency_avg: " + getAverage(this.latencies) +
+				"\nlatency_med: " + getMedian(this.latencies) +
+				"\nhopcount_avg: " + getIntAverage(this.hopCounts) +
+				"\nhopcount_med: " + getIntMedian(this.hopCounts) +
+				"\nbuffertime_avg: " + getAverage(this.msgBufferTime) +
+				"\nbuffertime_med: " + getMedian(this.msgBufferTime) +
+				"\nrtt_avg: " + getAverage(this.rtt) +
+				"\nrtt_med: " + getMedian(this.rtt)
+				;
+
+			write(statsText);
+		}
+
+		addEnsembleValue("delivery_prob", deliveryProb);
+		addEnsembleValue("overhead_ratio", overHead);
+		addEnsembleValue("latency_avg", average(this.latencies));
+		addEnsembleValue("hopcount_avg", average(this.hopCounts));
 		super.done();
 	}
 
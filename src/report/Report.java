@@ -4,16 +4,21 @@
  */
 package report;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
+import core.RunContext;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -49,12 +54,38 @@ public abstract class Report {
 	 *  respective report classes for details. Default is 0. Must be a positive
 	 *  integer or 0. */
 	public static final String WARMUP_S = "warmup";
+	/** Asynchronous output -setting id ({@value}). Boolean (true/false)
+	 * variable. If true, the report output is formatted and written by a
+	 * background thread (see {@link ReportWriter}). Default is true. */
+	public static final String ASYNC_OUTPUT_S = "asyncOutput";
+	/** Compressed output -setting id ({@value}). Boolean (true/false)
+	 * variable. If true, the report output is gzip compressed and
+	 * {@value #GZIP_SUFFIX} is appended to the file names. Default is
+	 * false. */
+	public static final String GZIP_OUTPUT_S = "gzip";
+	/** Suffix of compressed report files */
+	public static final String GZIP_SUFFIX = ".gz";
+	/** Columnar output -setting id ({@value}). Boolean (true/false)
+	 * variable. If true, reports that support it (see {@link #getColumns()})
+	 * write their rows to a typed, compressed binary file (see
+	 * {@link ColumnarWriter}) instead of the text output. The file name
+	 * ends with {@value #COLUMNAR_SUFFIX} instead of {@value #OUT_SUFFIX}.
+	 * Default is false. */
+	public static final String COLUMNAR_OUTPUT_S = "columnar";
+	/** Suffix of columnar report files */
+	public static final String COLUMNAR_SUFFIX = ".col";
+	/** Size of the output buffer (bytes) */
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
 	/** Suffix of report files without explicit output */
 	public static final String OUT_SUFFIX = ".txt";
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX;
 	/** The print writer used to write output. See {@link #write(String)} */
 	protected PrintWriter out;
+	/** The writer below {@link #out}. See {@link #line()} */
+	private ReportWriter writer;
+	/** The writer of the columnar output. See {@link #row()} */
+	private ColumnarWriter columnar;
 	/** String value for values that could not be calculated */
 	public static final String NAN = "NaN";
 	private String prefix = "";
@@ -67,6 +98,14 @@ public abstract class Report {
 	private double lastReportTime;
 	private String outFileName;
 	private String scenarioName;
+	private boolean asyncOutput;
+	private boolean gzipOutput;
+	/** is columnar output requested in the settings */
+	private boolean columnarRequested;
+	/** columns of the columnar output (null for text output); set up on
+	 * the first use, see {@link #isColumnar()} */
+	private ColumnarWriter.Column[] columns;
+	private boolean columnsSetUp;
 
 	/**
 	 * Constructor.
@@ -107,6 +146,10 @@ public abstract class Report {
 			precision = DEF_PRECISION;
 		}
 
+		this.asyncOutput = settings.getBoolean(ASYNC_OUTPUT_S, true);
+		this.gzipOutput = settings.getBoolean(GZIP_OUTPUT_S, false);
+		this.columnarRequested = settings.getBoolean(COLUMNAR_OUTPUT_S, false);
+
 		if (settings.contains(OUTPUT_SETTING)) {
 			outFileName = settings.getSetting(OUTPUT_SETTING);
 			// fill value place holders in the name
@@ -119,6 +162,10 @@ public abstract class Report {
 			if (!outDir.endsWith("/")) {
 				outDir += "/";	// make sure dir ends with directory delimiter
 			}
+			String runDir = RunContext.current().getReportSubDir();
+			if (runDir != null) {
+				outDir += runDir + "/";
+			}
 			outFileName = outDir + scenarioName +
 				"_" + this.getClass().getSimpleName();
 			if (outputInterval == -1) {
@@ -162,7 +209,8 @@ public abstract class Report {
 			if (!createDirs(directory.getParentFile())) {
 				return false;
 			}
-			if (!directory.mkdir()) {
+			// directory may have been created by a concurrent run
+			if (!directory.mkdir() && !directory.isDirectory()) {
 				return false;
 			} else {
 				return true;
@@ -192,7 +240,29 @@ public abstract class Report {
 	 */
 	private void createOutput(String outFileName) {
 		try {
-			this.out = new PrintWriter(new FileWriter(outFileName));
+			OutputStream os;
+			if (isColumnar()) {
+				if (outFileName.endsWith(OUT_SUFFIX)) {
+					outFileName = outFileName.substring(0,
+							outFileName.length() - OUT_SUFFIX.length());
+				}
+				outFileName += COLUMNAR_SUFFIX;
+				os = new BufferedOutputStream(new FileOutputStream(
+						outFileName), OUTPUT_BUFFER_SIZE);
+				this.columnar = new ColumnarWriter(os, columns);
+				return;
+			}
+			if (gzipOutput) {
+				os = new GZIPOutputStream(new FileOutputStream(outFileName +
+						GZIP_SUFFIX), OUTPUT_BUFFER_SIZE);
+			}
+			else {
+				os = new BufferedOutputStream(new FileOutputStream(
+						outFileName), OUTPUT_BUFFER_SIZE);
+			}
+			this.writer = new ReportWriter(new OutputStreamWriter(os),
+					precision, asyncOutput);
+			this.out = new PrintWriter(writer);
 		} catch (IOException e) {
 			throw new SimError("Couldn't open file '" + outFileName +
 					"' for report output\n" + e.getMessage(), e);
@@ -228,14 +298,78 @@ public abstract class Report {
 
 	/**
 	 * Writes a line to report using defined prefix and {@link #out} writer.
+	 * Reports with columnar output (see {@link #isColumnar()}) can't write
+	 * text lines.
 	 * @param txt Line to write
+	 * @throws SimError if the report uses columnar output
 	 * @see #setPrefix(String)
 	 */
 	protected void write(String txt) {
+		line().text(txt).endLine();
+	}
+
+	/**
+	 * Starts a new line to the report (with the defined prefix) and returns
+	 * the writer where the fields of the line are added. Numbers added with
+	 * the writer's methods are formatted later in the output thread, so
+	 * reports that write a lot should use this method instead of building
+	 * strings for {@link #write(String)}. The line must be ended with
+	 * {@link ReportWriter#endLine()}.
+	 * @return The writer
+	 * @see #setPrefix(String)
+	 */
+	protected ReportWriter line() {
+		if (isColumnar()) {
+			throw new SimError(getClass().getSimpleName() +
+					" uses columnar output");
+		}
 		if (out == null) {
 			init();
 		}
-		out.println(prefix + txt);
+		if (prefix.length() > 0) {
+			writer.text(prefix);
+		}
+		return writer;
+	}
+
+	/**
+	 * Returns the columns of the report's rows in the columnar output
+	 * (see {@link #COLUMNAR_OUTPUT_S}). Reports that support columnar
+	 * output override this method, check {@link #isColumnar()} and write
+	 * their rows with {@link #row()} instead of {@link #line()}.
+	 * @return The columns or null if the report has no columnar output
+	 * (the default)
+	 */
+	protected ColumnarWriter.Column[] getColumns() {
+		return null;
+	}
+
+	/**
+	 * Returns true if the report writes columnar output instead of text.
+	 * The columns are asked with {@link #getColumns()} on the first call
+	 * (not in the constructor, so that they can depend on the fields of
+	 * the subclass).
+	 * @return true if the report writes columnar output
+	 */
+	protected boolean isColumnar() {
+		if (!columnsSetUp) {
+			columns = columnarRequested ? getColumns() : null;
+			columnsSetUp = true;
+		}
+		return columns != null;
+	}
+
+	/**
+	 * Returns the writer where the values of a new row of the columnar
+	 * output are added (in the column order). The row must be ended with
+	 * {@link ColumnarWriter#endRow()}.
+	 * @return The writer
+	 */
+	protected ColumnarWriter row() {
+		if (columnar == null) {
+			init();
+		}
+		return columnar;
 	}
 
 	/**
@@ -248,6 +382,17 @@ public abstract class Report {
 		return String.format("%." + precision + "f", value);
 	}
 
+	/**
+	 * Adds a per-run value of a metric to the statistics of the Monte-Carlo
+	 * ensemble being executed (see {@link EnsembleStatistics}). Nothing is
+	 * done if the simulation is not run in the ensemble mode.
+	 * @param metric Name of the metric
+	 * @param value The value of the metric in this run
+	 */
+	protected void addEnsembleValue(String metric, double value) {
+		EnsembleStatistics.record(metric, value);
+	}
+
 	/**
 	 * Sets a prefix that will be inserted before every line in the report
 	 * @param txt Text to use as the prefix
@@ -327,12 +472,16 @@ public abstract class Report {
 	/**
 	 * Called when the simulation is done, user requested
 	 * premature termination or intervalled report generating decided
-	 * that it's time for the next report.
+	 * that it's time for the next report. All the output written so far is
+	 * in the report file when the method returns.
 	 */
 	public void done() {
 		if (out != null) {
 			out.close();
 		}
+		if (columnar != null) {
+			columnar.close();
+		}
 	}
 
 	/**
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import core.Coord;
+import core.RunContext;
+import core.SimError;
+
+/**
+ * <P>
+ * Output stage of the reports. The fields of the report lines (texts and
+ * numbers) are stored as small records in fixed size chunks and the chunks
+ * are formatted and written to the target writer by a background output
+ * thread, so the simulation thread only pays for storing the records.
+ * Numbers are stored as primitive values and converted to text only in the
+ * output thread. Every run (see {@link RunContext}) has its own output
+ * thread that is started when the run's first asynchronous writer is
+ * created and that stops when all of them have been closed.</P>
+ *
+ * <P>Every writer has a fixed number of chunks that are passed to the
+ * output thread and back in lock-free queues, so the amount of buffered
+ * output is bounded: if the output thread falls behind, the report waits
+ * for a free chunk. {@link #flush()} and {@link #close()} wait until all the
+ * chunks have been written, so the output is complete when they return.
+ * If writing the output fails in the output thread, the rest of the
+ * writer's chunks are discarded and the failure is thrown (as a
+ * {@link SimError}) by the next call that waits for the output.</P>
+ *
+ * <P>A writer must be used by one thread at a time. Writers that are not
+ * asynchronous format and write the chunks in the calling thread.</P>
+ */
+public class ReportWriter extends Writer {
+	/** Number of fields in a chunk */
+	public static final int CHUNK_SIZE = 2048;
+	/** Number of chunks per writer */
+	public static final int NROF_CHUNKS = 4;
+
+	/** field types */
+	private static final byte TEXT = 0;
+	private static final byte NUMBER = 1;
+	private static final byte INTEGER = 2;
+	private static final byte DECIMAL = 3;
+	private static final byte COORD = 4;
+	private static final byte LINE_END = 5;
+
+	/** how long to wait for the output thread at a time (nanoseconds) */
+	private static final long WAIT_NS = 1000000;
+
+	private final Writer target;
+	/** the output thread of the run or null if the writer is synchronous */
+	private final OutputThread output;
+	private final boolean async;
+	private final String decimalFormat;
+	private final String lineSeparator;
+
+	/** the chunk being filled */
+	private Chunk current;
+	/** chunks that have been written by the output thread */
+	private final ConcurrentLinkedQueue<Chunk> free;
+	/** thread waiting for free chunks (or null) */
+	private volatile Thread waiter;
+	/** exception or error thrown while writing the output (or null) */
+	private volatile Throwable error;
+	private boolean closed;
+
+	/**
+	 * Creates a new report writer
+	 * @param target The writer where the formatted output is written
+	 * @param precision Number of decimals in {@link #formatted(double)}
+	 * values
+	 * @param async If true, the output is formatted and written by the
+	 * background output thread, if false, by the calling thread
+	 */
+	public ReportWriter(Writer target, int precision, boolean async) {
+		this.target = target;
+		this.async = async;
+		this.output = async ? OutputThread.open() : null;
+		this.decimalFormat = "%." + precision + "f";
+		this.lineSeparator = System.lineSeparator();
+		this.free = new ConcurrentLinkedQueue<Chunk>();
+		this.current = new Chunk();
+		for (int i=1; i < NROF_CHUNKS; i++) {
+			free.add(new Chunk());
+		}
+		this.closed = false;
+	}
+
+	/**
+	 * Adds a text field
+	 * @param txt The text
+	 * @return this writer
+	 */
+	public ReportWriter text(String txt) {
+		Chunk c = reserve();
+		c.texts[c.size++] = txt;
+		return this;
+	}
+
+	/**
+	 * Adds the string presentation of an object. The string is created
+	 * immediately.
+	 * @param o The object
+	 * @return this writer
+	 */
+	public ReportWriter text(Object o) {
+		return text(String.valueOf(o));
+	}
+
+	/**
+	 * Adds a number field that is formatted like string concatenation does
+	 * (i.e., with {@link Double#toString(double)})
+	 * @param value The number
+	 * @return this writer
+	 */
+	public ReportWriter number(double value) {
+		return add(NUMBER, Double.doubleToRawLongBits(value), 0);
+	}
+
+	/**
+	 * Adds an integer field
+	 * @param value The integer
+	 * @return this writer
+	 */
+	public ReportWriter number(long value) {
+		return add(INTEGER, value, 0);
+	}
+
+	/**
+	 * Adds a number field that is formatted with the writer's precision
+	 * like {@link Report#format(double)} does
+	 * @param value The number
+	 * @return this writer
+	 */
+	public ReportWriter formatted(double value) {
+		return add(DECIMAL, Double.doubleToRawLongBits(value), 0);
+	}
+
+	/**
+	 * Adds the current value of a coordinate that is formatted like
+	 * {@link Coord#toString()} does
+	 * @param c The coordinate
+	 * @return this writer
+	 */
+	public ReportWriter coord(Coord c) {
+		return add(COORD, Double.doubleToRawLongBits(c.getX()),
+				Double.doubleToRawLongBits(c.getY()));
+	}
+
+	/**
+	 * Ends the current line
+	 * @return this writer
+	 */
+	public ReportWriter endLine() {
+		return add(LINE_END, 0, 0);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) {
+		text(new String(cbuf, off, len));
+	}
+
+	@Override
+	public void write(String str) {
+		text(str);
+	}
+
+	@Override
+	public void write(String str, int off, int len) {
+		text(str.substring(off, off + len));
+	}
+
+	@Override
+	public void write(int c) {
+		text(String.valueOf((char)c));
+	}
+
+	/**
+	 * Writes all the output to the target writer and flushes it
+	 */
+	@Override
+	public void flush() {
+		if (closed) {
+			return;
+		}
+		if (current.size > 0) {
+			handOff();
+		}
+		if (async) {
+			waitFor(NROF_CHUNKS - 1);
+		}
+		checkError();
+		try {
+			target.flush();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Writes all the output to the target writer and closes it
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			closed = true;
+			if (output != null) {
+				output.close();
+			}
+			try {
+				target.close();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
+				}
+			}
+		}
+		checkError();
+	}
+
+	private ReportWriter add(byte type, long first, long second) {
+		Chunk c = reserve();
+		c.types[c.size] = type;
+		c.first[c.size] = first;
+		c.second[c.size] = second;
+		c.size++;
+		return this;
+	}
+
+	/**
+	 * Returns the current chunk, handing the old one off first if it is full
+	 * @return a chunk with room for at least one more field
+	 */
+	private Chunk reserve() {
+		if (closed) {
+			current.size = 0; // ignore output after close, like PrintWriter
+		}
+		else if (current.size == CHUNK_SIZE) {
+			handOff();
+		}
+		Chunk c = current;
+		c.types[c.size] = TEXT;
+		return c;
+	}
+
+	/**
+	 * Hands the current chunk off for writing and takes a free chunk
+	 */
+	private void handOff() {
+		if (!async) {
+			current.writeTo();
+			checkError();
+			return;
+		}
+
+		output.add(current);
+		waitFor(1);
+		current = free.poll();
+		checkError();
+	}
+
+	/**
+	 * Waits until there are at least the given number of free chunks
+	 * @param nrof The number of chunks to wait for
+	 */
+	private void waitFor(int nrof) {
+		if (free.size() >= nrof) {
+			return;
+		}
+		waiter = Thread.currentThread();
+		try {
+			while (free.size() < nrof) {
+				checkError();
+				LockSupport.parkNanos(this, WAIT_NS);
+			}
+		} finally {
+			waiter = null;
+		}
+	}
+
+	/**
+	 * Throws the failure of writing the output (if any) as a SimError
+	 */
+	private void checkError() {
+		Throwable t = error;
+		if (t == null) {
+			return;
+		}
+		SimError e = new SimError("Writing report output failed: " + t,
+				t instanceof Exception ? (Exception)t : null);
+		e.initCause(t);
+		throw e;
+	}
+
+	/**
+	 * Called by the output thread when a chunk has been written
+	 * @param c The chunk
+	 */
+	private void release(Chunk c) {
+		free.add(c);
+		Thread w = waiter;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+	}
+
+	/**
+	 * Fixed size block of fields
+	 */
+	private class Chunk {
+		private final byte[] types = new byte[CHUNK_SIZE];
+		private final long[] first = new long[CHUNK_SIZE];
+		private final long[] second = new long[CHUNK_SIZE];
+		private final String[] texts = new String[CHUNK_SIZE];
+		private int size = 0;
+
+		/**
+		 * Returns the writer that owns this chunk
+		 * @return the writer that owns this chunk
+		 */
+		private ReportWriter owner() {
+			return ReportWriter.this;
+		}
+
+		/**
+		 * Formats the fields to the target writer and empties the chunk.
+		 * IOExceptions are stored to the owner writer.
+		 */
+		private void writeTo() {
+			try {
+				for (int i=0; i < size; i++) {
+					switch (types[i]) {
+					case TEXT:
+						target.write(texts[i]);
+						texts[i] = null;
+						break;
+					case NUMBER:
+						target.write(Double.toString(
+								Double.longBitsToDouble(first[i])));
+						break;
+					case INTEGER:
+						target.write(Long.toString(first[i]));
+						break;
+					case DECIMAL:
+						target.write(String.format(decimalFormat,
+								Double.longBitsToDouble(first[i])));
+						break;
+					case COORD:
+						target.write(String.format("(%.2f,%.2f)",
+								Double.longBitsToDouble(first[i]),
+								Double.longBitsToDouble(second[i])));
+						break;
+					default:
+						target.write(lineSeparator);
+					}
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+			size = 0;
+		}
+	}
+
+	/**
+	 * Background thread that writes the chunks of the asynchronous writers
+	 * of one run
+	 */
+	private static class OutputThread extends Thread {
+		private final ConcurrentLinkedQueue<Chunk> pending;
+		private final RunContext context;
+		/** number of open writers (guarded by the OutputThread class) */
+		private int nrofWriters;
+		private volatile boolean stopped;
+
+		private OutputThread(RunContext context) {
+			super("ReportOutput-" + context.getRunIndex());
+			setDaemon(true);
+			this.pending = new ConcurrentLinkedQueue<Chunk>();
+			this.context = context;
+			this.nrofWriters = 0;
+			this.stopped = false;
+		}
+
+		/**
+		 * Returns the output thread of the current run for a new writer.
+		 * The thread is started if the run has no output thread yet.
+		 * @return the output thread of the current run
+		 */
+		private static synchronized OutputThread open() {
+			RunContext context = RunContext.current();
+			OutputThread t = (OutputThread)context.getResource(
+					OutputThread.class);
+			if (t == null) {
+				t = new OutputThread(context);
+				context.putResource(OutputThread.class, t);
+				t.start();
+			}
+			t.nrofWriters++;
+			return t;
+		}
+
+		/**
+		 * Tells that a writer has been closed (and all its chunks written).
+		 * The thread stops when all the writers of the run are closed.
+		 */
+		private void close() {
+			synchronized (OutputThread.class) {
+				if (--nrofWriters > 0) {
+					return;
+				}
+				context.putResource(OutputThread.class, null);
+			}
+			stopped = true;
+			LockSupport.unpark(this);
+		}
+
+		private void add(Chunk c) {
+			pending.add(c);
+			LockSupport.unpark(this);
+		}
+
+		@Override
+		public void run() {
+			while (!stopped) {
+				Chunk c = pending.poll();
+				if (c == null) {
+					LockSupport.park(this);
+					continue;
+				}
+				ReportWriter w = c.owner();
+				try {
+					if (w.error == null) {
+						c.writeTo();
+					}
+				} catch (Throwable t) {
+					w.error = t;
+				} finally {
+					if (c.size > 0) {
+						/* the chunk wasn't written; it's released anyway so
+						 * that the waiting writer sees the error */
+						c.size = 0;
+						Arrays.fill(c.texts, null);
+					}
+					w.release(c);
+				}
+			}
+		}
+	}
+}
@@ -40,13 +40,13 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 	@Override
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		newEvent();
-		ConnectionInfo ci = removeConnection(host1, host2);
+		double start = removeConnection(host1, host2);
 
-		if (ci == null) {
+		if (Double.isNaN(start)) {
 			return; // connection started during the warm up period
 		}
 
-		oldContactTimes += ci.getConnectionTime();
+		oldContactTimes += getSimTime() - start;
 	}
 
 	/**
@@ -62,10 +62,7 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 		lastWrite = simTime;
 
 		// count also the times for connections that are still up
-		double othersTime = 0;
-		for (ConnectionInfo oth : this.connections.values()) {
-			othersTime += oth.getConnectionTime();
-		}
+		double othersTime = contacts.getTotalOpenTime(simTime);
 
 		double totalTime = oldContactTimes + othersTime;
 
@@ -4,56 +4,36 @@
  */
 package report;
 
-import java.util.List;
-
-import core.ConnectionListener;
-import core.DTNHost;
-import core.UpdateListener;
-
 /**
- * A report of the distribution of how many encounters (contacts) a node has had
+ * A report of the distribution of how many encounters (contacts) a node has
+ * had. The encounters are counted by the shared {@link EncounterStatistics}
+ * of the run.
  *
  * @author Frans Ekman
  */
-public class TotalEncountersReport extends Report implements ConnectionListener,
-	UpdateListener {
+public class TotalEncountersReport extends Report {
 
-	private int[] encounters;
+	private EncounterStatistics stats;
 
 	public TotalEncountersReport() {
-
-	}
-
-	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		if (encounters == null) {
-			return;
-		}
-		encounters[host1.getAddress()]++;
-		encounters[host2.getAddress()]++;
-	}
-
-	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
-
-	public void updated(List<DTNHost> hosts) {
-		if (encounters == null) {
-			encounters = new int[hosts.size()];
-		}
+		this.stats = EncounterStatistics.getInstance();
 	}
 
 	@Override
 	public void done() {
+		int nrofHosts = stats.getNrofHosts();
 
 		int maxEncounters = -1;
-		for (int i=0; i<encounters.length; i++) {
-			if (encounters[i] > maxEncounters) {
-				maxEncounters = encounters[i];
+		for (int i=0; i<nrofHosts; i++) {
+			if (stats.getEncounters(i) > maxEncounters) {
+				maxEncounters = stats.getEncounters(i);
 			}
 		}
 
 		int[] distribution = new int[maxEncounters + 1];
 
-		for (int i=0; i<encounters.length; i++) {
-			distribution[encounters[i]]++;
+		for (int i=0; i<nrofHosts; i++) {
+			distribution[stats.getEncounters(i)]++;
 		}
 
 		// Print distribution
@@ -64,12 +44,4 @@ public class TotalEncountersReport extends Report implements ConnectionListener,
 		super.done();
 	}
 
-	public int[] getEncounters() {
-		return encounters;
-	}
-
-	public void setEncounters(int[] encounters) {
-		this.encounters = encounters;
-	}
-
 }
@@ -4,61 +4,34 @@
  */
 package report;
 
-import java.util.List;
-
-import core.ConnectionListener;
-import core.DTNHost;
-import core.UpdateListener;
-
 /**
  * UniqueEncountersReport class creates a report of the distribution of how
- * many promilles of the other nodes a node has encountered.
+ * many promilles of the other nodes a node has encountered. The encounters
+ * are counted by the shared {@link EncounterStatistics} of the run.
  *
  * @author Frans Ekman
  */
-public class UniqueEncountersReport extends Report implements
-	ConnectionListener, UpdateListener {
+public class UniqueEncountersReport extends Report {
 
-	private int[][] nodeRelationships;
+	private EncounterStatistics stats;
 
 	public UniqueEncountersReport() {
-
-	}
-
-	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		if (nodeRelationships == null) {
-			return;
-		}
-		nodeRelationships[host1.getAddress()][host2.getAddress()]++;
-		nodeRelationships[host2.getAddress()][host1.getAddress()]++;
-	}
-
-	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
-
-	public void updated(List<DTNHost> hosts) {
-		if (nodeRelationships == null) {
-			nodeRelationships = new int[hosts.size()][hosts.size()];
-		}
+		this.stats = EncounterStatistics.getInstance();
 	}
 
 	@Override
 	public void done() {
 		int[] distribution = new int[1000];
-		
-		if (nodeRelationships == null) {
+		int nrofHosts = stats.getNrofHosts();
+
+		if (nrofHosts == 0) {
 			super.done();
 			return;
 		}
 
-		for (int i=0; i<nodeRelationships.length; i++) {
-			int count = 0;
-			for (int j=0; j<nodeRelationships.length; j++) {
-				if (nodeRelationships[i][j] > 0) {
-					count++;
-				}
-			}
-
-			int promille = (count * 1000)/nodeRelationships.length;
+		for (int i=0; i<nrofHosts; i++) {
+			int count = stats.getUniqueEncounters(i);
+			int promille = (count * 1000)/nrofHosts;
 			distribution[promille]++;
 		}
 
@@ -70,12 +43,4 @@ public class UniqueEncountersReport extends Report implements
 		super.done();
 	}
 
-	public int[][] getNodeRelationships() {
-		return nodeRelationships;
-	}
-
-	public void setNodeRelationships(int[][] nodeRelationships) {
-		this.nodeRelationships = nodeRelationships;
-	}
-
 }
@@ -4,17 +4,44 @@
  */
 package report;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import core.DTNHost;
+import core.InfectionListener;
 import core.Message;
 import core.MessageListener;
 
 /**
- * Reports delivered messages
+ * Reports delivered messages, or with the infection engine
+ * ({@link core.SeirEngine}), the transmissions of the infection. The
+ * message_id is then the infection chain, creation_time the time of
+ * exposure and distance the distance between the infector and the infected
+ * host. The initially infected hosts are not reported.
+ * In the ensemble mode, the number of transmissions ("infections") and the
+ * cumulative number of transmissions by the end of every simulated day
+ * ("infections_day_N") are added to the ensemble statistics.
  * report csv:
  */
-public class VirusTransmissionReport extends Report implements MessageListener {
+public class VirusTransmissionReport extends Report implements MessageListener,
+        InfectionListener {
     // This is used as header for the inputs later on
     public static final String HEADER = "message_id|from|to|creation_time|host_location|section|distance";
+    /** Columns of the columnar output (as in the {@link #HEADER}, but
+     * with the host location in two columns) */
+    private static final ColumnarWriter.Column[] COLUMNS = {
+        new ColumnarWriter.Column("message_id", ColumnarWriter.STRING),
+        new ColumnarWriter.Column("from", ColumnarWriter.STRING),
+        new ColumnarWriter.Column("to", ColumnarWriter.STRING),
+        new ColumnarWriter.Column("creation_time", ColumnarWriter.TIME),
+        new ColumnarWriter.Column("host_x", ColumnarWriter.DOUBLE),
+        new ColumnarWriter.Column("host_y", ColumnarWriter.DOUBLE),
+        new ColumnarWriter.Column("section", ColumnarWriter.STRING),
+        new ColumnarWriter.Column("distance", ColumnarWriter.DOUBLE)};
+    /** Length of a simulated day (seconds) */
+    public static final int DAY = 24 * 60 * 60;
+
+    private List<Double> transmissionTimes;
 
     public VirusTransmissionReport() {
         init();
@@ -24,22 +51,81 @@ public class VirusTransmissionReport extends Report implements MessageListener {
     @Override
     public void init() {
         super.init();
-        write(HEADER);
+        this.transmissionTimes = new ArrayList<Double>();
+        if (!isColumnar()) {
+            write(HEADER);
+        }
+    }
+
+    @Override
+    protected ColumnarWriter.Column[] getColumns() {
+        return COLUMNS;
+    }
+
+    /**
+     * Writes a transmission to the columnar output
+     */
+    private void writeRow(String id, DTNHost from, DTNHost to,
+            double distance) {
+        row().string(id).string(from).string(to).time(getSimTime())
+                .real(from.getLocation().getX())
+                .real(from.getLocation().getY())
+                .string(to.getName()).real(distance).endRow();
+        transmissionTimes.add(getSimTime());
     }
 
     public void messageTransferred(Message m, DTNHost from, DTNHost to, boolean finalTarget) {
-        String event_string = m.getId() + "|"
-                + from.toString() + "|"
-                + to.toString() + "|"
-                + format(getSimTime()) + "|"
-                + from.getLocation() + "|"
-                + to.getName() + "|"
-                + m.getFrom().getLocation().distance(m.getTo().getLocation());
-        write(event_string);
+        if (isColumnar()) {
+            writeRow(m.getId(), from, to,
+                    m.getFrom().getLocation().distance(m.getTo().getLocation()));
+            return;
+        }
+        line().text(m.getId()).text("|")
+                .text(from).text("|")
+                .text(to).text("|")
+                .formatted(getSimTime()).text("|")
+                .coord(from.getLocation()).text("|")
+                .text(to.getName()).text("|")
+                .number(m.getFrom().getLocation().distance(m.getTo().getLocation()))
+                .endLine();
+        transmissionTimes.add(getSimTime());
     }
 
+    public void hostExposed(DTNHost host, DTNHost infector, String chainId) {
+        if (infector == null) {
+            return; // initially infected host
+        }
+        if (isColumnar()) {
+            writeRow(chainId, infector, host,
+                    infector.getLocation().distance(host.getLocation()));
+            return;
+        }
+        line().text(chainId).text("|")
+                .text(infector).text("|")
+                .text(host).text("|")
+                .formatted(getSimTime()).text("|")
+                .coord(infector.getLocation()).text("|")
+                .text(host.getName()).text("|")
+                .number(infector.getLocation().distance(host.getLocation()))
+                .endLine();
+        transmissionTimes.add(getSimTime());
+    }
+
+    public void hostInfectious(DTNHost host) {}
+    public void hostRecovered(DTNHost host) {}
+
     @Override
     public void done() {
+        addEnsembleValue("infections", transmissionTimes.size());
+        int nrofDays = (int)(getSimTime() / DAY);
+        int i = 0;
+        for (int day = 1; day <= nrofDays; day++) {
+            while (i < transmissionTimes.size() &&
+                    transmissionTimes.get(i) <= day * DAY) {
+                i++;
+            }
+            addEnsembleValue("infections_day_" + day, i);
+        }
         super.done();
     }
 
@@ -5,12 +5,12 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
 import routing.util.EnergyModel;
+import routing.util.MessageStore;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
 import util.Tuple;
@@ -29,6 +29,8 @@ import core.SimClock;
  * {@link #update()}).
  */
 public abstract class ActiveRouter extends MessageRouter {
+	private static final long serialVersionUID = 42L;
+
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
@@ -37,14 +39,25 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * from message buffer */
 	protected boolean deleteDelivered;
 
+	/** TTL check interval -setting id ({@value}). Double valued.
+	 * How often (simulated seconds) the messages whose TTL has expired are
+	 * dropped. With 0, the messages are dropped in the first update after
+	 * they expire (when the router is not sending). Default =
+	 * {@link #TTL_CHECK_INTERVAL} */
+	public static final String TTL_CHECK_INTERVAL_S = "ttlCheckInterval";
+
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
+	/** default interval of TTL checks (discarding old messages) ({@value}) */
+	public static final int TTL_CHECK_INTERVAL = 0;
 	/** how often TTL check (discarding old messages) is performed */
-	public static int TTL_CHECK_INTERVAL = 60;
+	protected double ttlCheckInterval;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
 	/** sim time when the last TTL check was done */
 	private double lastTtlCheck;
+	/** filter for the messages that this router is sending */
+	private MessageStore.Filter sendingFilter;
 
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
@@ -60,6 +73,8 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.policy = new MessageTransferAcceptPolicy(s);
 
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
+		this.ttlCheckInterval = s.getDouble(TTL_CHECK_INTERVAL_S,
+				TTL_CHECK_INTERVAL);
 
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
@@ -75,6 +90,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.ttlCheckInterval = r.ttlCheckInterval;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
 	}
@@ -84,6 +100,11 @@ public abstract class ActiveRouter extends MessageRouter {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		this.sendingFilter = new MessageStore.Filter() {
+			public boolean matches(Message m) {
+				return isSending(m.getId());
+			}
+		};
 	}
 
 	/**
@@ -106,15 +127,10 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 
 		DTNHost other = con.getOtherNode(getHost());
-		/* do a copy to avoid concurrent modification exceptions
-		 * (startTransfer may remove messages) */
-		ArrayList<Message> temp =
-			new ArrayList<Message>(this.getMessageCollection());
-		for (Message m : temp) {
-			if (other == m.getTo()) {
-				if (startTransfer(m, con) == RCV_OK) {
-					return true;
-				}
+		/* the list is a copy, so startTransfer may remove messages */
+		for (Message m : getMessageStore().getMessagesTo(other)) {
+			if (startTransfer(m, con) == RCV_OK) {
+				return true;
 			}
 		}
 		return false;
@@ -291,12 +307,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Drops messages whose TTL is less than zero.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl();
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
-			}
+		for (Message m : getMessageStore().getExpired()) {
+			deleteMessage(m.getId(), true);
 		}
 	}
 
@@ -323,23 +335,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-
-			if (excludeMsgBeingSent && isSending(m.getId())) {
-				continue; // skip the message(s) that router is sending
-			}
-
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
-		}
-
-		return oldest;
+		/* skip the message(s) that router is sending if requested */
+		return getMessageStore().getOldest(
+				excludeMsgBeingSent ? sendingFilter : null);
 	}
 
 	/**
@@ -353,6 +351,19 @@ public abstract class ActiveRouter extends MessageRouter {
 			return new ArrayList<Tuple<Message, Connection>>(0);
 		}
 
+		boolean deliverable = false;
+		for (Connection con : getConnections()) {
+			DTNHost to = con.getOtherNode(getHost());
+			if (getMessageStore().getNrofMessagesTo(to) > 0) {
+				deliverable = true;
+				break;
+			}
+		}
+		if (!deliverable) {
+			/* no messages to the connected hosts -> empty list */
+			return new ArrayList<Tuple<Message, Connection>>(0);
+		}
+
 		List<Tuple<Message, Connection>> forTuples =
 			new ArrayList<Tuple<Message, Connection>>();
 		for (Message m : getMessageCollection()) {
@@ -453,9 +464,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
-		List<Message> messages =
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
+		List<Message> messages = getMessagesInQueueOrder();
 
 		return tryMessagesToConnections(messages, connections);
 	}
@@ -571,6 +580,30 @@ public abstract class ActiveRouter extends MessageRouter {
 		return this.energy == null || this.energy.getEnergy() > 0;
 	}
 
+	/**
+	 * Returns the time until which the update of this class has no sending
+	 * connections, applications or energy model to update and no messages
+	 * to drop. Routers are never idle by default (see
+	 * {@link MessageRouter#getIdleEndTime()}); subclasses whose update does
+	 * nothing else when the host has no connections can return this from
+	 * their {@link #getIdleEndTime()}.
+	 * @return The time until which the update of this class is not needed
+	 */
+	protected double getActiveIdleEndTime() {
+		if (this.sendingConnections.size() > 0 || this.energy != null ||
+				hasApplications()) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		double now = SimClock.getTime();
+		if (ttlCheckInterval > 0) {
+			/* every check changes lastTtlCheck -> idle only until the
+			 * next check is due */
+			return now - lastTtlCheck < ttlCheckInterval ?
+					Math.nextUp(now) : Double.NEGATIVE_INFINITY;
+		}
+		return getMessageStore().getExpiryBound();
+	}
+
 	/**
 	 * Checks out all sending connections to finalize the ready ones
 	 * and abort those whose connection went down. Also drops messages
@@ -618,7 +651,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 
 		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL &&
+		if (SimClock.getTime() - lastTtlCheck >= ttlCheckInterval &&
 				sendingConnections.size() == 0) {
 			dropExpiredMessages();
 			lastTtlCheck = SimClock.getTime();
@@ -10,6 +10,7 @@ import core.Settings;
  * Router that will deliver messages only to the final recipient.
  */
 public class DirectDeliveryRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 
 	public DirectDeliveryRouter(Settings s) {
 		super(s);
@@ -32,6 +33,15 @@ public class DirectDeliveryRouter extends ActiveRouter {
 		}
 	}
 
+	/**
+	 * Returns the idle end time of the active router; messages are only
+	 * delivered to connected final recipients.
+	 */
+	@Override
+	public double getIdleEndTime() {
+		return getActiveIdleEndTime();
+	}
+
 	@Override
 	public DirectDeliveryRouter replicate() {
 		return new DirectDeliveryRouter(this);
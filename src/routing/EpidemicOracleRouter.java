@@ -20,9 +20,7 @@ import static core.Constants.DEBUG;
  * <B>Note:</B> This router module also bypasses ActiveRouter.update()
  */
 public class EpidemicOracleRouter extends ActiveRouter {
-
-	/** List of all routers in this node group */
-	private static List<EpidemicOracleRouter> allRouters;
+	private static final long serialVersionUID = 42L;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
@@ -44,7 +42,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
-		allRouters.add(this);
+		getAllRouters().add(this);
 	}
 
 	@Override
@@ -114,7 +112,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 
 		if (m.getTo() == this.getHost()) {
-			for (EpidemicOracleRouter r : allRouters) {
+			for (EpidemicOracleRouter r : getAllRouters()) {
 				if (r != this && r != from.getRouter()) {
 					r.removeDeliveredMessage(id);
 				}
@@ -167,6 +165,14 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		   are finalized immediately */
 	}
 
+	/**
+	 * Returns positive infinity; the update does nothing.
+	 */
+	@Override
+	public double getIdleEndTime() {
+		return Double.POSITIVE_INFINITY;
+	}
+
 
 	@Override
 	public EpidemicOracleRouter replicate() {
@@ -177,7 +183,24 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 * Resets the static router list
 	 */
 	public static void reset() {
-		allRouters = new ArrayList<EpidemicOracleRouter>();
+		RunContext.current().put(EpidemicOracleRouter.class,
+				new ArrayList<EpidemicOracleRouter>());
+	}
+
+	/**
+	 * Returns the list of all routers in this node group (of the current run)
+	 * @return the list of all routers of the current run
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<EpidemicOracleRouter> getAllRouters() {
+		RunContext context = RunContext.current();
+		List<EpidemicOracleRouter> allRouters =
+			(List<EpidemicOracleRouter>)context.get(EpidemicOracleRouter.class);
+		if (allRouters == null) {
+			allRouters = new ArrayList<EpidemicOracleRouter>();
+			context.put(EpidemicOracleRouter.class, allRouters);
+		}
+		return allRouters;
 	}
 
 }
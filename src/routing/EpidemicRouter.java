@@ -11,6 +11,7 @@ import core.Settings;
  * connections at a time.
  */
 public class EpidemicRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -47,6 +48,15 @@ public class EpidemicRouter extends ActiveRouter {
 		this.tryAllMessagesToAllConnections();
 	}
 
+	/**
+	 * Returns the idle end time of the active router; without connections
+	 * the update has no messages to offer.
+	 */
+	@Override
+	public double getIdleEndTime() {
+		return getActiveIdleEndTime();
+	}
+
 
 	@Override
 	public EpidemicRouter replicate() {
@@ -14,6 +14,7 @@ import core.Settings;
  * (or fragments) and forwards it to the first available contact.
  */
 public class FirstContactRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -60,6 +61,15 @@ public class FirstContactRouter extends ActiveRouter {
 		tryAllMessagesToAllConnections();
 	}
 
+	/**
+	 * Returns the idle end time of the active router; the update only
+	 * tries to hand the messages over to the connected hosts.
+	 */
+	@Override
+	public double getIdleEndTime() {
+		return getActiveIdleEndTime();
+	}
+
 	@Override
 	protected void transferDone(Connection con) {
 		/* don't leave a copy for the sender */
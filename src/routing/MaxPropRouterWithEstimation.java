@@ -5,6 +5,7 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -44,6 +45,8 @@ import core.SimClock;
  * @version 1.0
  */
 public class MaxPropRouterWithEstimation extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
+
 	/** probabilities of meeting hosts */
 	private MeetingProbabilitySet probs;
 	/** meeting probabilities of all hosts from this host's point of view
@@ -53,10 +56,13 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	private MaxPropDijkstra dijkstra;
 	/** IDs of the messages that are known to have reached the final dst */
 	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
+	/** addresses of the hosts that the costs are calculated to (the
+	 * destinations of the messages) */
+	private BitSet costTargets;
+	/** are the cost targets valid. This should be set to false always when
+	 * the costs should be updated (a host is met or a new message is
+	 * received) */
+	private boolean costsValid;
 	/** From host of the last cost calculation */
 	private DTNHost lastCostFrom;
 
@@ -122,6 +128,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 				MeetingProbabilitySet.INFINITE_SET_SIZE, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
+		this.costTargets = new BitSet();
 		this.ackedMessageIds = new HashSet<String>();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
 		initMeetings();
@@ -145,7 +152,8 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 		super.changedConnection(con);
 
 		if (con.isUp()) { // new connection
-			this.costsForMessages = null; // invalidate old cost estimates
+			this.costsValid = false; // invalidate old cost estimates
+			this.dijkstra.invalidate();
 
 			if (con.isInitiator(getHost())) {
 				/* initiator performs all the actions on behalf of the
@@ -183,6 +191,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 						otherRouter.probs.replicate());
 				otherRouter.allProbs.put(getHost().getAddress(),
 						this.probs.replicate());
+				otherRouter.dijkstra.invalidate();
 			}
 		}
 		else {
@@ -332,7 +341,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
+		this.costsValid = false; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
@@ -440,29 +449,30 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
 		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
-			this.allProbs.put(getHost().getAddress(), this.probs);
-			int fromIndex = from.getAddress();
+		if (!this.costsValid || lastCostFrom != from) {
+			/* cached costs are invalid -> update the cost targets */
+			if (this.allProbs.put(getHost().getAddress(), this.probs) !=
+					this.probs) {
+				this.dijkstra.invalidate();
+			}
 
 			/* calculate paths only to nodes we have messages to
 			 * (optimization) */
-			Set<Integer> toSet = new HashSet<Integer>();
+			this.costTargets.clear();
 			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
+				this.costTargets.set(m.getTo().getAddress());
 			}
 
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
+			this.costsValid = true;
 			this.lastCostFrom = from; // store source host for caching checks
 		}
 
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
+		if (!this.costTargets.get(to.getAddress())) {
+			return Double.MAX_VALUE; // not a destination of our messages
 		}
+
+		/* Double.MAX_VALUE if there's no known path to the given host */
+		return dijkstra.getCost(from.getAddress(), to.getAddress());
 	}
 
 	/**
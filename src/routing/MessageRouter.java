@@ -4,6 +4,8 @@
  */
 package routing;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -20,13 +22,15 @@ import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import routing.util.MessageStore;
 import routing.util.RoutingInfo;
 import util.Tuple;
 
 /**
  * Superclass for message routers.
  */
-public abstract class MessageRouter {
+public abstract class MessageRouter implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Message buffer size -setting id ({@value}). Long value in bytes.*/
 	public static final String B_SIZE_S = "bufferSize";
 	/**
@@ -83,10 +87,13 @@ public abstract class MessageRouter {
 	public static final int DENIED_UNSPECIFIED = -99;
 
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
+	/** The messages being transferred (usually only a few, so they are
+	 * looked up by scanning the list) */
+	private List<Message> incomingMessages;
+	/** The hosts the incoming messages are transferred from */
+	private List<DTNHost> incomingFrom;
 	/** The messages this router is carrying */
-	private HashMap<String, Message> messages;
+	private MessageStore messages;
 	/** The messages this router has received as the final recipient */
 	private HashMap<String, Message> deliveredMessages;
 	/** The messages that Applications on this router have blacklisted */
@@ -154,8 +161,9 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
+		this.incomingMessages = new ArrayList<Message>();
+		this.incomingFrom = new ArrayList<DTNHost>();
+		this.messages = new MessageStore();
 		this.deliveredMessages = new HashMap<String, Message>();
 		this.blacklistedMessages = new HashMap<String, Object>();
 		this.mListeners = mListeners;
@@ -192,6 +200,27 @@ public abstract class MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns the time until which calling {@link #update()} would change
+	 * nothing, given that the host has no connections and no messages are
+	 * added to the router. The updates of idle routers can be skipped. This
+	 * implementation returns negative infinity, so the router is always
+	 * updated.
+	 * @return The time until which the router is idle (a time that is not
+	 * after the current time if the router is not idle now)
+	 */
+	public double getIdleEndTime() {
+		return Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Returns true if any applications are attached to this router
+	 * @return true if the router has applications
+	 */
+	protected boolean hasApplications() {
+		return !this.applications.isEmpty();
+	}
+
 	/**
 	 * Informs the router about change in connections state.
 	 * @param con The connection that changed
@@ -213,7 +242,7 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	public boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		return this.messages.contains(id);
 	}
 
 	/**
@@ -250,7 +279,16 @@ public abstract class MessageRouter {
 	 * @return a reference to the messages of this router in collection
 	 */
 	public Collection<Message> getMessageCollection() {
-		return this.messages.values();
+		return this.messages.getMessages();
+	}
+
+	/**
+	 * Returns the indexed message buffer of this router. The buffer must be
+	 * modified only through the methods of the router.
+	 * @return the message buffer
+	 */
+	protected MessageStore getMessageStore() {
+		return this.messages;
 	}
 
 	/**
@@ -277,17 +315,11 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public long getFreeBufferSize() {
-		long occupancy = 0;
-
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
-		}
-
-		return this.getBufferSize() - occupancy;
+		return this.getBufferSize() - this.messages.getTotalSize();
 	}
 
 	/**
@@ -408,7 +440,9 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		removeFromIncomingBuffer(m.getId(), from); // replace the old one
+		this.incomingMessages.add(m);
+		this.incomingFrom.add(from);
 	}
 
 	/**
@@ -419,7 +453,14 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		for (int i=0, n=this.incomingMessages.size(); i<n; i++) {
+			if (this.incomingFrom.get(i) == from &&
+					this.incomingMessages.get(i).getId().equals(id)) {
+				this.incomingFrom.remove(i);
+				return this.incomingMessages.remove(i);
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -429,7 +470,12 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		for (Message m : this.incomingMessages) {
+			if (m.getId().equals(id)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -440,7 +486,8 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		this.messages.add(m);
+		this.host.requestUpdate();
 
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -559,6 +606,27 @@ public abstract class MessageRouter {
 		return list;
 	}
 
+	/**
+	 * Returns the messages of this router in a new list that is sorted or
+	 * shuffled according to the current sending queue mode. The same as
+	 * sorting a copy of {@link #getMessageCollection()} with
+	 * {@link #sortByQueueMode(List)}, but in FIFO mode the order is taken
+	 * from the receive time index of the buffer when possible.
+	 * @return The messages in queue order
+	 */
+	protected List<Message> getMessagesInQueueOrder() {
+		if (sendQueueMode == Q_MODE_FIFO) {
+			List<Message> list = this.messages.getByReceiveTime();
+			if (list != null) {
+				return list;
+			}
+		}
+
+		List<Message> list = new ArrayList<Message>(getMessageCollection());
+		this.sortByQueueMode(list);
+		return list;
+	}
+
 	/**
 	 * Gives the order of the two given messages as defined by the current
 	 * queue mode
@@ -606,7 +674,7 @@ public abstract class MessageRouter {
 		ri.addMoreInfo(delivered);
 		ri.addMoreInfo(cons);
 
-		for (Message m : this.incomingMessages.values()) {
+		for (Message m : this.incomingMessages) {
 			incoming.addMoreInfo(new RoutingInfo(m));
 		}
 
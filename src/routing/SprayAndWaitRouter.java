@@ -19,6 +19,8 @@ import core.Settings;
  *
  */
 public class SprayAndWaitRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
+
 	/** identifier for the initial number of copies setting ({@value})*/
 	public static final String NROF_COPIES = "nrofCopies";
 	/** identifier for the binary-mode setting ({@value})*/
@@ -107,6 +109,15 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 	}
 
+	/**
+	 * Returns the idle end time of the active router; the copies are
+	 * handed out only to connected hosts.
+	 */
+	@Override
+	public double getIdleEndTime() {
+		return getActiveIdleEndTime();
+	}
+
 	/**
 	 * Creates and returns a list of messages this router is currently
 	 * carrying and still has copies left to distribute (nrof copies > 1).
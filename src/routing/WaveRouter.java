@@ -21,6 +21,7 @@ import core.SimClock;
  * Work in progress.
  */
 public class WaveRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Immunity time -setting id ({@value}). Defines how long time a node
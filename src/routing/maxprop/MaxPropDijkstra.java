@@ -4,35 +4,37 @@
  */
 package routing.maxprop;
 
-import java.util.Collection;
-import java.util.Comparator;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
 /**
- * Dijkstra's shortest path implementation for MaxProp Router module.
+ * <P>
+ * Dijkstra's shortest path implementation for MaxProp Router module.</P>
+ *
+ * <P>The searches are incremental: a search from a source node stops when
+ * the requested node is found and its state (distances and the indexed
+ * priority queue of the unvisited nodes) is kept, so the next request from
+ * the same source continues from where the previous one stopped. The
+ * states are valid until the probabilities change and
+ * {@link #invalidate()} is called. The arrays of the states are reused by
+ * the following searches.</P>
  */
-public class MaxPropDijkstra {
+public class MaxPropDijkstra implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of node distances from the source node */
-	private DistanceMap distancesFromStart;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<Integer> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
-	/** Map of previous nodes on the shortest path(s) -- only used for
-	 * debugging purposes */
-	private Map<Integer, Integer> prevNodes;
+	private static final double INFINITY = Double.MAX_VALUE;
+
 	/** Mapping of to other nodes' (whom this node has met) probability sets */
 	private Map<Integer, MeetingProbabilitySet> probs;
+	/** Searches from different source nodes; the first nrofValidSearches
+	 * are valid */
+	private transient List<Search> searches;
+	private transient int nrofValidSearches;
 
 	/**
 	 * Constructor.
@@ -44,19 +46,11 @@ public class MaxPropDijkstra {
 	}
 
 	/**
-	 * Initializes a new search with the first hop router node
-	 * @param firstHop The first hop router node
+	 * Invalidates the results of the previous searches. Must be called
+	 * when the meeting probabilities change.
 	 */
-	private void initWith(Integer firstHop) {
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE,
-				new DistanceComparator());
-		this.visited = new HashSet<Integer>();
-		this.prevNodes = new HashMap<Integer, Integer>();
-		this.distancesFromStart = new DistanceMap();
-
-		// set distance to source 0 and initialize unvisited queue
-		this.distancesFromStart.put(firstHop, 0);
-		this.unvisited.add(firstHop);
+	public void invalidate() {
+		this.nrofValidSearches = 0;
 	}
 
 	/**
@@ -69,156 +63,228 @@ public class MaxPropDijkstra {
 	 */
 	public Map<Integer, Double> getCosts(Integer from, Set<Integer> to) {
 		Map<Integer, Double> distMap = new HashMap<Integer, Double>();
-		int nrofNodesToFind = to.size();
+		invalidate();
 
-		initWith(from);
-		Integer node = null;
+		for (Integer node : to) {
+			double cost = getCost(from, node);
+			if (cost != INFINITY) {
+				distMap.put(node, cost);
+			}
+		}
+
+		return distMap;
+	}
+
+	/**
+	 * Calculates the total cost from a node to another. The search is
+	 * continued from the state of the previous search from the same node
+	 * (unless the searches have been invalidated).
+	 * @param from The index (address) of the start node
+	 * @param to The index (address) of the destination node
+	 * @return The cost or Double.MAX_VALUE if there is no path to the node
+	 */
+	public double getCost(int from, int to) {
+		Search s = searchFrom(from);
+		if (to < s.dist.length && s.pos[to] == Search.VISITED) {
+			return s.dist[to];
+		}
 
 		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
-			if (to.contains(node)) {
-				// found one of the requested nodes
-				distMap.put(node, distancesFromStart.get(node));
-				nrofNodesToFind--;
-				if (nrofNodesToFind == 0) {
-					break; // all requested nodes found
-				}
+		while (s.heapSize > 0) {
+			int node = s.poll();
+			relax(s, node); // add/update neighbor nodes' distances
+			if (node == to) {
+				return s.dist[node]; // found the requested node
 			}
+		}
 
-			visited.add(node); // mark the node as visited
-			relax(node);       // add/update neighbor nodes' distances
+		return INFINITY;
+	}
+
+	/**
+	 * Returns the (valid) search from a source node. Starts a new search if
+	 * there isn't one.
+	 */
+	private Search searchFrom(int from) {
+		if (searches == null) {
+			searches = new ArrayList<Search>();
 		}
 
-		return distMap;
+		for (int i=0; i < nrofValidSearches; i++) {
+			Search s = searches.get(i);
+			if (s.source == from) {
+				return s;
+			}
+		}
+
+		Search s;
+		if (nrofValidSearches < searches.size()) {
+			s = searches.get(nrofValidSearches); // reuse old arrays
+		}
+		else {
+			s = new Search();
+			searches.add(s);
+		}
+		nrofValidSearches++;
+		s.init(from);
+		return s;
 	}
 
 	/**
 	 * Relaxes the neighbors of a node (updates the shortest distances).
+	 * @param s The search
 	 * @param node The node whose neighbors are relaxed
 	 */
-	private void relax(Integer node) {
-		double nodeDist = distancesFromStart.get(node);
-		Collection<Integer> neighbors;
+	private void relax(Search s, int node) {
+		double nodeDist = s.dist[node];
+		MeetingProbabilitySet mps = this.probs.get(node);
 
-		if (!this.probs.containsKey(node)) {
+		if (mps == null) {
 			return; // node's neighbors are not known
 		}
 
-		neighbors =	this.probs.get(node).getAllProbs().keySet();
-
-		for (Integer n : neighbors) {
-			if (visited.contains(n)) {
+		for (int i=0, n=mps.size(); i < n; i++) {
+			int neighbor = mps.getNode(i);
+			s.ensureCapacity(neighbor);
+			if (s.pos[neighbor] == Search.VISITED) {
 				continue; // skip visited nodes
 			}
 
-			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+			// neighbor's distance from path's source node: the "distance"
+			// between the nodes is the complement of the probability that
+			// the next node "node" meets is "neighbor"
+			double nDist = nodeDist + (1 - mps.getProb(i));
 
-			if (distancesFromStart.get(n) > nDist) {
+			if (s.dist[neighbor] > nDist) {
 				// stored distance > found dist -> update
-				prevNodes.put(n, node); // for debugging
-				setDistance(n, nDist);
+				s.setDistance(neighbor, nDist);
 			}
 		}
 	}
 
 	/**
-	 * Sets the distance from source node to a node
-	 * @param n The node whose distance is set
-	 * @param distance The distance of the node from the source node
-	 */
-	private void setDistance(Integer n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distancesFromStart.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
-	}
-
-	/**
-	 * Returns the "distance" between two nodes, i.e., the complement of the
-	 * probability that the next node "from" meets is "to". Works only if there
-	 * exist a probability value for "from" meeting "to".
-	 * @param from The first node
-	 * @param to The second node
-	 * @return The distance between the two nodes
+	 * State of a search from a source node: distances from the source and
+	 * an indexed binary heap of the unvisited nodes discovered so far. The
+	 * nodes are ordered by their distance and then by their address.
 	 */
-	private double getDistance(Integer from, Integer to) {
-		assert probs.containsKey(from) : "Node " + from + " has not met " + to +
-			" (it has met nodes " + probs.keySet() + ")";
-		return ( 1 - probs.get(from).getProbFor(to) );
-	}
+	private static class Search {
+		/** Heap position of the visited nodes */
+		private static final int VISITED = -2;
+		/** Heap position of the nodes that are not in the heap */
+		private static final int NOT_IN_HEAP = -1;
 
-	/**
-	 * Comparator that compares two nodes by their distance from
-	 * the source node.
-	 */
-	private class DistanceComparator implements
-		Comparator<Integer> {
+		private int source;
+		/** distances from the source by the node address */
+		private double[] dist = new double[0];
+		/** positions of the nodes in the heap */
+		private int[] pos = new int[0];
+		/** the heap of the unvisited nodes */
+		private int[] heap = new int[0];
+		private int heapSize;
 
 		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
+		 * Starts a new search from a source node
 		 */
-		public int compare(Integer node1, Integer node2) {
-			double dist1 = distancesFromStart.get(node1);
-			double dist2 = distancesFromStart.get(node2);
+		private void init(int source) {
+			this.source = source;
+			Arrays.fill(dist, INFINITY);
+			Arrays.fill(pos, NOT_IN_HEAP);
+			this.heapSize = 0;
+			ensureCapacity(source);
+			setDistance(source, 0);
+		}
 
-			if (dist1 > dist2) {
-				return 1;
-			}
-			else if (dist1 < dist2) {
-				return -1;
-			}
-			else {
-				return node1.compareTo(node2);
+		/**
+		 * Makes sure the arrays have room for a node address
+		 */
+		private void ensureCapacity(int node) {
+			if (node < dist.length) {
+				return;
 			}
+			int oldLength = dist.length;
+			int length = Math.max(node + 1, oldLength * 2);
+			dist = Arrays.copyOf(dist, length);
+			pos = Arrays.copyOf(pos, length);
+			heap = Arrays.copyOf(heap, length);
+			Arrays.fill(dist, oldLength, length, INFINITY);
+			Arrays.fill(pos, oldLength, length, NOT_IN_HEAP);
 		}
-	}
-
-	/**
-	 * Simple Map implementation for storing distances.
-	 */
-	private class DistanceMap {
-		private HashMap<Integer, Double> map;
 
 		/**
-		 * Constructor. Creates an empty distance map
+		 * Sets the distance of an unvisited node and moves it to its place
+		 * in the heap
 		 */
-		public DistanceMap() {
-			this.map = new HashMap<Integer, Double>();
+		private void setDistance(int node, double distance) {
+			dist[node] = distance;
+			if (pos[node] == NOT_IN_HEAP) {
+				pos[node] = heapSize;
+				heap[heapSize++] = node;
+			}
+			siftUp(pos[node]); // distances only decrease
 		}
 
 		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link MaxPropDijkstra#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
+		 * Removes the node with the shortest distance from the heap and
+		 * marks it visited
+		 * @return the removed node
 		 */
-		public double get(Integer node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
+		private int poll() {
+			int node = heap[0];
+			pos[node] = VISITED;
+			heapSize--;
+			if (heapSize > 0) {
+				heap[0] = heap[heapSize];
+				pos[heap[0]] = 0;
+				siftDown(0);
 			}
-			else {
-				return INFINITY;
+			return node;
+		}
+
+		private void siftUp(int i) {
+			int node = heap[i];
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!isBefore(node, heap[parent])) {
+					break;
+				}
+				heap[i] = heap[parent];
+				pos[heap[i]] = i;
+				i = parent;
 			}
+			heap[i] = node;
+			pos[node] = i;
 		}
 
-		/**
-		 * Puts a new distance value for a map node
-		 * @param node The node
-		 * @param distance Distance to that node
-		 */
-		public void  put(Integer node, double distance) {
-			map.put(node, distance);
+		private void siftDown(int i) {
+			int node = heap[i];
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize &&
+						isBefore(heap[child + 1], heap[child])) {
+					child++;
+				}
+				if (!isBefore(heap[child], node)) {
+					break;
+				}
+				heap[i] = heap[child];
+				pos[heap[i]] = i;
+				i = child;
+			}
+			heap[i] = node;
+			pos[node] = i;
 		}
 
 		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
+		 * Returns true if node1 is closer to the source than node2 (or at
+		 * the same distance and has a smaller address)
 		 */
-		public String toString() {
-			return map.toString();
+		private boolean isBefore(int node1, int node2) {
+			double dist1 = dist[node1];
+			double dist2 = dist[node2];
+			return dist1 < dist2 || (dist1 == dist2 && node1 < node2);
 		}
 	}
 }
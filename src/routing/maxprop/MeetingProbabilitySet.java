@@ -4,6 +4,8 @@
  */
 package routing.maxprop;
 
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,18 +15,48 @@ import core.SimClock;
 import static core.Constants.DEBUG;
 
 /**
+ * <P>
  * Class for storing and manipulating the meeting probabilities for the MaxProp
- * router module.
+ * router module.</P>
+ *
+ * <P>The probabilities are kept in primitive arrays (node addresses and
+ * weights) with an open addressing index from the address to the array
+ * position. The probability of a node is its weight times a scale factor
+ * that is common to all the nodes, so normalizing the probabilities only
+ * changes the scale factor and doesn't loop over the entries. With the
+ * default alpha (1) the scale factor is a power of two and the
+ * probabilities are exactly the same as if every entry was divided.</P>
+ *
+ * <P>Replicas (see {@link #replicate()}) are snapshots that are not updated
+ * any more, so they can be shared by all the hosts that know them.</P>
  */
-public class MeetingProbabilitySet {
+public class MeetingProbabilitySet implements Serializable {
+	private static final long serialVersionUID = 42L;
 	public static final int INFINITE_SET_SIZE = Integer.MAX_VALUE;
-	/** meeting probabilities (probability that the next node one meets is X) */
-	private Map<Integer, Double> probs;
+	/** Initial capacity of the arrays */
+	private static final int INITIAL_CAPACITY = 8;
+	/** Scale factor below which the weights are renormalized */
+	private static final double MIN_SCALE = 1e-150;
+
+	/** addresses of the nodes with a meeting probability (probability that
+	 * the next node one meets is X) */
+	private int[] nodes;
+	/** weights of the nodes; the probability is the weight times scale */
+	private double[] weights;
+	/** number of nodes in the set */
+	private int size;
+	/** positions (+1) of the nodes in the arrays by the hash of the address;
+	 * 0 for an empty slot */
+	private int[] index;
+	/** the common scale factor of the weights */
+	private double scale;
 	/** the time when this MPS was last updated */
 	private double lastUpdateTime;
 	/** the alpha parameter */
 	private double alpha;
     private int maxSetSize;
+	/** is this set a (read only) replica */
+	private boolean replica;
 
 	/**
 	 * Constructor. Creates a probability set with empty node-probability
@@ -34,14 +66,16 @@ public class MeetingProbabilitySet {
 	 */
 	public MeetingProbabilitySet(int maxSetSize, double alpha) {
 		this.alpha = alpha;
-		this.probs = new HashMap<Integer, Double>();
         if (maxSetSize == INFINITE_SET_SIZE || maxSetSize < 1) {
-	this.probs = new HashMap<Integer, Double>();
 	this.maxSetSize = INFINITE_SET_SIZE;
         } else {
-	this.probs = new HashMap<Integer, Double>(maxSetSize);
             this.maxSetSize = maxSetSize;
         }
+		this.nodes = new int[INITIAL_CAPACITY];
+		this.weights = new double[INITIAL_CAPACITY];
+		this.index = new int[INITIAL_CAPACITY * 2];
+		this.size = 0;
+		this.scale = 1;
 		this.lastUpdateTime = 0;
 	}
 
@@ -62,7 +96,7 @@ public class MeetingProbabilitySet {
 		this(INFINITE_SET_SIZE, alpha);
 		double prob = 1.0/initiallyKnownNodes.size();
 		for (Integer i : initiallyKnownNodes) {
-			this.probs.put(i, prob);
+			put(i, prob);
 		}
 	}
 
@@ -75,38 +109,44 @@ public class MeetingProbabilitySet {
 	 * @param index The node index to update the probability for
 	 */
 	public void updateMeetingProbFor(Integer index) {
-        Map.Entry<Integer, Double> smallestEntry = null;
-        double smallestValue = Double.MAX_VALUE;
-
+		assert !replica : "Replicas can't be updated";
 		this.lastUpdateTime = SimClock.getTime();
 
-		if (probs.size() == 0) { // first entry
-			probs.put(index, 1.0);
+		if (size == 0) { // first entry
+			scale = 1;
+			put(index, 1.0);
 			return;
 		}
 
-		double newValue = getProbFor(index) + alpha;
-		probs.put(index, newValue);
-
-		/* now the sum of all entries is 1+alpha;
-		 * normalize to one by dividing all the entries by 1+alpha */
-		for (Map.Entry<Integer, Double> entry : probs.entrySet()) {
-			entry.setValue(entry.getValue() / (1+alpha));
-            if (entry.getValue() < smallestValue) {
-                smallestEntry = entry;
-                smallestValue = entry.getValue();
-            }
+		/* P(b) + alpha relative to the old scale; the sum of all entries is
+		 * then 1+alpha; normalize to one by dividing the scale by 1+alpha */
+		int pos = positionOf(index);
+		double weight = pos < 0 ? 0 : weights[pos];
+		weight += alpha / scale;
+		if (pos < 0) {
+			add(index, weight);
+		}
+		else {
+			weights[pos] = weight;
+		}
+		scale /= (1+alpha);
 
+		if (scale < MIN_SCALE) {
+			for (int i=0; i < size; i++) {
+				weights[i] *= scale;
+			}
+			scale = 1;
 		}
 
-        if (probs.size() >= maxSetSize) {
-            if (DEBUG) core.Debug.p("Probsize: " + probs.size() + " dropping " +
-					probs.remove(smallestEntry.getKey()));
+        if (size >= maxSetSize) {
+            if (DEBUG) core.Debug.p("Probsize: " + size + " dropping " +
+					removeSmallest());
         }
 	}
 
 	public void updateMeetingProbFor(Integer index, double iet)	{
-		probs.put(index, iet);
+		assert !replica : "Replicas can't be updated";
+		put(index, iet);
 	}
 
 	/**
@@ -115,8 +155,9 @@ public class MeetingProbabilitySet {
 	 * @return the current delivery probability value
 	 */
 	public double getProbFor(Integer index) {
-		if (probs.containsKey(index)) {
-			return probs.get(index);
+		int pos = positionOf(index);
+		if (pos >= 0) {
+			return weights[pos] * scale;
 		}
 		else {
 			/* the node with the given index has not been met */
@@ -125,11 +166,41 @@ public class MeetingProbabilitySet {
 	}
 
 	/**
-	 * Returns a reference to the probability map of this probability set
-	 * @return a reference to the probability map of this probability set
+	 * Returns the number of nodes in this probability set
+	 * @return the number of nodes in this probability set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the address of a node in the set
+	 * @param i Position of the node (between 0 and {@link #size()} - 1)
+	 * @return the address of the node
+	 */
+	public int getNode(int i) {
+		return nodes[i];
+	}
+
+	/**
+	 * Returns the meeting probability of a node in the set
+	 * @param i Position of the node (between 0 and {@link #size()} - 1)
+	 * @return the probability of meeting the node
+	 */
+	public double getProb(int i) {
+		return weights[i] * scale;
+	}
+
+	/**
+	 * Returns a copy of the probabilities of this probability set
+	 * @return a mapping from the node addresses to the probabilities
 	 */
 	public Map<Integer, Double> getAllProbs() {
-		return this.probs;
+		Map<Integer, Double> map = new HashMap<Integer, Double>(size * 2);
+		for (int i=0; i < size; i++) {
+			map.put(nodes[i], weights[i] * scale);
+		}
+		return map;
 	}
 
 	/**
@@ -148,20 +219,113 @@ public class MeetingProbabilitySet {
 	}
 
 	/**
-	 * Returns a deep copy of the probability set
-	 * @return a deep copy of the probability set
+	 * Returns a read only copy of the probability set. Since replicas are
+	 * not updated, a replica of a replica is the replica itself.
+	 * @return a copy of the probability set
 	 */
 	public MeetingProbabilitySet replicate() {
+		if (this.replica) {
+			return this;
+		}
+
 		MeetingProbabilitySet replica = new MeetingProbabilitySet(
 				this.maxSetSize, alpha);
+		replica.nodes = Arrays.copyOf(this.nodes, this.size);
+		replica.weights = Arrays.copyOf(this.weights, this.size);
+		replica.index = this.index.clone();
+		replica.size = this.size;
+		replica.scale = this.scale;
+		replica.lastUpdateTime = this.lastUpdateTime;
+		replica.replica = true;
+		return replica;
+	}
 
-		// do a deep copy
-		for (Map.Entry<Integer, Double> e : probs.entrySet()) {
-			replica.probs.put(e.getKey(), e.getValue().doubleValue());
+	/**
+	 * Sets the probability of a node
+	 */
+	private void put(int node, double prob) {
+		int pos = positionOf(node);
+		if (pos < 0) {
+			add(node, prob / scale);
 		}
+		else {
+			weights[pos] = prob / scale;
+		}
+	}
 
-		replica.lastUpdateTime = this.lastUpdateTime;
-		return replica;
+	/**
+	 * Adds a new node with the given weight to the arrays
+	 */
+	private void add(int node, double weight) {
+		if (size == nodes.length) {
+			nodes = Arrays.copyOf(nodes, size * 2);
+			weights = Arrays.copyOf(weights, size * 2);
+		}
+		nodes[size] = node;
+		weights[size] = weight;
+		size++;
+
+		if (size * 2 > index.length) {
+			rebuildIndex(index.length * 2);
+		}
+		else {
+			index[emptySlotFor(node)] = size;
+		}
+	}
+
+	/**
+	 * Removes the node with the smallest probability
+	 * @return the removed probability
+	 */
+	private double removeSmallest() {
+		int smallest = 0;
+		for (int i=1; i < size; i++) {
+			if (weights[i] < weights[smallest]) {
+				smallest = i;
+			}
+		}
+		double prob = weights[smallest] * scale;
+
+		size--;
+		nodes[smallest] = nodes[size];
+		weights[smallest] = weights[size];
+		rebuildIndex(index.length);
+		return prob;
+	}
+
+	/**
+	 * Returns the position of a node in the arrays
+	 * @return the position or -1 if the node is not in the set
+	 */
+	private int positionOf(int node) {
+		int mask = index.length - 1;
+		for (int i = hash(node) & mask; index[i] != 0; i = (i + 1) & mask) {
+			if (nodes[index[i] - 1] == node) {
+				return index[i] - 1;
+			}
+		}
+		return -1;
+	}
+
+	private int emptySlotFor(int node) {
+		int mask = index.length - 1;
+		int i = hash(node) & mask;
+		while (index[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void rebuildIndex(int capacity) {
+		index = new int[capacity];
+		for (int i=0; i < size; i++) {
+			index[emptySlotFor(nodes[i])] = i + 1;
+		}
+	}
+
+	private static int hash(int node) {
+		int h = node * 0x9E3779B9;
+		return h ^ (h >>> 16);
 	}
 
 	/**
@@ -170,6 +334,6 @@ public class MeetingProbabilitySet {
 	 */
     @Override
 	public String toString() {
-		return "probs: " +	this.probs.toString();
+		return "probs: " +	getAllProbs().toString();
 	}
 }
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * <P>
+ * Message buffer of a router with secondary indexes. The messages are
+ * stored by their ID and indexed by receive time (for dropping the oldest
+ * messages), by destination host (for finding deliverable messages) and by
+ * the time when their TTL expires (for dropping expired messages). The
+ * expiry times are kept in a {@link TimingWheel}, so finding the expired
+ * messages costs only as much as the number of messages that expire. The
+ * total size of the messages is kept up to date so the buffer occupancy is
+ * known without going through the messages.</P>
+ *
+ * <P>The messages are iterated in the same order as in a HashMap with the
+ * same history of additions and removals, and all lists returned by the
+ * store are in that order (or sorted by a well defined key), so routers
+ * using the indexes make the same decisions as routers that go through the
+ * whole buffer.</P>
+ *
+ * <P>The receive time, TTL, size and destination of a message must not be
+ * changed while the message is in the store.</P>
+ */
+public class MessageStore implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Resolution of the TTL expiry wheel (seconds) */
+	private static final double EXPIRY_RESOLUTION = 1.0;
+
+	/** entries by message ID */
+	private HashMap<String, Entry> entries;
+	/** entries ordered by receive time (and order of addition) */
+	private TreeSet<Entry> byReceiveTime;
+	/** entries with a finite TTL by the TTL expiry time */
+	private TimingWheel expiryWheel;
+	/** reusable list for the timers taken from the expiry wheel */
+	private List<TimingWheel.Timer> expiryCandidates;
+	/** lower bound for the earliest expiry time of the messages */
+	private double earliestExpiry;
+	/** number of messages to each destination host (by host address; the
+	 * hosts are not used as hash keys so their identity hash codes are not
+	 * generated here) */
+	private int[] destinationCounts;
+	/** sum of the sizes of the messages */
+	private long totalSize;
+	/** number of additions so far (for ordering entries with equal keys) */
+	private long nextSeq;
+
+	private transient Collection<Message> messageView;
+
+	/**
+	 * Creates a new, empty message store
+	 */
+	public MessageStore() {
+		this.entries = new HashMap<String, Entry>();
+		this.byReceiveTime = new TreeSet<Entry>(new ReceiveTimeComparator());
+		this.expiryWheel = new TimingWheel(EXPIRY_RESOLUTION,
+				SimClock.getTime());
+		this.expiryCandidates = new ArrayList<TimingWheel.Timer>();
+		this.earliestExpiry = Double.MAX_VALUE;
+		this.destinationCounts = new int[0];
+		this.totalSize = 0;
+		this.nextSeq = 0;
+		createView();
+	}
+
+	/**
+	 * Restores the store from a checkpoint
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		createView();
+	}
+
+	/**
+	 * Creates the message view of the entries
+	 */
+	private void createView() {
+		this.messageView = new AbstractCollection<Message>() {
+			public Iterator<Message> iterator() {
+				final Iterator<Entry> i = entries.values().iterator();
+				return new Iterator<Message>() {
+					public boolean hasNext() {
+						return i.hasNext();
+					}
+					public Message next() {
+						return i.next().message;
+					}
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			public int size() {
+				return entries.size();
+			}
+		};
+	}
+
+	/**
+	 * Adds a message to the store. An old message with the same ID is
+	 * replaced.
+	 * @param m The message to add
+	 */
+	public void add(Message m) {
+		Entry e = new Entry(m, nextSeq++);
+		Entry old = entries.put(m.getId(), e);
+		if (old != null) {
+			unindex(old);
+		}
+
+		byReceiveTime.add(e);
+		double expiry = m.getExpiryTime();
+		if (expiry != Double.MAX_VALUE) { // finite TTL
+			expiryWheel.schedule(e, expiry);
+			earliestExpiry = Math.min(earliestExpiry, expiry);
+		}
+		int address = m.getTo().getAddress();
+		if (address >= destinationCounts.length) {
+			destinationCounts = Arrays.copyOf(destinationCounts,
+					Math.max(address + 1, destinationCounts.length * 2));
+		}
+		destinationCounts[address]++;
+		totalSize += m.getSize();
+	}
+
+	/**
+	 * Removes a message from the store
+	 * @param id ID of the message to remove
+	 * @return The removed message or null if there was no message with
+	 * the ID
+	 */
+	public Message remove(String id) {
+		Entry e = entries.remove(id);
+		if (e == null) {
+			return null;
+		}
+		unindex(e);
+		return e.message;
+	}
+
+	/**
+	 * Returns a message by ID
+	 * @param id ID of the message
+	 * @return The message or null if there's no message with the ID
+	 */
+	public Message get(String id) {
+		Entry e = entries.get(id);
+		return e != null ? e.message : null;
+	}
+
+	/**
+	 * Returns true if the store contains a message with the ID
+	 * @param id ID of the message
+	 * @return true if the store contains a message with the ID
+	 */
+	public boolean contains(String id) {
+		return entries.containsKey(id);
+	}
+
+	/**
+	 * Returns the number of messages in the store
+	 * @return the number of messages in the store
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns an unmodifiable view of the messages in the store
+	 * @return the messages
+	 */
+	public Collection<Message> getMessages() {
+		return messageView;
+	}
+
+	/**
+	 * Returns the sum of the sizes of the messages in the store
+	 * @return the sum of the sizes of the messages
+	 */
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	/**
+	 * Returns the number of messages whose destination is the given host
+	 * @param host The destination host
+	 * @return the number of messages to the host
+	 */
+	public int getNrofMessagesTo(DTNHost host) {
+		int address = host.getAddress();
+		return address < destinationCounts.length ?
+				destinationCounts[address] : 0;
+	}
+
+	/**
+	 * Returns the messages whose destination is the given host
+	 * @param host The destination host
+	 * @return A new list of the messages to the host
+	 */
+	public List<Message> getMessagesTo(DTNHost host) {
+		int nrof = getNrofMessagesTo(host);
+		List<Message> list = new ArrayList<Message>(nrof);
+		if (nrof == 0) {
+			return list;
+		}
+
+		for (Entry e : entries.values()) {
+			if (e.message.getTo() == host) {
+				list.add(e.message);
+				if (list.size() == nrof) {
+					break;
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the message with the smallest receive time. If more than one
+	 * message has the smallest receive time, the first one in iteration
+	 * order is returned.
+	 * @param exclude Filter for messages that must not be returned, or null
+	 * @return The oldest message or null if there are no (non-excluded)
+	 * messages
+	 */
+	public Message getOldest(Filter exclude) {
+		Entry oldest = null;
+		for (Entry e : byReceiveTime) {
+			if (exclude != null && exclude.matches(e.message)) {
+				continue;
+			}
+			if (oldest == null) {
+				oldest = e;
+			}
+			else if (e.receiveTime == oldest.receiveTime) {
+				return firstReceivedAt(oldest.receiveTime, exclude);
+			}
+			else {
+				break;
+			}
+		}
+		return oldest != null ? oldest.message : null;
+	}
+
+	/**
+	 * Returns the messages in the order of their receive time, or null if
+	 * some messages have the same receive time (then the order must be
+	 * resolved by the caller)
+	 * @return A new list of the messages or null
+	 */
+	public List<Message> getByReceiveTime() {
+		List<Message> list = new ArrayList<Message>(entries.size());
+		double last = Double.NaN;
+		for (Entry e : byReceiveTime) {
+			if (e.receiveTime == last) {
+				return null;
+			}
+			last = e.receiveTime;
+			list.add(e.message);
+		}
+		return list;
+	}
+
+	/**
+	 * Returns a time before which the TTL of none of the messages expires,
+	 * i.e., {@link #getExpired()} returns nothing before that time. The
+	 * earliest expiry time is looked up from the messages only when the
+	 * previously found one is (almost) reached.
+	 * @return A time before which no message expires (not after the
+	 * current time if some message may have expired already)
+	 */
+	public double getExpiryBound() {
+		if (earliestExpiry - EXPIRY_RESOLUTION <= SimClock.getTime()) {
+			earliestExpiry = Double.MAX_VALUE;
+			for (Entry e : entries.values()) {
+				earliestExpiry = Math.min(earliestExpiry,
+						e.message.getExpiryTime());
+			}
+		}
+		return earliestExpiry - EXPIRY_RESOLUTION;
+	}
+
+	/**
+	 * Returns the messages whose TTL has expired
+	 * (i.e., {@link Message#getTtl()} &lt;= 0)
+	 * @return A list of the expired messages (an immutable empty list if
+	 * there are no expired messages)
+	 */
+	public List<Message> getExpired() {
+		Entry first = null;
+		boolean many = false;
+
+		expiryWheel.advance(SimClock.getTime(), expiryCandidates);
+		for (int i=0, n=expiryCandidates.size(); i < n; i++) {
+			Entry e = (Entry)expiryCandidates.get(i);
+			/* all candidates are kept in the wheel until they are removed
+			 * from the store (the wheel's ticks are not exact) */
+			expiryWheel.schedule(e, e.getTime());
+			if (e.message.getTtl() > 0) {
+				continue;
+			}
+			if (first != null) {
+				many = true;
+			}
+			else {
+				first = e;
+			}
+		}
+		expiryCandidates.clear();
+
+		if (first == null) {
+			return Collections.emptyList();
+		}
+		List<Message> list = new ArrayList<Message>(1);
+		if (!many) {
+			list.add(first.message);
+			return list;
+		}
+
+		/* more than one -> return all of them in iteration order */
+		for (Entry e : entries.values()) {
+			if (e.message.getTtl() <= 0) {
+				list.add(e.message);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the first message in iteration order with the given receive
+	 * time that is not excluded
+	 */
+	private Message firstReceivedAt(double time, Filter exclude) {
+		for (Entry e : entries.values()) {
+			if (e.receiveTime == time &&
+					(exclude == null || !exclude.matches(e.message))) {
+				return e.message;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes an entry from the secondary indexes
+	 * @param e The entry
+	 */
+	private void unindex(Entry e) {
+		byReceiveTime.remove(e);
+		expiryWheel.cancel(e);
+		destinationCounts[e.message.getTo().getAddress()]--;
+		totalSize -= e.message.getSize();
+	}
+
+	/**
+	 * Filter for messages. Filters are serializable, so routers that keep
+	 * their filter in a field can be checkpointed.
+	 */
+	public interface Filter extends Serializable {
+		/**
+		 * Returns true if the message matches the filter
+		 * @param m The message
+		 * @return true if the message matches the filter
+		 */
+		public boolean matches(Message m);
+	}
+
+	/**
+	 * Orders the entries by receive time and order of addition
+	 */
+	private static class ReceiveTimeComparator implements Comparator<Entry>,
+			Serializable {
+		private static final long serialVersionUID = 42L;
+
+		public int compare(Entry e1, Entry e2) {
+			int c = Double.compare(e1.receiveTime, e2.receiveTime);
+			return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+		}
+	}
+
+	/**
+	 * A message and its index keys
+	 */
+	private static class Entry extends TimingWheel.Timer {
+		private static final long serialVersionUID = 42L;
+
+		private final Message message;
+		private final long seq;
+		private final double receiveTime;
+
+		private Entry(Message m, long seq) {
+			this.message = m;
+			this.seq = seq;
+			this.receiveTime = m.getReceiveTime();
+		}
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import core.SimClock;
+
+/**
+ * <P>
+ * Delivery predictabilities of a PRoPHET router keyed by host address. The
+ * table starts as an open addressing hash table of primitive keys and values
+ * and switches to an array indexed by the address when it contains entries
+ * for a large enough share of the addresses, so neither the lookups nor the
+ * updates box the values.</P>
+ *
+ * <P>The predictabilities are aged lazily:
+ * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of time
+ * units since the last ageing, is applied to all entries by keeping the
+ * values relative to a common scale factor
+ * <CODE>GAMMA ^ ((t - epoch) / secondsInTimeUnit)</CODE>. Ageing
+ * only recalculates the scale factor (once per simulation time), so it
+ * doesn't loop over the entries. The values are renormalized (and the epoch
+ * moved) when the scale factor gets too small.</P>
+ */
+public class PredictabilityTable implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Initial capacity of the hash table */
+	private static final int INITIAL_CAPACITY = 16;
+	/** Scale factor below which the values are renormalized */
+	private static final double MIN_SCALE = 1e-100;
+	/** Empty slot marker of the hash table keys */
+	private static final int EMPTY = -1;
+
+	private double gamma;
+	private final double secondsInTimeUnit;
+
+	/** simulation time where the ageing of the scale factor starts */
+	private double epoch;
+	/** scale factor in the epoch */
+	private double epochScale;
+	/** simulation time of the latest ageing */
+	private double scaleTime;
+	/** scale factor at the latest ageing */
+	private double scale;
+
+	/** hash table keys (addresses) or null if the table is dense */
+	private int[] keys;
+	/** values (relative to the scale factor) of the hash table slots or of
+	 * the addresses (if the table is dense) */
+	private double[] values;
+	/** number of keys in the hash table */
+	private int nrofKeys;
+	/** largest address in the table */
+	private int maxAddress;
+
+	/**
+	 * Creates a new, empty table
+	 * @param gamma The ageing constant (1 for no ageing)
+	 * @param secondsInTimeUnit Number of seconds in one time unit of the
+	 * ageing
+	 */
+	public PredictabilityTable(double gamma, double secondsInTimeUnit) {
+		this.gamma = gamma;
+		this.secondsInTimeUnit = secondsInTimeUnit;
+		this.epoch = 0;
+		this.epochScale = 1;
+		this.scaleTime = 0;
+		this.scale = 1;
+		this.keys = new int[INITIAL_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+		this.values = new double[INITIAL_CAPACITY];
+		this.nrofKeys = 0;
+		this.maxAddress = -1;
+	}
+
+	/**
+	 * Returns the (aged) predictability for a host
+	 * @param address Address of the host
+	 * @return the predictability or 0 if the table has no entry for the host
+	 */
+	public double get(int address) {
+		double s = scale();
+		double v = valueOf(address);
+		return v == 0 ? 0 : v * s;
+	}
+
+	/**
+	 * Sets the predictability for a host
+	 * @param address Address of the host
+	 * @param p The predictability
+	 */
+	public void set(int address, double p) {
+		double s = scale();
+		store(address, p / s);
+	}
+
+	/**
+	 * Changes the ageing constant. The time since the latest ageing is aged
+	 * with the new constant.
+	 * @param gamma The new ageing constant
+	 */
+	public void setGamma(double gamma) {
+		if (gamma == this.gamma) {
+			return;
+		}
+		this.epoch = this.scaleTime;
+		this.epochScale = this.scale;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Updates the transitive predictabilities from the table of a host that
+	 * was met.
+	 * <CODE>P(a,c) = P(a,c)_old + (1 - P(a,c)_old) * P(a,b) * P(b,c) *
+	 * BETA</CODE>
+	 * @param other Table of the host (b) that was met
+	 * @param pForHost The predictability P(a,b)
+	 * @param beta The transitivity scaling constant
+	 * @param self Address of the host (a) whose entry is not updated
+	 */
+	public void updateTransitive(PredictabilityTable other, double pForHost,
+			double beta, int self) {
+		double inv = 1 / scale();
+		double k = pForHost * beta * other.scale();
+		double[] ov = other.values;
+
+		if (keys == null && other.keys == null) {
+			ensureDense(other.maxAddress);
+			double[] v = this.values;
+			double selfValue = self < v.length ? v[self] : 0;
+			for (int i=0, n=other.maxAddress + 1; i < n; i++) {
+				v[i] += (inv - v[i]) * k * ov[i];
+			}
+			if (self < v.length) {
+				v[self] = selfValue; // don't add yourself
+			}
+			return;
+		}
+
+		for (int i=0; i < ov.length; i++) {
+			int address = other.keys == null ? i : other.keys[i];
+			if (address == EMPTY || address == self || ov[i] == 0) {
+				continue;
+			}
+			double v = valueOf(address);
+			store(address, v + (inv - v) * k * ov[i]);
+		}
+	}
+
+	/**
+	 * Updates the transitive predictabilities from the table of a host that
+	 * was met using the PRoPHETv2 rule.
+	 * <CODE>P(a,c) = max(P(a,c)_old, P(a,b) * P(b,c) * BETA)</CODE>
+	 * @param other Table of the host (b) that was met
+	 * @param pForHost The predictability P(a,b)
+	 * @param beta The transitivity scaling constant
+	 * @param self Address of the host (a) whose entry is not updated
+	 */
+	public void updateTransitiveMax(PredictabilityTable other,
+			double pForHost, double beta, int self) {
+		double k = pForHost * beta * other.scale() / scale();
+		double[] ov = other.values;
+
+		if (keys == null && other.keys == null) {
+			ensureDense(other.maxAddress);
+			double[] v = this.values;
+			double selfValue = self < v.length ? v[self] : 0;
+			for (int i=0, n=other.maxAddress + 1; i < n; i++) {
+				v[i] = Math.max(v[i], k * ov[i]);
+			}
+			if (self < v.length) {
+				v[self] = selfValue;
+			}
+			return;
+		}
+
+		for (int i=0; i < ov.length; i++) {
+			int address = other.keys == null ? i : other.keys[i];
+			if (address == EMPTY || address == self || ov[i] == 0) {
+				continue;
+			}
+			double v = k * ov[i];
+			if (v > valueOf(address)) {
+				store(address, v);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of hosts with a nonzero predictability
+	 * @return the number of hosts with a nonzero predictability
+	 */
+	public int size() {
+		int n = 0;
+		for (double v : values) {
+			if (v != 0) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the addresses of the hosts with a nonzero predictability
+	 * @return the addresses in ascending order
+	 */
+	public int[] getAddresses() {
+		int[] addresses = new int[size()];
+		int n = 0;
+		for (int i=0; i < values.length; i++) {
+			if (values[i] != 0) {
+				addresses[n++] = (keys == null ? i : keys[i]);
+			}
+		}
+		Arrays.sort(addresses);
+		return addresses;
+	}
+
+	/**
+	 * Ages the scale factor to the current simulation time
+	 * @return the scale factor
+	 */
+	private double scale() {
+		double time = SimClock.getTime();
+		if (time != scaleTime) {
+			scale = epochScale * Math.pow(gamma,
+					(time - epoch) / secondsInTimeUnit);
+			scaleTime = time;
+			if (scale < MIN_SCALE) {
+				for (int i=0; i < values.length; i++) {
+					values[i] *= scale;
+				}
+				epoch = time;
+				epochScale = scale = 1;
+			}
+		}
+		return scale;
+	}
+
+	/**
+	 * Returns the stored (relative) value of an address
+	 */
+	private double valueOf(int address) {
+		if (keys == null) {
+			return address < values.length ? values[address] : 0;
+		}
+		int i = slotOf(address);
+		return keys[i] == EMPTY ? 0 : values[i];
+	}
+
+	/**
+	 * Stores the (relative) value of an address
+	 */
+	private void store(int address, double value) {
+		if (keys == null) {
+			ensureDense(address);
+			values[address] = value;
+			return;
+		}
+
+		int i = slotOf(address);
+		if (keys[i] == EMPTY) {
+			keys[i] = address;
+			nrofKeys++;
+			maxAddress = Math.max(maxAddress, address);
+			values[i] = value;
+			if (nrofKeys * 3 > maxAddress) {
+				toDense();
+			}
+			else if (nrofKeys * 2 > keys.length) {
+				rehash(keys.length * 2);
+			}
+		}
+		else {
+			values[i] = value;
+		}
+	}
+
+	/**
+	 * Returns the hash table slot of an address (or the empty slot where it
+	 * would be added)
+	 */
+	private int slotOf(int address) {
+		int mask = keys.length - 1;
+		int i = (address * 0x9E3779B9) >>>
+			Integer.numberOfLeadingZeros(mask); // Fibonacci hashing
+		while (keys[i] != EMPTY && keys[i] != address) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new double[capacity];
+		for (int i=0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int j = slotOf(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Converts the hash table to an array indexed by the address
+	 */
+	private void toDense() {
+		double[] dense = new double[maxAddress + 1];
+		for (int i=0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				dense[keys[i]] = values[i];
+			}
+		}
+		keys = null;
+		values = dense;
+	}
+
+	/**
+	 * Makes sure the dense array has room for an address
+	 */
+	private void ensureDense(int address) {
+		if (address >= values.length) {
+			values = Arrays.copyOf(values, Math.max(address + 1,
+					values.length + (values.length >> 1)));
+		}
+		maxAddress = Math.max(maxAddress, address);
+	}
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * <P>
+ * Hierarchical timing wheel for timers that are often cancelled before they
+ * expire (like message TTLs). Scheduling and cancelling a timer take
+ * constant time and advancing the wheel costs only as much as the number
+ * of timers that expire, plus a constant per elapsed tick.</P>
+ *
+ * <P>The time is divided to ticks of the wheel's resolution. The wheel has
+ * {@value #NROF_LEVELS} levels of {@value #NROF_SLOTS} slots: the lowest
+ * level has one slot per tick and every higher level has one slot for all
+ * the ticks of a full turn of the level below it. Timers far in the future
+ * are moved to the lower levels when their slot is reached. Timers that
+ * are even further than the highest level reaches are kept in its last
+ * slot and rescheduled when that slot is reached.</P>
+ *
+ * <P>The timers are intrusive list nodes, so a timer can be in one wheel at
+ * a time and scheduling needs no allocations. When a wheel is serialized,
+ * the lists are written as flat sequences (instead of following the
+ * links), so long lists don't exhaust the stack.</P>
+ */
+public class TimingWheel implements Serializable {
+	private static final long serialVersionUID = 42L;
+	private static final int SLOT_BITS = 6;
+	/** Number of slots per level ({@value}) */
+	public static final int NROF_SLOTS = 1 << SLOT_BITS;
+	/** Number of levels ({@value}) */
+	public static final int NROF_LEVELS = 4;
+	private static final int SLOT_MASK = NROF_SLOTS - 1;
+	/** largest tick distance that fits in the wheel */
+	private static final long MAX_DELTA =
+		(1L << (SLOT_BITS * NROF_LEVELS)) - 1;
+
+	/** list id of timers that are not scheduled */
+	private static final int NOT_SCHEDULED = -2;
+	/** list id of timers whose tick has already passed */
+	private static final int DUE = -1;
+
+	private final double resolution;
+	/** heads of the timer lists of the slots (by level and slot) */
+	private transient Timer[][] slots;
+	/** head of the list of timers whose tick has already passed */
+	private transient Timer due;
+	/** the latest tick that has been processed */
+	private long current;
+	/** number of timers in the slots (i.e., not due yet) */
+	private int nrofInSlots;
+	/** number of timers in the due list */
+	private int nrofDue;
+
+	/**
+	 * Creates a new timing wheel
+	 * @param resolution Length of one tick (simulated seconds)
+	 * @param startTime Time where the wheel starts from
+	 */
+	public TimingWheel(double resolution, double startTime) {
+		this.resolution = resolution;
+		this.slots = new Timer[NROF_LEVELS][];
+		this.current = toTick(startTime);
+		this.nrofInSlots = 0;
+		this.nrofDue = 0;
+	}
+
+	/**
+	 * Schedules a timer to expire at the given time. If the timer is already
+	 * scheduled, it is rescheduled.
+	 * @param t The timer
+	 * @param time The expiry time
+	 */
+	public void schedule(Timer t, double time) {
+		if (t.list != NOT_SCHEDULED) {
+			cancel(t);
+		}
+		t.time = time;
+		t.tick = toTick(time);
+		place(t);
+	}
+
+	/**
+	 * Cancels a timer. Nothing is done if the timer is not scheduled.
+	 * @param t The timer
+	 */
+	public void cancel(Timer t) {
+		if (t.list == NOT_SCHEDULED) {
+			return;
+		}
+		unlink(t);
+		if (t.list == DUE) {
+			nrofDue--;
+		}
+		else {
+			nrofInSlots--;
+		}
+		t.list = NOT_SCHEDULED;
+	}
+
+	/**
+	 * Returns the number of scheduled timers
+	 * @return the number of scheduled timers
+	 */
+	public int size() {
+		return nrofInSlots + nrofDue;
+	}
+
+	/**
+	 * Advances the wheel to the given time and moves the timers whose tick
+	 * has been reached (i.e., that expire at the latest in the end of the
+	 * tick of the given time) to the given list. The timers are removed from
+	 * the wheel, but their expiry times are kept, so they can be put back
+	 * with {@link #schedule(Timer, double)} if they turn out to expire
+	 * later within the tick.
+	 * @param time The time to advance to
+	 * @param expired The list where the timers are added to
+	 */
+	public void advance(double time, List<? super Timer> expired) {
+		long tick = toTick(time);
+
+		while (current < tick) {
+			if (nrofInSlots == 0) {
+				current = tick; // nothing to cascade or expire
+				break;
+			}
+			current++;
+			int index = (int)(current & SLOT_MASK);
+			if (index == 0) {
+				cascade(1);
+			}
+			moveToDue(0, index);
+		}
+
+		for (Timer t = due; t != null; ) {
+			Timer next = t.next;
+			t.list = NOT_SCHEDULED;
+			t.prev = t.next = null;
+			expired.add(t);
+			t = next;
+		}
+		due = null;
+		nrofDue = 0;
+	}
+
+	/**
+	 * Moves the timers of a slot to the lower levels
+	 * @param level The level of the slot
+	 */
+	private void cascade(int level) {
+		int index = (int)((current >>> (SLOT_BITS * level)) & SLOT_MASK);
+		if (index == 0 && level + 1 < NROF_LEVELS) {
+			cascade(level + 1);
+		}
+		if (slots[level] == null) {
+			return;
+		}
+
+		Timer t = slots[level][index];
+		slots[level][index] = null;
+		while (t != null) {
+			Timer next = t.next;
+			nrofInSlots--;
+			place(t);
+			t = next;
+		}
+	}
+
+	/**
+	 * Moves all timers of a slot to the due list
+	 */
+	private void moveToDue(int level, int index) {
+		if (slots[level] == null) {
+			return;
+		}
+		Timer t = slots[level][index];
+		slots[level][index] = null;
+		while (t != null) {
+			Timer next = t.next;
+			nrofInSlots--;
+			link(t, DUE, 0);
+			nrofDue++;
+			t = next;
+		}
+	}
+
+	/**
+	 * Puts a timer to the slot (or the due list) of its tick
+	 * @param t The timer
+	 */
+	private void place(Timer t) {
+		long delta = t.tick - current;
+		if (delta <= 0) {
+			link(t, DUE, 0);
+			nrofDue++;
+			return;
+		}
+
+		long tick = t.tick;
+		if (delta > MAX_DELTA) {
+			tick = current + MAX_DELTA; // rescheduled when reached
+			delta = MAX_DELTA;
+		}
+		int level = 0;
+		while (delta >= (1L << (SLOT_BITS * (level + 1)))) {
+			level++;
+		}
+		if (slots[level] == null) {
+			slots[level] = new Timer[NROF_SLOTS];
+		}
+		link(t, level, (int)((tick >>> (SLOT_BITS * level)) & SLOT_MASK));
+		nrofInSlots++;
+	}
+
+	private void link(Timer t, int list, int index) {
+		Timer head = (list == DUE ? due : slots[list][index]);
+		t.list = list;
+		t.index = index;
+		t.prev = null;
+		t.next = head;
+		if (head != null) {
+			head.prev = t;
+		}
+		if (list == DUE) {
+			due = t;
+		}
+		else {
+			slots[list][index] = t;
+		}
+	}
+
+	private void unlink(Timer t) {
+		if (t.next != null) {
+			t.next.prev = t.prev;
+		}
+		if (t.prev != null) {
+			t.prev.next = t.next;
+		}
+		else if (t.list == DUE) {
+			due = t.next;
+		}
+		else {
+			slots[t.list][t.index] = t.next;
+		}
+		t.prev = t.next = null;
+	}
+
+	/**
+	 * Writes the timers of every list (due list first) from head to tail
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size());
+		for (Timer t = due; t != null; t = t.next) {
+			out.writeObject(t);
+		}
+		for (Timer[] level : slots) {
+			if (level == null) {
+				continue;
+			}
+			for (Timer head : level) {
+				for (Timer t = head; t != null; t = t.next) {
+					out.writeObject(t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the timers and links them back to their lists in the same order
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.slots = new Timer[NROF_LEVELS][];
+		int n = in.readInt();
+		Timer[] timers = new Timer[n];
+		for (int i=0; i < n; i++) {
+			timers[i] = (Timer)in.readObject();
+		}
+		for (int i=n - 1; i >= 0; i--) { // linking adds to the head
+			Timer t = timers[i];
+			if (t.list != DUE && slots[t.list] == null) {
+				slots[t.list] = new Timer[NROF_SLOTS];
+			}
+			link(t, t.list, t.index);
+		}
+	}
+
+	private long toTick(double time) {
+		return (long)Math.floor(time / resolution);
+	}
+
+	/**
+	 * A timer that can be scheduled to a timing wheel. Subclasses carry the
+	 * data of the timer.
+	 */
+	public static class Timer implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private double time;
+		private long tick;
+		private int list = NOT_SCHEDULED;
+		private int index;
+		private transient Timer prev;
+		private transient Timer next;
+
+		/**
+		 * Returns the time when the timer expires
+		 * @return the expiry time
+		 */
+		public double getTime() {
+			return this.time;
+		}
+
+		/**
+		 * Returns true if the timer is scheduled to a wheel
+		 * @return true if the timer is scheduled
+		 */
+		public boolean isScheduled() {
+			return this.list != NOT_SCHEDULED;
+		}
+	}
+}
@@ -50,6 +50,25 @@ public class AllTests {
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(RunContextTest.class);
+		suite.addTestSuite(ReportWriterTest.class);
+		suite.addTestSuite(MessageStoreTest.class);
+		suite.addTestSuite(TimingWheelTest.class);
+		suite.addTestSuite(RandomStreamsTest.class);
+		suite.addTestSuite(SeirEngineTest.class);
+		suite.addTestSuite(RunningStatisticsTest.class);
+		suite.addTestSuite(PredictabilityTableTest.class);
+		suite.addTestSuite(MovementTraceTest.class);
+		suite.addTestSuite(ContactPlanQueueTest.class);
+		suite.addTestSuite(ContactPlanReplayTest.class);
+		suite.addTestSuite(EncounterStatisticsTest.class);
+		suite.addTestSuite(ContactLedgerTest.class);
+		suite.addTestSuite(ColumnarReportTest.class);
+		suite.addTestSuite(MetricsTest.class);
+		suite.addTestSuite(KineticContactOptimizerTest.class);
+		suite.addTestSuite(PackedConnectivityGridTest.class);
+		suite.addTestSuite(CheckpointTest.class);
+		suite.addTestSuite(LazyUpdatesTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import core.Checkpoint;
+import core.DTNHost;
+import core.Message;
+import core.RunContext;
+import core.SimClock;
+import core.SimScenario;
+
+/**
+ * Tests that a run resumed from a checkpoint continues exactly like the
+ * run that saved the checkpoint
+ */
+public class CheckpointTest extends TestCase {
+	private static final int SAVE_TIME = 4000;
+	private static final String CP_NS = Checkpoint.CHECKPOINT_NS + ".";
+
+	private ScenarioRunner runner;
+	private File cpFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		runner = new ScenarioRunner();
+		cpFile = File.createTempFile("cpTest", ".bin");
+		cpFile.deleteOnExit();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		runner.delete();
+		cpFile.delete();
+	}
+
+	/**
+	 * Returns the state of a finished run: the simulation time, the
+	 * locations and buffers of the hosts and the next values of the
+	 * movement models' rng
+	 */
+	private String endState(RunContext context) {
+		RunContext.bind(context);
+		try {
+			StringBuilder sb = new StringBuilder();
+			sb.append("time ").append(SimClock.getTime()).append('\n');
+			for (DTNHost h : SimScenario.getInstance().getHosts()) {
+				List<String> ids = new ArrayList<String>();
+				for (Message m : h.getMessageCollection()) {
+					ids.add(m.getId());
+				}
+				Collections.sort(ids);
+				sb.append(h).append(' ').append(h.getLocation()).append(' ');
+				sb.append(ids).append('\n');
+			}
+			Random rng = (Random)context.get(MovementModel.class);
+			for (int i=0; i < 3; i++) {
+				sb.append("rng ").append(rng.nextLong()).append('\n');
+			}
+			return sb.toString();
+		} finally {
+			RunContext.bind(null);
+		}
+	}
+
+	/**
+	 * Returns the time of the first event in an event log report
+	 */
+	private double firstEventTime(String eventLog) {
+		return Double.parseDouble(eventLog.substring(0,
+				eventLog.indexOf(' ')));
+	}
+
+	/**
+	 * Runs the scenario saving a checkpoint, then resumes another run from
+	 * the checkpoint and checks that both runs end in the same state
+	 */
+	private void assertResumesTheSame() throws Exception {
+		runner.putSetting(CP_NS + Checkpoint.SAVE_TIME_S, "" + SAVE_TIME);
+		runner.putSetting(CP_NS + Checkpoint.FILE_S, cpFile.getPath());
+		Map<String, String> full = runner.run("full");
+		String fullState = endState(runner.getLastContext());
+		assertTrue(cpFile.length() > 0);
+
+		runner.putSetting(CP_NS + Checkpoint.RESUME_S, cpFile.getPath());
+		/* don't save again in the resumed run */
+		runner.putSetting(CP_NS + Checkpoint.SAVE_TIME_S, "" + 1e9);
+		Map<String, String> resumed = runner.run("resumed");
+		String resumedState = endState(runner.getLastContext());
+
+		String log = "run_EventLogReport.txt";
+		assertTrue(firstEventTime(full.get(log)) < SAVE_TIME);
+		assertTrue(firstEventTime(resumed.get(log)) >= SAVE_TIME);
+		assertTrue(fullState.contains("[M"));
+		assertEquals(fullState, resumedState);
+	}
+
+	public void testConnectivityGrid() throws Exception {
+		assertResumesTheSame();
+	}
+
+	public void testPackedConnectivityGrid() throws Exception {
+		runner.putSetting("Optimization.packedGrid", "true");
+		assertResumesTheSame();
+	}
+
+	public void testKineticContacts() throws Exception {
+		runner.putSetting("Optimization.kineticContacts", "true");
+		assertResumesTheSame();
+	}
+}
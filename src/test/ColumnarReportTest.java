@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+import report.ColumnarQuery;
+import report.ColumnarReader;
+import report.ColumnarWriter;
+import report.Report;
+import core.SimError;
+
+/**
+ * Tests for the columnar report files and the query tool
+ */
+public class ColumnarReportTest extends TestCase {
+	private static final ColumnarWriter.Column[] COLUMNS = {
+		new ColumnarWriter.Column("time", ColumnarWriter.TIME),
+		new ColumnarWriter.Column("host", ColumnarWriter.STRING),
+		new ColumnarWriter.Column("size", ColumnarWriter.INT),
+		new ColumnarWriter.Column("delay", ColumnarWriter.DOUBLE)};
+	/* more rows than fit in one block */
+	private static final int NROF_ROWS = ColumnarWriter.BLOCK_ROWS * 2 + 10;
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("colTest", ".col");
+		file.deleteOnExit();
+
+		ColumnarWriter w = new ColumnarWriter(new FileOutputStream(file),
+				COLUMNS);
+		for (int i=0; i < NROF_ROWS; i++) {
+			w.time(time(i)).string(host(i)).
+				integer(i % 7 == 0 ? ColumnarWriter.NULL_INT : -i).
+				real(i / 3.0).endRow();
+		}
+		w.close();
+	}
+
+	private static double time(int i) {
+		return (i / 5) * 0.1; // accumulation errors of sim times included
+	}
+
+	private static String host(int i) {
+		return i % 11 == 0 ? null : "h" + (i % 3);
+	}
+
+	public void testRoundTrip() {
+		ColumnarReader r = new ColumnarReader(file.getAbsolutePath());
+		assertEquals(4, r.getNrofColumns());
+		assertEquals("host", r.getName(1));
+		assertEquals(ColumnarWriter.INT, r.getType(2));
+		assertEquals(3, r.getColumn("delay"));
+		assertEquals(-1, r.getColumn("foo"));
+
+		int i = 0;
+		while (r.nextBlock()) {
+			for (int row=0; row < r.getNrofRows(); row++, i++) {
+				assertEquals(time(i), r.getDouble(0, row));
+				assertEquals(host(i), r.getString(1, row));
+				if (i % 7 == 0) {
+					assertEquals(ColumnarWriter.NULL_INT, r.getInt(2, row));
+					assertEquals("", r.getText(2, row));
+				} else {
+					assertEquals(-i, r.getInt(2, row));
+				}
+				assertEquals(i / 3.0, r.getDouble(3, row));
+			}
+		}
+		assertEquals(NROF_ROWS, i);
+		assertFalse(r.nextBlock());
+	}
+
+	public void testQuery() {
+		String result = query(file.getAbsolutePath(), "-where", "host=h1",
+				"-where", "time<0.2", "-select", "time,size");
+		/* rows 0..9 have time < 0.2 and h1 at rows 1, 4, 7 */
+		assertEquals("time,size\n0.0,-1\n0.0,-4\n0.1,\n", result);
+
+		result = query(file.getAbsolutePath(), "-where", "time<0.2",
+				"-group", "host", "-agg", "count,sum:size,max:delay");
+		assertEquals("host,count,sum(size),max(delay)\n" +
+				",1,NaN,0.0\n" + // row 0
+				"h1,3,-5.0,2.3333333333333335\n" + // rows 1, 4, 7 (null)
+				"h2,3,-15.0,2.6666666666666665\n" + // rows 2, 5, 8
+				"h0,3,-18.0,3.0\n", result); // rows 3, 6, 9
+	}
+
+	public void testInvalidQuery() {
+		try {
+			query(file.getAbsolutePath(), "-where", "foo=1");
+			fail("Unknown column was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+		try {
+			query(file.getAbsolutePath(), "-agg", "median:size");
+			fail("Unknown aggregate was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testInvalidFile() throws Exception {
+		File text = File.createTempFile("colTest", ".txt");
+		text.deleteOnExit();
+		PrintWriter out = new PrintWriter(text);
+		out.println("0.1 CONN 1 2 up");
+		out.close();
+		try {
+			new ColumnarReader(text.getAbsolutePath());
+			fail("Text file was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testReportOutput() throws Exception {
+		File dir = Files.createTempDirectory("colTest").toFile();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(Report.REPORTDIR_SETTING, dir.getPath());
+		ts.putSetting(Report.REPORT_NS + "." + Report.COLUMNAR_OUTPUT_S,
+				"true");
+		try {
+			FieldColumnsReport report = new FieldColumnsReport();
+			report.writeRow();
+			try {
+				report.writeText();
+				fail("Text was written to columnar output");
+			} catch (SimError e) {
+				// expected
+			}
+			report.done();
+
+			File[] files = dir.listFiles();
+			assertEquals(1, files.length);
+			assertTrue(files[0].getName().endsWith(Report.COLUMNAR_SUFFIX));
+			ColumnarReader r = new ColumnarReader(files[0].getPath());
+			assertTrue(r.nextBlock());
+			assertEquals(1, r.getNrofRows());
+			assertEquals("h1", r.getString(1, 0));
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	/**
+	 * Report whose columns are in a field that is initialized only after
+	 * the constructor of the Report class
+	 */
+	private static class FieldColumnsReport extends Report {
+		private final ColumnarWriter.Column[] columns = COLUMNS;
+
+		@Override
+		protected ColumnarWriter.Column[] getColumns() {
+			return columns;
+		}
+
+		public void writeRow() {
+			row().time(1).string("h1").integer(2).real(3).endRow();
+		}
+
+		public void writeText() {
+			write("text");
+		}
+	}
+
+	private String query(String... args) {
+		StringWriter sw = new StringWriter();
+		PrintWriter out = new PrintWriter(sw);
+		new ColumnarQuery(args).execute(out);
+		return sw.toString().replace(System.getProperty("line.separator"),
+				"\n");
+	}
+}
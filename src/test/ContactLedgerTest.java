@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.ContactLedger;
+import report.EncounterStatistics;
+import util.Histogram;
+
+/**
+ * Tests for the ContactLedger and Histogram classes
+ */
+public class ContactLedgerTest extends TestCase {
+
+	public void testOpenAndClose() {
+		ContactLedger cl = new ContactLedger();
+		assertTrue(cl.open(1, 2, 10));
+		assertFalse(cl.open(2, 1, 20)); // already open
+		assertTrue(cl.open(3, 1, 15, 42));
+		assertEquals(2, cl.size());
+		assertTrue(cl.isOpen(2, 1));
+		assertEquals(42, cl.getData(1, 3));
+		assertEquals(15.0, cl.getTotalOpenTime(20));
+
+		assertEquals(10.0, cl.close(2, 1));
+		assertTrue(Double.isNaN(cl.close(1, 2)));
+		assertFalse(cl.isOpen(1, 2));
+		assertEquals(1, cl.size());
+	}
+
+	/**
+	 * Compares the ledger to a map with many random operations (the table
+	 * grows and entries are removed from the middle of probe sequences)
+	 */
+	public void testRandomOperations() {
+		ContactLedger cl = new ContactLedger();
+		Map<Long, Double> ref = new HashMap<Long, Double>();
+		Random rng = new Random(1);
+
+		for (int i=0; i < 100000; i++) {
+			int a = rng.nextInt(200);
+			int b = rng.nextInt(200);
+			if (a == b) {
+				continue;
+			}
+			Long key = EncounterStatistics.pairKey(a, b);
+			if (rng.nextBoolean()) {
+				assertEquals(!ref.containsKey(key), cl.open(a, b, i));
+				if (!ref.containsKey(key)) {
+					ref.put(key, (double)i);
+				}
+			}
+			else {
+				Double start = ref.remove(key);
+				double closed = cl.close(a, b);
+				if (start == null) {
+					assertTrue(Double.isNaN(closed));
+				}
+				else {
+					assertEquals(start.doubleValue(), closed);
+				}
+			}
+			assertEquals(ref.size(), cl.size());
+		}
+	}
+
+	public void testHistogram() {
+		Histogram h = new Histogram(2.0);
+		assertEquals(-1, h.getLastBin());
+		h.add(0.5);
+		h.add(5);
+		h.add(5.9);
+		assertEquals(2, h.getLastBin());
+		assertEquals(1, h.getCount(0));
+		assertEquals(0, h.getCount(1));
+		assertEquals(2, h.getCount(2));
+		assertEquals(4.0, h.getLowerBound(2));
+
+		Histogram log = new Histogram(1.0, 1);
+		log.add(0.5);
+		log.add(5);
+		log.add(50);
+		log.add(99);
+		assertEquals(0, log.getBin(0.5));
+		assertEquals(1, log.getBin(5));
+		assertEquals(2, log.getBin(50));
+		assertEquals(2, log.getCount(2));
+		assertEquals(10.0, log.getLowerBound(2), 1e-9);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ContactPlanQueue;
+import input.ContactPlanWriter;
+import input.ExternalEvent;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import junit.framework.TestCase;
+import core.SimError;
+
+/**
+ * Tests for the contact plan writer and queue
+ */
+public class ContactPlanQueueTest extends TestCase {
+	private static final String[] INPUT = {
+		"10 CONN 1 2 up",
+		"10 CONN 3 4 up",
+		"15.5 C M1 1 2 100",
+		"20 CONN 2 1 down",
+		"20 CONN 1 5 up",
+		"30 CONN 1 5 down",
+		"30 CONN 3 4 down",
+		"40 CONN 6 7 up",
+		"40 CONN 7 6 down",
+		"45 CONN 2 3 down",
+		"50 CONN 8 9 up",
+		"55 CONN 9 8 up"
+	};
+
+	/* times of the events and the number of ups and downs in them */
+	private static final double[] TIMES = {10, 20, 30, 40, 50};
+	private static final String[] EVENTS = {"2 up 0 down", "1 up 1 down",
+		"0 up 2 down", "1 up 1 down", "1 up 0 down"};
+
+	private File eventsFile;
+	private File planFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		java.util.Locale.setDefault(java.util.Locale.US);
+		eventsFile = File.createTempFile("cpqTest", ".txt");
+		eventsFile.deleteOnExit();
+		planFile = File.createTempFile("cpqTest", ".plan");
+		planFile.deleteOnExit();
+
+		PrintWriter out = new PrintWriter(eventsFile);
+		for (String s : INPUT) {
+			out.println(s);
+		}
+		out.close();
+	}
+
+	public void testConvertAndReplay() {
+		assertEquals(5, ContactPlanWriter.convert(eventsFile,
+				planFile.getAbsolutePath()));
+
+		ContactPlanQueue q = new ContactPlanQueue(planFile.getAbsolutePath());
+		assertEquals(5, q.getNrofContacts());
+
+		for (int i=0; i < TIMES.length; i++) {
+			assertEquals(TIMES[i], q.nextEventsTime());
+			ExternalEvent ee = q.nextEvent();
+			assertEquals(TIMES[i], ee.getTime());
+			assertTrue(ee.toString(), ee.toString().endsWith(EVENTS[i]));
+		}
+
+		// the last contact stays up
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, q.nextEvent().getTime());
+	}
+
+	public void testTimeOrder() {
+		ContactPlanWriter w = new ContactPlanWriter(
+				planFile.getAbsolutePath());
+		w.contactUp(10, 1, 2, null);
+		try {
+			w.contactDown(5, 1, 2, null);
+			fail("Contact out of time order was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testInvalidFile() {
+		try {
+			new ContactPlanQueue(eventsFile.getAbsolutePath());
+			fail("Invalid file was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
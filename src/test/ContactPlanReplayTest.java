@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ContactPlanQueue;
+import input.ContactPlanWriter;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import core.RandomStreams;
+import core.SimScenario;
+
+/**
+ * Tests that a recorded contact plan is replayed as it is also with another
+ * random seed
+ */
+public class ContactPlanReplayTest extends TestCase {
+	private static final String CON_REPORT = "run_ConnectivityONEReport.txt";
+
+	private ScenarioRunner runner;
+	private File planFile;
+	private File replayFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		runner = new ScenarioRunner();
+		planFile = File.createTempFile("cprTest", ".plan");
+		planFile.deleteOnExit();
+		replayFile = File.createTempFile("cprTest", ".plan");
+		replayFile.deleteOnExit();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		runner.delete();
+		planFile.delete();
+		replayFile.delete();
+	}
+
+	/**
+	 * Returns the lines of a report in sorted order
+	 */
+	private String sortedLines(String report) {
+		String[] lines = report.split("\n");
+		Arrays.sort(lines);
+		return Arrays.toString(lines);
+	}
+
+	public void testReplayWithOtherSeed() throws Exception {
+		/* half of the contacts are accepted */
+		runner.putSetting("Group.getVirusProbability", "0.5");
+		runner.putSetting(ContactPlanWriter.CONTACT_PLAN_NS + "." +
+				ContactPlanWriter.RECORD_S, planFile.getPath());
+		Map<String, String> recorded = runner.run("recorded");
+
+		runner.putSetting(ContactPlanWriter.CONTACT_PLAN_NS + "." +
+				ContactPlanWriter.RECORD_S, replayFile.getPath());
+		runner.putSetting(SimScenario.SCENARIO_NS + "." +
+				RandomStreams.RNG_SEED_S, "7");
+		runner.putSetting(SimScenario.SCENARIO_NS + "." +
+				SimScenario.SIM_CON_S, "false");
+		runner.putSetting("Events.nrof", "2");
+		runner.putSetting("Events2.class", "ContactPlanQueue");
+		runner.putSetting("Events2." + ContactPlanQueue.FILE_S,
+				planFile.getPath());
+		Map<String, String> replayed = runner.run("replayed");
+
+		String contacts = recorded.get(CON_REPORT);
+		assertTrue(contacts.contains(" up"));
+		assertEquals(sortedLines(contacts),
+				sortedLines(replayed.get(CON_REPORT)));
+	}
+}
@@ -4,11 +4,14 @@
  */
 package test;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.SimMap;
 import core.Coord;
 
 public class DijkstraPathFinderTest extends TestCase {
@@ -81,6 +84,37 @@ public class DijkstraPathFinderTest extends TestCase {
 		}
 	}
 
+	public void testPathFindingWithRoutingService() {
+		r = new DijkstraPathFinder(createMap(), null);
+		testPathFinding();
+		testPathFinding(); // again using the cached trees
+	}
+
+	public void testOkMapNodes() {
+		n1.addType(1);
+		n2.addType(1);
+		n3.addType(1);
+		n4.addType(1);
+		n7.addType(1);
+		n8.addType(1);
+
+		DijkstraPathFinder search = new DijkstraPathFinder(new int[] {1});
+		r = new DijkstraPathFinder(createMap(), new int[] {1});
+
+		checkPath(getPath(n4,n8), n4, n1, n2, n3, n7, n8);
+		checkPath(search.getShortestPath(n4, n8), n4, n1, n2, n3, n7, n8);
+		assertEquals(0, getPath(n1, n6).size());
+		assertEquals(0, search.getShortestPath(n1, n6).size());
+	}
+
+	private SimMap createMap() {
+		Map<Coord, MapNode> nodes = new HashMap<Coord, MapNode>();
+		for (MapNode n : new MapNode[] {n1, n2, n3, n4, n5, n6, n7, n8}) {
+			nodes.put(n.getLocation(), n);
+		}
+		return new SimMap(nodes);
+	}
+
 	private List<MapNode> getPath(MapNode from, MapNode to) {
 		List<MapNode> path = r.getShortestPath(from, to);
 		return path;
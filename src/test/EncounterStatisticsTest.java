@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import report.EncounterStatistics;
+import util.HyperLogLog;
+import util.LongHashSet;
+
+/**
+ * Tests for the EncounterStatistics class and its data structures
+ */
+public class EncounterStatisticsTest extends TestCase {
+
+	public void testExactCounts() {
+		EncounterStatistics es = new EncounterStatistics(4, false, 10);
+		es.addEncounter(0, 1);
+		es.addEncounter(1, 0);
+		es.addEncounter(1, 2);
+
+		assertEquals(2, es.getEncounters(0));
+		assertEquals(3, es.getEncounters(1));
+		assertEquals(0, es.getEncounters(3));
+		assertEquals(1, es.getUniqueEncounters(0));
+		assertEquals(2, es.getUniqueEncounters(1));
+		assertEquals(0, es.getUniqueEncounters(3));
+		assertTrue(es.haveEncountered(2, 1));
+		assertFalse(es.haveEncountered(0, 2));
+
+		es.addEncounter(6, 0); // host that wasn't known
+		assertEquals(7, es.getNrofHosts());
+		assertEquals(1, es.getUniqueEncounters(6));
+		assertEquals(2, es.getUniqueEncounters(0));
+	}
+
+	public void testEstimatedCounts() {
+		int n = 20000;
+		EncounterStatistics es = new EncounterStatistics(n, true, 10);
+		for (int i=1; i < n; i++) {
+			es.addEncounter(0, i);
+			es.addEncounter(0, i); // repeated encounters don't count
+		}
+		es.addEncounter(1, 2);
+
+		assertTrue(es.isEstimate());
+		assertEquals(2 * (n - 1), es.getEncounters(0));
+		assertEquals(n - 1, es.getUniqueEncounters(0), 0.1 * n);
+		assertEquals(2, es.getUniqueEncounters(1));
+	}
+
+	public void testPairKey() {
+		assertEquals(EncounterStatistics.pairKey(3, 5),
+				EncounterStatistics.pairKey(5, 3));
+		assertFalse(EncounterStatistics.pairKey(0, 1) ==
+			EncounterStatistics.pairKey(1, 2));
+	}
+
+	public void testLongHashSet() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		for (long i=1; i <= 1000; i++) {
+			assertTrue(set.add(i << 32));
+		}
+		assertEquals(1001, set.size());
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(500L << 32));
+		assertFalse(set.contains(500));
+
+		set.clear();
+		assertEquals(0, set.size());
+		assertFalse(set.contains(0));
+	}
+
+	public void testHyperLogLog() {
+		HyperLogLog hll = new HyperLogLog(12);
+		assertEquals(0.0, hll.estimate());
+		for (int i=0; i < 100000; i++) {
+			hll.add(i);
+		}
+		assertEquals(100000, hll.estimate(), 5000);
+
+		try {
+			new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+			fail("Invalid precision was accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -5,6 +5,8 @@
 package test;
 
 import input.BinaryEventsReader;
+import input.CompactEventsReader;
+import input.CompactEventsWriter;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
@@ -82,6 +84,33 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 
+	public void testCompactEEQ() throws Exception {
+		File tmpFile = File.createTempFile("TempCompactTest",
+				CompactEventsReader.COMPACT_EXT);
+		assertEquals(msgTimes.length,
+				CompactEventsWriter.convert(tempFile, tmpFile));
+		assertTrue(CompactEventsReader.isCompactEeFile(tmpFile));
+
+		// all events are available without preloading
+		eeq = new ExternalEventsQueue(tmpFile.getAbsolutePath(), 1);
+		checkEeq(eeq, msgTimes.length);
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, eeq.nextEvent().getTime());
+
+		// the events read as objects are the same as the original ones
+		List<ExternalEvent> orig = new StandardEventsReader(tempFile).
+			readEvents(100);
+		CompactEventsReader r = new CompactEventsReader(tmpFile);
+		List<ExternalEvent> events = r.readEvents(100);
+		r.close();
+		assertEquals(orig.size(), events.size());
+		for (int i=0; i < orig.size(); i++) {
+			assertEquals(orig.get(i).toString(), events.get(i).toString());
+		}
+
+		assertTrue(tmpFile.delete());
+	}
+
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
 		assertEquals(msgTimes[0],eeq.nextEventsTime());
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.KineticContactOptimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.RunContext;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests for the KineticContactOptimizer. The hosts move one second at a
+ * time and the contacts found by the optimizer are compared with the
+ * times when the hosts are within range.
+ */
+public class KineticContactOptimizerTest extends TestCase {
+	private static final double RANGE = 10.5;
+
+	private TestSettings ts;
+	private KineticContactOptimizer kco;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		RunContext.bind(new RunContext(0));
+		ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				KineticContactOptimizer.KINETIC_CONTACTS_S, "true");
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_SPEED_S, "1");
+		hosts = new ArrayList<DTNHost>();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		RunContext.bind(null);
+	}
+
+	/**
+	 * Creates a host that moves along the given waypoints with speed 1
+	 * (or stays in the first one if only one is given)
+	 */
+	private DTNHost createHost(Coord... waypoints) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(new TestSettings(TestUtils.IFACE_NS)));
+		DTNHost host = new DTNHost(new ArrayList<MessageListener>(), null,
+				"h", li, new ModuleCommunicationBus(),
+				new WaypointMovement(waypoints),
+				new PassiveRouter(ts), null, 1);
+		hosts.add(host);
+		kco = KineticContactOptimizer.getInstance(
+				li.get(0).getInterfaceType().hashCode());
+		return host;
+	}
+
+	/**
+	 * Moves the hosts for one second and brings the optimizer up to date
+	 */
+	private void step() {
+		for (DTNHost h : hosts) {
+			h.move(1);
+		}
+		SimClock.getInstance().advance(1);
+		kco.updateLocation(hosts.get(0).getInterfaces().get(0));
+	}
+
+	private boolean isNear(DTNHost from, DTNHost to) {
+		return kco.getNearInterfaces(from.getInterfaces().get(0)).contains(
+				to.getInterfaces().get(0));
+	}
+
+	/**
+	 * Steps until the given time and checks that the hosts are found near
+	 * each other exactly when they are within range
+	 * @return Times when the hosts were near each other
+	 */
+	private List<Integer> stepUntil(int end, DTNHost a, DTNHost b) {
+		List<Integer> nearTimes = new ArrayList<Integer>();
+		for (int t = SimClock.getIntTime() + 1; t <= end; t++) {
+			step();
+			boolean inRange = a.getLocation().distance(b.getLocation()) <=
+				RANGE;
+			assertEquals("at " + t, inRange, isNear(a, b));
+			assertEquals("at " + t, inRange, isNear(b, a));
+			if (inRange) {
+				nearTimes.add(t);
+			}
+		}
+		return nearTimes;
+	}
+
+	public void testPredictedEnterAndLeave() {
+		DTNHost a = createHost(new Coord(50, 0));
+		DTNHost b = createHost(new Coord(0, 0), new Coord(100, 0));
+
+		step();
+		/* one re-check for the predicted time of entering the range */
+		assertEquals(1, kco.getNrofScheduledChecks());
+
+		List<Integer> near = stepUntil(100, a, b);
+		assertEquals(21, near.size());
+		assertEquals(40, (int)near.get(0));
+		assertEquals(60, (int)near.get(near.size() - 1));
+		assertEquals(0, kco.getNrofScheduledChecks());
+	}
+
+	public void testSegmentChange() {
+		DTNHost a = createHost(new Coord(50, 20));
+		/* passes by outside the range and then turns towards a */
+		DTNHost b = createHost(new Coord(0, 0), new Coord(50, 0),
+				new Coord(50, 100));
+
+		step();
+		assertEquals(0, kco.getNrofScheduledChecks());
+		int version = b.getSegmentVersion();
+
+		List<Integer> near = stepUntil(120, a, b);
+		assertTrue(b.getSegmentVersion() > version);
+		assertEquals(60, (int)near.get(0));
+		assertEquals(80, (int)near.get(near.size() - 1));
+	}
+
+	public void testInvalidatedChecksArePruned() {
+		DTNHost a = createHost(new Coord(50, 0));
+		DTNHost b = createHost(new Coord(0, 0), new Coord(100, 0));
+		ModuleCommunicationBus comBus = b.getComBus();
+
+		/* every range change invalidates the predicted enter time */
+		for (int i=0; i < 30; i++) {
+			comBus.updateProperty(NetworkInterface.RANGE_ID,
+					i % 2 == 0 ? RANGE - 0.1 : RANGE);
+			step();
+			assertTrue(kco.getNrofScheduledChecks() <= 2);
+		}
+		comBus.updateProperty(NetworkInterface.RANGE_ID, RANGE);
+
+		List<Integer> near = stepUntil(100, a, b);
+		assertEquals(40, (int)near.get(0));
+		assertEquals(60, (int)near.get(near.size() - 1));
+	}
+
+	/**
+	 * Movement model that goes through the given waypoints once
+	 */
+	private static class WaypointMovement extends MovementModel {
+		private Coord[] waypoints;
+		private boolean moved;
+
+		public WaypointMovement(Coord... waypoints) {
+			this.waypoints = waypoints;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return waypoints[0].clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public boolean isAlwaysActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			moved = true;
+			Path p = new Path(1);
+			for (Coord c : waypoints) {
+				p.addWaypoint(c.clone());
+			}
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return moved || waypoints.length == 1 ? Double.MAX_VALUE : 0;
+		}
+
+		@Override
+		public WaypointMovement replicate() {
+			return new WaypointMovement(waypoints);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that skipping the updates of idle hosts doesn't change the results
+ * of a simulation
+ */
+public class LazyUpdatesTest extends TestCase {
+	private ScenarioRunner runner;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		runner = new ScenarioRunner();
+		/* messages expire also while their hosts are idle */
+		runner.putSetting("Group.msgTtl", "20");
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		runner.delete();
+	}
+
+	/**
+	 * Runs the scenario with and without lazy updates and checks that the
+	 * reports are the same
+	 */
+	private void assertSameReports() throws Exception {
+		Map<String, String> eager = runner.run("eager");
+		runner.putSetting("Optimization.lazyUpdates", "true");
+		Map<String, String> lazy = runner.run("lazy");
+
+		assertEquals(3, eager.size());
+		assertEquals(eager.keySet(), lazy.keySet());
+		String log = eager.get("run_EventLogReport.txt");
+		assertTrue(log.contains(" DE "));
+		assertTrue(log.contains(" DR "));
+		for (String name : eager.keySet()) {
+			assertEquals(name, eager.get(name), lazy.get(name));
+		}
+	}
+
+	public void testEpidemicRouter() throws Exception {
+		assertSameReports();
+	}
+
+	public void testProphetRouter() throws Exception {
+		runner.putSetting("Group.router", "ProphetRouter");
+		runner.putSetting("ProphetRouter.secondsInTimeUnit", "30");
+		assertSameReports();
+	}
+
+	public void testSprayAndWaitRouter() throws Exception {
+		runner.putSetting("Group.router", "SprayAndWaitRouter");
+		runner.putSetting("SprayAndWaitRouter.nrofCopies", "6");
+		runner.putSetting("SprayAndWaitRouter.binaryMode", "true");
+		assertSameReports();
+	}
+}
@@ -154,4 +154,34 @@ public class MaxPropDijkstraTest extends TestCase {
 
 	}
 
+	public void testIncrementalSearch() {
+		mapping.get(0).updateMeetingProbFor(1);
+		mapping.get(1).updateMeetingProbFor(2);
+		mapping.get(1).updateMeetingProbFor(3);
+
+		assertEquals(0.5, mpd.getCost(0, 3), DELTA);
+		assertEquals(0.5, mpd.getCost(0, 2), DELTA); // continued search
+		assertEquals(Double.MAX_VALUE, mpd.getCost(0, 4));
+		assertEquals(0.0, mpd.getCost(1, 1));
+
+		mapping.get(1).updateMeetingProbFor(3); // h1 meets h3 again
+		assertEquals(0.5, mpd.getCost(0, 3), DELTA); // old result until...
+		mpd.invalidate(); // ...the searches are invalidated
+		assertEquals(0.25, mpd.getCost(0, 3), DELTA);
+		assertEquals(0.75, mpd.getCost(0, 2), DELTA);
+	}
+
+	public void testReplicate() {
+		MeetingProbabilitySet mps = mapping.get(0);
+		mps.updateMeetingProbFor(1);
+		mps.updateMeetingProbFor(2);
+
+		MeetingProbabilitySet replica = mps.replicate();
+		assertSame(replica, replica.replicate());
+		mps.updateMeetingProbFor(2);
+		assertEquals(0.5, replica.getProbFor(2));
+		assertEquals(0.75, mps.getProbFor(2));
+		assertEquals(mps.getLastUpdateTime(), replica.getLastUpdateTime());
+	}
+
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import routing.util.MessageStore;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the MessageStore class
+ */
+public class MessageStoreTest extends TestCase {
+	private MessageStore store;
+	private SimClock clock;
+	private DTNHost h1, h2, h3;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		h1 = createHost();
+		h2 = createHost();
+		h3 = createHost();
+		store = new MessageStore();
+	}
+
+	private DTNHost createHost() {
+		return new DTNHost(null, null, "h", new ArrayList<NetworkInterface>(),
+				new ModuleCommunicationBus(),
+				new StationaryMovement(new Coord(0,0)),
+				new PassiveRouter(new TestSettings()), null, 0);
+	}
+
+	private Message msg(DTNHost to, String id, int size, double rcvTime) {
+		Message m = new Message(h1, to, id, size);
+		m.setReceiveTime(rcvTime);
+		return m;
+	}
+
+	public void testIterationOrderAndIndexes() {
+		HashMap<String, Message> reference = new HashMap<String, Message>();
+		for (int i=0; i < 50; i++) {
+			Message m = msg(i % 2 == 0 ? h2 : h3, "M" + i, 10 + i, 100 - i);
+			store.add(m);
+			reference.put(m.getId(), m);
+		}
+		for (int i=0; i < 50; i += 3) {
+			assertNotNull(store.remove("M" + i));
+			reference.remove("M" + i);
+		}
+		assertNull(store.remove("M0"));
+
+		assertEquals(new ArrayList<Message>(reference.values()),
+				new ArrayList<Message>(store.getMessages()));
+
+		long size = 0;
+		int toH2 = 0;
+		List<Message> expectedToH2 = new ArrayList<Message>();
+		for (Message m : reference.values()) {
+			size += m.getSize();
+			if (m.getTo() == h2) {
+				toH2++;
+				expectedToH2.add(m);
+			}
+		}
+		assertEquals(size, store.getTotalSize());
+		assertEquals(toH2, store.getNrofMessagesTo(h2));
+		assertEquals(expectedToH2, store.getMessagesTo(h2));
+		assertEquals(0, store.getNrofMessagesTo(h1));
+		assertTrue(store.getMessagesTo(h1).isEmpty());
+
+		assertEquals("M49", store.getOldest(null).getId());
+		List<Message> byTime = store.getByReceiveTime();
+		assertEquals(store.size(), byTime.size());
+		assertEquals("M49", byTime.get(0).getId());
+		assertEquals("M1", byTime.get(byTime.size() - 1).getId());
+	}
+
+	public void testOldestWithTiesAndFilter() {
+		Message a = msg(h2, "A", 10, 5);
+		Message b = msg(h2, "B", 10, 5);
+		Message c = msg(h3, "C", 10, 7);
+		store.add(c);
+		store.add(b);
+		store.add(a);
+
+		/* tie is resolved by the iteration order */
+		Message first = null;
+		for (Message m : store.getMessages()) {
+			if (m.getReceiveTime() == 5) {
+				first = m;
+				break;
+			}
+		}
+		assertSame(first, store.getOldest(null));
+		assertNull(store.getByReceiveTime());
+
+		final Message excluded = first;
+		MessageStore.Filter filter = new MessageStore.Filter() {
+			public boolean matches(Message m) {
+				return m == excluded;
+			}
+		};
+		assertSame(first == a ? b : a, store.getOldest(filter));
+
+		store.remove("A");
+		store.remove("B");
+		assertSame(c, store.getOldest(null));
+		store.remove("C");
+		assertNull(store.getOldest(null));
+		assertEquals(0, store.getTotalSize());
+	}
+
+	public void testExpired() {
+		Message m1 = msg(h2, "M1", 10, 0);
+		m1.setTtl(2);
+		Message m2 = msg(h2, "M2", 10, 0);
+		m2.setTtl(3);
+		Message m3 = msg(h3, "M3", 10, 0);
+		m3.setTtl(3);
+		Message m4 = msg(h3, "M4", 10, 0); // infinite TTL
+		store.add(m1);
+		store.add(m2);
+		store.add(m3);
+		store.add(m4);
+
+		assertTrue(store.getExpired().isEmpty());
+
+		clock.setTime(60);
+		assertTrue(store.getExpired().isEmpty());
+		clock.setTime(61);
+		List<Message> expired = store.getExpired();
+		assertEquals(1, expired.size());
+		assertSame(m1, expired.get(0));
+
+		store.remove("M1");
+		clock.setTime(121);
+		expired = store.getExpired();
+		assertEquals(2, expired.size());
+		List<Message> inOrder = new ArrayList<Message>();
+		for (Message m : store.getMessages()) {
+			if (m != m4) {
+				inOrder.add(m);
+			}
+		}
+		assertEquals(inOrder, expired);
+
+		clock.setTime(1000000);
+		assertFalse(store.getExpired().contains(m4));
+	}
+
+	public void testExpiryBound() {
+		Message m1 = msg(h2, "M1", 10, 0);
+		m1.setTtl(2);
+		Message m2 = msg(h2, "M2", 10, 0);
+		m2.setTtl(4);
+		Message m3 = msg(h3, "M3", 10, 0); // infinite TTL
+		store.add(m3);
+		assertTrue(store.getExpiryBound() > 1e300);
+
+		store.add(m2);
+		store.add(m1);
+		double bound = store.getExpiryBound();
+		assertTrue(bound > 0 && bound <= m1.getExpiryTime());
+
+		clock.setTime(bound);
+		store.remove("M1");
+		bound = store.getExpiryBound(); // looked up again from M2 and M3
+		assertTrue(bound > m1.getExpiryTime());
+		assertTrue(bound <= m2.getExpiryTime());
+
+		clock.setTime(bound - 0.1);
+		assertTrue(store.getExpired().isEmpty());
+	}
+}
@@ -60,5 +60,25 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testReplicate() {
+		msg.addProperty("foo", "value1");
+		Message replica = msg.replicate();
+		assertEquals("M", replica.getId());
+		assertEquals(0, replica.getHopCount());
+		assertEquals("value1", replica.getProperty("foo"));
+
+		replica.addNodeOnPath(to);
+		assertEquals(1, replica.getHopCount());
+		assertEquals(0, msg.getHopCount()); // path of the original unchanged
+		assertEquals(2, replica.getHops().size());
+
+		replica.updateProperty("foo", "value2");
+		msg.addProperty("bar", "value3");
+		assertEquals("value1", msg.getProperty("foo"));
+		assertEquals("value2", replica.getProperty("foo"));
+		assertNull(replica.getProperty("bar"));
+	}
+
 
 }
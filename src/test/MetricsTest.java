@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.Metrics;
+import core.TimedListener;
+
+/**
+ * Tests for the sampled timers and timed listeners of the metrics
+ */
+public class MetricsTest extends TestCase {
+
+	public void testSampling() throws Exception {
+		Metrics.Timer t = new Metrics.Timer(3); // every 4th call timed
+		int sampled = 0;
+		for (int i=0; i < 8; i++) {
+			long start = t.start();
+			if (start != Metrics.Timer.NOT_SAMPLED) {
+				sampled++;
+				Thread.sleep(2);
+			}
+			t.stop(start);
+		}
+		assertEquals(2, sampled);
+		assertEquals(8, t.getCalls());
+		/* two sampled calls of >= 2 ms stand for all the eight calls */
+		assertTrue("" + t.getMillis(), t.getMillis() >= 16);
+	}
+
+	public void testUnsampledTimer() {
+		Metrics.Timer t = new Metrics.Timer(0);
+		assertEquals(0.0, t.getMillis());
+		for (int i=0; i < 5; i++) {
+			long start = t.start();
+			assertTrue(start != Metrics.Timer.NOT_SAMPLED);
+			t.stop(start);
+		}
+		assertEquals(5, t.getCalls());
+	}
+
+	public void testTimedListener() {
+		final int[] calls = new int[1];
+		MessageListener ml = new MessageListener() {
+			public void newMessage(Message m) {
+				calls[0]++;
+			}
+			public void messageTransferStarted(Message m, DTNHost from,
+					DTNHost to) {}
+			public void messageDeleted(Message m, DTNHost where,
+					boolean dropped) {}
+			public void messageTransferAborted(Message m, DTNHost from,
+					DTNHost to) {}
+			public void messageTransferred(Message m, DTNHost from,
+					DTNHost to, boolean firstDelivery) {
+				calls[0] += 10;
+			}
+		};
+		Metrics.Timer t = new Metrics.Timer(15);
+		MessageListener timed = new TimedListener(ml, t);
+		timed.newMessage(null);
+		timed.messageTransferred(null, null, null, true);
+		timed.messageDeleted(null, null, false);
+		assertEquals(11, calls[0]);
+		assertEquals(3, t.getCalls());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementTrace;
+import movement.MovementTrace.Column;
+import movement.MovementTrace.Cursor;
+import core.SimError;
+
+/**
+ * Tests for the movement trace file format
+ */
+public class MovementTraceTest extends TestCase {
+	private static final double[] DOUBLES = {0, 0, 1.5, 1.5, 1.50001, -3,
+		1e300, Double.MIN_VALUE, Double.NaN, 123456.789, 0};
+	private static final int[] INTS = {0, 1, 127, 128, 300, 16384,
+		Integer.MAX_VALUE};
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("movementTraceTest", ".tmp");
+		file.deleteOnExit();
+	}
+
+	public void testRoundTrip() {
+		List<Column[]> hosts = new ArrayList<Column[]>();
+		for (int h=0; h < 3; h++) {
+			Column[] columns = MovementTrace.newColumns();
+			for (double d : DOUBLES) {
+				columns[MovementTrace.X].writeDouble(d + h);
+			}
+			for (int i : INTS) {
+				columns[MovementTrace.PATHS].writeVarInt(i);
+			}
+			columns[MovementTrace.ACTIVITY].writeByte(h);
+			hosts.add(columns);
+		}
+		hosts.get(1)[MovementTrace.X] = new Column(); // an empty column
+
+		MovementTrace.write(file.getAbsolutePath(), hosts);
+		MovementTrace trace = new MovementTrace(file.getAbsolutePath());
+		assertEquals(3, trace.getNrofHosts());
+
+		for (int h=0; h < 3; h++) {
+			Cursor c = trace.cursor(h, MovementTrace.X);
+			if (h == 1) {
+				assertFalse(c.hasNext());
+			}
+			else {
+				for (double d : DOUBLES) {
+					assertTrue(c.hasNext());
+					assertEquals(Double.doubleToLongBits(d + h),
+							Double.doubleToLongBits(c.readDouble()));
+				}
+				assertFalse(c.hasNext());
+			}
+
+			c = trace.cursor(h, MovementTrace.PATHS);
+			for (int i : INTS) {
+				assertEquals(i, c.readVarInt());
+			}
+			assertFalse(c.hasNext());
+
+			c = trace.cursor(h, MovementTrace.ACTIVITY);
+			assertEquals(h, c.readByte());
+			assertFalse(c.hasNext());
+			assertFalse(trace.cursor(h, MovementTrace.Y).hasNext());
+		}
+	}
+
+	public void testCompression() {
+		Column c = new Column();
+		for (int i=0; i < 100; i++) {
+			c.writeDouble(1000.0 + i);
+		}
+		assertTrue("Size " + c.size(), c.size() < 100 * 4);
+		int size = c.size();
+		c.writeDouble(1099.0);
+		assertEquals(size + 1, c.size()); // unchanged values take one byte
+	}
+
+	public void testInvalidFile() throws Exception {
+		PrintWriter pw = new PrintWriter(file);
+		pw.println("this is not a movement trace");
+		pw.close();
+		try {
+			new MovementTrace(file.getAbsolutePath());
+			fail("Invalid file was accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testEndOfColumn() {
+		List<Column[]> hosts = new ArrayList<Column[]>();
+		hosts.add(MovementTrace.newColumns());
+		MovementTrace.write(file.getAbsolutePath(), hosts);
+		Cursor c = new MovementTrace(file.getAbsolutePath()).cursor(0,
+				MovementTrace.WAITS);
+		try {
+			c.readDouble();
+			fail("Read past the end of the column");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
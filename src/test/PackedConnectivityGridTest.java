@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.PackedConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.RunContext;
+import core.World;
+
+/**
+ * Tests that the PackedConnectivityGrid finds the same near interfaces as
+ * the ConnectivityGrid when the interfaces move around and are removed.
+ */
+public class PackedConnectivityGridTest extends TestCase {
+	private static final double RANGE = 10;
+	private static final int WORLD_SIZE = 100;
+	private static final int NROF_HOSTS = 40;
+
+	private TestSettings ts;
+	private Random rng;
+	private ConnectivityGrid grid;
+	private PackedConnectivityGrid packed;
+	private List<NetworkInterface> interfaces;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		RunContext.bind(new RunContext(0));
+		ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, WORLD_SIZE + "," + WORLD_SIZE);
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				ConnectivityGrid.CELL_SIZE_MULT_S, "1");
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_SPEED_S, "1");
+		rng = new Random(1);
+
+		interfaces = new ArrayList<NetworkInterface>();
+		for (int i=0; i < NROF_HOSTS; i++) {
+			interfaces.add(createHost().getInterfaces().get(0));
+		}
+		int key = interfaces.get(0).getInterfaceType().hashCode();
+		/* the hosts register themselves to the ConnectivityGrid before their
+		 * initial location is set, so the grid is updated once like in
+		 * the first world update */
+		grid = ConnectivityGrid.ConnectivityGridFactory(key, RANGE);
+		for (NetworkInterface ni : interfaces) {
+			grid.updateLocation(ni);
+		}
+		packed = PackedConnectivityGrid.getInstance(key, RANGE);
+		packed.addInterfaces(interfaces);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		RunContext.bind(null);
+	}
+
+	private DTNHost createHost() {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(new TestSettings(TestUtils.IFACE_NS)));
+		return new DTNHost(new ArrayList<MessageListener>(), null, "h", li,
+				new ModuleCommunicationBus(),
+				new StationaryMovement(randomCoord()),
+				new PassiveRouter(ts), null, 1);
+	}
+
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * WORLD_SIZE,
+				rng.nextDouble() * WORLD_SIZE);
+	}
+
+	/**
+	 * Moves all the interfaces to new random locations (mostly to other
+	 * cells) and updates both grids
+	 */
+	private void moveAll() {
+		for (NetworkInterface ni : interfaces) {
+			ni.getHost().setLocation(randomCoord());
+			grid.updateLocation(ni);
+			packed.updateLocation(ni);
+		}
+	}
+
+	private Set<NetworkInterface> visited(ConnectivityOptimizer opt,
+			NetworkInterface ni) {
+		final Set<NetworkInterface> set = new HashSet<NetworkInterface>();
+		opt.visitNearInterfaces(ni,
+				new ConnectivityOptimizer.InterfaceVisitor() {
+			public void visit(NetworkInterface other) {
+				set.add(other);
+			}
+		});
+		return set;
+	}
+
+	/**
+	 * Checks that both grids find the same near interfaces for all the
+	 * interfaces
+	 */
+	private void assertSameNearInterfaces() {
+		assertEquals(new HashSet<NetworkInterface>(grid.getAllInterfaces()),
+				new HashSet<NetworkInterface>(packed.getAllInterfaces()));
+		for (NetworkInterface ni : interfaces) {
+			Set<NetworkInterface> expected = new HashSet<NetworkInterface>(
+					grid.getNearInterfaces(ni));
+			assertTrue(expected.contains(ni));
+			assertEquals(expected, new HashSet<NetworkInterface>(
+					packed.getNearInterfaces(ni)));
+			assertEquals(expected, visited(packed, ni));
+			assertEquals(expected, visited(grid, ni));
+		}
+	}
+
+	public void testNearInterfaces() {
+		assertSameNearInterfaces();
+	}
+
+	public void testMovingAcrossCells() {
+		for (int i=0; i < 20; i++) {
+			moveAll();
+			assertSameNearInterfaces();
+		}
+	}
+
+	public void testRemoveInterface() {
+		for (int i=0; i < 20; i++) {
+			/* removes interfaces both from the end and from the middle */
+			NetworkInterface removed = interfaces.remove(
+					i % 3 == 0 ? interfaces.size() - 1 :
+						rng.nextInt(interfaces.size()));
+			grid.removeInterface(removed);
+			packed.removeInterface(removed);
+			assertTrue(packed.getNearInterfaces(removed).isEmpty());
+			assertTrue(visited(packed, removed).isEmpty());
+
+			moveAll();
+			assertSameNearInterfaces();
+		}
+		assertEquals(NROF_HOSTS - 20, packed.getAllInterfaces().size());
+
+		/* a new interface takes the first free slot */
+		NetworkInterface ni = createHost().getInterfaces().get(0);
+		interfaces.add(ni);
+		grid.updateLocation(ni);
+		packed.addInterface(ni);
+		assertSameNearInterfaces();
+	}
+}
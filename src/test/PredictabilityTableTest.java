@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.util.PredictabilityTable;
+import core.SimClock;
+
+/**
+ * Tests for the PredictabilityTable class
+ */
+public class PredictabilityTableTest extends TestCase {
+	private static final double GAMMA = 0.98;
+	private static final double DELTA = 1e-12;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+	}
+
+	public void testAgeing() {
+		PredictabilityTable t = new PredictabilityTable(GAMMA, 30);
+		assertEquals(0.0, t.get(5));
+		t.set(5, 0.75);
+		assertEquals(0.75, t.get(5));
+
+		clock.setTime(60);
+		assertEquals(0.75 * GAMMA * GAMMA, t.get(5), DELTA);
+		t.set(7, 0.5);
+		clock.setTime(90);
+		assertEquals(0.5 * GAMMA, t.get(7), DELTA);
+		assertEquals(0.75 * Math.pow(GAMMA, 3), t.get(5), DELTA);
+
+		/* new gamma is used from the latest ageing on */
+		t.setGamma(0.5);
+		clock.setTime(120);
+		assertEquals(0.5 * GAMMA * 0.5, t.get(7), DELTA);
+
+		/* values are renormalized when the scale gets small */
+		t.setGamma(GAMMA);
+		clock.setTime(120 + 30 * 20000);
+		assertEquals(0.0, t.get(7), DELTA);
+		t.set(7, 0.25);
+		clock.setTime(150 + 30 * 20000);
+		assertEquals(0.25 * GAMMA, t.get(7), DELTA);
+	}
+
+	public void testTransitive() {
+		/* a sparse (large addresses) and a dense table */
+		int[] bases = {0, 100000};
+		for (int base : bases) {
+			clock.setTime(0);
+			PredictabilityTable a = new PredictabilityTable(GAMMA, 30);
+			PredictabilityTable b = new PredictabilityTable(GAMMA, 30);
+			for (int i=0; i < 10; i++) {
+				b.set(base + i, 0.1 * (i + 1));
+			}
+			a.set(base + 3, 0.5);
+			a.set(base + 20, 0.4);
+			clock.setTime(30);
+
+			double pab = 0.6;
+			double expected3 = 0.5 * GAMMA + (1 - 0.5 * GAMMA) * pab * 0.4 *
+				GAMMA * 0.25;
+			a.updateTransitive(b, pab, 0.25, base + 5);
+			assertEquals(expected3, a.get(base + 3), DELTA);
+			assertEquals(pab * 0.1 * GAMMA * 0.25, a.get(base), DELTA);
+			assertEquals(0.0, a.get(base + 5)); // self is not updated
+			assertEquals(0.4 * GAMMA, a.get(base + 20), DELTA);
+			assertEquals(10, a.size());
+
+			PredictabilityTable c = new PredictabilityTable(GAMMA, 30);
+			c.set(base + 3, 0.5);
+			c.updateTransitiveMax(b, pab, 0.25, base + 5);
+			assertEquals(0.5, c.get(base + 3), DELTA);
+			assertEquals(pab * 0.9 * GAMMA * 0.25, c.get(base + 8), DELTA);
+			assertEquals(base + 9, c.getAddresses()[8]);
+		}
+	}
+}
@@ -147,8 +147,9 @@ public class ProphetRouterTest extends AbstractRouterTest {
 		clock.advance(SECONDS_IN_TIME_UNIT / 10);
 		newPred = newPred *	Math.pow(ProphetRouter.GAMMA, 1.0/10);
 
-		assertEquals(newPred, r4.getPredFor(h5));
-		assertEquals(newPred, r5.getPredFor(h4));
+		/* aged lazily from the start, so may differ in the last bits */
+		assertEquals(newPred, r4.getPredFor(h5), 1e-15);
+		assertEquals(newPred, r5.getPredFor(h4), 1e-15);
 	}
 
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.RandomStreams;
+
+/**
+ * Tests for the RandomStreams class
+ */
+public class RandomStreamsTest extends TestCase {
+
+	public void testDeterminism() {
+		RandomStreams s1 = new RandomStreams(42, 0, true);
+		RandomStreams s2 = new RandomStreams(42, 0, true);
+		RandomStreams otherRun = new RandomStreams(42, 1, true);
+		RandomStreams otherSeed = new RandomStreams(43, 0, true);
+
+		double v = s1.uniform(RandomStreams.CONNECT_STREAM, 1, 2, 3);
+		assertEquals(v, s2.uniform(RandomStreams.CONNECT_STREAM, 1, 2, 3));
+		assertFalse(v == otherRun.uniform(RandomStreams.CONNECT_STREAM,
+				1, 2, 3));
+		assertFalse(v == otherSeed.uniform(RandomStreams.CONNECT_STREAM,
+				1, 2, 3));
+		/* the keys are not symmetric */
+		assertFalse(v == s1.uniform(RandomStreams.CONNECT_STREAM, 2, 1, 3));
+		assertFalse(v == s1.uniform(RandomStreams.MOVEMENT_STREAM, 1, 2, 3));
+
+		assertEquals(s1.split(RandomStreams.MOVEMENT_STREAM, 5).nextLong(),
+				s2.split(RandomStreams.MOVEMENT_STREAM, 5).nextLong());
+		assertEquals(s1.random(RandomStreams.MOVEMENT_STREAM, 5).nextInt(),
+				s2.random(RandomStreams.MOVEMENT_STREAM, 5).nextInt());
+		assertFalse(s1.seedOf(RandomStreams.MOVEMENT_STREAM, 5) ==
+				s1.seedOf(RandomStreams.MOVEMENT_STREAM, 6));
+	}
+
+	public void testUniformDistribution() {
+		RandomStreams s = new RandomStreams(0, 0, false);
+		int n = 100000;
+		int[] bins = new int[10];
+		double sum = 0;
+
+		for (int i=0; i < n; i++) {
+			double v = s.uniform(RandomStreams.CONNECT_STREAM, i % 71,
+					i / 71, Double.doubleToLongBits(i * 0.1));
+			assertTrue(v >= 0 && v < 1);
+			bins[(int)(v * bins.length)]++;
+			sum += v;
+		}
+
+		assertEquals(0.5, sum / n, 0.01);
+		for (int count : bins) {
+			assertEquals(n / bins.length, count, n / 100);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+import report.ReportWriter;
+import core.Coord;
+import core.SimError;
+
+/**
+ * Tests for the ReportWriter class
+ */
+public class ReportWriterTest extends TestCase {
+	private static final String NL = System.lineSeparator();
+
+	private Locale defaultLocale;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		defaultLocale = Locale.getDefault();
+		Locale.setDefault(Locale.US);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		Locale.setDefault(defaultLocale);
+	}
+
+	public void testFormatting() {
+		for (boolean async : new boolean[] {false, true}) {
+			StringWriter sw = new StringWriter();
+			ReportWriter w = new ReportWriter(sw, 2, async);
+			Coord c = new Coord(1.234, 5.678);
+
+			w.text("a").text(" ").number(0.1).text(" ").number(42).endLine();
+			w.formatted(1.0/3).text(" ").coord(c).endLine();
+			c.setLocation(0, 0); // value at the time of adding is written
+			w.close();
+
+			assertEquals("a 0.1 42" + NL + "0.33 (1.23,5.68)" + NL,
+					sw.toString());
+		}
+	}
+
+	public void testPrintWriterOutput() {
+		StringWriter sw = new StringWriter();
+		ReportWriter w = new ReportWriter(sw, 4, true);
+		PrintWriter out = new PrintWriter(w);
+
+		w.text("first").endLine();
+		out.println("second");
+		out.printf("%d%n", 3);
+		out.close();
+
+		assertEquals("first" + NL + "second" + NL + "3" + NL, sw.toString());
+	}
+
+	public void testManyChunks() {
+		StringWriter expected = new StringWriter();
+		StringWriter sw = new StringWriter();
+		ReportWriter w = new ReportWriter(sw, 4, true);
+		int nrofLines = ReportWriter.CHUNK_SIZE * ReportWriter.NROF_CHUNKS;
+
+		for (int i=0; i < nrofLines; i++) {
+			w.text("line ").number(i).endLine();
+			expected.write("line " + i + NL);
+			if (i == nrofLines / 2) {
+				w.flush(); // everything so far must be written
+				assertEquals(expected.toString(), sw.toString());
+			}
+		}
+		w.close();
+		assertEquals(expected.toString(), sw.toString());
+
+		// output after close is ignored
+		w.text("ignored").endLine();
+		assertEquals(expected.toString(), sw.toString());
+	}
+
+	public void testFailingTarget() {
+		Writer failing = new StringWriter() {
+			public void write(String str) {
+				throw new IllegalStateException("test failure");
+			}
+		};
+		ReportWriter w = new ReportWriter(failing, 4, true);
+		try {
+			/* more output than fits in the chunks; must not block */
+			for (int i=0; i < ReportWriter.CHUNK_SIZE *
+					ReportWriter.NROF_CHUNKS; i++) {
+				w.text("line ").number(i).endLine();
+			}
+			w.close();
+			fail("the failure of the output thread was not thrown");
+		} catch (SimError e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		/* the later writers of the run still work */
+		StringWriter sw = new StringWriter();
+		ReportWriter other = new ReportWriter(sw, 4, true);
+		other.text("ok").endLine();
+		other.close();
+		assertEquals("ok" + NL, sw.toString());
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.Message;
+import core.RunContext;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Tests for the RunContext class and that run specific state is kept
+ * separate for threads bound to different contexts.
+ */
+public class RunContextTest extends TestCase {
+	private static final double DELTA = 0.00001;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		Message.reset();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		RunContext.bind(null);
+	}
+
+	public void testBind() {
+		RunContext def = RunContext.current();
+		RunContext ctx = new RunContext(3);
+
+		RunContext.bind(ctx);
+		assertSame(ctx, RunContext.current());
+		assertEquals(3, RunContext.current().getRunIndex());
+
+		RunContext.bind(null);
+		assertSame(def, RunContext.current());
+	}
+
+	public void testClockIsPerContext() {
+		SimClock.getInstance().setTime(10);
+
+		RunContext.bind(new RunContext(0));
+		assertEquals(0, SimClock.getTime(), DELTA);
+		SimClock.getInstance().advance(5);
+		assertEquals(5, SimClock.getTime(), DELTA);
+
+		RunContext.bind(null);
+		assertEquals(10, SimClock.getTime(), DELTA);
+	}
+
+	public void testClockInstanceKeepsItsContext() {
+		SimClock clock = SimClock.getInstance();
+		clock.setTime(10);
+
+		RunContext.bind(new RunContext(0));
+		assertNotSame(clock, SimClock.getInstance());
+		SimClock.getInstance().setTime(3);
+		assertEquals(10, clock.currentTime(), DELTA);
+		assertEquals(3, SimClock.getInstance().currentTime(), DELTA);
+	}
+
+	public void testResourcesArePerContext() {
+		Object resource = new Object();
+		RunContext.current().putResource(RunContextTest.class, resource);
+
+		RunContext.bind(new RunContext(0));
+		assertNull(RunContext.current().getResource(RunContextTest.class));
+
+		RunContext.bind(null);
+		assertSame(resource,
+				RunContext.current().getResource(RunContextTest.class));
+		RunContext.current().putResource(RunContextTest.class, null);
+		assertNull(RunContext.current().getResource(RunContextTest.class));
+	}
+
+	public void testMessageIdsArePerContext() {
+		Message m1 = new Message(null, null, "M1", 1);
+		Message m2 = new Message(null, null, "M2", 1);
+		assertEquals(m1.getUniqueId() + 1, m2.getUniqueId());
+
+		RunContext.bind(new RunContext(0));
+		Message m3 = new Message(null, null, "M3", 1);
+		assertEquals(m1.getUniqueId(), m3.getUniqueId());
+	}
+
+	public void testRunIndexIsPerContext() {
+		RunContext ctx = new RunContext(0);
+		Settings.setRunIndex(2);
+
+		RunContext.bind(ctx);
+		Settings.setRunIndex(1);
+		assertEquals(1, ctx.getRunIndex());
+
+		RunContext.bind(null);
+		assertEquals(2, RunContext.current().getRunIndex());
+		Settings.setRunIndex(0);
+	}
+
+	public void testConcurrentThreads() throws Exception {
+		final double[] times = new double[2];
+		Thread[] threads = new Thread[times.length];
+
+		for (int i=0; i<threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					RunContext.bind(new RunContext(index));
+					for (int j=0; j<=index; j++) {
+						SimClock.getInstance().advance(1);
+					}
+					times[index] = SimClock.getTime();
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(1, times[0], DELTA);
+		assertEquals(2, times[1], DELTA);
+		assertEquals(0, SimClock.getTime(), DELTA);
+	}
+}
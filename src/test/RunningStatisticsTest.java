@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.RunningStatistics;
+
+/**
+ * Tests for the RunningStatistics class
+ */
+public class RunningStatisticsTest extends TestCase {
+
+	public void testMoments() {
+		RunningStatistics rs = new RunningStatistics(0.5);
+		assertTrue(Double.isNaN(rs.getMean()));
+		assertTrue(Double.isNaN(rs.getQuantile(0)));
+
+		double[] values = {4, 7, 13, 16};
+		for (double v : values) {
+			rs.add(v);
+		}
+		assertEquals(4, rs.getCount());
+		assertEquals(10.0, rs.getMean(), 1e-12);
+		assertEquals(30.0, rs.getVariance(), 1e-12);
+		assertEquals(4.0, rs.getMin());
+		assertEquals(16.0, rs.getMax());
+		assertEquals(7.0, rs.getQuantile(0)); // nearest rank
+
+		/* t(0.975, 3) = 3.182 */
+		assertEquals(3.182 * Math.sqrt(30) / 2,
+				rs.getConfidenceHalfWidth(0.95), 0.01);
+	}
+
+	public void testDistributionQuantiles() {
+		assertEquals(1.95996, RunningStatistics.normalQuantile(0.975), 1e-4);
+		assertEquals(-2.32635, RunningStatistics.normalQuantile(0.01), 1e-4);
+		assertEquals(12.706, RunningStatistics.tQuantile(0.975, 1), 1e-3);
+		assertEquals(4.303, RunningStatistics.tQuantile(0.975, 2), 1e-3);
+		assertEquals(2.228, RunningStatistics.tQuantile(0.975, 10), 1e-3);
+		assertEquals(2.576, RunningStatistics.tQuantile(0.995, 100000), 1e-3);
+	}
+
+	public void testQuantileEstimates() {
+		RunningStatistics rs = new RunningStatistics(0.05, 0.5, 0.95);
+		Random rng = new Random(1);
+		for (int i=0; i < 100000; i++) {
+			rs.add(rng.nextDouble() * 100);
+		}
+		assertEquals(5, rs.getQuantile(0), 0.5);
+		assertEquals(50, rs.getQuantile(1), 0.5);
+		assertEquals(95, rs.getQuantile(2), 0.5);
+		assertEquals(50, rs.getMean(), 0.5);
+		assertEquals(100 * 100 / 12.0, rs.getVariance(), 20);
+	}
+}
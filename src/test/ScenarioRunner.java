@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+import ui.DTNSimTextUI;
+import core.RunContext;
+import core.SimScenario;
+
+/**
+ * Runs a small simulation scenario from start to end, each run in a run
+ * context of its own, and collects the output of the reports. Used for
+ * checking that optimizations don't change the results of a simulation.
+ */
+public class ScenarioRunner {
+	private TestSettings ts;
+	private File reportDir;
+	private RunContext lastContext;
+
+	/**
+	 * Creates a runner for a scenario of 60 randomly moving hosts (in two
+	 * groups) that exchange messages with epidemic routing. The event log,
+	 * connectivity and message statistics reports are written to a new
+	 * temporary directory.
+	 * @throws IOException if the report directory can't be created
+	 */
+	public ScenarioRunner() throws IOException {
+		this.reportDir = Files.createTempDirectory("scentest").toFile();
+		this.ts = new TestSettings();
+		String sns = SimScenario.SCENARIO_NS + ".";
+
+		ts.putSetting(sns + SimScenario.NAME_S, "run");
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "2");
+		ts.putSetting(sns + SimScenario.END_TIME_S, "8000");
+		ts.putSetting(sns + SimScenario.UP_INT_S, "1");
+		ts.putSetting("MovementModel.rngSeed", "1");
+		ts.putSetting("MovementModel.worldSize", "200,200");
+		ts.putSetting("Optimization.cellSizeMult", "1");
+
+		ts.putSetting("btInterface.type", "SimpleBroadcastInterface");
+		ts.putSetting("btInterface.transmitSpeed", "250k");
+		ts.putSetting("btInterface.transmitRange", "20");
+
+		ts.putSetting("Group.movementModel", "RandomWaypoint");
+		ts.putSetting("Group.router", "EpidemicRouter");
+		ts.putSetting("Group.bufferSize", "5M");
+		ts.putSetting("Group.waitTime", "0, 120");
+		ts.putSetting("Group.speed", "0.5, 1.5");
+		ts.putSetting("Group.msgTtl", "300");
+		ts.putSetting("Group.nrofInterfaces", "1");
+		ts.putSetting("Group.interface1", "btInterface");
+		ts.putSetting("Group.nrofHosts", "30");
+		ts.putSetting("Group.getVirusProbability", "1");
+		ts.putSetting("Group1.groupID", "p");
+		ts.putSetting("Group2.groupID", "c");
+		ts.putSetting("Group2.speed", "2, 5");
+
+		ts.putSetting("Events.nrof", "1");
+		ts.putSetting("Events1.class", "MessageEventGenerator");
+		ts.putSetting("Events1.interval", "10, 20");
+		ts.putSetting("Events1.size", "50k, 200k");
+		ts.putSetting("Events1.hosts", "0, 59");
+		ts.putSetting("Events1.prefix", "M");
+
+		ts.putSetting("Report.reportDir", reportDir.getPath());
+		ts.putSetting("Report.nrofReports", "3");
+		ts.putSetting("Report.report1", "EventLogReport");
+		ts.putSetting("Report.report2", "ConnectivityONEReport");
+		ts.putSetting("Report.report3", "MessageStatsReport");
+	}
+
+	/**
+	 * Puts a new setting for the following runs or overrides an existing one
+	 * @param key Full name of the setting
+	 * @param value Value of the setting
+	 */
+	public void putSetting(String key, String value) {
+		ts.putSetting(key, value);
+	}
+
+	/**
+	 * Runs the scenario in a new run context
+	 * @param name Name of the run; the reports are written to a
+	 * subdirectory with this name
+	 * @return The contents of the report files by the file names
+	 * @throws IOException if the reports can't be read
+	 */
+	public Map<String, String> run(String name) throws IOException {
+		RunContext context = new RunContext(0);
+		context.setReportSubDir(name);
+		RunContext.bind(context);
+		try {
+			new DTNSimTextUI().start();
+		} finally {
+			RunContext.bind(null);
+		}
+		this.lastContext = context;
+
+		Map<String, String> reports = new TreeMap<String, String>();
+		for (File f : new File(reportDir, name).listFiles()) {
+			reports.put(f.getName(),
+					new String(Files.readAllBytes(f.toPath()), "UTF-8"));
+		}
+		return reports;
+	}
+
+	/**
+	 * Returns the run context of the latest run. The context contains the
+	 * state of the simulation at its end.
+	 * @return The run context of the latest run
+	 */
+	public RunContext getLastContext() {
+		return this.lastContext;
+	}
+
+	/**
+	 * Deletes the reports of all the runs
+	 */
+	public void delete() {
+		for (File dir : reportDir.listFiles()) {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+		reportDir.delete();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.InfectionListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.RandomStreams;
+import core.SeirEngine;
+import core.SimClock;
+
+/**
+ * Tests for the SeirEngine class
+ */
+public class SeirEngineTest extends TestCase {
+	private TestSettings ts;
+	private SimClock clock;
+	private List<DTNHost> hosts;
+	private List<String> events;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		RandomStreams.reset();
+		clock = SimClock.getInstance();
+		ts = new TestSettings();
+		ts.putSetting(SeirEngine.SEIR_NS + "." + SeirEngine.SEED_HOSTS_S,
+				"0,1");
+		ts.putSetting(SeirEngine.SEIR_NS + "." + SeirEngine.SEED_TIME_S, "10");
+		ts.putSetting(SeirEngine.SEIR_NS + "." +
+				SeirEngine.INCUBATION_TIME_S, "5");
+		ts.putSetting(SeirEngine.SEIR_NS + "." +
+				SeirEngine.INFECTIOUS_TIME_S, "20");
+
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i < 3; i++) {
+			hosts.add(new DTNHost(null, null, "h",
+					new ArrayList<NetworkInterface>(),
+					new ModuleCommunicationBus(),
+					new StationaryMovement(new Coord(0,0)),
+					new PassiveRouter(ts), null, 0));
+		}
+		events = new ArrayList<String>();
+	}
+
+	private SeirEngine createEngine() {
+		SeirEngine engine = new SeirEngine(hosts);
+		engine.addInfectionListener(new InfectionListener() {
+			public void hostExposed(DTNHost host, DTNHost infector,
+					String chainId) {
+				events.add("E" + host.getAddress() + "<" + (infector == null ?
+						"-" : infector.getAddress()) + ":" + chainId);
+			}
+			public void hostInfectious(DTNHost host) {
+				events.add("I" + host.getAddress());
+			}
+			public void hostRecovered(DTNHost host) {
+				events.add("R" + host.getAddress());
+			}
+		});
+		return engine;
+	}
+
+	private void advance(SeirEngine engine, double time) {
+		clock.setTime(time);
+		engine.updated(hosts);
+	}
+
+	public void testTransitions() {
+		SeirEngine engine = createEngine();
+		DTNHost h0 = hosts.get(0);
+		DTNHost h1 = hosts.get(1);
+		DTNHost h2 = hosts.get(2);
+
+		assertEquals(3, engine.getNrofHosts(SeirEngine.SUSCEPTIBLE));
+		advance(engine, 9);
+		assertTrue(events.isEmpty());
+
+		advance(engine, 10);
+		assertEquals(SeirEngine.EXPOSED, engine.getState(h0));
+		/* exposed hosts don't transmit */
+		engine.hostsConnected(h0, h1);
+		assertEquals(SeirEngine.SUSCEPTIBLE, engine.getState(h1));
+
+		advance(engine, 15);
+		assertEquals(SeirEngine.INFECTIOUS, engine.getState(h0));
+		engine.hostsConnected(h1, h0);
+		assertEquals(SeirEngine.EXPOSED, engine.getState(h1));
+		engine.hostsConnected(h2, h1);
+		assertEquals(SeirEngine.SUSCEPTIBLE, engine.getState(h2));
+
+		advance(engine, 20);
+		advance(engine, 35);
+		assertEquals(SeirEngine.RECOVERED, engine.getState(h0));
+		assertEquals(SeirEngine.INFECTIOUS, engine.getState(h1));
+		/* recovered hosts are not infected again */
+		engine.hostsConnected(h1, h0);
+		assertEquals(SeirEngine.RECOVERED, engine.getState(h0));
+
+		advance(engine, 100);
+		assertEquals(2, engine.getNrofHosts(SeirEngine.RECOVERED));
+		assertEquals(1, engine.getNrofHosts(SeirEngine.SUSCEPTIBLE));
+
+		String[] expected = {"E0<-:M1", "I0", "E1<0:M1", "I1", "R0", "R1"};
+		assertEquals(expected.length, events.size());
+		for (int i=0; i < expected.length; i++) {
+			assertEquals(expected[i], events.get(i));
+		}
+	}
+
+	public void testTransmissionProbability() {
+		ts.putSetting(SeirEngine.SEIR_NS + "." +
+				SeirEngine.TRANSMISSION_PROB_S, "0");
+		SeirEngine engine = createEngine();
+		advance(engine, 15);
+		assertEquals(SeirEngine.INFECTIOUS, engine.getState(hosts.get(0)));
+		engine.hostsConnected(hosts.get(0), hosts.get(1));
+		assertEquals(SeirEngine.SUSCEPTIBLE, engine.getState(hosts.get(1)));
+	}
+
+	public void testTransitionTimeExposure() {
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_RANGE_S, "1");
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_SPEED_S, "1");
+		/* the hosts are created again with interfaces */
+		DTNHost.reset();
+		hosts.clear();
+		List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
+		for (int i=0; i < 2; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(new TestInterface(new TestSettings(TestUtils.IFACE_NS)));
+			hosts.add(new DTNHost(null, null, "h", li,
+					new ModuleCommunicationBus(),
+					new StationaryMovement(new Coord(0,0)),
+					new PassiveRouter(ts), null, 0));
+			interfaces.add(hosts.get(i).getInterfaces().get(0));
+		}
+		SeirEngine engine = createEngine();
+		interfaces.get(0).connect(interfaces.get(1));
+
+		/* h0 becomes infectious at 15 and exposes h1 at the same time
+		 * although the engine is updated only at 17 */
+		advance(engine, 10);
+		advance(engine, 17);
+		assertEquals(SeirEngine.EXPOSED, engine.getState(hosts.get(1)));
+		advance(engine, 19);
+		assertEquals(SeirEngine.EXPOSED, engine.getState(hosts.get(1)));
+		advance(engine, 20);
+		assertEquals(SeirEngine.INFECTIOUS, engine.getState(hosts.get(1)));
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.util.TimingWheel;
+
+/**
+ * Tests for the TimingWheel class
+ */
+public class TimingWheelTest extends TestCase {
+
+	public void testExpiryOrder() {
+		TimingWheel wheel = new TimingWheel(1.0, 0);
+		TimingWheel.Timer t1 = new TimingWheel.Timer();
+		TimingWheel.Timer t2 = new TimingWheel.Timer();
+		TimingWheel.Timer t3 = new TimingWheel.Timer();
+		List<TimingWheel.Timer> expired = new ArrayList<TimingWheel.Timer>();
+
+		wheel.schedule(t1, 10.5);
+		wheel.schedule(t2, 5000);
+		wheel.schedule(t3, 1e9); // beyond the range of the wheel
+		assertEquals(3, wheel.size());
+
+		wheel.advance(9.9, expired);
+		assertEquals(0, expired.size());
+		wheel.advance(10.0, expired); // same tick as t1
+		assertEquals(1, expired.size());
+		assertSame(t1, expired.get(0));
+		assertFalse(t1.isScheduled());
+		assertEquals(10.5, t1.getTime());
+		expired.clear();
+
+		wheel.cancel(t2);
+		assertFalse(t2.isScheduled());
+		wheel.advance(1e6, expired);
+		assertEquals(0, expired.size());
+		assertEquals(1, wheel.size());
+
+		wheel.advance(1e9, expired);
+		assertEquals(1, expired.size());
+		assertSame(t3, expired.get(0));
+		assertEquals(0, wheel.size());
+
+		/* timers in the past are returned in the next advance */
+		wheel.schedule(t1, 5);
+		wheel.advance(1e9, expired);
+		assertSame(t1, expired.get(1));
+	}
+
+	public void testRandomTimers() {
+		Random rng = new Random(42);
+		TimingWheel wheel = new TimingWheel(1.0, 0);
+		TimingWheel.Timer[] timers = new TimingWheel.Timer[500];
+		List<TimingWheel.Timer> expired = new ArrayList<TimingWheel.Timer>();
+		double time = 0;
+
+		for (int i=0; i < timers.length; i++) {
+			timers[i] = new TimingWheel.Timer();
+		}
+
+		for (int round=0; round < 2000; round++) {
+			/* schedule, reschedule and cancel random timers */
+			for (int i=0; i < 5; i++) {
+				TimingWheel.Timer t = timers[rng.nextInt(timers.length)];
+				if (rng.nextInt(4) == 0) {
+					wheel.cancel(t);
+				}
+				else {
+					wheel.schedule(t, time + rng.nextDouble() *
+							(rng.nextBoolean() ? 100 : 500000));
+				}
+			}
+
+			time += rng.nextDouble() * 300;
+			expired.clear();
+			wheel.advance(time, expired);
+
+			int scheduled = 0;
+			for (TimingWheel.Timer t : timers) {
+				boolean due = Math.floor(t.getTime()) <= Math.floor(time);
+				if (expired.contains(t)) {
+					assertTrue("Early expiry", due);
+				}
+				else if (t.isScheduled()) {
+					assertFalse("Missed expiry", due);
+					scheduled++;
+				}
+			}
+			assertEquals(scheduled, wheel.size());
+		}
+	}
+
+	public void testSerialization() throws Exception {
+		TimingWheel wheel = new TimingWheel(1.0, 0);
+		TimingWheel.Timer[] timers = new TimingWheel.Timer[4];
+		List<TimingWheel.Timer> expired = new ArrayList<TimingWheel.Timer>();
+		double[] times = {50, 5, 5000, 5};
+		for (int i=0; i < timers.length; i++) {
+			timers[i] = new TimingWheel.Timer();
+			wheel.schedule(timers[i], times[i]);
+		}
+		wheel.advance(2, expired);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(wheel);
+		out.writeObject(timers);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		TimingWheel copy = (TimingWheel)in.readObject();
+		TimingWheel.Timer[] copies = (TimingWheel.Timer[])in.readObject();
+
+		assertEquals(4, copy.size());
+		/* the copy expires the same timers in the same order */
+		List<TimingWheel.Timer> copyExpired =
+			new ArrayList<TimingWheel.Timer>();
+		wheel.cancel(timers[0]);
+		copy.cancel(copies[0]);
+		for (double time : new double[] {5, 1e6}) {
+			expired.clear();
+			copyExpired.clear();
+			wheel.advance(time, expired);
+			copy.advance(time, copyExpired);
+			assertEquals(expired.size(), copyExpired.size());
+			for (int i=0; i < expired.size(); i++) {
+				int index = Arrays.asList(timers).indexOf(
+						expired.get(i));
+				assertSame(copies[index], copyExpired.get(i));
+			}
+		}
+		assertSame(timers[2], expired.get(0));
+		assertEquals(0, copy.size());
+	}
+}
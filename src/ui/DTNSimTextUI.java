@@ -33,6 +33,7 @@ public class DTNSimTextUI extends DTNSimUI {
 				return;
 			}
 			simTime = SimClock.getTime();
+			checkpointIfDue();
 			this.update(false);
 		}
 
@@ -8,14 +8,18 @@ import java.util.Vector;
 
 import report.Report;
 import core.ApplicationListener;
+import core.Checkpoint;
 import core.ConnectionListener;
+import core.InfectionListener;
 import core.MessageListener;
+import core.Metrics;
 import core.MovementListener;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import core.SimScenario;
+import core.TimedListener;
 import core.UpdateListener;
 import core.World;
 
@@ -56,8 +60,12 @@ public abstract class DTNSimUI {
 	protected boolean simCancelled;
 	/** Scenario of the current simulation */
 	protected SimScenario scen;
-	/** simtime of last UI update */
-	protected double lastUpdate;
+	/** simtime of last UI update (read also by the GUI's event thread) */
+	protected volatile double lastUpdate;
+	/** simtime when a checkpoint is saved (or NaN for no checkpoint) */
+	protected double checkpointTime;
+	/** file where the checkpoint is saved to */
+	protected String checkpointFile;
 
 	/**
 	 * Constructor.
@@ -67,6 +75,7 @@ public abstract class DTNSimUI {
 		this.reports = new Vector<Report>();
 		this.simDone = false;
 		this.simCancelled = false;
+		this.checkpointTime = Double.NaN;
 	}
 
 	/**
@@ -93,7 +102,14 @@ public abstract class DTNSimUI {
 			
 			// set time before instantiate scenario
 			double warmupTime = 0;
-			if (settings.contains(MM_WARMUP_S)) {
+			String resumeS = Checkpoint.CHECKPOINT_NS + "." +
+				Checkpoint.RESUME_S;
+			if (settings.contains(resumeS)) {
+				// the scenario (after the warmup) is read from the checkpoint
+				Checkpoint.restore(settings.valueFillString(
+						settings.getSetting(resumeS)));
+			}
+			else if (settings.contains(MM_WARMUP_S)) {
 				warmupTime = settings.getDouble(MM_WARMUP_S);
 				if (warmupTime > 0) {
 					SimClock c = SimClock.getInstance();
@@ -112,6 +128,14 @@ public abstract class DTNSimUI {
 
 			this.world = this.scen.getWorld();
 			world.warmupMovementModel(warmupTime);
+
+			settings.setNameSpace(Checkpoint.CHECKPOINT_NS);
+			if (settings.contains(Checkpoint.SAVE_TIME_S)) {
+				this.checkpointTime = settings.getDouble(
+						Checkpoint.SAVE_TIME_S);
+				this.checkpointFile = settings.valueFillString(
+						settings.getSetting(Checkpoint.FILE_S));
+			}
 		}
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
@@ -125,34 +149,56 @@ public abstract class DTNSimUI {
 		}
 	}
 
+	/**
+	 * Saves the checkpoint if the simulation time has reached the
+	 * checkpoint's time (and it hasn't been saved yet)
+	 */
+	protected void checkpointIfDue() {
+		if (SimClock.getTime() >= this.checkpointTime) {
+			Checkpoint.save(this.checkpointFile);
+			this.checkpointTime = Double.NaN;
+		}
+	}
+
 	/**
 	 * Runs maintenance jobs that are needed before exiting.
 	 */
 	public void done() {
+		this.scen.done();
 		for (Report r : this.reports) {
 			r.done();
 		}
 	}
 
 	/**
-	 * Adds a new report for simulator
+	 * Adds a new report for simulator. If the metrics are enabled, the
+	 * report's listener calls are timed (see {@link TimedListener}).
 	 * @param r Report to add
 	 */
 	protected void addReport(Report r) {
+		Object l = r;
+		Metrics metrics = scen.getMetrics();
+		if (metrics != null) {
+			l = new TimedListener(r, metrics.getReportTimer(r.getClass()));
+		}
+
 		if (r instanceof MessageListener) {
-			scen.addMessageListener((MessageListener)r);
+			scen.addMessageListener((MessageListener)l);
 		}
 		if (r instanceof ConnectionListener) {
-			scen.addConnectionListener((ConnectionListener)r);
+			scen.addConnectionListener((ConnectionListener)l);
 		}
 		if (r instanceof MovementListener) {
-			scen.addMovementListener((MovementListener)r);
+			scen.addMovementListener((MovementListener)l);
 		}
 		if (r instanceof UpdateListener) {
-			scen.addUpdateListener((UpdateListener)r);
+			scen.addUpdateListener((UpdateListener)l);
 		}
 		if (r instanceof ApplicationListener) {
-			scen.addApplicationListener((ApplicationListener)r);
+			scen.addApplicationListener((ApplicationListener)l);
+		}
+		if (r instanceof InfectionListener) {
+			scen.addInfectionListener((InfectionListener)l);
 		}
 
 		this.reports.add(r);
@@ -4,6 +4,7 @@
  */
 package util;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -15,7 +16,8 @@ import core.SimClock;
  * Object of this class tell the models when a node belonging
  * to a certain group is active and when not.
  */
-public class ActivenessHandler {
+public class ActivenessHandler implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * <P>Active times -setting id ({@value})</P>
@@ -101,6 +103,15 @@ public class ActivenessHandler {
 		return timesList;
 	}
 
+	/**
+	 * Returns true if neither active times nor active periods are defined,
+	 * i.e., if {@link #isActive()} always returns true
+	 * @return true if the node is active all the time
+	 */
+	public boolean isAlwaysActive() {
+		return this.activeTimes == null && this.activePeriods == null;
+	}
+
 	/**
 	 * Returns true if node should be active at the moment
 	 * @return true if node should be active at the moment
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative values with primitive counters. The bins are
+ * either of equal width or logarithmic: with logarithmic bins the first bin
+ * is [0, width) and the following bins grow by a constant factor so that
+ * there are a given number of bins per decade. Logarithmic bins keep the
+ * histogram small even if the values span many orders of magnitude.
+ */
+public class Histogram {
+	private final double binWidth;
+	private final int binsPerDecade;
+	private long[] counts;
+	/** index of the highest bin with values (-1 if none) */
+	private int lastBin;
+
+	/**
+	 * Creates a histogram with bins of equal width
+	 * @param binWidth Width of the bins
+	 */
+	public Histogram(double binWidth) {
+		this(binWidth, 0);
+	}
+
+	/**
+	 * Creates a histogram
+	 * @param binWidth Width of the (first) bin
+	 * @param binsPerDecade Number of logarithmic bins per decade or 0 for
+	 * bins of equal width
+	 */
+	public Histogram(double binWidth, int binsPerDecade) {
+		this.binWidth = binWidth;
+		this.binsPerDecade = binsPerDecade;
+		this.counts = new long[16];
+		this.lastBin = -1;
+	}
+
+	/**
+	 * Adds a value to the histogram
+	 * @param value The value
+	 */
+	public void add(double value) {
+		int bin = getBin(value);
+		if (bin >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(bin + 1,
+					2 * counts.length));
+		}
+		counts[bin]++;
+		lastBin = Math.max(lastBin, bin);
+	}
+
+	/**
+	 * Returns the index of the bin of a value
+	 * @param value The value
+	 * @return Index of the bin
+	 */
+	public int getBin(double value) {
+		if (binsPerDecade == 0) {
+			return (int)(value / binWidth);
+		}
+		if (value < binWidth) {
+			return 0;
+		}
+		return 1 + (int)(binsPerDecade * Math.log10(value / binWidth));
+	}
+
+	/**
+	 * Returns the smallest value of a bin
+	 * @param bin Index of the bin
+	 * @return The lower bound of the bin
+	 */
+	public double getLowerBound(int bin) {
+		if (binsPerDecade == 0) {
+			return bin * binWidth;
+		}
+		if (bin == 0) {
+			return 0;
+		}
+		return binWidth * Math.pow(10, (bin - 1) / (double)binsPerDecade);
+	}
+
+	/**
+	 * Returns the number of values in a bin
+	 * @param bin Index of the bin
+	 * @return The number of values
+	 */
+	public long getCount(int bin) {
+		return bin < counts.length ? counts[bin] : 0;
+	}
+
+	/**
+	 * Returns the index of the highest bin that has values
+	 * @return Index of the highest bin or -1 if there are no values
+	 */
+	public int getLastBin() {
+		return this.lastBin;
+	}
+
+	/**
+	 * Returns true if the bins are logarithmic
+	 * @return true if the bins are logarithmic
+	 */
+	public boolean isLogarithmic() {
+		return this.binsPerDecade > 0;
+	}
+}
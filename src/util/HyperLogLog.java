@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+
+/**
+ * <P>
+ * HyperLogLog estimate of the number of distinct values in a stream
+ * (Flajolet et al., 2007). The sketch takes 2<sup>precision</sup> bytes
+ * regardless of the number of values and the relative standard error of
+ * the estimate is about 1.04/sqrt(2<sup>precision</sup>) (e.g., 3.3% with
+ * precision 10). Small cardinalities are estimated with linear counting,
+ * so they are (nearly) exact.</P>
+ */
+public class HyperLogLog implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Smallest allowed precision ({@value}) */
+	public static final int MIN_PRECISION = 4;
+	/** Largest allowed precision ({@value}) */
+	public static final int MAX_PRECISION = 16;
+
+	private final byte[] registers;
+	private final int precision;
+
+	/**
+	 * Creates an empty sketch
+	 * @param precision Number of bits used to select the register
+	 * ({@link #MIN_PRECISION} - {@link #MAX_PRECISION})
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("Invalid precision " +
+					precision + " (must be " + MIN_PRECISION + "-" +
+					MAX_PRECISION + ")");
+		}
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Adds a value to the sketch
+	 * @param value The value
+	 */
+	public void add(long value) {
+		long hash = LongHashSet.mix(value);
+		int index = (int)(hash >>> (64 - precision));
+		long rest = hash << precision;
+		int rank = rest == 0 ? 64 - precision + 1 :
+			Long.numberOfLeadingZeros(rest) + 1;
+		if (rank > registers[index]) {
+			registers[index] = (byte)rank;
+		}
+	}
+
+	/**
+	 * Returns the estimated number of distinct values added to the sketch
+	 * @return the estimated number of distinct values
+	 */
+	public double estimate() {
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte r : registers) {
+			sum += 1.0 / (1L << r);
+			if (r == 0) {
+				zeros++;
+			}
+		}
+
+		double e = alpha(m) * m * m / sum;
+		if (e <= 2.5 * m && zeros > 0) {
+			return m * Math.log((double)m / zeros); // linear counting
+		}
+		return e;
+	}
+
+	private static double alpha(int m) {
+		switch (m) {
+		case 16: return 0.673;
+		case 32: return 0.697;
+		case 64: return 0.709;
+		default: return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+}
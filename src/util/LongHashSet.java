@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Set of primitive long values. Uses open addressing with linear probing
+ * in a single array, so adding a value doesn't create any objects (except
+ * when the table grows) and the memory use is 16-32 bytes per value.
+ */
+public class LongHashSet implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** marks an empty slot in the table */
+	private static final long EMPTY = 0;
+
+	private long[] table;
+	private int mask;
+	private int size;
+	/** is the value {@link #EMPTY} in the set */
+	private boolean containsEmpty;
+
+	/**
+	 * Creates an empty set
+	 */
+	public LongHashSet() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty set with room for the given number of values
+	 * @param capacity The expected number of values
+	 */
+	public LongHashSet(int capacity) {
+		int n = 16;
+		while (n < 2 * capacity) {
+			n <<= 1;
+		}
+		this.table = new long[n];
+		this.mask = n - 1;
+	}
+
+	/**
+	 * Adds a value to the set
+	 * @param value The value to add
+	 * @return true if the value was not in the set before
+	 */
+	public boolean add(long value) {
+		if (value == EMPTY) {
+			if (containsEmpty) {
+				return false;
+			}
+			containsEmpty = true;
+			size++;
+			return true;
+		}
+
+		int i = slot(value);
+		while (table[i] != EMPTY) {
+			if (table[i] == value) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		table[i] = value;
+		size++;
+		if (2 * size > table.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the value is in the set
+	 * @param value The value to look for
+	 * @return true if the value is in the set
+	 */
+	public boolean contains(long value) {
+		if (value == EMPTY) {
+			return containsEmpty;
+		}
+
+		int i = slot(value);
+		while (table[i] != EMPTY) {
+			if (table[i] == value) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of values in the set
+	 * @return the number of values in the set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Removes all values from the set
+	 */
+	public void clear() {
+		Arrays.fill(table, EMPTY);
+		this.size = 0;
+		this.containsEmpty = false;
+	}
+
+	private int slot(long value) {
+		return (int)mix(value) & mask;
+	}
+
+	/**
+	 * Doubles the size of the table
+	 */
+	private void grow() {
+		long[] old = this.table;
+		this.table = new long[old.length * 2];
+		this.mask = table.length - 1;
+		for (long value : old) {
+			if (value != EMPTY) {
+				int i = slot(value);
+				while (table[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				table[i] = value;
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of a value (the finalizer of the SplitMix64
+	 * generator)
+	 * @param value The value
+	 * @return The mixed value
+	 */
+	public static long mix(long value) {
+		long z = value;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
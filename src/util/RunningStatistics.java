@@ -0,0 +1,325 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * <P>
+ * Streaming statistics of a sequence of values. The mean and variance are
+ * updated with Welford's method and the quantiles are estimated with the
+ * P<sup>2</sup> algorithm (Jain &amp; Chlamtac, 1985), so the memory use
+ * doesn't grow with the number of values and adding a value takes constant
+ * time.</P>
+ *
+ * <P>Also gives the Student's t confidence interval of the mean.</P>
+ */
+public class RunningStatistics {
+	private long count;
+	private double mean;
+	/** sum of the squared differences from the mean */
+	private double m2;
+	private double min;
+	private double max;
+	private final double[] probabilities;
+	private final P2Quantile[] quantiles;
+
+	/**
+	 * Creates new statistics
+	 * @param probabilities Probabilities (between 0 and 1) of the quantiles
+	 * to estimate (e.g., 0.5 for the median)
+	 */
+	public RunningStatistics(double ... probabilities) {
+		this.probabilities = probabilities.clone();
+		this.quantiles = new P2Quantile[probabilities.length];
+		for (int i=0; i < probabilities.length; i++) {
+			if (probabilities[i] <= 0 || probabilities[i] >= 1) {
+				throw new IllegalArgumentException("Invalid quantile " +
+						probabilities[i]);
+			}
+			quantiles[i] = new P2Quantile(probabilities[i]);
+		}
+		this.min = Double.NaN;
+		this.max = Double.NaN;
+	}
+
+	/**
+	 * Adds a value to the statistics
+	 * @param value The value to add
+	 */
+	public void add(double value) {
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		if (count == 1) {
+			min = max = value;
+		}
+		else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		for (P2Quantile q : quantiles) {
+			q.add(value);
+		}
+	}
+
+	/**
+	 * Returns the number of values
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the mean of the values
+	 * @return the mean or NaN if there are no values
+	 */
+	public double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+
+	/**
+	 * Returns the (sample) variance of the values
+	 * @return the variance or NaN if there are less than two values
+	 */
+	public double getVariance() {
+		return count > 1 ? m2 / (count - 1) : Double.NaN;
+	}
+
+	/**
+	 * Returns the (sample) standard deviation of the values
+	 * @return the standard deviation or NaN if there are less than two values
+	 */
+	public double getStdDev() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * Returns the smallest value
+	 * @return the smallest value or NaN if there are no values
+	 */
+	public double getMin() {
+		return this.min;
+	}
+
+	/**
+	 * Returns the largest value
+	 * @return the largest value or NaN if there are no values
+	 */
+	public double getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Returns the probabilities of the estimated quantiles
+	 * @return the probabilities given in the constructor
+	 */
+	public double[] getQuantileProbabilities() {
+		return this.probabilities.clone();
+	}
+
+	/**
+	 * Returns the estimate of a quantile
+	 * @param index Index of the quantile's probability in the constructor's
+	 * arguments
+	 * @return the estimate or NaN if there are no values
+	 */
+	public double getQuantile(int index) {
+		return quantiles[index].get();
+	}
+
+	/**
+	 * Returns the half width of the confidence interval of the mean
+	 * @param confidence The confidence level (e.g., 0.95)
+	 * @return the half width or NaN if there are less than two values
+	 */
+	public double getConfidenceHalfWidth(double confidence) {
+		if (count < 2) {
+			return Double.NaN;
+		}
+		double t = tQuantile((1 + confidence) / 2, count - 1);
+		return t * getStdDev() / Math.sqrt(count);
+	}
+
+	/**
+	 * Returns the quantile of Student's t distribution. Exact for one and
+	 * two degrees of freedom and a Cornish-Fisher approximation (relative
+	 * error below 0.1% for the usual confidence levels) otherwise.
+	 * @param p The probability
+	 * @param df Degrees of freedom
+	 * @return the quantile
+	 */
+	public static double tQuantile(double p, long df) {
+		if (df == 1) {
+			return Math.tan(Math.PI * (p - 0.5));
+		}
+		if (df == 2) {
+			return (2 * p - 1) / Math.sqrt(2 * p * (1 - p));
+		}
+		double z = normalQuantile(p);
+		double z2 = z * z;
+		double g1 = (z2 + 1) * z / 4;
+		double g2 = ((5 * z2 + 16) * z2 + 3) * z / 96;
+		double g3 = (((3 * z2 + 19) * z2 + 17) * z2 - 15) * z / 384;
+		double g4 = ((((79 * z2 + 776) * z2 + 1482) * z2 - 1920) * z2 - 945) *
+			z / 92160;
+		double v = df;
+		return z + g1 / v + g2 / (v * v) + g3 / (v * v * v) +
+			g4 / (v * v * v * v);
+	}
+
+	/**
+	 * Returns the quantile of the standard normal distribution (Acklam's
+	 * rational approximation, relative error below 1.2e-9)
+	 * @param p The probability (between 0 and 1)
+	 * @return the quantile
+	 */
+	public static double normalQuantile(double p) {
+		final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02,
+				-2.759285104469687e+02, 1.383577518672690e+02,
+				-3.066479806614716e+01, 2.506628277459239e+00};
+		final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02,
+				-1.556989798598866e+02, 6.680131188771972e+01,
+				-1.328068155288572e+01};
+		final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01,
+				-2.400758277161838e+00, -2.549732539343734e+00,
+				4.374664141464968e+00, 2.938163982698783e+00};
+		final double[] d = {7.784695709041462e-03, 3.224671290700398e-01,
+				2.445134137142996e+00, 3.754408661907416e+00};
+		final double pLow = 0.02425;
+
+		if (p < pLow || p > 1 - pLow) {
+			double q = Math.sqrt(-2 * Math.log(p < pLow ? p : 1 - p));
+			double x = (((((c[0]*q + c[1])*q + c[2])*q + c[3])*q + c[4])*q +
+					c[5]) / ((((d[0]*q + d[1])*q + d[2])*q + d[3])*q + 1);
+			return p < pLow ? x : -x;
+		}
+		double q = p - 0.5;
+		double r = q * q;
+		return (((((a[0]*r + a[1])*r + a[2])*r + a[3])*r + a[4])*r + a[5])*q /
+			(((((b[0]*r + b[1])*r + b[2])*r + b[3])*r + b[4])*r + 1);
+	}
+
+	/**
+	 * P<sup>2</sup> estimator of a single quantile. The first values are
+	 * kept so the quantile is exact for short sequences. After that, five
+	 * markers are initialized from the sorted values and their heights are
+	 * adjusted with piecewise-parabolic interpolation.
+	 */
+	private static class P2Quantile {
+		/** number of values after which the estimation starts */
+		private static final int EXACT_LIMIT = 64;
+		private final double p;
+		/** the first values (or null after the estimation has started) */
+		private double[] values = new double[EXACT_LIMIT];
+		/** marker heights */
+		private final double[] q = new double[5];
+		/** marker positions */
+		private final int[] n = new int[5];
+		/** desired marker positions */
+		private final double[] np = new double[5];
+		/** increments of the desired positions */
+		private final double[] dn;
+		private int count;
+
+		private P2Quantile(double p) {
+			this.p = p;
+			this.dn = new double[] {0, p / 2, p, (1 + p) / 2, 1};
+		}
+
+		private void add(double x) {
+			if (values != null) {
+				values[count++] = x;
+				if (count == EXACT_LIMIT) {
+					initMarkers();
+				}
+				return;
+			}
+			count++;
+
+			int k;
+			if (x < q[0]) {
+				q[0] = x;
+				k = 0;
+			}
+			else if (x >= q[4]) {
+				q[4] = x;
+				k = 3;
+			}
+			else {
+				k = 0;
+				while (x >= q[k + 1]) {
+					k++;
+				}
+			}
+
+			for (int i=k + 1; i < 5; i++) {
+				n[i]++;
+			}
+			for (int i=0; i < 5; i++) {
+				np[i] += dn[i];
+			}
+
+			for (int i=1; i < 4; i++) {
+				double d = np[i] - n[i];
+				if ((d >= 1 && n[i + 1] - n[i] > 1) ||
+						(d <= -1 && n[i - 1] - n[i] < -1)) {
+					int s = d > 0 ? 1 : -1;
+					double h = parabolic(i, s);
+					if (q[i - 1] < h && h < q[i + 1]) {
+						q[i] = h;
+					}
+					else {
+						q[i] += s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+					}
+					n[i] += s;
+				}
+			}
+		}
+
+		/**
+		 * Places the markers to the desired positions of the sorted values
+		 */
+		private void initMarkers() {
+			Arrays.sort(values);
+			for (int i=0; i < 5; i++) {
+				np[i] = (count - 1) * dn[i];
+				n[i] = (int)Math.round(np[i]);
+			}
+			for (int i=1; i < 5; i++) { // positions must be increasing
+				n[i] = Math.max(n[i], n[i - 1] + 1);
+			}
+			for (int i=3; i >= 0; i--) {
+				n[i] = Math.min(n[i], n[i + 1] - 1);
+			}
+			for (int i=0; i < 5; i++) {
+				q[i] = values[n[i]];
+			}
+			values = null;
+		}
+
+		private double parabolic(int i, int d) {
+			return q[i] + (double)d / (n[i + 1] - n[i - 1]) *
+				((n[i] - n[i - 1] + d) * (q[i + 1] - q[i]) / (n[i + 1] - n[i]) +
+				(n[i + 1] - n[i] - d) * (q[i] - q[i - 1]) / (n[i] - n[i - 1]));
+		}
+
+		private double get() {
+			if (count == 0) {
+				return Double.NaN;
+			}
+			if (values != null) {
+				/* exact (nearest rank) quantile of the first values */
+				double[] sorted = Arrays.copyOf(values, count);
+				Arrays.sort(sorted);
+				int index = (int)Math.ceil(p * count) - 1;
+				return sorted[Math.max(0, index)];
+			}
+			return q[2];
+		}
+	}
+}